@@ -70,6 +70,7 @@ final class AssuranceClientInfo {
      *   <li>appSettings - Applications Manifest.xml file parsed in JSON format
      *   <li>type = connect, representing that this event is initializing a socket connection with
      *       server
+     *   <li>capabilities - optional transport features supported by this client
      * </ol>
      *
      * @return Returns {@link Map} representing clientInfo event payload
@@ -80,6 +81,9 @@ final class AssuranceClientInfo {
         eventPayload.put(AssuranceConstants.ClientInfoKeys.DEVICE_INFO, getDeviceInfo());
         eventPayload.put(AssuranceConstants.PayloadDataKeys.TYPE, EVENT_TYPE_CONNECT);
         eventPayload.put(AssuranceConstants.ClientInfoKeys.APP_SETTINGS, manifestData);
+        eventPayload.put(
+                AssuranceConstants.ClientInfoKeys.CAPABILITIES,
+                TransportCapabilities.advertised());
         return eventPayload;
     }
 
@@ -32,6 +32,20 @@ internal object AssuranceComponentRegistry {
     @JvmField
     internal val appState: AssuranceAppState = AssuranceAppState()
 
+    /**
+     * Governs the memory held by the event buffers of the extension. Shared across sessions so
+     * that a single budget applies to all of them.
+     */
+    @JvmField
+    internal val memoryGovernor: AssuranceMemoryGovernor = AssuranceMemoryGovernor()
+
+    /**
+     * Opens the connection to the Assurance server while a session is being authorized, for the
+     * socket of the session to take over once authorized.
+     */
+    @JvmField
+    internal val connectionPrewarmer: ConnectionPrewarmer = ConnectionPrewarmer()
+
     @JvmName("initialize")
     @Synchronized
     internal fun initialize(
@@ -54,5 +68,7 @@ internal object AssuranceComponentRegistry {
     internal fun reset() {
         assuranceStateManager = null
         sessionUIOperationHandler = null
+        memoryGovernor.reset()
+        connectionPrewarmer.cancel()
     }
 }
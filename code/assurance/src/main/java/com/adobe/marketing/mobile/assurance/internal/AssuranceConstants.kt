@@ -128,6 +128,13 @@ internal object AssuranceConstants {
         const val VERSION = "version"
         const val DEVICE_INFO = "deviceInfo"
         const val APP_SETTINGS = "appSettings"
+        const val CAPABILITIES = "capabilities"
+    }
+
+    internal object TransportCapability {
+        const val BATCH = "batch"
+        const val DEFLATE = "deflate"
+        const val BINARY = "binary"
     }
 
     internal object DeviceInfoKeys {
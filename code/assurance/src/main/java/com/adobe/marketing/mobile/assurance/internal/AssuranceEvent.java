@@ -37,8 +37,14 @@ final class AssuranceEvent {
     final long timestamp;
     final int eventNumber;
 
+    /** Read from the payload once, as events are routed by it. */
+    private final String controlType;
+
     private static final AtomicInteger ASSURANCE_EVENT_SEQUENCE_COUNTER = new AtomicInteger(0);
 
+    /** Lazily computed result of {@link #getEstimatedSize()}, -1 until computed. */
+    private int estimatedSize = -1;
+
     /**
      * Creates a new {@link AssuranceEvent}.
      *
@@ -81,13 +87,13 @@ final class AssuranceEvent {
                 metadata,
                 payload,
                 timestamp,
-                ASSURANCE_EVENT_SEQUENCE_COUNTER.addAndGet(1));
+                nextEventNumber());
     }
 
     /**
      * Creates a new Event object.
      *
-     * <p>Intended for internal use only
+     * <p>Intended for internal use only, such as by {@link InboundEventDecoder}
      *
      * @param eventID {@code String} UUID representing the event.
      * @param vendor {@code String} containing the vendor-specific identifier
@@ -97,7 +103,7 @@ final class AssuranceEvent {
      * @param timestamp timestamp of the event in milliseconds
      * @param eventNumber sequence number of the AssuranceEvent
      */
-    private AssuranceEvent(
+    AssuranceEvent(
             final String eventID,
             final String vendor,
             final String type,
@@ -112,6 +118,7 @@ final class AssuranceEvent {
         this.payload = payload;
         this.timestamp = timestamp;
         this.eventNumber = eventNumber;
+        this.controlType = readControlType(type, payload);
     }
 
     /**
@@ -154,7 +161,17 @@ final class AssuranceEvent {
         this.eventNumber =
                 eventMap.optInt(
                         AssuranceConstants.AssuranceEventKeys.EVENT_NUMBER,
-                        ASSURANCE_EVENT_SEQUENCE_COUNTER.addAndGet(1));
+                        nextEventNumber());
+        this.controlType = readControlType(type, payload);
+    }
+
+    /**
+     * Returns the sequence number of the next event created without one.
+     *
+     * @return the next event sequence number
+     */
+    static int nextEventNumber() {
+        return ASSURANCE_EVENT_SEQUENCE_COUNTER.addAndGet(1);
     }
 
     /**
@@ -201,6 +218,10 @@ final class AssuranceEvent {
      * @return a {@link String} value representing the control type
      */
     String getControlType() {
+        return controlType;
+    }
+
+    private static String readControlType(final String type, final Map<String, Object> payload) {
         // return null if the event is not of type "control"
         if (!AssuranceConstants.AssuranceEventType.CONTROL.equals(type)) {
             return null;
@@ -286,4 +307,22 @@ final class AssuranceEvent {
     String getEventType() {
         return this.type;
     }
+
+    /**
+     * Returns the estimated heap size of this event, as accounted for by {@link
+     * AssuranceMemoryGovernor}. Computed once, as the contents of an event are not expected to
+     * change after it is queued.
+     *
+     * @return estimated size of this event in bytes.
+     */
+    int getEstimatedSize() {
+        int size = estimatedSize;
+
+        if (size < 0) {
+            size = AssuranceMemoryGovernor.estimateSize(this);
+            estimatedSize = size;
+        }
+
+        return size;
+    }
 }
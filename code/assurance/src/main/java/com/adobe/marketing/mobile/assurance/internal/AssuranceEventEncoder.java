@@ -0,0 +1,633 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Serializes {@link AssuranceEvent}'s into their UTF-8 JSON wire representation without building
+ * intermediate {@link JSONObject}'s or {@code String}'s. The encoder owns a growable byte buffer
+ * that is reused across invocations, so steady-state encoding only allocates when the buffer needs
+ * to grow.
+ *
+ * <p>The output is byte-for-byte identical to {@code
+ * event.getJSONRepresentation().getBytes("UTF-8")}: envelope keys are emitted in the order the
+ * {@link HashMap} backing {@link AssuranceEvent#getJSONRepresentation()} iterates them, nested maps
+ * are emitted in their own iteration order, and strings and numbers are escaped/formatted the same
+ * way {@code org.json} does.
+ *
+ * <p>This class is not thread safe. Callers are expected to confine an instance to a single thread
+ * or guard it externally.
+ */
+final class AssuranceEventEncoder {
+
+    /** Initial capacity of the reusable output buffer. */
+    private static final int DEFAULT_CAPACITY = 4 * 1024;
+
+    /**
+     * Capacity beyond which the output buffer is released on {@link #reset()} instead of being
+     * retained. Prevents a one-off large event from pinning a large buffer for the session.
+     */
+    private static final int MAX_RETAINED_CAPACITY = 256 * 1024;
+
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] HEX_DIGITS = {
+        '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+    };
+    private static final Double NEGATIVE_ZERO = -0d;
+
+    /** Order in which the envelope keys of an {@link AssuranceEvent} are written. */
+    private static final String[] ENVELOPE_KEYS = resolveEnvelopeKeyOrder();
+
+    private byte[] buffer;
+    private int size;
+
+    /** Offset of the payload written by the most recent {@link #writeEvent(AssuranceEvent)}. */
+    private int payloadOffset = -1;
+
+    /** Length of the payload written by the most recent {@link #writeEvent(AssuranceEvent)}. */
+    private int payloadLength = 0;
+
+    AssuranceEventEncoder() {
+        this.buffer = new byte[DEFAULT_CAPACITY];
+        this.size = 0;
+    }
+
+    /**
+     * Encodes the provided {@link AssuranceEvent} into the reusable buffer, replacing any content
+     * previously held by this encoder.
+     *
+     * @param event the {@code AssuranceEvent} to encode
+     * @return the number of bytes the encoded event occupies in {@link #getBuffer()}
+     */
+    int encode(final AssuranceEvent event) {
+        reset();
+        writeEvent(event);
+        return size;
+    }
+
+    /**
+     * Appends the JSON representation of the provided {@link AssuranceEvent} to the content
+     * already held by this encoder.
+     *
+     * @param event the {@code AssuranceEvent} to append
+     */
+    void writeEvent(final AssuranceEvent event) {
+        writeEnvelope(event, null, 0, 0);
+    }
+
+    /**
+     * Appends a chunk of a larger event. The envelope (identifiers, vendor, type, timestamp and
+     * chunk metadata) is taken from {@code envelope}, while the payload is written as {@code
+     * {"chunkData":"<slice>"}} where the slice is copied straight from already encoded UTF-8 bytes
+     * without decoding them.
+     *
+     * @param envelope the {@code AssuranceEvent} describing the chunk. Its payload is ignored.
+     * @param source UTF-8 encoded bytes holding the chunk data
+     * @param offset offset of the chunk data in {@code source}
+     * @param length length of the chunk data in {@code source}. Must not split a multi-byte UTF-8
+     *     sequence.
+     */
+    void writeChunkEvent(
+            final AssuranceEvent envelope,
+            final byte[] source,
+            final int offset,
+            final int length) {
+        writeEnvelope(envelope, source, offset, length);
+    }
+
+    /**
+     * Returns the offset in {@link #getBuffer()} at which the payload of the most recently written
+     * event begins.
+     *
+     * @return the payload offset, or -1 if the most recently written event had no payload
+     */
+    int getPayloadOffset() {
+        return payloadOffset;
+    }
+
+    /**
+     * Returns the number of bytes the payload of the most recently written event occupies in
+     * {@link #getBuffer()}.
+     *
+     * @return the payload length, or 0 if the most recently written event had no payload
+     */
+    int getPayloadLength() {
+        return payloadLength;
+    }
+
+    /**
+     * Writes the JSON representation of {@code value} following the conversion rules that {@link
+     * JSONObject#JSONObject(Map)} applies to map values.
+     *
+     * @param value the value to be written
+     */
+    void writeValue(final Object value) {
+        if (value == null || value == JSONObject.NULL) {
+            writeRaw(NULL, 0, NULL.length);
+        } else if (value instanceof String) {
+            writeString((String) value);
+        } else if (value instanceof Boolean) {
+            final byte[] literal = (Boolean) value ? TRUE : FALSE;
+            writeRaw(literal, 0, literal.length);
+        } else if (value instanceof Number) {
+            writeNumber((Number) value);
+        } else if (value instanceof Map) {
+            writeMap((Map<?, ?>) value);
+        } else if (value instanceof Collection) {
+            writeCollection((Collection<?>) value);
+        } else if (value.getClass().isArray()) {
+            writeArray(value);
+        } else if (value instanceof JSONObject) {
+            writeJSONObject((JSONObject) value);
+        } else if (value instanceof JSONArray) {
+            writeJSONArray((JSONArray) value);
+        } else if (value instanceof Character
+                || value.getClass().getPackage() != null
+                        && value.getClass().getPackage().getName().startsWith("java.")) {
+            writeString(value.toString());
+        } else {
+            // JSONObject#wrap(Object) cannot represent arbitrary objects and maps them to null
+            writeRaw(NULL, 0, NULL.length);
+        }
+    }
+
+    /**
+     * Writes {@code value} as a quoted JSON string encoded in UTF-8.
+     *
+     * @param value the string to be written
+     */
+    void writeString(final String value) {
+        final int length = value.length();
+        // Worst case is a 6 byte escape sequence per char, plus the surrounding quotes.
+        ensureCapacity(length * 6 + 2);
+        final byte[] out = buffer;
+        int position = size;
+        out[position++] = '"';
+
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+
+            switch (c) {
+                case '"':
+                case '\\':
+                case '/':
+                    out[position++] = '\\';
+                    out[position++] = (byte) c;
+                    break;
+
+                case '\t':
+                    out[position++] = '\\';
+                    out[position++] = 't';
+                    break;
+
+                case '\b':
+                    out[position++] = '\\';
+                    out[position++] = 'b';
+                    break;
+
+                case '\n':
+                    out[position++] = '\\';
+                    out[position++] = 'n';
+                    break;
+
+                case '\r':
+                    out[position++] = '\\';
+                    out[position++] = 'r';
+                    break;
+
+                case '\f':
+                    out[position++] = '\\';
+                    out[position++] = 'f';
+                    break;
+
+                default:
+                    if (c <= 0x1F) {
+                        out[position++] = '\\';
+                        out[position++] = 'u';
+                        out[position++] = '0';
+                        out[position++] = '0';
+                        out[position++] = HEX_DIGITS[(c >> 4) & 0xF];
+                        out[position++] = HEX_DIGITS[c & 0xF];
+                    } else if (c < 0x80) {
+                        out[position++] = (byte) c;
+                    } else if (c < 0x800) {
+                        out[position++] = (byte) (0xC0 | (c >> 6));
+                        out[position++] = (byte) (0x80 | (c & 0x3F));
+                    } else if (Character.isSurrogate(c)) {
+                        if (Character.isHighSurrogate(c)
+                                && i + 1 < length
+                                && Character.isLowSurrogate(value.charAt(i + 1))) {
+                            final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                            out[position++] = (byte) (0xF0 | (codePoint >> 18));
+                            out[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                            out[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                            out[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                        } else {
+                            // Malformed surrogate. Mirror String#getBytes(UTF-8) replacement.
+                            out[position++] = '?';
+                        }
+                    } else {
+                        out[position++] = (byte) (0xE0 | (c >> 12));
+                        out[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                        out[position++] = (byte) (0x80 | (c & 0x3F));
+                    }
+            }
+        }
+
+        out[position++] = '"';
+        size = position;
+    }
+
+    /**
+     * Appends a single byte to the buffer.
+     *
+     * @param b the byte to append
+     */
+    void writeByte(final int b) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) b;
+    }
+
+    /**
+     * Appends {@code length} bytes from {@code source} starting at {@code offset} to the buffer as
+     * is.
+     *
+     * @param source the bytes to append
+     * @param offset offset of the first byte in {@code source}
+     * @param length number of bytes to append
+     */
+    void writeRaw(final byte[] source, final int offset, final int length) {
+        ensureCapacity(length);
+        System.arraycopy(source, offset, buffer, size, length);
+        size += length;
+    }
+
+    /**
+     * Returns the buffer backing this encoder. Only the first {@link #size()} bytes are valid. The
+     * returned array is reused by subsequent invocations and must not be retained.
+     *
+     * @return the buffer backing this encoder
+     */
+    byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the number of valid bytes in {@link #getBuffer()}.
+     *
+     * @return the number of valid bytes in the buffer
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns a copy of the encoded content trimmed to {@link #size()}.
+     *
+     * @return a new byte array holding the encoded content
+     */
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * Discards the encoded content. Buffers that grew beyond {@link #MAX_RETAINED_CAPACITY} are
+     * released so that a single large event does not pin memory.
+     */
+    void reset() {
+        if (buffer.length > MAX_RETAINED_CAPACITY) {
+            buffer = new byte[DEFAULT_CAPACITY];
+        }
+
+        size = 0;
+    }
+
+    private void writeEnvelope(
+            final AssuranceEvent event,
+            final byte[] chunkSource,
+            final int chunkOffset,
+            final int chunkLength) {
+        payloadOffset = -1;
+        payloadLength = 0;
+        writeByte('{');
+        boolean first = true;
+
+        for (final String key : ENVELOPE_KEYS) {
+            final boolean isPayload = AssuranceConstants.AssuranceEventKeys.PAYLOAD.equals(key);
+            final Object value = envelopeValue(event, key);
+
+            // metadata and payload are optional and omitted entirely when absent
+            if (value == null && !(isPayload && chunkSource != null)) {
+                continue;
+            }
+
+            if (!first) {
+                writeByte(',');
+            }
+
+            first = false;
+            writeString(key);
+            writeByte(':');
+
+            if (!isPayload) {
+                writeValue(value);
+                continue;
+            }
+
+            payloadOffset = size;
+
+            if (chunkSource != null) {
+                writeByte('{');
+                writeString(AssuranceConstants.AssuranceEventKeys.CHUNK_DATA);
+                writeByte(':');
+                writeUtf8String(chunkSource, chunkOffset, chunkLength);
+                writeByte('}');
+            } else {
+                writeValue(value);
+            }
+
+            payloadLength = size - payloadOffset;
+        }
+
+        writeByte('}');
+    }
+
+    /**
+     * Returns the number of bytes {@code b} occupies once written as part of a JSON string by
+     * {@link #writeChunkEvent}, excluding the surrounding quotes.
+     *
+     * @param b a byte of UTF-8 encoded content
+     * @return 1 for bytes copied as is, 2 for short escapes and 6 for unicode escapes
+     */
+    static int escapedLength(final byte b) {
+        switch (b) {
+            case '"':
+            case '\\':
+            case '/':
+            case '\t':
+            case '\b':
+            case '\n':
+            case '\r':
+            case '\f':
+                return 2;
+
+            default:
+                // bytes of multi-byte sequences are negative and copied as is
+                return b >= 0 && b <= 0x1F ? 6 : 1;
+        }
+    }
+
+    /**
+     * Writes already UTF-8 encoded bytes as a quoted JSON string. Escaping only ever applies to
+     * ASCII characters, so multi-byte sequences are copied through untouched. Produces the same
+     * output as {@link #writeString(String)} for the decoded string.
+     */
+    private void writeUtf8String(final byte[] source, final int offset, final int length) {
+        // Worst case is a 6 byte escape sequence per byte, plus the surrounding quotes.
+        ensureCapacity(length * 6 + 2);
+        final byte[] out = buffer;
+        int position = size;
+        out[position++] = '"';
+
+        for (int i = offset; i < offset + length; i++) {
+            final byte b = source[i];
+
+            switch (b) {
+                case '"':
+                case '\\':
+                case '/':
+                    out[position++] = '\\';
+                    out[position++] = b;
+                    break;
+
+                case '\t':
+                    out[position++] = '\\';
+                    out[position++] = 't';
+                    break;
+
+                case '\b':
+                    out[position++] = '\\';
+                    out[position++] = 'b';
+                    break;
+
+                case '\n':
+                    out[position++] = '\\';
+                    out[position++] = 'n';
+                    break;
+
+                case '\r':
+                    out[position++] = '\\';
+                    out[position++] = 'r';
+                    break;
+
+                case '\f':
+                    out[position++] = '\\';
+                    out[position++] = 'f';
+                    break;
+
+                default:
+                    // bytes of multi-byte sequences are negative and copied as is
+                    if (b >= 0 && b <= 0x1F) {
+                        out[position++] = '\\';
+                        out[position++] = 'u';
+                        out[position++] = '0';
+                        out[position++] = '0';
+                        out[position++] = HEX_DIGITS[(b >> 4) & 0xF];
+                        out[position++] = HEX_DIGITS[b & 0xF];
+                    } else {
+                        out[position++] = b;
+                    }
+            }
+        }
+
+        out[position++] = '"';
+        size = position;
+    }
+
+    private void writeMap(final Map<?, ?> map) {
+        writeByte('{');
+        boolean first = true;
+
+        for (final Map.Entry<?, ?> entry : map.entrySet()) {
+            if (!first) {
+                writeByte(',');
+            }
+
+            first = false;
+            writeString(String.valueOf(entry.getKey()));
+            writeByte(':');
+            writeValue(entry.getValue());
+        }
+
+        writeByte('}');
+    }
+
+    private void writeCollection(final Collection<?> collection) {
+        writeByte('[');
+        boolean first = true;
+
+        for (final Object element : collection) {
+            if (!first) {
+                writeByte(',');
+            }
+
+            first = false;
+            writeValue(element);
+        }
+
+        writeByte(']');
+    }
+
+    private void writeArray(final Object array) {
+        writeByte('[');
+        final int length = Array.getLength(array);
+
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                writeByte(',');
+            }
+
+            writeValue(Array.get(array, i));
+        }
+
+        writeByte(']');
+    }
+
+    private void writeJSONObject(final JSONObject jsonObject) {
+        writeByte('{');
+        boolean first = true;
+        final Iterator<String> keys = jsonObject.keys();
+
+        while (keys.hasNext()) {
+            final String key = keys.next();
+
+            if (!first) {
+                writeByte(',');
+            }
+
+            first = false;
+            writeString(key);
+            writeByte(':');
+            writeValue(jsonObject.opt(key));
+        }
+
+        writeByte('}');
+    }
+
+    private void writeJSONArray(final JSONArray jsonArray) {
+        writeByte('[');
+        final int length = jsonArray.length();
+
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                writeByte(',');
+            }
+
+            writeValue(jsonArray.opt(i));
+        }
+
+        writeByte(']');
+    }
+
+    /**
+     * Writes a number the way {@code JSONObject#numberToString(Number)} formats it: integral
+     * values are written without a fraction, non finite values cannot be represented and are
+     * written as null.
+     */
+    private void writeNumber(final Number number) {
+        final double doubleValue = number.doubleValue();
+
+        if (Double.isNaN(doubleValue) || Double.isInfinite(doubleValue)) {
+            writeRaw(NULL, 0, NULL.length);
+            return;
+        }
+
+        if (number.equals(NEGATIVE_ZERO)) {
+            writeAscii("-0");
+            return;
+        }
+
+        final long longValue = number.longValue();
+
+        if (doubleValue == (double) longValue) {
+            writeAscii(Long.toString(longValue));
+        } else {
+            writeAscii(number.toString());
+        }
+    }
+
+    private void writeAscii(final String value) {
+        final int length = value.length();
+        ensureCapacity(length);
+
+        for (int i = 0; i < length; i++) {
+            buffer[size++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void ensureCapacity(final int additional) {
+        final int required = size + additional;
+
+        if (required <= buffer.length) {
+            return;
+        }
+
+        buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+    }
+
+    private static Object envelopeValue(final AssuranceEvent event, final String key) {
+        switch (key) {
+            case AssuranceConstants.AssuranceEventKeys.EVENT_ID:
+                return event.eventID;
+            case AssuranceConstants.AssuranceEventKeys.VENDOR:
+                return event.vendor;
+            case AssuranceConstants.AssuranceEventKeys.TYPE:
+                return event.type;
+            case AssuranceConstants.AssuranceEventKeys.TIMESTAMP:
+                return event.timestamp;
+            case AssuranceConstants.AssuranceEventKeys.EVENT_NUMBER:
+                return event.eventNumber;
+            case AssuranceConstants.AssuranceEventKeys.METADATA:
+                return event.metadata;
+            case AssuranceConstants.AssuranceEventKeys.PAYLOAD:
+                return event.payload;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Resolves the order in which {@link AssuranceEvent#getJSONRepresentation()} emits the envelope
+     * keys, which is the iteration order of the {@link HashMap} it populates.
+     */
+    private static String[] resolveEnvelopeKeyOrder() {
+        final Map<String, Object> envelope = new HashMap<>();
+        envelope.put(AssuranceConstants.AssuranceEventKeys.EVENT_ID, null);
+        envelope.put(AssuranceConstants.AssuranceEventKeys.VENDOR, null);
+        envelope.put(AssuranceConstants.AssuranceEventKeys.TYPE, null);
+        envelope.put(AssuranceConstants.AssuranceEventKeys.TIMESTAMP, null);
+        envelope.put(AssuranceConstants.AssuranceEventKeys.EVENT_NUMBER, null);
+        envelope.put(AssuranceConstants.AssuranceEventKeys.METADATA, null);
+        envelope.put(AssuranceConstants.AssuranceEventKeys.PAYLOAD, null);
+        return envelope.keySet().toArray(new String[0]);
+    }
+}
@@ -199,6 +199,9 @@ public final class AssuranceExtension extends Extension {
                         new AssuranceAppState.AssuranceAuthorization.PinConnect(
                                 sessionId, environment)));
 
+        // Connect to the server while the PIN is being entered.
+        AssuranceComponentRegistry.connectionPrewarmer.prewarm(environment);
+
         // Launch the Assurance Activity
         final Intent intent = new Intent(hostApplication, AssuranceActivity.class);
         intent.addFlags(Intent.FLAG_ACTIVITY_NO_ANIMATION);
@@ -239,6 +242,9 @@ public final class AssuranceExtension extends Extension {
                         new AssuranceAppState.AssuranceAuthorization.QuickConnect(
                                 AssuranceEnvironment.PROD)));
 
+        // Connect to the server while the device is being authorized.
+        AssuranceComponentRegistry.connectionPrewarmer.prewarm(AssuranceEnvironment.PROD);
+
         // Launch the Assurance Activity
         final Intent intent = new Intent(hostApplication, AssuranceActivity.class);
         intent.addFlags(Intent.FLAG_ACTIVITY_NO_ANIMATION);
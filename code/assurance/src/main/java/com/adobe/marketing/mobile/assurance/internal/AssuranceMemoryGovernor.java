@@ -0,0 +1,454 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import androidx.annotation.VisibleForTesting;
+import com.adobe.marketing.mobile.Assurance;
+import com.adobe.marketing.mobile.services.Log;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Enforces a single byte budget across all the buffers in which Assurance holds event data while
+ * it cannot be delivered, and accounts for the bytes each of them holds.
+ *
+ * <p>The budget is split between the {@link Buffer}s in fixed shares, so that one buffer filling up
+ * cannot starve the others. Until the first session connects, every outbound event is held by
+ * both the {@link Buffer#SESSION_BUFFER} and the {@link Buffer#OUTBOUND_QUEUE} and is accounted for
+ * by each of them; the share of the latter is the larger one, so that the buffered events always
+ * fit when they are replayed into a new session.
+ *
+ * <p>A buffer {@link #reserve(Buffer, long)}s the estimated size of an event before retaining it
+ * and {@link #release(Buffer, long)}s it once the event leaves the buffer. When a reservation is
+ * refused, the buffer makes room according to the {@link OverflowPolicy} and reports what it
+ * dropped via {@link #recordDrop(Buffer, long)}. Drops are aggregated and reported to the {@link
+ * OverflowListener} at most once every {@link #REPORT_INTERVAL_MILLIS}.
+ *
+ * <p>Sizes are estimates of the heap retained by an event, not of its encoded size.
+ */
+final class AssuranceMemoryGovernor {
+    private static final String LOG_TAG = "AssuranceMemoryGovernor";
+
+    /** Default number of bytes that all the {@link Buffer}s may hold together. */
+    static final long DEFAULT_BUDGET_BYTES = 8L * 1024 * 1024;
+
+    /** Minimum time between two consecutive {@link OverflowListener} notifications. */
+    static final long REPORT_INTERVAL_MILLIS = 5_000L;
+
+    /** Estimated fixed overhead of an event, a map entry or a collection element. */
+    private static final int OBJECT_OVERHEAD_BYTES = 32;
+
+    /**
+     * Number of entries of a map or collection that are looked at when estimating its size. The
+     * size of the rest is extrapolated from the entries looked at.
+     */
+    private static final int MAX_SAMPLED_ENTRIES = 16;
+
+    /**
+     * Number of map or collection entries looked at when estimating the size of an event, so that
+     * estimating a large payload stays cheap. Past this, the maps and collections not looked at
+     * yet are estimated from their number of entries and the average size of the entries measured
+     * at the same depth.
+     */
+    private static final int MAX_SAMPLED_VALUES = 4096;
+
+    /** Depth beyond which entries share the average size measured at this depth. */
+    private static final int MAX_TRACKED_DEPTH = 16;
+
+    /** Estimated size of an entry at a depth where no entry was measured yet. */
+    private static final int UNSAMPLED_ENTRY_BYTES = 3 * OBJECT_OVERHEAD_BYTES;
+
+    /** The buffers accounted for by the governor, along with their share of the budget. */
+    enum Buffer {
+        /** The queue of events waiting to be sent on the socket. */
+        OUTBOUND_QUEUE(4),
+        /** Events held by the orchestrator until the first session connects. */
+        SESSION_BUFFER(3),
+        /** Inbound chunks waiting for the rest of their chunk group. */
+        STITCHER(1);
+
+        /** Share of the budget, in eighths. */
+        private final int budgetEighths;
+
+        Buffer(final int budgetEighths) {
+            this.budgetEighths = budgetEighths;
+        }
+    }
+
+    /** Determines what a buffer drops when a reservation is refused. */
+    enum OverflowPolicy {
+        /** Drop the oldest events held by the buffer until the new event fits. */
+        DROP_OLDEST,
+        /**
+         * Drop low priority events before anything else. An incoming low priority event is dropped
+         * instead of evicting older events. See {@link #isLowPriority(AssuranceEvent)}.
+         */
+        DROP_LOW_PRIORITY
+    }
+
+    /** Receives aggregated reports of events dropped due to the budget being exceeded. */
+    interface OverflowListener {
+        /**
+         * Invoked on the thread that recorded the drop which triggered the report.
+         *
+         * @param droppedEvents number of events dropped since the previous report
+         * @param droppedBytes estimated number of bytes dropped since the previous report
+         */
+        void onEventsDropped(final long droppedEvents, final long droppedBytes);
+    }
+
+    private volatile long budgetBytes;
+    private volatile OverflowPolicy overflowPolicy;
+    private volatile OverflowListener overflowListener;
+
+    private final AtomicLongArray bufferBytes = new AtomicLongArray(Buffer.values().length);
+    private final AtomicLongArray droppedEvents = new AtomicLongArray(Buffer.values().length);
+    private final AtomicLongArray droppedBytes = new AtomicLongArray(Buffer.values().length);
+
+    /** Drops recorded since the previous report. Guarded by {@code this}. */
+    private long pendingDroppedEvents;
+
+    private long pendingDroppedBytes;
+    private long lastReportNanos;
+
+    AssuranceMemoryGovernor() {
+        this(DEFAULT_BUDGET_BYTES, OverflowPolicy.DROP_OLDEST);
+    }
+
+    AssuranceMemoryGovernor(final long budgetBytes, final OverflowPolicy overflowPolicy) {
+        configure(budgetBytes, overflowPolicy);
+    }
+
+    /**
+     * Updates the budget and the overflow policy. Bytes already reserved are retained even if they
+     * exceed the new budget; subsequent reservations are refused until enough is released.
+     *
+     * @param budgetBytes number of bytes all the buffers may hold together. Each {@link Buffer}
+     *     may hold its share of it.
+     * @param overflowPolicy the {@link OverflowPolicy} buffers should apply when over budget
+     */
+    void configure(final long budgetBytes, final OverflowPolicy overflowPolicy) {
+        if (budgetBytes <= 0) {
+            throw new IllegalArgumentException("budgetBytes must be positive: " + budgetBytes);
+        }
+
+        this.budgetBytes = budgetBytes;
+        this.overflowPolicy =
+                overflowPolicy != null ? overflowPolicy : OverflowPolicy.DROP_OLDEST;
+    }
+
+    synchronized void setOverflowListener(final OverflowListener overflowListener) {
+        this.overflowListener = overflowListener;
+    }
+
+    /**
+     * Removes {@code overflowListener} if it is the current {@link OverflowListener}. Allows a
+     * session that is torn down to unregister without affecting a session that replaced it.
+     *
+     * @param overflowListener the {@link OverflowListener} to remove
+     */
+    synchronized void removeOverflowListener(final OverflowListener overflowListener) {
+        if (this.overflowListener == overflowListener) {
+            this.overflowListener = null;
+        }
+    }
+
+    OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Reserves {@code bytes} of the budget on behalf of {@code buffer}.
+     *
+     * @param buffer the {@link Buffer} that is about to retain the bytes
+     * @param bytes the number of bytes to reserve
+     * @return true if the bytes were reserved; false if doing so would exceed the share of the
+     *     budget of {@code buffer}
+     */
+    boolean reserve(final Buffer buffer, final long bytes) {
+        final long limit = getBudgetBytes(buffer);
+        long used;
+
+        do {
+            used = bufferBytes.get(buffer.ordinal());
+
+            if (used + bytes > limit) {
+                return false;
+            }
+        } while (!bufferBytes.compareAndSet(buffer.ordinal(), used, used + bytes));
+
+        return true;
+    }
+
+    /**
+     * Returns {@code bytes} previously reserved by {@code buffer} to the budget.
+     *
+     * @param buffer the {@link Buffer} that no longer retains the bytes
+     * @param bytes the number of bytes to release
+     */
+    void release(final Buffer buffer, final long bytes) {
+        long used;
+
+        do {
+            used = bufferBytes.get(buffer.ordinal());
+            // A release racing with releaseAll() must not leave the buffer with negative usage.
+        } while (!bufferBytes.compareAndSet(
+                buffer.ordinal(), used, Math.max(0, used - bytes)));
+    }
+
+    /**
+     * Returns all the bytes reserved by {@code buffer} to the budget. Intended for buffers that are
+     * cleared all at once.
+     *
+     * @param buffer the {@link Buffer} that was cleared
+     */
+    void releaseAll(final Buffer buffer) {
+        bufferBytes.set(buffer.ordinal(), 0);
+    }
+
+    /**
+     * Records that {@code buffer} dropped an event of {@code bytes} estimated size to stay within
+     * the budget. The bytes are expected to have been released (or never reserved) by the caller.
+     *
+     * @param buffer the {@link Buffer} that dropped the event
+     * @param bytes the estimated size of the dropped event
+     */
+    void recordDrop(final Buffer buffer, final long bytes) {
+        droppedEvents.incrementAndGet(buffer.ordinal());
+        droppedBytes.addAndGet(buffer.ordinal(), bytes);
+
+        final long reportEvents;
+        final long reportBytes;
+
+        synchronized (this) {
+            pendingDroppedEvents++;
+            pendingDroppedBytes += bytes;
+
+            final long now = System.nanoTime();
+
+            if (lastReportNanos != 0
+                    && now - lastReportNanos
+                            < TimeUnit.MILLISECONDS.toNanos(REPORT_INTERVAL_MILLIS)) {
+                return;
+            }
+
+            reportEvents = pendingDroppedEvents;
+            reportBytes = pendingDroppedBytes;
+            pendingDroppedEvents = 0;
+            pendingDroppedBytes = 0;
+            lastReportNanos = now;
+        }
+
+        Log.warning(
+                Assurance.LOG_TAG,
+                LOG_TAG,
+                "Dropped %d event(s) (%d bytes) to stay within the %d byte memory budget.",
+                reportEvents,
+                reportBytes,
+                budgetBytes);
+
+        final OverflowListener listener = overflowListener;
+
+        if (listener != null) {
+            listener.onEventsDropped(reportEvents, reportBytes);
+        }
+    }
+
+    long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    long getBudgetBytes(final Buffer buffer) {
+        return budgetBytes * buffer.budgetEighths / 8;
+    }
+
+    long getUsedBytes() {
+        long used = 0;
+
+        for (final Buffer buffer : Buffer.values()) {
+            used += bufferBytes.get(buffer.ordinal());
+        }
+
+        return used;
+    }
+
+    long getUsedBytes(final Buffer buffer) {
+        return bufferBytes.get(buffer.ordinal());
+    }
+
+    long getDroppedEventCount(final Buffer buffer) {
+        return droppedEvents.get(buffer.ordinal());
+    }
+
+    long getDroppedBytes(final Buffer buffer) {
+        return droppedBytes.get(buffer.ordinal());
+    }
+
+    /**
+     * Clears all the accounting. Exists ONLY for test convenience, as the governor used in
+     * production is shared across sessions.
+     */
+    @VisibleForTesting
+    synchronized void reset() {
+        for (final Buffer buffer : Buffer.values()) {
+            bufferBytes.set(buffer.ordinal(), 0);
+            droppedEvents.set(buffer.ordinal(), 0);
+            droppedBytes.set(buffer.ordinal(), 0);
+        }
+
+        pendingDroppedEvents = 0;
+        pendingDroppedBytes = 0;
+        lastReportNanos = 0;
+    }
+
+    /**
+     * Determines whether {@code event} may be dropped ahead of other events under {@link
+     * OverflowPolicy#DROP_LOW_PRIORITY}. Log events and generic events other than shared state
+     * changes are low priority; shared states, control and client events are required for the
+     * session to make sense of the rest and are never preferred for dropping.
+     *
+     * @param event the {@link AssuranceEvent} to classify
+     * @return true if {@code event} is low priority
+     */
+    static boolean isLowPriority(final AssuranceEvent event) {
+        if (AssuranceConstants.AssuranceEventType.LOG.equals(event.type)) {
+            return true;
+        }
+
+        if (!AssuranceConstants.AssuranceEventType.GENERIC.equals(event.type)) {
+            return false;
+        }
+
+        final Object eventName =
+                event.payload != null
+                        ? event.payload.get(
+                                AssuranceConstants.GenericEventPayloadKey.ACP_EXTENSION_EVENT_NAME)
+                        : null;
+        return !AssuranceConstants.SDKEventName.SHARED_STATE_CHANGE.equals(eventName)
+                && !AssuranceConstants.SDKEventName.XDM_SHARED_STATE_CHANGE.equals(eventName);
+    }
+
+    /**
+     * Estimates the heap retained by {@code event}, including its metadata and payload. Strings
+     * are measured at every depth, but at most {@link #MAX_SAMPLED_ENTRIES} entries of a map or
+     * collection and {@link #MAX_SAMPLED_VALUES} entries in total are looked at, the size of the
+     * others being extrapolated.
+     *
+     * @param event the {@link AssuranceEvent} whose size is to be estimated
+     * @return the estimated size in bytes
+     */
+    static int estimateSize(final AssuranceEvent event) {
+        final SizeEstimator estimator = new SizeEstimator();
+        long size = OBJECT_OVERHEAD_BYTES;
+        size += estimator.estimate(event.eventID, 0);
+        size += estimator.estimate(event.vendor, 0);
+        size += estimator.estimate(event.type, 0);
+        size += estimator.estimate(event.metadata, 0);
+        size += estimator.estimate(event.payload, 0);
+        return (int) Math.min(Integer.MAX_VALUE, size);
+    }
+
+    /** Estimates the size of the values of a single event. */
+    private static final class SizeEstimator {
+        /** Number of entries that may still be looked at. */
+        private int remainingValues = MAX_SAMPLED_VALUES;
+
+        /** Total size and number of the entries measured, by depth. */
+        private final long[] measuredBytes = new long[MAX_TRACKED_DEPTH];
+
+        private final int[] measuredEntries = new int[MAX_TRACKED_DEPTH];
+
+        long estimate(final Object value, final int depth) {
+            if (value == null) {
+                return 0;
+            }
+
+            if (value instanceof String) {
+                // Strings are UTF-16 in memory.
+                return OBJECT_OVERHEAD_BYTES + 2L * ((String) value).length();
+            }
+
+            if (value instanceof InboundEventDecoder.RawPayload
+                    && !((InboundEventDecoder.RawPayload) value).isParsed()) {
+                // Only the raw JSON is held until the payload is read.
+                return OBJECT_OVERHEAD_BYTES
+                        + estimate(((InboundEventDecoder.RawPayload) value).getJSON(), depth);
+            }
+
+            final Iterable<?> entries;
+            final int entryCount;
+
+            if (value instanceof Map) {
+                entries = ((Map<?, ?>) value).entrySet();
+                entryCount = ((Map<?, ?>) value).size();
+            } else if (value instanceof Collection) {
+                entries = (Collection<?>) value;
+                entryCount = ((Collection<?>) value).size();
+            } else if (value instanceof Object[]) {
+                entries = Arrays.asList((Object[]) value);
+                entryCount = ((Object[]) value).length;
+            } else {
+                return OBJECT_OVERHEAD_BYTES;
+            }
+
+            final int entryDepth = Math.min(depth + 1, MAX_TRACKED_DEPTH - 1);
+
+            if (remainingValues <= 0) {
+                // Strings are still measured, only nested maps and collections are extrapolated.
+                return OBJECT_OVERHEAD_BYTES + entryCount * averageEntrySize(entryDepth);
+            }
+
+            long sampledSize = 0;
+            int sampled = 0;
+
+            for (final Object entry : entries) {
+                if (sampled == MAX_SAMPLED_ENTRIES) {
+                    break;
+                }
+
+                remainingValues--;
+                final long entrySize;
+
+                if (entry instanceof Map.Entry) {
+                    entrySize =
+                            OBJECT_OVERHEAD_BYTES
+                                    + estimate(((Map.Entry<?, ?>) entry).getKey(), depth + 1)
+                                    + estimate(((Map.Entry<?, ?>) entry).getValue(), depth + 1);
+                } else {
+                    entrySize = estimate(entry, depth + 1);
+                }
+
+                measuredBytes[entryDepth] += entrySize;
+                measuredEntries[entryDepth]++;
+                sampledSize += entrySize;
+                sampled++;
+            }
+
+            long size = OBJECT_OVERHEAD_BYTES + sampledSize;
+
+            if (sampled > 0 && entryCount > sampled) {
+                size += sampledSize / sampled * (entryCount - sampled);
+            }
+
+            return size;
+        }
+
+        private long averageEntrySize(final int depth) {
+            return measuredEntries[depth] > 0
+                    ? measuredBytes[depth] / measuredEntries[depth]
+                    : UNSAMPLED_ENTRY_BYTES;
+        }
+    }
+}
@@ -13,6 +13,21 @@ package com.adobe.marketing.mobile.assurance.internal;
 
 interface AssurancePlugin {
 
+    /** Where the {@link AssurancePluginManager} runs the callbacks of a plugin. */
+    enum ExecutionPolicy {
+        /**
+         * On the thread processing the inbound events, before the next inbound event is processed.
+         * For plugins that return quickly.
+         */
+        INLINE,
+
+        /**
+         * On a {@link PluginExecutionLane} of its own, in order, so that the plugin does not delay
+         * the other inbound events. For plugins that perform I/O or other blocking work.
+         */
+        SERIAL_LANE
+    }
+
     /**
      * Returns the vendor name
      *
@@ -32,6 +47,14 @@ interface AssurancePlugin {
      */
     String getControlType();
 
+    /**
+     * Returns where the callbacks of the plugin are run, other than {@link
+     * #onRegistered(AssuranceSession)} which is always run when the plugin is added.
+     *
+     * @return the {@link ExecutionPolicy} of the plugin
+     */
+    ExecutionPolicy getExecutionPolicy();
+
     /**
      * Invoked when a AssuranceEvent is received for a specific vendor and specific control type
      *
@@ -42,6 +42,11 @@ class AssurancePluginConfigSwitcher implements AssurancePlugin {
         return AssuranceConstants.ControlType.CONFIG_UPDATE;
     }
 
+    @Override
+    public ExecutionPolicy getExecutionPolicy() {
+        return ExecutionPolicy.SERIAL_LANE;
+    }
+
     /** This method will be invoked only if the control event is of type "configUpdate" */
     @Override
     public void onEventReceived(final AssuranceEvent event) {
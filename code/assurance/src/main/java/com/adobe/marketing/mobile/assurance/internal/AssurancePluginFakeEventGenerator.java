@@ -31,6 +31,11 @@ class AssurancePluginFakeEventGenerator implements AssurancePlugin {
         return AssuranceConstants.ControlType.FAKE_EVENT;
     }
 
+    @Override
+    public ExecutionPolicy getExecutionPolicy() {
+        return ExecutionPolicy.SERIAL_LANE;
+    }
+
     /** This method will be invoked only if the control event is of type "fakeEvent" */
     @Override
     public void onEventReceived(final AssuranceEvent event) {
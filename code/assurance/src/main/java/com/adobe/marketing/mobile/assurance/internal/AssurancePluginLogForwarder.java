@@ -51,6 +51,11 @@ class AssurancePluginLogForwarder implements AssurancePlugin {
         return AssuranceConstants.ControlType.LOG_FORWARDING;
     }
 
+    @Override
+    public ExecutionPolicy getExecutionPolicy() {
+        return ExecutionPolicy.INLINE;
+    }
+
     /** This method will be invoked only if the control event is of type "logForwarding" */
     @Override
     public void onEventReceived(final AssuranceEvent event) {
@@ -11,13 +11,26 @@
 
 package com.adobe.marketing.mobile.assurance.internal;
 
+import androidx.annotation.VisibleForTesting;
 import com.adobe.marketing.mobile.Assurance;
 import com.adobe.marketing.mobile.services.Log;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Manages registration of plugins and notifications to plugins about the {@link AssuranceSession}.
+ *
+ * <p>Plugins are notified according to their {@link AssurancePlugin.ExecutionPolicy}: inline on the
+ * calling thread, or through a {@link PluginExecutionLane} of their own, which also carries their
+ * session lifecycle callbacks so that a plugin sees its callbacks in order.
+ *
+ * <p>Inbound events are routed through a table built whenever a plugin is added, so that routing an
+ * event takes a lookup by vendor and one by control type, regardless of the number of plugins.
  */
 class AssurancePluginManager {
     private static final String LOG_TAG = "AssurancePluginManager";
@@ -25,6 +38,13 @@ class AssurancePluginManager {
     private final ConcurrentHashMap<String, ConcurrentLinkedQueue<AssurancePlugin>> plugins;
     private final AssuranceSession session;
 
+    /** The lanes of the plugins with the {@link AssurancePlugin.ExecutionPolicy#SERIAL_LANE}. */
+    private final ConcurrentHashMap<AssurancePlugin, PluginExecutionLane> lanes =
+            new ConcurrentHashMap<>();
+
+    /** The {@link VendorRoutes} of each vendor, replaced rather than modified. */
+    private volatile Map<String, VendorRoutes> routes;
+
     AssurancePluginManager(final AssuranceSession session) {
         this(session, new ConcurrentHashMap<String, ConcurrentLinkedQueue<AssurancePlugin>>());
     }
@@ -34,6 +54,7 @@ class AssurancePluginManager {
             final ConcurrentHashMap<String, ConcurrentLinkedQueue<AssurancePlugin>> plugins) {
         this.session = session;
         this.plugins = plugins;
+        this.routes = buildRoutes();
     }
 
     /**
@@ -57,6 +78,14 @@ class AssurancePluginManager {
             existingQueue.add(plugin);
         }
 
+        if (plugin.getExecutionPolicy() == AssurancePlugin.ExecutionPolicy.SERIAL_LANE) {
+            lanes.put(plugin, new PluginExecutionLane(plugin.getClass().getSimpleName()));
+        }
+
+        synchronized (this) {
+            routes = buildRoutes();
+        }
+
         plugin.onRegistered(session);
     }
 
@@ -67,10 +96,9 @@ class AssurancePluginManager {
      * @param event the {@link AssuranceEvent}'s received by {@link AssuranceSession}
      */
     void onAssuranceEvent(final AssuranceEvent event) {
-        final ConcurrentLinkedQueue<AssurancePlugin> pluginsForVendor =
-                plugins.get(event.getVendor());
+        final VendorRoutes vendorRoutes = routes.get(event.getVendor());
 
-        if (pluginsForVendor == null) {
+        if (vendorRoutes == null) {
             Log.debug(
                     Assurance.LOG_TAG,
                     LOG_TAG,
@@ -81,24 +109,11 @@ class AssurancePluginManager {
             return;
         }
 
-        for (final AssurancePlugin plugin : pluginsForVendor) {
-
-            final String pluginControlType = plugin.getControlType();
-
-            // refrain from calling `onEventReceived` on a plugin if plugin's controlType is empty
-            // or #AssuranceConstants.ControlType.NONE
-            if (pluginControlType == null
-                    || pluginControlType.isEmpty()
-                    || pluginControlType.equals(AssuranceConstants.ControlType.NONE)) {
-                continue;
-            }
-
-            // call `onEventReceived` on a plugin if
-            // 1. the event's controlType matches the plugin's controlType
-            // 2. the event's controlType is a wildCard
-            if (pluginControlType.equals(AssuranceConstants.ControlType.WILDCARD)
-                    || pluginControlType.equals(event.getControlType())) {
-                plugin.onEventReceived(event);
+        for (final Route route : vendorRoutes.get(event.getControlType())) {
+            if (route.lane != null) {
+                route.lane.deliver(route.plugin, event);
+            } else {
+                route.plugin.onEventReceived(event);
             }
         }
     }
@@ -106,8 +121,15 @@ class AssurancePluginManager {
     /** Notifies registered plugins about successful {@link AssuranceSession} connection. */
     void onSessionConnected() {
         for (final ConcurrentLinkedQueue<AssurancePlugin> pluginQueue : plugins.values()) {
-            for (AssurancePlugin plugin : pluginQueue) {
-                plugin.onSessionConnected();
+            for (final AssurancePlugin plugin : pluginQueue) {
+                run(
+                        plugin,
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                plugin.onSessionConnected();
+                            }
+                        });
             }
         }
     }
@@ -116,7 +138,14 @@ class AssurancePluginManager {
     void onSessionTerminated() {
         for (final ConcurrentLinkedQueue<AssurancePlugin> pluginQueue : plugins.values()) {
             for (final AssurancePlugin plugin : pluginQueue) {
-                plugin.onSessionTerminated();
+                run(
+                        plugin,
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                plugin.onSessionTerminated();
+                            }
+                        });
             }
         }
     }
@@ -128,9 +157,127 @@ class AssurancePluginManager {
      */
     void onSessionDisconnected(final int closeCode) {
         for (final ConcurrentLinkedQueue<AssurancePlugin> pluginQueue : plugins.values()) {
-            for (AssurancePlugin plugin : pluginQueue) {
-                plugin.onSessionDisconnected(closeCode);
+            for (final AssurancePlugin plugin : pluginQueue) {
+                run(
+                        plugin,
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                plugin.onSessionDisconnected(closeCode);
+                            }
+                        });
+            }
+        }
+    }
+
+    /**
+     * Returns the lane of {@code plugin}.
+     *
+     * @param plugin a registered plugin
+     * @return the {@link PluginExecutionLane} of {@code plugin}, or null if it runs inline
+     */
+    @VisibleForTesting
+    PluginExecutionLane getLane(final AssurancePlugin plugin) {
+        return lanes.get(plugin);
+    }
+
+    /** Runs {@code callback} of {@code plugin} according to its execution policy. */
+    private void run(final AssurancePlugin plugin, final Runnable callback) {
+        final PluginExecutionLane lane = lanes.get(plugin);
+
+        if (lane != null) {
+            lane.run(callback);
+        } else {
+            callback.run();
+        }
+    }
+
+    private Map<String, VendorRoutes> buildRoutes() {
+        final Map<String, VendorRoutes> vendorRoutes = new HashMap<>();
+
+        for (final Map.Entry<String, ConcurrentLinkedQueue<AssurancePlugin>> entry :
+                plugins.entrySet()) {
+            vendorRoutes.put(entry.getKey(), new VendorRoutes(entry.getValue(), lanes));
+        }
+
+        return Collections.unmodifiableMap(vendorRoutes);
+    }
+
+    /** A plugin to notify, along with its lane if it has one. */
+    private static final class Route {
+        final AssurancePlugin plugin;
+        final PluginExecutionLane lane;
+
+        Route(final AssurancePlugin plugin, final PluginExecutionLane lane) {
+            this.plugin = plugin;
+            this.lane = lane;
+        }
+    }
+
+    /**
+     * The plugins of a vendor to notify of each control type, in the order they were added. The
+     * plugins of the {@link AssuranceConstants.ControlType#WILDCARD} control type are notified of
+     * every event, including events of control types no other plugin handles.
+     */
+    private static final class VendorRoutes {
+        private final Map<String, Route[]> routesByControlType = new HashMap<>();
+        private final Route[] wildcardRoutes;
+
+        VendorRoutes(
+                final Iterable<AssurancePlugin> plugins,
+                final Map<AssurancePlugin, PluginExecutionLane> lanes) {
+            final Map<String, List<Route>> routeLists = new HashMap<>();
+            final List<Route> wildcardRouteList = new ArrayList<>();
+
+            for (final AssurancePlugin plugin : plugins) {
+                final String pluginControlType = plugin.getControlType();
+
+                // refrain from calling `onEventReceived` on a plugin if plugin's controlType is
+                // empty or #AssuranceConstants.ControlType.NONE
+                if (pluginControlType == null
+                        || pluginControlType.isEmpty()
+                        || pluginControlType.equals(AssuranceConstants.ControlType.NONE)) {
+                    continue;
+                }
+
+                final Route route = new Route(plugin, lanes.get(plugin));
+
+                if (pluginControlType.equals(AssuranceConstants.ControlType.WILDCARD)) {
+                    wildcardRouteList.add(route);
+
+                    for (final List<Route> routeList : routeLists.values()) {
+                        routeList.add(route);
+                    }
+                } else {
+                    List<Route> routeList = routeLists.get(pluginControlType);
+
+                    if (routeList == null) {
+                        // The wildcard plugins added so far go first.
+                        routeList = new ArrayList<>(wildcardRouteList);
+                        routeLists.put(pluginControlType, routeList);
+                    }
+
+                    routeList.add(route);
+                }
+            }
+
+            for (final Map.Entry<String, List<Route>> entry : routeLists.entrySet()) {
+                routesByControlType.put(entry.getKey(), entry.getValue().toArray(new Route[0]));
             }
+
+            wildcardRoutes = wildcardRouteList.toArray(new Route[0]);
+        }
+
+        /**
+         * Returns the plugins to notify of an event of {@code controlType}.
+         *
+         * @param controlType the control type of the event, null if it has none
+         * @return the routes of the event
+         */
+        Route[] get(final String controlType) {
+            final Route[] routes =
+                    controlType != null ? routesByControlType.get(controlType) : null;
+            return routes != null ? routes : wildcardRoutes;
         }
     }
 }
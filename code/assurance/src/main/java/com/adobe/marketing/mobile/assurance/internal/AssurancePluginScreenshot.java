@@ -42,6 +42,11 @@ class AssurancePluginScreenshot implements AssurancePlugin {
         return AssuranceConstants.ControlType.SCREENSHOT;
     }
 
+    @Override
+    public ExecutionPolicy getExecutionPolicy() {
+        return ExecutionPolicy.INLINE;
+    }
+
     /** This method will be invoked only if the control event is of type "screenshot" */
     @Override
     public void onEventReceived(final AssuranceEvent event) {
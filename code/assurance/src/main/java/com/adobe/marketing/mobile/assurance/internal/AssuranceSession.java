@@ -20,15 +20,14 @@ import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import com.adobe.marketing.mobile.Assurance;
 import com.adobe.marketing.mobile.services.Log;
+import com.adobe.marketing.mobile.services.ServiceProvider;
 import com.adobe.marketing.mobile.util.StringUtils;
-import java.nio.charset.UnsupportedCharsetException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
-import org.json.JSONException;
 
 /**
  * Represents an Assurance session. Responsible for managing the socket connection to the session,
@@ -43,7 +42,6 @@ class AssuranceSession implements AssuranceWebViewSocketHandler {
     private static final String CONNECTION_URL_FORMAT =
             "wss://connect%s.griffon.adobe.com/client/v1"
                     + "?sessionId=%s&token=%s&orgId=%s&clientId=%s";
-    private static final long SOCKET_RECONNECT_TIME_DELAY = TimeUnit.SECONDS.toMillis(5);
 
     private final AssuranceStateManager assuranceStateManager;
     private final AssuranceConstants.AssuranceEnvironment assuranceEnvironment;
@@ -51,10 +49,36 @@ class AssuranceSession implements AssuranceWebViewSocketHandler {
     private final String pin;
     private final OutboundEventQueueWorker outboundEventQueueWorker;
     private final InboundEventQueueWorker inboundEventQueueWorker;
-    private final AssuranceWebViewSocket socket;
+    private final AssuranceTransport socket;
+
+    /** Buffers reused for every outbound frame of the session's socket. */
+    private final FrameBufferPool frameBufferPool = new FrameBufferPool();
     private final HandlerThread socketReconnectThread =
             new HandlerThread("com.adobe.assurance.mobile.socketreconnectworker");
     private final Handler socketReconnectHandler;
+    private final Runnable reconnectTask =
+            () -> {
+                isReconnectPending = false;
+                connect();
+            };
+
+    /** Spaces out the reconnect attempts and bounds their number. */
+    private final ReconnectPolicy reconnectPolicy = new ReconnectPolicy();
+
+    private final NetworkAvailabilityMonitor networkAvailabilityMonitor =
+            new NetworkAvailabilityMonitor(
+                    new NetworkAvailabilityMonitor.Listener() {
+                        @Override
+                        public void onNetworkAvailable() {
+                            socketReconnectHandler.post(
+                                    new Runnable() {
+                                        @Override
+                                        public void run() {
+                                            reconnectNow();
+                                        }
+                                    });
+                        }
+                    });
     private final AssurancePluginManager pluginManager;
     private final AssuranceSessionPresentationManager assuranceSessionPresentationManager;
     private final Set<AssuranceSessionStatusListener> sessionStatusListeners;
@@ -71,7 +95,7 @@ class AssuranceSession implements AssuranceWebViewSocketHandler {
                     // about this event.
                     if (AssuranceConstants.ControlType.START_EVENT_FORWARDING.equals(
                             event.getControlType())) {
-                        onStartForwardingEvent();
+                        onStartForwardingEvent(event);
                         return;
                     }
 
@@ -79,7 +103,29 @@ class AssuranceSession implements AssuranceWebViewSocketHandler {
                 }
             };
 
-    private boolean isAttemptingToReconnect = false;
+    /** Reports events dropped by the {@link AssuranceMemoryGovernor} on the session status UI. */
+    @VisibleForTesting
+    final AssuranceMemoryGovernor.OverflowListener memoryOverflowListener =
+            new AssuranceMemoryGovernor.OverflowListener() {
+                @Override
+                public void onEventsDropped(final long droppedEvents, final long droppedBytes) {
+                    logLocalUI(
+                            AssuranceConstants.UILogColorVisibility.HIGH,
+                            String.format(
+                                    "Assurance dropped %d event(s) (%d KB) to stay within its"
+                                            + " memory limit.",
+                                    droppedEvents, droppedBytes / 1024));
+                }
+            };
+
+    private volatile boolean isAttemptingToReconnect = false;
+
+    /**
+     * Whether {@link #reconnectTask} is posted and has not run yet. Its attempt was counted by the
+     * {@link #reconnectPolicy} when it was posted.
+     */
+    private volatile boolean isReconnectPending = false;
+
     private boolean didClearBootEvents = false;
     final AssuranceSessionStatusListener authorizingPresentationDelegate;
 
@@ -93,6 +139,34 @@ class AssuranceSession implements AssuranceWebViewSocketHandler {
             final List<AssuranceEvent> bufferedEvents,
             final SessionAuthorizingPresentationType authorizingPresentationType,
             final AssuranceSessionStatusListener authorizingPresentationDelegate) {
+        this(
+                assuranceStateManager,
+                sessionId,
+                pin,
+                assuranceEnvironment,
+                connectionDataStore,
+                plugins,
+                bufferedEvents,
+                authorizingPresentationType,
+                authorizingPresentationDelegate,
+                AssuranceTransport.NATIVE_SOCKET_FACTORY);
+    }
+
+    /**
+     * Creates a session whose events are exchanged over a transport made by {@code
+     * transportFactory}.
+     */
+    AssuranceSession(
+            final AssuranceStateManager assuranceStateManager,
+            final String sessionId,
+            final String pin,
+            final AssuranceConstants.AssuranceEnvironment assuranceEnvironment,
+            final AssuranceConnectionDataStore connectionDataStore,
+            final List<AssurancePlugin> plugins,
+            final List<AssuranceEvent> bufferedEvents,
+            final SessionAuthorizingPresentationType authorizingPresentationType,
+            final AssuranceSessionStatusListener authorizingPresentationDelegate,
+            final AssuranceTransport.Factory transportFactory) {
 
         this.assuranceStateManager = assuranceStateManager;
         this.assuranceEnvironment = assuranceEnvironment;
@@ -114,13 +188,16 @@ class AssuranceSession implements AssuranceWebViewSocketHandler {
         Looper socketLooper = socketReconnectThread.getLooper();
         socketReconnectHandler = new Handler(socketLooper);
 
-        socket = new AssuranceWebViewSocket(this);
+        socket = transportFactory.create(this, frameBufferPool);
+        networkAvailabilityMonitor.start(
+                ServiceProvider.getInstance().getAppContextService().getApplicationContext());
 
         // Initialize EventQueue workers.
         outboundEventQueueWorker =
                 new OutboundEventQueueWorker(
                         Executors.newSingleThreadExecutor(), socket, new AssuranceClientInfo());
         inboundEventQueueWorker = new InboundEventQueueWorker(inboundQueueEventListener);
+        AssuranceComponentRegistry.memoryGovernor.setOverflowListener(memoryOverflowListener);
 
         // Enqueue stored events.
         if (bufferedEvents != null) {
@@ -177,7 +254,7 @@ class AssuranceSession implements AssuranceWebViewSocketHandler {
 
     /** Disconnects the socket connection and releases all the resources held. */
     void disconnect() {
-        if (socket != null && socket.getState() != AssuranceWebViewSocket.SocketReadyState.CLOSED) {
+        if (socket != null && socket.getState() != AssuranceTransport.SocketReadyState.CLOSED) {
             socket.disconnect();
         }
 
@@ -256,11 +333,26 @@ class AssuranceSession implements AssuranceWebViewSocketHandler {
     }
 
     @Override
-    public void onSocketConnected(final AssuranceWebViewSocket socket) {
+    public void onSocketConnected(final AssuranceTransport socket) {
         Log.debug(Assurance.LOG_TAG, LOG_TAG, "Websocket connected.");
 
+        if (isAttemptingToReconnect) {
+            final String message =
+                    String.format(
+                            "Assurance reconnected after %d attempt(s) over %d seconds, %d of"
+                                    + " which spent backing off.",
+                            reconnectPolicy.getAttempts(),
+                            TimeUnit.MILLISECONDS.toSeconds(
+                                    reconnectPolicy.getDisconnectedMillis(now())),
+                            TimeUnit.MILLISECONDS.toSeconds(
+                                    reconnectPolicy.getTotalDelayMillis()));
+            Log.debug(Assurance.LOG_TAG, LOG_TAG, message);
+            logLocalUI(AssuranceConstants.UILogColorVisibility.LOW, message);
+        }
+
         // reset flags
         isAttemptingToReconnect = false;
+        reconnectPolicy.reset();
 
         // save the connection url
         connectionDataStore.saveConnectionURL(socket.getConnectionURL());
@@ -284,37 +376,20 @@ class AssuranceSession implements AssuranceWebViewSocketHandler {
     }
 
     @Override
-    public void onSocketDataReceived(final AssuranceWebViewSocket socket, final String message) {
-        try {
-            AssuranceEvent event = new AssuranceEvent(message);
-
-            if (!inboundEventQueueWorker.offer(event)) {
-                Log.warning(
-                        Assurance.LOG_TAG,
-                        LOG_TAG,
-                        "Cannnot process the inbound Assurance event from server, problem queuing"
-                                + " event in inboundEventsQueue");
-            }
-        } catch (final UnsupportedCharsetException ex) {
-            Log.warning(
-                    Assurance.LOG_TAG,
-                    LOG_TAG,
-                    String.format(
-                            "Unable to marshal inbound event due to encoding. Error - %s",
-                            ex.getLocalizedMessage()));
-        } catch (final JSONException ex) {
+    public void onSocketDataReceived(final AssuranceTransport socket, final String message) {
+        // Decoded off the socket thread, which must keep reading.
+        if (!inboundEventQueueWorker.offerMessage(message)) {
             Log.warning(
                     Assurance.LOG_TAG,
                     LOG_TAG,
-                    String.format(
-                            "Unable to marshal inbound event due to json format. Error - %s",
-                            ex.getLocalizedMessage()));
+                    "Cannnot process the inbound Assurance event from server, problem queuing"
+                            + " event in inboundEventsQueue");
         }
     }
 
     @Override
     public void onSocketDisconnected(
-            final AssuranceWebViewSocket socket,
+            final AssuranceTransport socket,
             final String errorReason,
             final int closeCode,
             final boolean wasClean) {
@@ -380,16 +455,69 @@ class AssuranceSession implements AssuranceWebViewSocketHandler {
                             "Assurance disconnected, attempting to reconnect..");
                 }
 
-                // attempt to reconnect after a certain delay through reconnect handler
-                long delayBeforeReconnect =
-                        isAttemptingToReconnect ? SOCKET_RECONNECT_TIME_DELAY : 0L;
+                // attempt to reconnect after a backoff delay through reconnect handler
+                final long delayBeforeReconnect = reconnectPolicy.nextDelayMillis(now());
+
+                if (delayBeforeReconnect == ReconnectPolicy.NO_MORE_ATTEMPTS) {
+                    final String message =
+                            String.format(
+                                    "Assurance could not reconnect after %d attempts over %d"
+                                            + " seconds.",
+                                    reconnectPolicy.getAttempts(),
+                                    TimeUnit.MILLISECONDS.toSeconds(
+                                            reconnectPolicy.getDisconnectedMillis(now())));
+                    Log.warning(Assurance.LOG_TAG, LOG_TAG, message);
+                    logLocalUI(AssuranceConstants.UILogColorVisibility.HIGH, message);
+                    // Stop retrying on our own and let the user retry from the error screen.
+                    isAttemptingToReconnect = false;
+                    assuranceSessionPresentationManager.onSessionDisconnected(closeCode);
+                    return;
+                }
+
+                Log.debug(
+                        Assurance.LOG_TAG,
+                        LOG_TAG,
+                        "Reconnect attempt %d of %d in %d ms.",
+                        reconnectPolicy.getAttempts(),
+                        reconnectPolicy.getMaxAttempts(),
+                        delayBeforeReconnect);
                 // TODO: replace handler thread usages with a single thread executor
-                socketReconnectHandler.postDelayed(this::connect, delayBeforeReconnect);
+                isReconnectPending = true;
+                socketReconnectHandler.postDelayed(reconnectTask, delayBeforeReconnect);
+        }
+    }
+
+    /**
+     * Makes the pending reconnect attempt right away, as a network just became available. Only the
+     * attempts scheduled through the {@link #reconnectPolicy} are made, so that a flapping network
+     * uses up its budget like any other failure. Thread : reconnect thread
+     */
+    @VisibleForTesting
+    void reconnectNow() {
+        if (!isAttemptingToReconnect) {
+            return;
+        }
+
+        reconnectPolicy.onNetworkAvailable();
+
+        if (!isReconnectPending) {
+            // An attempt is in flight, the policy schedules the next one if it fails.
+            return;
         }
+
+        Log.debug(
+                Assurance.LOG_TAG,
+                LOG_TAG,
+                "Network available, making reconnect attempt %d of %d now.",
+                reconnectPolicy.getAttempts(),
+                reconnectPolicy.getMaxAttempts());
+        socketReconnectHandler.removeCallbacks(reconnectTask);
+        isReconnectPending = false;
+        connect();
     }
 
     @Override
-    public void onSocketError(final AssuranceWebViewSocket socket) {
+    public void onSocketError(final AssuranceTransport socket) {
         // to handle error on webSocket
         // Currently no-operation and its not designed to receive any specific error message from
         // server
@@ -400,10 +528,15 @@ class AssuranceSession implements AssuranceWebViewSocketHandler {
 
     @Override
     public void onSocketStateChange(
-            final AssuranceWebViewSocket socket,
-            final AssuranceWebViewSocket.SocketReadyState state) {
+            final AssuranceTransport socket, final AssuranceTransport.SocketReadyState state) {
         assuranceSessionPresentationManager.onSessionStateChange(state);
     }
+
+    @Override
+    public void onSocketBufferedAmountChanged(
+            final AssuranceTransport socket, final long bufferedAmount) {
+        outboundEventQueueWorker.onTransportBufferedAmountChanged(bufferedAmount);
+    }
     /**
      * Notification about an activity of the host app that has resumed. Needed to alter presentation
      * behavior.
@@ -443,13 +576,16 @@ class AssuranceSession implements AssuranceWebViewSocketHandler {
      * following :
      *
      * <ol>
+     *   <li>Apply the transport capabilities acknowledged by the server.
      *   <li>Unblock the outbound queue worker.
      *   <li>Remove the WebView UI and display the floating button.
      *   <li>Share the Assurance shared state as necessary.
      *   <li>Notify the client plugins on successful connection.
      * </ol>
      */
-    private void onStartForwardingEvent() {
+    private void onStartForwardingEvent(final AssuranceEvent startForwardingEvent) {
+        outboundEventQueueWorker.setAcknowledgedCapabilities(
+                TransportCapabilities.acknowledged(startForwardingEvent));
         outboundEventQueueWorker.unblock();
         assuranceSessionPresentationManager.onSessionConnected();
         notifySessionConnection();
@@ -508,6 +644,10 @@ class AssuranceSession implements AssuranceWebViewSocketHandler {
         }
     }
 
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
     /**
      * Stops the inbound and outbound event workers, clears any state flags and Assurance shared
      * state.
@@ -515,6 +655,8 @@ class AssuranceSession implements AssuranceWebViewSocketHandler {
     private void clearSessionData() {
         outboundEventQueueWorker.stop();
         inboundEventQueueWorker.stop();
+        AssuranceComponentRegistry.memoryGovernor.removeOverflowListener(memoryOverflowListener);
+        networkAvailabilityMonitor.stop();
         socketReconnectThread.quit();
         didClearBootEvents = true;
         connectionDataStore.saveConnectionURL(null);
@@ -48,6 +48,9 @@ class AssuranceSessionOrchestrator {
      */
     private List<AssuranceEvent> outboundEventBuffer;
 
+    /** Accounts for the events held by the {@link #outboundEventBuffer}. */
+    private final AssuranceMemoryGovernor memoryGovernor;
+
     private final SessionUIOperationHandler sessionUIOperationHandler;
 
     /**
@@ -64,8 +67,7 @@ class AssuranceSessionOrchestrator {
 
                     // Once a session has been connected, orchestrator is no longer required to
                     // hold the buffer of events.
-                    outboundEventBuffer.clear();
-                    outboundEventBuffer = null;
+                    releaseOutboundEventBuffer();
                 }
 
                 @Override
@@ -115,6 +117,7 @@ class AssuranceSessionOrchestrator {
         this.activityLifecycleObserver = new HostAppActivityLifecycleObserver(this);
         this.outboundEventBuffer = new ArrayList<>();
         this.sessionCreator = sessionCreator;
+        this.memoryGovernor = AssuranceComponentRegistry.memoryGovernor;
         this.sessionUIOperationHandler = new SessionUIOperationHandler(this);
 
         application.registerActivityLifecycleCallbacks(activityLifecycleObserver);
@@ -186,8 +189,7 @@ class AssuranceSessionOrchestrator {
         if (purgeBuffer && outboundEventBuffer != null) {
             Log.debug(Assurance.LOG_TAG, LOG_TAG, "Clearing the queued events.");
 
-            outboundEventBuffer.clear();
-            outboundEventBuffer = null;
+            releaseOutboundEventBuffer();
         }
 
         assuranceStateManager.clearAssuranceSharedState();
@@ -266,12 +268,76 @@ class AssuranceSessionOrchestrator {
         // This ensures that even a session cancellation will allow sending the buffered events
         // in forthcoming session that successfully connects.
         if (outboundEventBuffer != null) {
-            outboundEventBuffer.add(event);
+            bufferEvent(event);
         }
 
         // Drop the event otherwise.
     }
 
+    /**
+     * Adds {@code event} to the {@link #outboundEventBuffer} after reserving its estimated size
+     * with the {@link AssuranceMemoryGovernor}. If the budget is exhausted, buffered events are
+     * dropped to make room for it, the oldest low priority ones first under {@link
+     * AssuranceMemoryGovernor.OverflowPolicy#DROP_LOW_PRIORITY}.
+     *
+     * @param event the {@link AssuranceEvent} to be buffered
+     */
+    private void bufferEvent(final AssuranceEvent event) {
+        final int eventSize = event.getEstimatedSize();
+
+        while (!memoryGovernor.reserve(AssuranceMemoryGovernor.Buffer.SESSION_BUFFER, eventSize)) {
+            final int evictionIndex = findEvictionIndex(event);
+
+            if (evictionIndex < 0) {
+                memoryGovernor.recordDrop(
+                        AssuranceMemoryGovernor.Buffer.SESSION_BUFFER, eventSize);
+                return;
+            }
+
+            final AssuranceEvent evicted = outboundEventBuffer.remove(evictionIndex);
+            memoryGovernor.release(
+                    AssuranceMemoryGovernor.Buffer.SESSION_BUFFER, evicted.getEstimatedSize());
+            memoryGovernor.recordDrop(
+                    AssuranceMemoryGovernor.Buffer.SESSION_BUFFER, evicted.getEstimatedSize());
+        }
+
+        outboundEventBuffer.add(event);
+    }
+
+    /**
+     * Finds the buffered event to be dropped in favor of {@code incoming}.
+     *
+     * @param incoming the {@link AssuranceEvent} that does not fit in the budget
+     * @return index of the event to drop in the {@link #outboundEventBuffer}, or -1 if {@code
+     *     incoming} should be dropped instead
+     */
+    private int findEvictionIndex(final AssuranceEvent incoming) {
+        if (outboundEventBuffer.isEmpty()) {
+            return -1;
+        }
+
+        if (memoryGovernor.getOverflowPolicy()
+                != AssuranceMemoryGovernor.OverflowPolicy.DROP_LOW_PRIORITY) {
+            return 0;
+        }
+
+        for (int i = 0; i < outboundEventBuffer.size(); i++) {
+            if (AssuranceMemoryGovernor.isLowPriority(outboundEventBuffer.get(i))) {
+                return i;
+            }
+        }
+
+        // Only high priority events are buffered. A low priority event yields to them.
+        return AssuranceMemoryGovernor.isLowPriority(incoming) ? -1 : 0;
+    }
+
+    /** Clears the {@link #outboundEventBuffer} and returns its bytes to the budget. */
+    private void releaseOutboundEventBuffer() {
+        outboundEventBuffer.clear();
+        outboundEventBuffer = null;
+        memoryGovernor.releaseAll(AssuranceMemoryGovernor.Buffer.SESSION_BUFFER);
+    }
+
     /**
      * Check if the Assurance extension is capable of handling events. Extension is capable of
      * handling events as long as it is waiting for the first session to be established on launch or
@@ -367,6 +433,20 @@ class AssuranceSessionOrchestrator {
      */
     @VisibleForTesting
     static class AssuranceSessionCreator {
+        private final AssuranceTransport.Factory transportFactory;
+
+        AssuranceSessionCreator() {
+            this(AssuranceTransport.NATIVE_SOCKET_FACTORY);
+        }
+
+        /**
+         * @param transportFactory creates the transport of each session, such as an in-memory one
+         *     to exercise sessions without a network
+         */
+        AssuranceSessionCreator(final AssuranceTransport.Factory transportFactory) {
+            this.transportFactory = transportFactory;
+        }
+
         AssuranceSession create(
                 final String sessionId,
                 final String pin,
@@ -386,7 +466,8 @@ class AssuranceSessionOrchestrator {
                     plugins,
                     outboundEventBuffer,
                     authorizingPresentationType,
-                    authorizingPresentationListener);
+                    authorizingPresentationListener,
+                    transportFactory);
         }
     }
 }
@@ -16,7 +16,7 @@ import android.content.Intent
 import androidx.annotation.VisibleForTesting
 import com.adobe.marketing.mobile.assurance.internal.AssuranceConstants.SocketCloseCode
 import com.adobe.marketing.mobile.assurance.internal.AssuranceConstants.UILogColorVisibility
-import com.adobe.marketing.mobile.assurance.internal.AssuranceWebViewSocket.SocketReadyState
+import com.adobe.marketing.mobile.assurance.internal.AssuranceTransport.SocketReadyState
 import com.adobe.marketing.mobile.assurance.internal.ui.AssuranceActivity
 import com.adobe.marketing.mobile.assurance.internal.ui.floatingbutton.AssuranceFloatingButton
 import com.adobe.marketing.mobile.services.ServiceProvider
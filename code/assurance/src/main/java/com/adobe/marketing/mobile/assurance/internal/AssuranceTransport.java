@@ -0,0 +1,157 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+/**
+ * The connection an {@link AssuranceSession} exchanges events with the Assurance server over.
+ * Outbound events are handed over as frames of at most {@link #MAX_DATA_LENGTH} bytes once
+ * encoded; inbound messages and the lifecycle of the connection are reported to an {@link
+ * AssuranceWebViewSocketHandler}.
+ *
+ * <p>{@link NativeWebSocketTransport} and {@link AssuranceWebViewSocket} connect to the server.
+ * Other implementations let the event pipeline run without a network, for instance to measure it.
+ */
+interface AssuranceTransport {
+    enum SocketReadyState {
+        CONNECTING,
+        OPEN,
+        CLOSING,
+        CLOSED,
+        UNKNOWN
+    }
+
+    /** Maximum length of a frame, once Base64 encoded when sent as text. */
+    int MAX_DATA_LENGTH = 1024 * 32;
+
+    /** Creates the transport of a session. */
+    interface Factory {
+        /**
+         * Creates a transport reporting to {@code handler}.
+         *
+         * @param handler the {@link AssuranceWebViewSocketHandler} notified of the transport events
+         * @param frameBufferPool the buffers that outbound frames may be encoded into
+         * @return a new transport, not connected yet
+         */
+        AssuranceTransport create(
+                final AssuranceWebViewSocketHandler handler,
+                final FrameBufferPool frameBufferPool);
+    }
+
+    /** Creates {@link NativeWebSocketTransport}s. */
+    Factory NATIVE_SOCKET_FACTORY =
+            new Factory() {
+                @Override
+                public AssuranceTransport create(
+                        final AssuranceWebViewSocketHandler handler,
+                        final FrameBufferPool frameBufferPool) {
+                    return new NativeWebSocketTransport(handler, frameBufferPool);
+                }
+            };
+
+    /**
+     * Opens a connection to {@code url} in the background. The outcome is reported to the handler.
+     *
+     * @param url the URL of the session to connect to
+     */
+    void connect(final String url);
+
+    /** Closes the connection normally. The close is reported to the handler. */
+    void disconnect();
+
+    /**
+     * Sends {@code data} as a text frame.
+     *
+     * @param data the frame to send
+     */
+    void sendData(final byte[] data);
+
+    /**
+     * Sends {@code length} bytes of {@code data} starting at {@code offset} as a text frame.
+     * {@code data} may be reused once this method returns.
+     *
+     * @param data the buffer holding the frame
+     * @param offset offset of the frame in {@code data}
+     * @param length length of the frame
+     */
+    void sendData(final byte[] data, final int offset, final int length);
+
+    /**
+     * Returns whether frames can be sent without being Base64 encoded, through {@link
+     * #sendBinaryData(byte[], int, int)}.
+     *
+     * @return true if binary frames are supported
+     */
+    boolean supportsBinaryFrames();
+
+    /**
+     * Sends {@code length} bytes of {@code data} starting at {@code offset} as a binary frame, or
+     * as a text frame if binary frames are not supported. {@code data} may be reused once this
+     * method returns.
+     *
+     * @param data the buffer holding the frame
+     * @param offset offset of the frame in {@code data}
+     * @param length length of the frame, at most {@link #MAX_DATA_LENGTH}
+     */
+    void sendBinaryData(final byte[] data, final int offset, final int length);
+
+    /**
+     * Returns the number of bytes handed to the transport that have not been transmitted yet.
+     *
+     * @return the number of buffered bytes
+     */
+    long getBufferedAmount();
+
+    /**
+     * Returns the number of frames handed to the transport that have not been transmitted yet.
+     *
+     * @return the number of buffered frames
+     */
+    int getBufferedFrameCount();
+
+    /**
+     * Returns the value of {@link #getBufferedAmount()} at which senders should stop handing
+     * frames to the transport until it drains to {@link #getBufferedAmountLowWaterMark()}.
+     *
+     * @return the high water mark in bytes, or 0 if the transport does not buffer frames
+     */
+    long getBufferedAmountHighWaterMark();
+
+    /**
+     * Returns the value of {@link #getBufferedAmount()} at or below which senders paused at the
+     * {@link #getBufferedAmountHighWaterMark()} may resume. The handler of the transport is
+     * notified when the transport drains to this mark.
+     *
+     * @return the low water mark in bytes
+     */
+    long getBufferedAmountLowWaterMark();
+
+    /**
+     * Returns the round trip time measured on the current connection.
+     *
+     * @return the round trip time in milliseconds, or -1 if it was not measured yet
+     */
+    long getRoundTripTimeMillis();
+
+    /**
+     * Returns the URL of the current connection.
+     *
+     * @return the connection URL, or null if there is no connection
+     */
+    String getConnectionURL();
+
+    /**
+     * Returns the state of the connection.
+     *
+     * @return the current {@link SocketReadyState}
+     */
+    SocketReadyState getState();
+}
@@ -11,9 +11,10 @@
 
 package com.adobe.marketing.mobile.assurance.internal;
 
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
 import android.os.Handler;
 import android.os.Looper;
-import android.util.Base64;
 import android.webkit.ConsoleMessage;
 import android.webkit.JavascriptInterface;
 import android.webkit.WebChromeClient;
@@ -22,33 +23,70 @@ import android.webkit.WebResourceRequest;
 import android.webkit.WebSettings;
 import android.webkit.WebView;
 import android.webkit.WebViewClient;
+import androidx.annotation.VisibleForTesting;
 import com.adobe.marketing.mobile.Assurance;
 import com.adobe.marketing.mobile.MobileCore;
 import com.adobe.marketing.mobile.services.Log;
 import java.lang.ref.WeakReference;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
-
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@link AssuranceTransport} connecting to the Assurance server from a hidden {@link WebView}
+ * running {@code WebviewSocket.html}. Frames are sent Base64 encoded as text frames, which the page
+ * pulls from this socket. The connection is kept alive and checked by a {@link SocketHeartbeat}.
+ *
+ * <p>{@link NativeWebSocketTransport} connects without a WebView.
+ */
 @SuppressWarnings({"unused"})
-final class AssuranceWebViewSocket {
-    public enum SocketReadyState {
-        CONNECTING,
-        OPEN,
-        CLOSING,
-        CLOSED,
-        UNKNOWN
-    }
-
+final class AssuranceWebViewSocket implements AssuranceTransport {
     private static final String LOG_TAG = "AssuranceWebViewSocket";
     private static final String WEBSOCKET_HTML_PATH = "file:///android_asset/WebviewSocket.html";
 
-    static final int MAX_DATA_LENGTH = 1024 * 32; // 32kb max packet length
+    /** Separates the frames returned by one {@code nativeCode.nextFrames} call. */
+    static final char FRAME_SEPARATOR = '\n';
+
+    /**
+     * Bytes held by the page and its WebSocket at which senders stop, so that a slow network holds
+     * events back in the bounded queue of the sender rather than in the WebView.
+     */
+    @VisibleForTesting static final long WEBVIEW_HIGH_WATER_MARK = 512 * 1024;
+
+    /** Bytes held by the page at or below which paused senders resume. */
+    @VisibleForTesting static final long WEBVIEW_LOW_WATER_MARK = 128 * 1024;
+
     private final ExecutorService webViewExecutor;
     private final Semaphore initSemaphore;
     private final Semaphore mainThreadJoinSemaphore;
     private final AssuranceWebViewSocketHandler handler;
 
+    /** Encoded frames waiting to be pulled by the webView. */
+    private final Queue<String> pendingFrames = new ConcurrentLinkedQueue<>();
+
+    /** Whether the webView has been told about {@link #pendingFrames} and is still pulling. */
+    private final AtomicBoolean framesSignalled = new AtomicBoolean(false);
+
+    /** Number and size of {@link #pendingFrames}, which is costly to count. */
+    private final AtomicInteger pendingFrameCount = new AtomicInteger();
+
+    private final AtomicLong pendingBytes = new AtomicLong();
+
+    /** Bytes and frames the webView holds back from or has buffered in its WebSocket. */
+    private volatile long pageBufferedAmount;
+
+    private volatile int pageBufferedFrameCount;
+
+    /** Buffers that outbound frames are Base64 encoded into. */
+    private final FrameBufferPool frameBufferPool;
+
+    private final SocketHeartbeat heartbeat = new SocketHeartbeat(new HeartbeatTransport());
+
     private WebView webView;
     private SocketReadyState state;
     private String connectionURL;
@@ -61,6 +99,7 @@ final class AssuranceWebViewSocket {
     @SuppressWarnings({"SetJavascriptEnabled", "AddJavaScriptInterface", "WeakerAccess"})
     AssuranceWebViewSocket(final AssuranceWebViewSocketHandler handler, final WebView webView) {
         this.handler = handler;
+        this.frameBufferPool = new FrameBufferPool();
         setState(SocketReadyState.UNKNOWN);
 
         this.webViewExecutor = Executors.newSingleThreadExecutor();
@@ -73,7 +112,8 @@ final class AssuranceWebViewSocket {
      *
      * @param url {@link String} A valid socket connection URL
      */
-    void connect(final String url) {
+    @Override
+    public void connect(final String url) {
         if (!AssuranceUtil.isSafe(url)) {
             Log.warning(
                     Assurance.LOG_TAG, LOG_TAG, "URL is malformed, will not attempt to connect.");
@@ -81,34 +121,129 @@ final class AssuranceWebViewSocket {
         }
 
         setState(SocketReadyState.CONNECTING);
-        runJavascript("connect('" + url + "')");
         connectionURL = url;
+        runJavascript("connect('" + url + "')");
     }
 
     /** Use this method to run javascript to close the active webSocket connection. */
-    void disconnect() {
+    @Override
+    public void disconnect() {
         setState(SocketReadyState.CLOSING);
+        heartbeat.stop();
         runJavascript("disconnect()");
         connectionURL = null;
     }
 
     /** Use this method to run javascript to disconnect the webSocket. */
-    void sendData(final byte[] data) {
-        final String encodedData = Base64.encodeToString(data, Base64.NO_WRAP | Base64.NO_PADDING);
+    @Override
+    public void sendData(final byte[] data) {
+        sendData(data, 0, data.length);
+    }
+
+    /**
+     * Sends {@code length} bytes of {@code data} starting at {@code offset} as a Base64 encoded
+     * text frame. The bytes are encoded into a pooled buffer and queued for the page as a string,
+     * so {@code data} may be reused once this method returns.
+     *
+     * @param data the buffer holding the frame
+     * @param offset offset of the frame in {@code data}
+     * @param length length of the frame
+     */
+    @Override
+    public void sendData(final byte[] data, final int offset, final int length) {
+        final int encodedLength = FrameBufferPool.base64Length(length);
 
-        if (encodedData.length() > MAX_DATA_LENGTH) {
+        if (encodedLength > MAX_DATA_LENGTH) {
             Log.warning(
                     Assurance.LOG_TAG,
                     LOG_TAG,
                     "Unable to send data packet, payload was "
-                            + encodedData.length()
+                            + encodedLength
                             + " bytes, maximum is "
                             + MAX_DATA_LENGTH
                             + ".");
             return;
         }
 
-        runJavascript("sendData('" + encodedData + "')");
+        final byte[] buffer = frameBufferPool.acquire();
+        heartbeat.onDataSent();
+
+        try {
+            FrameBufferPool.encodeBase64(data, offset, length, buffer);
+            // The page pulls frames as strings.
+            queueFrame(new String(buffer, 0, encodedLength, US_ASCII));
+        } finally {
+            frameBufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Returns whether this socket can send binary frames. The page sends Base64 text frames only.
+     *
+     * @return false
+     */
+    @Override
+    public boolean supportsBinaryFrames() {
+        return false;
+    }
+
+    /**
+     * Sends {@code length} bytes of {@code data} starting at {@code offset} as a Base64 encoded
+     * text frame, since the page does not send binary frames (see {@link #sendData(byte[], int,
+     * int)}).
+     *
+     * @param data the buffer holding the frame, which may be reused once this method returns
+     * @param offset offset of the frame in {@code data}
+     * @param length length of the frame
+     */
+    @Override
+    public void sendBinaryData(final byte[] data, final int offset, final int length) {
+        sendData(data, offset, length);
+    }
+
+    /**
+     * Returns the round trip time measured by the pings of the current connection, which reflects
+     * the latency of the network the events are sent over.
+     *
+     * @return the smoothed round trip time in milliseconds, or -1 if it was not measured yet
+     */
+    @Override
+    public long getRoundTripTimeMillis() {
+        return heartbeat.getRoundTripTimeMillis();
+    }
+
+    /**
+     * Returns the number of bytes handed to this socket that have not been transmitted yet: the
+     * frames that the page did not pull yet, the frames queued by the page while its WebSocket is
+     * not open, and the {@code bufferedAmount} of its WebSocket, as last reported by the page.
+     *
+     * @return the number of buffered bytes, which {@link AssuranceWebViewSocketHandler} is
+     *     notified of when it changes
+     */
+    @Override
+    public long getBufferedAmount() {
+        return pendingBytes.get() + pageBufferedAmount;
+    }
+
+    /**
+     * Returns the number of frames handed to this socket that have not been sent on its WebSocket
+     * yet. Frames that the WebSocket itself buffers are not counted.
+     *
+     * @return the number of buffered frames
+     */
+    @Override
+    public int getBufferedFrameCount() {
+        return pendingFrameCount.get() + pageBufferedFrameCount;
+    }
+
+    @Override
+    public long getBufferedAmountHighWaterMark() {
+        return WEBVIEW_HIGH_WATER_MARK;
+    }
+
+    @Override
+    public long getBufferedAmountLowWaterMark() {
+        return WEBVIEW_LOW_WATER_MARK;
     }
 
     /**
@@ -116,7 +251,8 @@ final class AssuranceWebViewSocket {
      *
      * @return A {@link String} representing an active webSocket connection URL
      */
-    String getConnectionURL() {
+    @Override
+    public String getConnectionURL() {
         return this.connectionURL;
     }
 
@@ -125,7 +261,8 @@ final class AssuranceWebViewSocket {
      *
      * @return {@link SocketReadyState} representing current state
      */
-    SocketReadyState getState() {
+    @Override
+    public SocketReadyState getState() {
         return this.state;
     }
 
@@ -143,8 +280,7 @@ final class AssuranceWebViewSocket {
     }
 
     /**
-     * Run the provided javascript in the webView. Uses mainThreadJoinSemaphore to execute
-     * javascript on socket thread one at a time.
+     * Run the provided javascript in the webView on the socket thread.
      *
      * @param jsString A {@link String} representing javascript to be run on the web socket
      */
@@ -153,46 +289,142 @@ final class AssuranceWebViewSocket {
                 new Runnable() {
                     @Override
                     public void run() {
-                        try {
-                            if (webView == null) {
-                                // this method captures main thread to initialize WebView
-                                initializeWebView();
-                                // block the socket thread until the webview is full initialized.
-                                // initSemaphore is initialized with permit 0
-                                initSemaphore.acquire();
-                            }
+                        evaluateJavascript(jsString);
+                    }
+                });
+    }
+
+    /**
+     * Queues an encoded frame for the webView to pull through {@code nativeCode.nextFrames}. The
+     * page is only told that frames are available when it is not already pulling, so the frames
+     * themselves never pass through javascript source.
+     *
+     * @param encodedData the Base64 encoded frame to send
+     */
+    private void queueFrame(final String encodedData) {
+        pendingFrames.offer(encodedData);
+        pendingFrameCount.incrementAndGet();
+        pendingBytes.addAndGet(encodedData.length());
+
+        if (framesSignalled.compareAndSet(false, true)) {
+            runJavascript("framesAvailable()");
+        }
+    }
 
-                            // acquire this socket thread until javascript execution is completed in
-                            // the mainthread. This ensures the javascript execution of websocket
-                            // happens one by one.
-                            // mainThreadJoinSemaphore is initialized with permit 1
-                            mainThreadJoinSemaphore.acquire();
-                        } catch (final InterruptedException ex) {
+    /**
+     * Takes pending frames for the webView. Once the queue is empty, the page needs a new {@code
+     * framesAvailable()} signal before it pulls again. Thread : JavaBridge thread
+     *
+     * @param maxLength the maximum number of characters to return, always allowing one frame
+     * @return the pending frames separated by {@link #FRAME_SEPARATOR}, or an empty string if
+     *     there are no pending frames
+     */
+    @VisibleForTesting
+    String nextFrames(final int maxLength) {
+        String frames = pollFrames(maxLength);
+
+        if (frames.isEmpty()) {
+            framesSignalled.set(false);
+
+            // a frame queued after the poll above did not signal the page, so hand it out now.
+            if (!pendingFrames.isEmpty() && framesSignalled.compareAndSet(false, true)) {
+                frames = pollFrames(maxLength);
+            }
+        }
+
+        return frames;
+    }
+
+    /**
+     * Records the data buffered by the page and notifies the {@link #handler}. Thread : JavaBridge
+     * thread
+     *
+     * @param bufferedAmount the bytes queued by the page and buffered by its WebSocket
+     * @param queueLength the number of frames queued by the page
+     */
+    @VisibleForTesting
+    void onPageBufferedAmountChanged(final long bufferedAmount, final int queueLength) {
+        pageBufferedAmount = bufferedAmount;
+        pageBufferedFrameCount = queueLength;
+
+        if (handler != null) {
+            handler.onSocketBufferedAmountChanged(this, getBufferedAmount());
+        }
+    }
+
+    private String pollFrames(final int maxLength) {
+        final String first = pendingFrames.poll();
+
+        if (first == null) {
+            return "";
+        }
+
+        String next = pendingFrames.peek();
+
+        if (next == null || first.length() + next.length() + 1 > maxLength) {
+            pendingFrameCount.decrementAndGet();
+            pendingBytes.addAndGet(-first.length());
+            return first;
+        }
+
+        final StringBuilder frames = new StringBuilder(first);
+        int count = 1;
+
+        do {
+            frames.append(FRAME_SEPARATOR).append(pendingFrames.poll());
+            count++;
+        } while ((next = pendingFrames.peek()) != null
+                && frames.length() + next.length() + 1 <= maxLength);
+
+        pendingFrameCount.addAndGet(-count);
+        pendingBytes.addAndGet(-(frames.length() - (count - 1)));
+        return frames.toString();
+    }
+
+    /**
+     * Runs the provided javascript in the webView. Uses mainThreadJoinSemaphore to execute
+     * javascript one script at a time. Thread : SocketThread
+     *
+     * @param jsString A {@link String} representing javascript to be run on the web socket
+     */
+    private void evaluateJavascript(final String jsString) {
+        try {
+            if (webView == null) {
+                // this method captures main thread to initialize WebView
+                initializeWebView();
+                // block the socket thread until the webview is full initialized.
+                // initSemaphore is initialized with permit 0
+                initSemaphore.acquire();
+            }
+
+            // wait until the previous script has run in the main thread. This ensures the
+            // javascript execution of websocket happens one by one.
+            // mainThreadJoinSemaphore is initialized with permit 1
+            mainThreadJoinSemaphore.acquire();
+        } catch (final InterruptedException ex) {
+            Log.error(
+                    Assurance.LOG_TAG,
+                    LOG_TAG,
+                    String.format(
+                            "Socket unable to wait for JS semaphore: %s",
+                            ex.getLocalizedMessage()));
+        }
+
+        runOnMainThread(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        if (webView != null) {
+                            webView.evaluateJavascript(jsString, null);
+                        } else {
                             Log.error(
                                     Assurance.LOG_TAG,
                                     LOG_TAG,
-                                    String.format(
-                                            "Socket unable to wait for JS semaphore: %s",
-                                            ex.getLocalizedMessage()));
+                                    "WebView is null, unable to execute JS for"
+                                            + " socket communication.");
                         }
 
-                        runOnMainThread(
-                                new Runnable() {
-                                    @Override
-                                    public void run() {
-                                        if (webView != null) {
-                                            webView.loadUrl("javascript: " + jsString);
-                                        } else {
-                                            Log.error(
-                                                    Assurance.LOG_TAG,
-                                                    LOG_TAG,
-                                                    "WebView is null, unable to execute JS for"
-                                                            + " socket communication.");
-                                        }
-
-                                        mainThreadJoinSemaphore.release();
-                                    }
-                                });
+                        mainThreadJoinSemaphore.release();
                     }
                 });
     }
@@ -283,6 +515,8 @@ final class AssuranceWebViewSocket {
 
         @JavascriptInterface
         public void onMessageReceived(final String data) {
+            heartbeat.onDataReceived();
+
             if (handler != null) {
                 handler.onSocketDataReceived(parentSocket.get(), data);
             }
@@ -291,6 +525,7 @@ final class AssuranceWebViewSocket {
         @JavascriptInterface
         public void onSocketOpened() {
             setState(SocketReadyState.OPEN);
+            heartbeat.start();
 
             if (handler != null) {
                 handler.onSocketConnected(parentSocket.get());
@@ -301,6 +536,7 @@ final class AssuranceWebViewSocket {
         public void onSocketClosed(
                 final String reason, final short closeCode, final boolean wasClean) {
             setState(SocketReadyState.CLOSED);
+            heartbeat.stop();
 
             if (handler != null) {
                 handler.onSocketDisconnected(parentSocket.get(), reason, closeCode, wasClean);
@@ -310,18 +546,52 @@ final class AssuranceWebViewSocket {
         @JavascriptInterface
         public void onSocketError() {
             setState(SocketReadyState.CLOSED);
+            heartbeat.stop();
 
             if (handler != null) {
                 handler.onSocketError(parentSocket.get());
             }
         }
 
+        @JavascriptInterface
+        public void onPong() {
+            heartbeat.onPong();
+        }
+
+        @JavascriptInterface
+        public String nextFrames(final int maxLength) {
+            return AssuranceWebViewSocket.this.nextFrames(maxLength);
+        }
+
+        @JavascriptInterface
+        public void onBufferedAmountChanged(final long bufferedAmount, final int queueLength) {
+            AssuranceWebViewSocket.this.onPageBufferedAmountChanged(bufferedAmount, queueLength);
+        }
+
         @JavascriptInterface
         public void log(final String logMsg) {
             Log.trace(Assurance.LOG_TAG, LOG_TAG, "JSLog: " + logMsg);
         }
     }
 
+    /** Pings the server from the page. */
+    private final class HeartbeatTransport implements SocketHeartbeat.Transport {
+        @Override
+        public void sendPing() {
+            runJavascript("doPing()");
+        }
+
+        @Override
+        public void onConnectionDead(final int missedPongs) {
+            Log.warning(
+                    Assurance.LOG_TAG,
+                    LOG_TAG,
+                    "Socket did not answer %d pings, dropping the connection.",
+                    missedPongs);
+            runJavascript("dropConnection()");
+        }
+    }
+
     private final class WebViewSocketClient extends WebViewClient {
         @Override
         public void onPageFinished(WebView wv, String url) {
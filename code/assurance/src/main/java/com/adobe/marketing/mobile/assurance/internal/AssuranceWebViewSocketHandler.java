@@ -11,21 +11,29 @@
 
 package com.adobe.marketing.mobile.assurance.internal;
 
+/** Receives the inbound messages and the connection events of an {@link AssuranceTransport}. */
 @SuppressWarnings("unused")
 interface AssuranceWebViewSocketHandler {
-    void onSocketDataReceived(final AssuranceWebViewSocket socket, final String message);
+    void onSocketDataReceived(final AssuranceTransport socket, final String message);
 
-    void onSocketConnected(final AssuranceWebViewSocket socket);
+    void onSocketConnected(final AssuranceTransport socket);
 
     void onSocketDisconnected(
-            final AssuranceWebViewSocket socket,
+            final AssuranceTransport socket,
             final String errorReason,
             final int closeCode,
             final boolean wasClean);
 
-    void onSocketError(final AssuranceWebViewSocket socket);
+    void onSocketError(final AssuranceTransport socket);
 
     void onSocketStateChange(
-            final AssuranceWebViewSocket socket,
-            final AssuranceWebViewSocket.SocketReadyState state);
+            final AssuranceTransport socket, final AssuranceTransport.SocketReadyState state);
+
+    /**
+     * Invoked when the number of bytes handed to the socket but not yet transmitted changes.
+     *
+     * @param socket the socket reporting the change
+     * @param bufferedAmount the value of {@link AssuranceTransport#getBufferedAmount()}
+     */
+    void onSocketBufferedAmountChanged(final AssuranceTransport socket, final long bufferedAmount);
 }
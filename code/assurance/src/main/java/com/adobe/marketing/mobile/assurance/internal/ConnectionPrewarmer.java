@@ -0,0 +1,273 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import androidx.annotation.VisibleForTesting;
+import com.adobe.marketing.mobile.Assurance;
+import com.adobe.marketing.mobile.services.Log;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.net.SocketFactory;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Opens the connection to the Assurance server while the user is still authorizing the session,
+ * such as typing the PIN or waiting for QuickConnect. The host name is resolved and a TLS
+ * connection is established ahead of time, so that the {@link NativeWebSocket} of the session only
+ * has to perform the WebSocket handshake once the session is authorized.
+ *
+ * <p>A warm connection is held for at most {@link #WARM_CONNECTION_TTL_MILLIS}, after which it is
+ * closed: servers drop idle connections, and the session may never be authorized. Safe to be used
+ * from any thread.
+ */
+final class ConnectionPrewarmer {
+    private static final String LOG_TAG = "ConnectionPrewarmer";
+
+    /** Host of the socket connection, formatted with the environment of the session. */
+    private static final String CONNECT_HOST_FORMAT = "connect%s.griffon.adobe.com";
+
+    private static final int TLS_PORT = 443;
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+
+    /** How long a warm connection is kept for the session to take it. */
+    @VisibleForTesting static final long WARM_CONNECTION_TTL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 10;
+
+    private final SocketFactory socketFactory;
+    private final SSLSocketFactory sslSocketFactory;
+    private final ScheduledThreadPoolExecutor executor;
+
+    /** The connection waiting to be taken, or null if there is none. */
+    private Socket warmSocket;
+
+    private String warmHost;
+    private int warmPort;
+    private boolean warmSecure;
+    private long warmSince;
+    private ScheduledFuture<?> expiry;
+
+    /** Incremented to invalidate the warm-ups in progress. */
+    private int generation;
+
+    ConnectionPrewarmer() {
+        this(SocketFactory.getDefault(), (SSLSocketFactory) SSLSocketFactory.getDefault());
+    }
+
+    @VisibleForTesting
+    ConnectionPrewarmer(
+            final SocketFactory socketFactory, final SSLSocketFactory sslSocketFactory) {
+        this.socketFactory = socketFactory;
+        this.sslSocketFactory = sslSocketFactory;
+        this.executor = new ScheduledThreadPoolExecutor(1);
+        // Do not keep a thread around while there is no connection to warm.
+        executor.setKeepAliveTime(THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Resolves the host of {@code environment} and opens a TLS connection to it in the background.
+     * Replaces the connection warmed for another environment, if any.
+     *
+     * @param environment the environment of the session being authorized
+     */
+    void prewarm(final AssuranceConstants.AssuranceEnvironment environment) {
+        prewarm(
+                String.format(
+                        CONNECT_HOST_FORMAT,
+                        AssuranceUtil.getURLFormatForEnvironment(environment)),
+                TLS_PORT,
+                true);
+    }
+
+    /**
+     * Opens a connection to {@code host} in the background, to be taken with {@link #take(String,
+     * int, boolean)}.
+     *
+     * @param host the host to connect to
+     * @param port the port to connect to
+     * @param secure whether to establish TLS on the connection
+     */
+    @VisibleForTesting
+    void prewarm(final String host, final int port, final boolean secure) {
+        final int warmUp;
+
+        synchronized (this) {
+            if (warmSocket != null
+                    && host.equals(warmHost)
+                    && port == warmPort
+                    && secure == warmSecure) {
+                return;
+            }
+
+            closeWarmSocket();
+            warmUp = ++generation;
+        }
+
+        executor.execute(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        warmUp(host, port, secure, warmUp);
+                    }
+                });
+    }
+
+    /**
+     * Takes the warm connection to {@code host}, if there is one. The caller owns the connection
+     * from then on.
+     *
+     * @param host the host to connect to
+     * @param port the port to connect to
+     * @param secure whether the connection must have TLS established
+     * @return a connected socket, or null
+     */
+    synchronized Socket take(final String host, final int port, final boolean secure) {
+        if (warmSocket == null || !warmSocket.isConnected() || warmSocket.isClosed()) {
+            closeWarmSocket();
+            return null;
+        }
+
+        if (!host.equals(warmHost)
+                || port != warmPort
+                || secure != warmSecure
+                || System.currentTimeMillis() - warmSince > WARM_CONNECTION_TTL_MILLIS) {
+            return null;
+        }
+
+        final Socket socket = warmSocket;
+        warmSocket = null;
+        cancelExpiry();
+        Log.debug(Assurance.LOG_TAG, LOG_TAG, "Using the warm connection to %s.", host);
+        return socket;
+    }
+
+    /**
+     * Returns whether a connection is waiting to be taken.
+     *
+     * @return true if there is a warm connection
+     */
+    @VisibleForTesting
+    synchronized boolean hasWarmConnection() {
+        return warmSocket != null;
+    }
+
+    /** Closes the warm connection and abandons the warm-ups in progress. */
+    synchronized void cancel() {
+        generation++;
+        closeWarmSocket();
+    }
+
+    private void warmUp(final String host, final int port, final boolean secure, final int warmUp) {
+        Socket socket = null;
+
+        try {
+            // Populates the DNS cache even if the connection cannot be held.
+            final InetAddress address = InetAddress.getByName(host);
+            socket = socketFactory.createSocket();
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(address, port), CONNECT_TIMEOUT_MILLIS);
+            // Bounds the TLS handshake. The session sets its own timeouts once it takes the socket.
+            socket.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+
+            if (secure) {
+                final SSLSocket sslSocket =
+                        (SSLSocket) sslSocketFactory.createSocket(socket, host, port, true);
+                socket = sslSocket;
+                sslSocket.startHandshake();
+
+                // SSLSocketFactory does not verify the host name on its own.
+                if (!HttpsURLConnection.getDefaultHostnameVerifier()
+                        .verify(host, sslSocket.getSession())) {
+                    throw new IOException("Server certificate does not match host: " + host);
+                }
+            }
+        } catch (final IOException | RuntimeException e) {
+            Log.debug(
+                    Assurance.LOG_TAG,
+                    LOG_TAG,
+                    "Unable to warm the connection to %s: %s",
+                    host,
+                    e.getLocalizedMessage());
+            closeQuietly(socket);
+            return;
+        }
+
+        synchronized (this) {
+            if (warmUp != generation) {
+                // Cancelled or replaced while connecting.
+                closeQuietly(socket);
+                return;
+            }
+
+            warmSocket = socket;
+            warmHost = host;
+            warmPort = port;
+            warmSecure = secure;
+            warmSince = System.currentTimeMillis();
+            expiry =
+                    executor.schedule(
+                            new Runnable() {
+                                @Override
+                                public void run() {
+                                    expire(warmUp);
+                                }
+                            },
+                            WARM_CONNECTION_TTL_MILLIS,
+                            TimeUnit.MILLISECONDS);
+        }
+
+        Log.debug(Assurance.LOG_TAG, LOG_TAG, "Warmed the connection to %s.", host);
+    }
+
+    private synchronized void expire(final int warmUp) {
+        if (warmUp == generation && warmSocket != null) {
+            Log.trace(Assurance.LOG_TAG, LOG_TAG, "Closing the unused connection to %s.", warmHost);
+            closeWarmSocket();
+        }
+    }
+
+    private void closeWarmSocket() {
+        cancelExpiry();
+        closeQuietly(warmSocket);
+        warmSocket = null;
+        warmHost = null;
+    }
+
+    private void cancelExpiry() {
+        if (expiry != null) {
+            expiry.cancel(false);
+            expiry = null;
+        }
+    }
+
+    private static void closeQuietly(final Socket socket) {
+        if (socket == null) {
+            return;
+        }
+
+        try {
+            socket.close();
+        } catch (final IOException ignored) {
+            // Nothing left to release.
+        }
+    }
+}
@@ -17,17 +17,26 @@ import com.adobe.marketing.mobile.services.Log;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Provides a template for managing the processing of a queue of work items. Aims to separate the
  * lifecycle of the worker thread(s) processing work items with the queue that they are fetched
  * from. Allows sub-classes to be agnostic of the thread management.
  *
+ * <p>Work items are handed to the worker thread through a {@link WorkQueue}, typically a
+ * preallocated {@link EventRingBuffer}. Once started, the worker thread parks when it runs out of
+ * work and is woken up by {@link #offer(Object)} for up to {@code idleTimeoutMillis}, so that
+ * producers neither take a lock nor submit a new task to the {@link ExecutorService} for each item
+ * while work keeps flowing.
+ *
  * <p>TODO: Core 2.0 now provides a {@link com.adobe.marketing.mobile.util.SerialWorkDispatcher}
  * which can be used to replace this class.
  */
-abstract class EventQueueWorker<T> implements Runnable {
+abstract class EventQueueWorker<T> {
     private static final String LOG_TAG = "EventChunker";
 
     /**
@@ -46,8 +55,80 @@ abstract class EventQueueWorker<T> implements Runnable {
         List<V> chunk(final T item);
     }
 
+    /**
+     * Interface contract for the queue that work items are handed to the worker thread through.
+     * {@link #offer(Object)} may be invoked concurrently from any number of threads; the remaining
+     * operations may be invoked from any thread but are expected to be serialized by the
+     * implementation.
+     *
+     * @param <T> type of the work items held by the queue.
+     */
+    interface WorkQueue<T> {
+        /**
+         * Adds {@code item} to the queue.
+         *
+         * @param item the item to add. Must not be null.
+         * @return true if the item was added; false if the queue is full
+         */
+        boolean offer(final T item);
+
+        /**
+         * Retrieves and removes the next item to be processed.
+         *
+         * @return the next item to be processed, or null if the queue is empty
+         */
+        T poll();
+
+        /**
+         * Retrieves without removing an item from the queue, if any. Used to check whether there
+         * is pending work; not necessarily the item returned by the next {@link #poll()}.
+         *
+         * @return an item in the queue, or null if the queue is empty
+         */
+        T peek();
+
+        /**
+         * Retrieves and removes the item that is the least costly to lose, to make room for newer
+         * items.
+         *
+         * @return the removed item, or null if the queue is empty
+         */
+        T evict();
+
+        /** Removes all items from the queue. */
+        void clear();
+
+        /**
+         * Returns the number of items in the queue.
+         *
+         * @return the number of items in the queue
+         */
+        int size();
+    }
+
+    /**
+     * Default time in milliseconds for which the worker thread stays parked waiting for more work
+     * before returning to the {@link ExecutorService}.
+     */
+    static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 30_000L;
+
     /** Holds the work items that need to be processed by this worker. */
-    private final LinkedBlockingQueue<T> workQueue;
+    private final WorkQueue<T> workQueue;
+
+    /** Time in nanoseconds the worker thread stays parked waiting for more work. */
+    private final long idleTimeoutNanos;
+
+    /**
+     * Generation of the worker thread that has been submitted and not yet finished draining the
+     * {@link #workQueue} if positive, or the negated generation of the last one otherwise. Allows
+     * {@link #offer(Object)} to decide between waking up the worker thread and submitting a new one
+     * without locking, and a worker thread cancelled by {@link #stop()} to tell that it no longer
+     * owns the draining state, which a newer worker thread may hold.
+     */
+    private final AtomicLong drainGeneration = new AtomicLong(0);
+
+    /** The thread currently draining the {@link #workQueue}, if any. */
+    private final AtomicReference<Thread> drainThread = new AtomicReference<>();
 
     /** Executor to which work is submitted to. */
     private final ExecutorService executorService;
@@ -65,11 +146,18 @@ abstract class EventQueueWorker<T> implements Runnable {
     /** Used for guarding the "activeness" logic. */
     private final Object activenessMutex = new Object();
 
+    EventQueueWorker(final ExecutorService executorService, final WorkQueue<T> workQueue) {
+        this(executorService, workQueue, DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
     @VisibleForTesting
     EventQueueWorker(
-            final ExecutorService executorService, final LinkedBlockingQueue<T> workQueue) {
+            final ExecutorService executorService,
+            final WorkQueue<T> workQueue,
+            final long idleTimeoutMillis) {
         this.workQueue = workQueue;
         this.executorService = executorService;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
     }
 
     /**
@@ -78,12 +166,26 @@ abstract class EventQueueWorker<T> implements Runnable {
      * to lack of work).
      *
      * @param workItem item that needs to be processed.
-     * @return true if
+     * @return true if the item was queued; false if the {@link #workQueue} is full
      */
     boolean offer(final T workItem) {
-        boolean result = workQueue.offer(workItem);
-        resume();
-        return result;
+        if (!workQueue.offer(workItem)) {
+            Log.warning(
+                    Assurance.LOG_TAG,
+                    LOG_TAG,
+                    "Work queue of %s is full, dropping work item.",
+                    this.getClass().getSimpleName());
+            return false;
+        }
+
+        if (drainGeneration.get() > 0) {
+            // A worker thread is either busy or parked waiting for work.
+            wakeUp();
+        } else {
+            resume();
+        }
+
+        return true;
     }
 
     /**
@@ -124,26 +226,19 @@ abstract class EventQueueWorker<T> implements Runnable {
      */
     protected abstract boolean canWork();
 
-    @Override
-    public void run() {
-        while (!Thread.interrupted() && canWork() && workQueue.peek() != null) {
-            try {
-                final T event = workQueue.poll();
-                doWork(event);
-            } catch (final InterruptedException exception) {
-                Log.error(
-                        Assurance.LOG_TAG,
-                        LOG_TAG,
-                        "Background worker thread(InboundEventWorker) interrupted: "
-                                + exception.getLocalizedMessage());
-                // https://docs.oracle.com/javase/7/docs/technotes/guides/concurrency/threadPrimitiveDeprecation.html
-                // read in answer for question : How do I stop a thread that waits for long periods
-                // (e.g., for input)?
-                // When you catch InterruptedException it is a good idea to immediately
-                // re-interrupt the thread to preserve the interrupt flag because when the
-                // exception is thrown, the interrupt bit is cleared.
-                Thread.currentThread().interrupt();
-            }
+    /**
+     * Drains the {@link #workQueue} on the worker thread submitted by {@link #resume()}.
+     *
+     * @param generation the generation the worker thread was submitted with
+     */
+    private void run(final long generation) {
+        final Thread currentThread = Thread.currentThread();
+        drainThread.set(currentThread);
+
+        try {
+            drain(generation);
+        } finally {
+            drainThread.compareAndSet(currentThread, null);
         }
 
         Log.debug(
@@ -154,6 +249,65 @@ abstract class EventQueueWorker<T> implements Runnable {
                 this.getClass().getSimpleName());
     }
 
+    private void drain(final long generation) {
+        long idleSince = System.nanoTime();
+
+        while (true) {
+            final T event =
+                    !Thread.currentThread().isInterrupted() && canWork() ? workQueue.poll() : null;
+
+            if (event != null) {
+                try {
+                    doWork(event);
+                } catch (final InterruptedException exception) {
+                    Log.error(
+                            Assurance.LOG_TAG,
+                            LOG_TAG,
+                            "Background worker thread(InboundEventWorker) interrupted: "
+                                    + exception.getLocalizedMessage());
+                    // https://docs.oracle.com/javase/7/docs/technotes/guides/concurrency/threadPrimitiveDeprecation.html
+                    // read in answer for question : How do I stop a thread that waits for long
+                    // periods (e.g., for input)?
+                    // When you catch InterruptedException it is a good idea to immediately
+                    // re-interrupt the thread to preserve the interrupt flag because when the
+                    // exception is thrown, the interrupt bit is cleared.
+                    Thread.currentThread().interrupt();
+                }
+
+                idleSince = System.nanoTime();
+                continue;
+            }
+
+            if (!Thread.currentThread().isInterrupted() && canWork() && doPendingWork()) {
+                idleSince = System.nanoTime();
+                continue;
+            }
+
+            final long idleRemaining = idleTimeoutNanos - (System.nanoTime() - idleSince);
+
+            if (idleRemaining > 0 && !Thread.currentThread().isInterrupted() && canWork()) {
+                LockSupport.parkNanos(this, idleRemaining);
+                continue;
+            }
+
+            // A worker thread cancelled by stop() no longer owns the draining state.
+            if (!drainGeneration.compareAndSet(generation, -generation)) {
+                return;
+            }
+
+            // Re-check after giving up the draining state. Work offered (or the worker unblocked)
+            // concurrently may have seen the worker as draining and only attempted a wake up.
+            if (Thread.currentThread().isInterrupted()
+                    || !canWork()
+                    || (workQueue.peek() == null && !hasPendingWork())
+                    || !drainGeneration.compareAndSet(-generation, generation)) {
+                return;
+            }
+
+            idleSince = System.nanoTime();
+        }
+    }
+
     /**
      * Perform processing on the workItem. This is invoked on a thread different from the rest of
      * the operations on this class. This is invoked from the background worker thread that the
@@ -164,6 +318,73 @@ abstract class EventQueueWorker<T> implements Runnable {
      */
     protected abstract void doWork(final T workItem) throws InterruptedException;
 
+    /**
+     * Invoked from the background worker thread when the {@link #workQueue} is empty. Allows
+     * implementers to carry on with work deferred by {@link #doWork(Object)}, such as the
+     * remainder of a large work item that is processed in turns with the queued ones.
+     *
+     * @return true if any work was performed, false if there is no pending work
+     */
+    protected boolean doPendingWork() {
+        return false;
+    }
+
+    /**
+     * Determines whether there is work pending that {@link #doPendingWork()} will perform. Invoked
+     * from the background worker thread before it stops, so that pending work is not left behind.
+     *
+     * @return true if there is pending work, false otherwise
+     */
+    protected boolean hasPendingWork() {
+        return false;
+    }
+
+    /**
+     * Retrieves and removes the next item in the {@link #workQueue}, waiting up to {@code timeout}
+     * for one to become available. Allows implementers to process several queued items as part of
+     * a single {@link #doWork(Object)} invocation. Must only be invoked from the background worker
+     * thread.
+     *
+     * @param timeout how long to wait before giving up
+     * @param unit the {@link TimeUnit} of {@code timeout}
+     * @return the next work item, or null if none became available within {@code timeout}
+     * @throws InterruptedException if interrupted while waiting
+     */
+    protected T pollWork(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        while (true) {
+            final T workItem = workQueue.poll();
+
+            if (workItem != null) {
+                return workItem;
+            }
+
+            final long remaining = deadline - System.nanoTime();
+
+            if (remaining <= 0) {
+                return null;
+            }
+
+            LockSupport.parkNanos(this, remaining);
+
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    /**
+     * Retrieves and removes the item that the {@link #workQueue} prefers to lose, without
+     * processing it. Allows implementers to make room for newer items. Safe to be invoked from any
+     * thread.
+     *
+     * @return the evicted item, or null if the {@link #workQueue} is empty
+     */
+    protected T evict() {
+        return workQueue.evict();
+    }
+
     /**
      * Puts the {@link EventQueueWorker} into inactive state and clears the {@link #workQueue}. The
      * {@link EventQueueWorker} needs to be started again via {@link #start()} to do new work.
@@ -178,6 +399,15 @@ abstract class EventQueueWorker<T> implements Runnable {
             }
 
             isActive = false;
+
+            // The cancelled worker thread may never have started. Allow the next start() to submit,
+            // and retire the generation so that the cancelled one can neither give up nor take
+            // back the draining state.
+            long generation;
+
+            do {
+                generation = drainGeneration.get();
+            } while (!drainGeneration.compareAndSet(generation, -(Math.abs(generation) + 1)));
         }
 
         workQueue.clear();
@@ -185,15 +415,39 @@ abstract class EventQueueWorker<T> implements Runnable {
 
     /**
      * Resumes processing the work items in the {@link #workQueue} if the {@link EventQueueWorker}
-     * is active and if no worker thread is actively processing the {@link #workQueue}
+     * is active. Wakes up the worker thread if one is already draining the {@link #workQueue},
+     * submits a new one otherwise.
      */
     protected void resume() {
         synchronized (activenessMutex) {
-            if (!isActive || (future != null && !future.isDone())) {
+            if (!isActive) {
                 return;
             }
 
-            future = executorService.submit(this);
+            final long idleGeneration = drainGeneration.get();
+            final long generation = -idleGeneration + 1;
+
+            if (idleGeneration > 0 || !drainGeneration.compareAndSet(idleGeneration, generation)) {
+                wakeUp();
+                return;
+            }
+
+            future =
+                    executorService.submit(
+                            new Runnable() {
+                                @Override
+                                public void run() {
+                                    EventQueueWorker.this.run(generation);
+                                }
+                            });
+        }
+    }
+
+    private void wakeUp() {
+        final Thread thread = drainThread.get();
+
+        if (thread != null) {
+            LockSupport.unpark(thread);
         }
     }
 }
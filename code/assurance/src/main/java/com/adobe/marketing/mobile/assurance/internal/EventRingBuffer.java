@@ -0,0 +1,187 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, preallocated ring buffer for handing work items from any number of producer threads
+ * to a single consumer thread.
+ *
+ * <p>Producers publish without locking or allocating: a slot is claimed by advancing the tail
+ * sequence with a CAS and the item is then stored into the claimed slot. The consumer side ({@link
+ * #poll()}, {@link #peek()} and {@link #clear()}) is serialized on the buffer itself so that a
+ * {@link #clear()} from a controlling thread cannot race with the consumer thread; this lock is
+ * never contended by producers.
+ *
+ * <p>An item whose slot is claimed but not yet stored is not visible to the consumer. Producers are
+ * expected to signal the consumer after {@link #offer(Object)} returns.
+ *
+ * @param <T> type of the items held by the buffer
+ */
+final class EventRingBuffer<T> implements EventQueueWorker.WorkQueue<T> {
+
+    /** Default number of slots. */
+    static final int DEFAULT_CAPACITY = 8192;
+
+    private final AtomicReferenceArray<T> slots;
+    private final int capacity;
+    private final int mask;
+
+    /** Sequence of the next slot to be claimed by a producer. */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * {@link System#nanoTime()} at which the item in each slot was published. Written before the
+     * item is stored in the slot, so that it is visible to the consumer along with the item.
+     */
+    private final long[] publishNanos;
+
+    /** Sequence of the next slot to be consumed. Only written by the consumer side. */
+    private volatile long head;
+
+    /** Publish time of the item most recently returned by {@link #poll()}. */
+    private long lastPolledPublishNanos;
+
+    EventRingBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity minimum number of items the buffer can hold. Rounded up to the next power of
+     *     two.
+     */
+    EventRingBuffer(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+
+        this.capacity = roundUp(capacity);
+        this.mask = this.capacity - 1;
+        this.slots = new AtomicReferenceArray<>(this.capacity);
+        this.publishNanos = new long[this.capacity];
+    }
+
+    /**
+     * Publishes {@code item} to the end of the buffer. Safe to be invoked concurrently from any
+     * number of threads.
+     *
+     * @param item the item to publish. Must not be null.
+     * @return true if the item was published; false if the buffer is full
+     */
+    @Override
+    public boolean offer(final T item) {
+        if (item == null) {
+            throw new NullPointerException("item cannot be null");
+        }
+
+        long sequence;
+
+        do {
+            sequence = tail.get();
+
+            if (sequence - head >= capacity) {
+                return false;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+
+        final int index = (int) (sequence & mask);
+        publishNanos[index] = System.nanoTime();
+        slots.set(index, item);
+        return true;
+    }
+
+    /**
+     * Retrieves and removes the item at the head of the buffer.
+     *
+     * @return the item at the head of the buffer, or null if there is no published item
+     */
+    @Override
+    public synchronized T poll() {
+        final long sequence = head;
+        final int index = (int) (sequence & mask);
+        final T item = slots.get(index);
+
+        if (item == null) {
+            return null;
+        }
+
+        lastPolledPublishNanos = publishNanos[index];
+        slots.lazySet(index, null);
+        head = sequence + 1;
+        return item;
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} at which the item most recently returned by {@link
+     * #poll()} was published. Must be read on the consumer side, after the {@link #poll()}.
+     *
+     * @return publish time of the most recently polled item
+     */
+    synchronized long getLastPolledPublishNanos() {
+        return lastPolledPublishNanos;
+    }
+
+    /**
+     * Retrieves without removing the item at the head of the buffer.
+     *
+     * @return the item at the head of the buffer, or null if there is no published item
+     */
+    @Override
+    public synchronized T peek() {
+        return slots.get((int) (head & mask));
+    }
+
+    /**
+     * Retrieves and removes the item at the head of the buffer, which is the oldest one.
+     *
+     * @return the item at the head of the buffer, or null if there is no published item
+     */
+    @Override
+    public T evict() {
+        return poll();
+    }
+
+    /** Removes all published items from the buffer. */
+    @Override
+    public synchronized void clear() {
+        while (poll() != null) {
+            // discard
+        }
+    }
+
+    /**
+     * Returns the number of items in the buffer, including the ones that are claimed but not yet
+     * published.
+     *
+     * @return the number of items in the buffer
+     */
+    @Override
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    /**
+     * Returns the number of items this buffer can hold.
+     *
+     * @return the capacity of this buffer
+     */
+    int capacity() {
+        return capacity;
+    }
+
+    private static int roundUp(final int value) {
+        final int highestOneBit = Integer.highestOneBit(value);
+        return highestOneBit == value ? value : highestOneBit << 1;
+    }
+}
@@ -15,15 +15,41 @@ import androidx.annotation.VisibleForTesting
 import com.adobe.marketing.mobile.AdobeCallback
 import com.adobe.marketing.mobile.Assurance
 import com.adobe.marketing.mobile.services.Log
-import com.adobe.marketing.mobile.util.JSONUtils
 import org.json.JSONException
-import org.json.JSONObject
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.ScheduledThreadPoolExecutor
+import java.util.concurrent.TimeUnit
 
 internal class EventStitcher {
 
     companion object {
         const val LOG_TAG = "EventStitcher"
 
+        /**
+         * How long a chunk group is kept without receiving a chunk. A chunk lost to a disconnect or a
+         * bad frame would otherwise keep the rest of its group queued for the life of the session.
+         */
+        @VisibleForTesting
+        internal val CHUNK_GROUP_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30)
+
+        /**
+         * The number of chunk groups stitched at the same time, beyond which the least recently
+         * updated one is evicted.
+         */
+        @VisibleForTesting
+        internal const val MAX_CHUNK_GROUPS = 16
+
+        /**
+         * The number of chunks a chunk group may be split into. The slots of a chunk group are
+         * allocated up front, so a chunkTotal beyond this is rejected rather than trusted.
+         */
+        @VisibleForTesting
+        internal const val MAX_CHUNKS_PER_GROUP = 1024
+
+        private const val SWEEP_THREAD_KEEP_ALIVE_SECONDS = 10L
+
         /**
          * Checks whether the event is chunked. An event is chunked if it has chunkId and chunkSequenceNumber in its metadata.
          * @param event the event to check
@@ -38,24 +64,89 @@ internal class EventStitcher {
             val chunkSequenceNumber = event.metadata[AssuranceConstants.AssuranceEventKeys.CHUNK_SEQUENCE_NUMBER] as Int?
             return chunkId != null && chunkSequenceNumber != null
         }
+
+        private fun createSweepExecutor(): ScheduledExecutorService {
+            val executor = ScheduledThreadPoolExecutor(1)
+            // Do not keep a thread around while there is no chunk group to expire.
+            executor.setKeepAliveTime(SWEEP_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS)
+            executor.allowCoreThreadTimeOut(true)
+            executor.setRemoveOnCancelPolicy(true)
+            return executor
+        }
     }
 
     /**
      * Queue of events that are yet to be stitched i.e waiting for the final chunk. Stored as a
-     * map with chunkId as the key and list of events as the value.
+     * map with chunkId as the key and the [ChunkGroup] as the value, ordered from the least to the
+     * most recently updated chunk group.
      */
-    private val queue: MutableMap<String, MutableList<AssuranceEvent>>
+    private val queue: MutableMap<String, ChunkGroup>
 
     /**
      * A callback to notify the caller with the processed event (stitched or not stitched).
      */
     private val notifier: AdobeCallback<AssuranceEvent>
 
+    /**
+     * Accounts for the chunks held in the [queue]. Chunk groups are evicted least recently updated
+     * first when the budget is exhausted, as they cannot be stitched without the evicted chunks
+     * anyway.
+     */
+    private val memoryGovernor: AssuranceMemoryGovernor
+
+    /** Returns the current time in milliseconds, against which the [deadlines] are kept. */
+    private val clock: () -> Long
+
+    /** The time by which the next chunk of each chunk group in the [queue] must be received. */
+    private val deadlines: MutableMap<String, Long> = mutableMapOf()
+
+    /**
+     * Expires the chunk groups whose deadline passed while no chunk is received, as [onEvent] only
+     * gets to expire them when the next chunk arrives. Null if the groups only expire in [onEvent].
+     */
+    private val sweepExecutor: ScheduledExecutorService?
+
+    /** The pending run of [sweep], scheduled for the earliest of the [deadlines]. */
+    private var pendingSweep: ScheduledFuture<*>? = null
+
+    /** The number of chunk groups evicted to stay within the memory budget or [MAX_CHUNK_GROUPS]. */
+    internal var evictedGroupCount: Long = 0
+        private set
+
+    /** The number of chunk groups dropped incomplete after [CHUNK_GROUP_TIMEOUT_MILLIS]. */
+    internal var expiredGroupCount: Long = 0
+        private set
+
     constructor(notifier: AdobeCallback<AssuranceEvent>) : this(mutableMapOf(), notifier)
 
-    constructor(queue: MutableMap<String, MutableList<AssuranceEvent>>, notifier: AdobeCallback<AssuranceEvent>) {
+    constructor(queue: MutableMap<String, ChunkGroup>, notifier: AdobeCallback<AssuranceEvent>) :
+        this(queue, notifier, AssuranceComponentRegistry.memoryGovernor)
+
+    constructor(
+        queue: MutableMap<String, ChunkGroup>,
+        notifier: AdobeCallback<AssuranceEvent>,
+        memoryGovernor: AssuranceMemoryGovernor
+    ) : this(
+        queue,
+        notifier,
+        memoryGovernor,
+        createSweepExecutor(),
+        { TimeUnit.NANOSECONDS.toMillis(System.nanoTime()) }
+    )
+
+    @VisibleForTesting
+    internal constructor(
+        queue: MutableMap<String, ChunkGroup>,
+        notifier: AdobeCallback<AssuranceEvent>,
+        memoryGovernor: AssuranceMemoryGovernor,
+        sweepExecutor: ScheduledExecutorService? = null,
+        clock: () -> Long
+    ) {
         this.queue = queue
         this.notifier = notifier
+        this.memoryGovernor = memoryGovernor
+        this.sweepExecutor = sweepExecutor
+        this.clock = clock
     }
 
     /**
@@ -65,6 +156,7 @@ internal class EventStitcher {
      * @param event the AssuranceEvent
      */
     @JvmName("onEvent")
+    @Synchronized
     internal fun onEvent(event: AssuranceEvent) {
         if (!isChunked(event)) {
             notifier.call(event)
@@ -73,66 +165,212 @@ internal class EventStitcher {
 
         val chunkId: String = event.metadata[AssuranceConstants.AssuranceEventKeys.CHUNK_ID] as String? ?: return
         val totalChunks: Int = event.metadata[AssuranceConstants.AssuranceEventKeys.CHUNK_TOTAL] as Int? ?: return
+        val sequenceNumber: Int = event.metadata[AssuranceConstants.AssuranceEventKeys.CHUNK_SEQUENCE_NUMBER] as Int
+
+        val now = clock()
+        expireGroups(now)
+
+        if (totalChunks > MAX_CHUNKS_PER_GROUP || sequenceNumber !in 0 until totalChunks) {
+            Log.warning(Assurance.LOG_TAG, LOG_TAG, "Ignoring chunk $sequenceNumber of $totalChunks for chunkId: $chunkId.")
+            return
+        }
+
+        val existingChunkGroup = queue[chunkId]
+        if (existingChunkGroup != null && !existingChunkGroup.accepts(sequenceNumber, totalChunks)) {
+            // Retransmitted, or inconsistent with the chunks received so far.
+            Log.debug(Assurance.LOG_TAG, LOG_TAG, "Ignoring repeated or inconsistent chunk $sequenceNumber for chunkId: $chunkId.")
+            return
+        }
+
+        if (!reserve(chunkId, event)) {
+            return
+        }
 
-        // check if there are prior chunks associated with this chunkId in the queue, if not create a new queue
-        val chunkedEventsForId: MutableList<AssuranceEvent> = queue[chunkId] ?: mutableListOf()
-        chunkedEventsForId.add(event)
+        // check if there are prior chunks associated with this chunkId in the queue, if not create a new group.
+        // The group is re-inserted below, which keeps the queue in least recently updated order.
+        val chunkGroup: ChunkGroup = queue.remove(chunkId) ?: ChunkGroup(totalChunks)
+        chunkGroup.place(sequenceNumber, event)
+        deadlines.remove(chunkId)
 
         // if all chunks are received, stitch the events and notify the caller
-        if (chunkedEventsForId.size == totalChunks) {
-            val result: Response<AssuranceEvent, Exception> = stitch(chunkedEventsForId)
+        if (chunkGroup.isComplete) {
+            release(chunkGroup)
+
+            val result: Response<AssuranceEvent, Exception> = stitch(chunkGroup)
             when (result) {
                 is Response.Success -> notifier.call(result.data)
                 is Response.Failure -> Log.error(Assurance.LOG_TAG, LOG_TAG, "Failed to stitch events for chunkId: $chunkId due to: ${result.error.message}")
             }
-            // remove the event from the queue after stitching
-            queue.remove(chunkId)
         } else {
             // else add the event to the queue for stitching once all pieces are received
-            queue[chunkId] = chunkedEventsForId
+            if (queue.size >= MAX_CHUNK_GROUPS) {
+                evict(queue.keys.first(), "to stay within $MAX_CHUNK_GROUPS chunk groups")
+            }
+
+            queue[chunkId] = chunkGroup
+            deadlines[chunkId] = now + CHUNK_GROUP_TIMEOUT_MILLIS
+            scheduleSweep(now)
         }
     }
 
     /**
-     * Stitches the chunked events and returns the stitched event as part of the response.
-     * @param chunkedEvents the list of chunked events to stitch
-     * @return a stitched event as part of [Response.Success] or an exeption as part of [Response.Failure]
+     * Drops the chunk groups that did not receive a chunk in time, and schedules the next sweep if
+     * chunk groups remain. Runs on the [sweepExecutor], so that the chunks of a group whose missing
+     * chunks never arrive are released even if no other chunk is received.
      */
     @VisibleForTesting
-    internal fun stitch(chunkedEvents: MutableList<AssuranceEvent>): Response<AssuranceEvent, Exception> {
-        if (chunkedEvents.isEmpty()) return Response.Failure(Exception("No events to stitch"))
+    @Synchronized
+    internal fun sweep() {
+        pendingSweep = null
+        val now = clock()
+        expireGroups(now)
+        scheduleSweep(now)
+    }
+
+    /**
+     * Drops the chunk groups waiting for chunks and returns their share of the memory budget.
+     * Called when the session stops, as the missing chunks will not arrive on another session.
+     */
+    @Synchronized
+    internal fun clear() {
+        queue.values.forEach { release(it) }
+        queue.clear()
+        deadlines.clear()
+        pendingSweep?.cancel(false)
+        pendingSweep = null
+    }
+
+    /**
+     * Schedules a [sweep] for the earliest of the [deadlines], unless one is pending already. A
+     * pending sweep may run before the deadlines it was scheduled for were pushed back, in which
+     * case it schedules the next one.
+     *
+     * @param now the current time of the [clock]
+     */
+    private fun scheduleSweep(now: Long) {
+        val executor = sweepExecutor ?: return
+        if (pendingSweep != null) return
+        val nextDeadline = deadlines.values.minOrNull() ?: return
 
-        Log.trace(Assurance.LOG_TAG, LOG_TAG, "Stitching ${chunkedEvents.size} events")
+        pendingSweep = try {
+            executor.schedule(Runnable { sweep() }, maxOf(0L, nextDeadline - now), TimeUnit.MILLISECONDS)
+        } catch (e: RejectedExecutionException) {
+            null
+        }
+    }
 
-        // sort the events by sequence number
-        chunkedEvents.sortBy { it.metadata[AssuranceConstants.AssuranceEventKeys.CHUNK_SEQUENCE_NUMBER] as Int }
+    /**
+     * Drops the chunk groups that did not receive a chunk in time. Their missing chunks are not
+     * coming anymore, so they can never be stitched.
+     *
+     * @param now the current time of the [clock]
+     */
+    private fun expireGroups(now: Long) {
+        if (deadlines.isEmpty()) return
+
+        val expiredChunkIds = deadlines.filterValues { it <= now }.keys
+        expiredChunkIds.forEach { chunkId ->
+            deadlines.remove(chunkId)
+            val expired = queue.remove(chunkId)?.chunks.orEmpty()
+            release(expired)
+            drop(chunkId, expired, "as the remaining chunks were not received in time")
+            expiredGroupCount++
+        }
+    }
+
+    /**
+     * Reserves the size of [event] with the [memoryGovernor], evicting the least recently updated
+     * chunk groups other than the one [event] belongs to until it fits. If it still does not fit, the
+     * chunk group of [event] is dropped altogether as it can no longer be stitched.
+     *
+     * @param chunkId the chunkId of [event]
+     * @param event the chunked event about to be queued
+     * @return true if [event] can be queued, false if it was dropped
+     */
+    private fun reserve(chunkId: String, event: AssuranceEvent): Boolean {
+        while (!memoryGovernor.reserve(AssuranceMemoryGovernor.Buffer.STITCHER, event.estimatedSize.toLong())) {
+            val oldestChunkId = queue.keys.firstOrNull { it != chunkId }
+            if (oldestChunkId == null) {
+                val dropped = queue.remove(chunkId)?.chunks.orEmpty()
+                deadlines.remove(chunkId)
+                release(dropped)
+                drop(chunkId, dropped + event, "to stay within the memory budget")
+                evictedGroupCount++
+                return false
+            }
+
+            evict(oldestChunkId, "to stay within the memory budget")
+        }
+
+        return true
+    }
+
+    private fun evict(chunkId: String, reason: String) {
+        val evicted = queue.remove(chunkId)?.chunks.orEmpty()
+        deadlines.remove(chunkId)
+        release(evicted)
+        drop(chunkId, evicted, reason)
+        evictedGroupCount++
+    }
+
+    private fun release(chunkGroup: ChunkGroup) {
+        release(chunkGroup.chunks)
+    }
+
+    private fun release(chunkedEvents: List<AssuranceEvent>) {
+        chunkedEvents.forEach {
+            memoryGovernor.release(AssuranceMemoryGovernor.Buffer.STITCHER, it.estimatedSize.toLong())
+        }
+    }
+
+    private fun drop(chunkId: String, chunkedEvents: List<AssuranceEvent>, reason: String) {
+        Log.warning(Assurance.LOG_TAG, LOG_TAG, "Dropping ${chunkedEvents.size} chunk(s) for chunkId: $chunkId $reason.")
+        chunkedEvents.forEach {
+            memoryGovernor.recordDrop(AssuranceMemoryGovernor.Buffer.STITCHER, it.estimatedSize.toLong())
+        }
+    }
+
+    /**
+     * Stitches the chunks of [chunkGroup] and returns the stitched event as part of the response.
+     * The chunk data is copied into a char array sized for the whole payload, from which the
+     * payload string is made with the one further copy [String] requires. The payload is then
+     * decoded by [InboundEventDecoder] without being copied again: its structure is checked right
+     * away, and it is parsed when first read.
+     *
+     * @param chunkGroup the complete chunk group to stitch
+     * @return a stitched event as part of [Response.Success] or an exeption as part of [Response.Failure]
+     */
+    @VisibleForTesting
+    internal fun stitch(chunkGroup: ChunkGroup): Response<AssuranceEvent, Exception> {
+        if (!chunkGroup.isComplete) return Response.Failure(Exception("Chunk group is incomplete"))
+
+        val chunks = chunkGroup.chunks
+        Log.trace(Assurance.LOG_TAG, LOG_TAG, "Stitching ${chunks.size} events")
 
         // The eventType, vendor for the intended event should be the same for all chunked events with the same chunkId
         // use the initial event type as the eventType for the stitched event
-        val eventType = chunkedEvents[0].eventType
-        val eventVendor = chunkedEvents[0].vendor
-        val eventTimeStamp = chunkedEvents[0].timestamp ?: System.currentTimeMillis()
+        val eventType = chunks[0].eventType
+        val eventVendor = chunks[0].vendor
+        val eventTimeStamp = chunks[0].timestamp ?: System.currentTimeMillis()
 
         // The payload for the intended event is a concatenation of all the chunk data of chunked events
-        val payload: StringBuilder = StringBuilder()
-        chunkedEvents.forEach { chunkedEvent ->
-            val chunkData =
-                chunkedEvent.payload[AssuranceConstants.AssuranceEventKeys.CHUNK_DATA] as String?
-            chunkData?.let {
-                val utf8ChunkData = String(it.toByteArray(), Charsets.UTF_8)
-                payload.append(utf8ChunkData)
+        val chunkData = chunks.map { it.payload?.get(AssuranceConstants.AssuranceEventKeys.CHUNK_DATA) as String? }
+        val payload = CharArray(chunkData.sumOf { it?.length ?: 0 })
+        var offset = 0
+        chunkData.forEach { data ->
+            if (data != null) {
+                data.toCharArray(payload, offset)
+                offset += data.length
             }
         }
 
         return try {
-            val payloadJson = JSONObject(payload.toString())
-            val payloadMap = JSONUtils.toMap(payloadJson)
             Response.Success(
                 AssuranceEvent(
                     eventVendor,
                     eventType,
                     null,
-                    payloadMap,
+                    InboundEventDecoder.decodePayload(String(payload)),
                     eventTimeStamp
                 )
             )
@@ -140,4 +378,43 @@ internal class EventStitcher {
             Response.Failure(e)
         }
     }
+
+    /**
+     * The chunks received for a chunkId, held in a slot per sequence number. Chunks are placed as
+     * they arrive, in any order, and need no sorting once all of them are received.
+     *
+     * @param totalChunks the number of chunks the event was split into
+     */
+    @VisibleForTesting
+    internal class ChunkGroup(private val totalChunks: Int) {
+        private val slots = arrayOfNulls<AssuranceEvent>(totalChunks)
+
+        /** The number of slots filled so far. */
+        internal var receivedCount: Int = 0
+            private set
+
+        /** Whether a chunk was received for every slot. */
+        internal val isComplete: Boolean
+            get() = receivedCount == totalChunks
+
+        /** The chunks received so far, in sequence order. */
+        internal val chunks: List<AssuranceEvent>
+            get() = slots.filterNotNull()
+
+        /**
+         * Returns whether the chunk [sequenceNumber] of [totalChunks] belongs in an empty slot of
+         * this group.
+         */
+        internal fun accepts(sequenceNumber: Int, totalChunks: Int): Boolean {
+            return totalChunks == this.totalChunks &&
+                sequenceNumber in slots.indices &&
+                slots[sequenceNumber] == null
+        }
+
+        /** Places [chunk] in the slot for [sequenceNumber], which must be empty. */
+        internal fun place(sequenceNumber: Int, chunk: AssuranceEvent) {
+            slots[sequenceNumber] = chunk
+            receivedCount++
+        }
+    }
 }
@@ -0,0 +1,151 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import androidx.annotation.VisibleForTesting;
+import java.util.ArrayDeque;
+
+/**
+ * A small set of reusable buffers that outbound socket frames are encoded into, so that sending a
+ * frame does not allocate once the buffers exist. Every buffer holds the largest frame the socket
+ * accepts, along with its WebSocket frame header. Owned by the {@link AssuranceSession} and shared
+ * by the layers of its socket. Safe to be used from any thread.
+ */
+final class FrameBufferPool {
+
+    /** Room for a frame of {@code AssuranceTransport.MAX_DATA_LENGTH} and its header. */
+    static final int BUFFER_SIZE = AssuranceTransport.MAX_DATA_LENGTH + 14;
+
+    /** Enough for a frame being Base64 encoded while another one is written. */
+    private static final int DEFAULT_CAPACITY = 2;
+
+    private static final byte[] BASE64_ALPHABET = {
+        'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J', 'K', 'L', 'M', 'N', 'O', 'P', 'Q', 'R',
+        'S', 'T', 'U', 'V', 'W', 'X', 'Y', 'Z', 'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j',
+        'k', 'l', 'm', 'n', 'o', 'p', 'q', 'r', 's', 't', 'u', 'v', 'w', 'x', 'y', 'z', '0', '1',
+        '2', '3', '4', '5', '6', '7', '8', '9', '+', '/'
+    };
+
+    private final ArrayDeque<byte[]> buffers = new ArrayDeque<>();
+    private final int capacity;
+
+    FrameBufferPool() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the number of released buffers kept for reuse
+     */
+    @VisibleForTesting
+    FrameBufferPool(final int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Takes a buffer of {@link #BUFFER_SIZE} bytes from the pool, allocating one if the pool is
+     * empty. The content of the buffer is undefined.
+     *
+     * @return a buffer to be handed back through {@link #release(byte[])} once it is unused
+     */
+    byte[] acquire() {
+        synchronized (buffers) {
+            final byte[] buffer = buffers.pollFirst();
+
+            if (buffer != null) {
+                return buffer;
+            }
+        }
+
+        return new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Hands back a buffer taken through {@link #acquire()}. The buffer is dropped if the pool is
+     * already full.
+     *
+     * @param buffer the buffer that is no longer used
+     */
+    void release(final byte[] buffer) {
+        if (buffer == null || buffer.length != BUFFER_SIZE) {
+            return;
+        }
+
+        synchronized (buffers) {
+            if (buffers.size() < capacity) {
+                buffers.addFirst(buffer);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of buffers held for reuse.
+     *
+     * @return the number of pooled buffers
+     */
+    @VisibleForTesting
+    int pooledCount() {
+        synchronized (buffers) {
+            return buffers.size();
+        }
+    }
+
+    /**
+     * Returns the length of {@code length} bytes once Base64 encoded by {@link
+     * #encodeBase64(byte[], int, int, byte[])}.
+     *
+     * @param length the number of bytes to encode
+     * @return the length of the encoded bytes
+     */
+    static int base64Length(final int length) {
+        return (length * 4 + 2) / 3;
+    }
+
+    /**
+     * Base64 encodes {@code length} bytes of {@code source} into {@code destination}, with the
+     * standard alphabet and neither line breaks nor padding, matching {@code Base64.NO_WRAP |
+     * Base64.NO_PADDING}.
+     *
+     * @param source the bytes to encode
+     * @param offset offset of the bytes to encode in {@code source}
+     * @param length number of bytes to encode
+     * @param destination the buffer to encode into, of at least {@link #base64Length(int)} bytes
+     * @return the number of bytes written to {@code destination}
+     */
+    static int encodeBase64(
+            final byte[] source, final int offset, final int length, final byte[] destination) {
+        final int end = offset + length;
+        int position = 0;
+        int i = offset;
+
+        for (; i + 2 < end; i += 3) {
+            final int bits =
+                    (source[i] & 0xFF) << 16 | (source[i + 1] & 0xFF) << 8 | source[i + 2] & 0xFF;
+            destination[position++] = BASE64_ALPHABET[bits >>> 18];
+            destination[position++] = BASE64_ALPHABET[(bits >>> 12) & 0x3F];
+            destination[position++] = BASE64_ALPHABET[(bits >>> 6) & 0x3F];
+            destination[position++] = BASE64_ALPHABET[bits & 0x3F];
+        }
+
+        if (i < end) {
+            final int b0 = source[i] & 0xFF;
+            final int b1 = i + 1 < end ? source[i + 1] & 0xFF : 0;
+            destination[position++] = BASE64_ALPHABET[b0 >>> 2];
+            destination[position++] = BASE64_ALPHABET[(b0 & 0x3) << 4 | b1 >>> 4];
+
+            if (i + 1 < end) {
+                destination[position++] = BASE64_ALPHABET[(b1 & 0xF) << 2];
+            }
+        }
+
+        return position;
+    }
+}
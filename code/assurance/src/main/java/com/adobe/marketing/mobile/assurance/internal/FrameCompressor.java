@@ -0,0 +1,128 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses outbound frames using zlib (deflate with a zlib header) with a single reusable {@link
+ * Deflater} and output buffer. A zlib stream always starts with {@code 0x78} for the default window
+ * size, which makes compressed frames distinguishable from plain JSON frames that start with
+ * {@code '{'} or {@code '['}.
+ *
+ * <p>This class is not thread safe. Callers are expected to confine an instance to a single thread
+ * or guard it externally.
+ */
+final class FrameCompressor {
+
+    /** Initial capacity of the reusable output buffer. */
+    private static final int DEFAULT_CAPACITY = 4 * 1024;
+
+    /**
+     * Capacity beyond which the output buffer is released on {@link #release()} instead of being
+     * retained.
+     */
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private final int level;
+    private Deflater deflater;
+    private byte[] buffer;
+    private int size;
+
+    FrameCompressor() {
+        // Frames are compressed on the path to the socket, so favor speed over ratio. Verbose
+        // JSON still compresses well at this level.
+        this(Deflater.BEST_SPEED);
+    }
+
+    FrameCompressor(final int level) {
+        this.level = level;
+        this.buffer = new byte[DEFAULT_CAPACITY];
+        this.size = 0;
+    }
+
+    /**
+     * Compresses {@code length} bytes of {@code source} starting at {@code offset} into the
+     * reusable buffer, replacing any content previously held by this compressor.
+     *
+     * @param source the bytes to compress
+     * @param offset offset of the bytes to compress in {@code source}
+     * @param length number of bytes to compress
+     * @return the number of bytes the compressed frame occupies in {@link #getBuffer()}
+     */
+    int compress(final byte[] source, final int offset, final int length) {
+        if (deflater == null) {
+            deflater = new Deflater(level);
+        }
+
+        deflater.reset();
+        deflater.setInput(source, offset, length);
+        deflater.finish();
+        size = 0;
+
+        while (!deflater.finished()) {
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+
+            size += deflater.deflate(buffer, size, buffer.length - size);
+        }
+
+        return size;
+    }
+
+    /**
+     * Returns the buffer backing this compressor. Only the first {@link #size()} bytes hold the
+     * compressed frame.
+     *
+     * @return the buffer backing this compressor
+     */
+    byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the size of the most recently compressed frame.
+     *
+     * @return the number of valid bytes in {@link #getBuffer()}
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns a copy of the most recently compressed frame.
+     *
+     * @return a new byte array holding the compressed frame
+     */
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * Releases the native resources held by the underlying {@link Deflater}. The compressor remains
+     * usable and lazily re-acquires them on the next {@link #compress(byte[], int, int)}.
+     */
+    void release() {
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+
+        if (buffer.length > MAX_RETAINED_CAPACITY) {
+            buffer = new byte[DEFAULT_CAPACITY];
+        }
+
+        size = 0;
+    }
+}
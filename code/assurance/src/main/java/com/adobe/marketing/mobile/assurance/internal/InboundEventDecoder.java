@@ -0,0 +1,492 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import com.adobe.marketing.mobile.Assurance;
+import com.adobe.marketing.mobile.services.Log;
+import com.adobe.marketing.mobile.util.JSONUtils;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Decodes the messages received from the Assurance server into {@link AssuranceEvent}s, reading
+ * only the envelope of each message up front.
+ *
+ * <p>The envelope fields and the metadata, which tells chunked events apart, are read in a single
+ * pass over the message. The payload is kept as raw JSON in a {@link RawPayload} that is converted
+ * to a map the first time its contents are read, except for the control type, which is read along
+ * with the envelope. Inbound events that are neither chunked nor control events are dropped
+ * without their payload ever being parsed.
+ */
+final class InboundEventDecoder {
+    private static final String LOG_TAG = "InboundEventDecoder";
+
+    private final String json;
+    private int pos;
+
+    private InboundEventDecoder(final String json) {
+        this.json = json;
+    }
+
+    /**
+     * Decodes the {@link AssuranceEvent} represented by {@code json}.
+     *
+     * @param json the message received from the Assurance server
+     * @return the decoded event, whose payload is parsed lazily
+     * @throws JSONException if {@code json} is not an event envelope
+     */
+    static AssuranceEvent decode(final String json) throws JSONException {
+        if (json == null) {
+            throw new JSONException("Null message");
+        }
+
+        return new InboundEventDecoder(json).readEvent();
+    }
+
+    /**
+     * Decodes the payload of an event that was received in chunks, once stitched back together.
+     *
+     * @param json the stitched payload
+     * @return the payload, parsed lazily
+     * @throws JSONException if {@code json} is not a JSON object
+     */
+    static RawPayload decodePayload(final String json) throws JSONException {
+        if (json == null) {
+            throw new JSONException("Null payload");
+        }
+
+        final InboundEventDecoder decoder = new InboundEventDecoder(json);
+        final RawPayload payload = decoder.readPayload();
+        decoder.skipWhitespace();
+
+        if (payload == null || decoder.pos != json.length()) {
+            throw decoder.syntaxError("Expected a single object");
+        }
+
+        return payload;
+    }
+
+    private AssuranceEvent readEvent() throws JSONException {
+        String eventID = null;
+        String vendor = null;
+        String type = null;
+        Map<String, Object> metadata = null;
+        RawPayload payload = null;
+        long timestamp = -1;
+        boolean hasTimestamp = false;
+        int eventNumber = 0;
+        boolean hasEventNumber = false;
+
+        expect('{');
+
+        if (!consume('}')) {
+            do {
+                final String key = readString();
+                expect(':');
+
+                switch (key) {
+                    case AssuranceConstants.AssuranceEventKeys.EVENT_ID:
+                        eventID = readText();
+                        break;
+                    case AssuranceConstants.AssuranceEventKeys.VENDOR:
+                        vendor = readText();
+                        break;
+                    case AssuranceConstants.AssuranceEventKeys.TYPE:
+                        type = readText();
+                        break;
+                    case AssuranceConstants.AssuranceEventKeys.METADATA:
+                        // Small, and needed right away to tell chunked events apart.
+                        final String rawMetadata = readObjectOrSkip();
+                        metadata =
+                                rawMetadata != null
+                                        ? JSONUtils.toMap(new JSONObject(rawMetadata))
+                                        : null;
+                        break;
+                    case AssuranceConstants.AssuranceEventKeys.PAYLOAD:
+                        payload = readPayload();
+                        break;
+                    case AssuranceConstants.AssuranceEventKeys.TIMESTAMP:
+                        final Double timestampValue = readNumberOrSkip();
+                        hasTimestamp = timestampValue != null;
+                        timestamp = hasTimestamp ? timestampValue.longValue() : -1;
+                        break;
+                    case AssuranceConstants.AssuranceEventKeys.EVENT_NUMBER:
+                        final Double eventNumberValue = readNumberOrSkip();
+                        hasEventNumber = eventNumberValue != null;
+                        eventNumber = hasEventNumber ? eventNumberValue.intValue() : 0;
+                        break;
+                    default:
+                        skipValue();
+                        break;
+                }
+            } while (consume(','));
+
+            expect('}');
+        }
+
+        if (eventID == null || vendor == null || type == null) {
+            throw new JSONException("Message is missing the eventID, vendor or type");
+        }
+
+        return new AssuranceEvent(
+                eventID,
+                vendor,
+                type,
+                metadata,
+                payload,
+                hasTimestamp ? timestamp : System.currentTimeMillis(),
+                hasEventNumber ? eventNumber : AssuranceEvent.nextEventNumber());
+    }
+
+    /** Reads the payload object, noting its keys and its string "type" without parsing it. */
+    private RawPayload readPayload() throws JSONException {
+        skipWhitespace();
+
+        if (peek() != '{') {
+            skipValue();
+            return null;
+        }
+
+        final int start = pos;
+        int keyCount = 0;
+        String controlType = null;
+        boolean hasType = false;
+        pos++;
+
+        if (!consume('}')) {
+            do {
+                final String key = readString();
+                expect(':');
+                keyCount++;
+
+                if (AssuranceConstants.PayloadDataKeys.TYPE.equals(key)) {
+                    hasType = true;
+                    skipWhitespace();
+                    controlType = peek() == '"' ? readString() : null;
+
+                    if (controlType == null) {
+                        skipValue();
+                    }
+                } else {
+                    skipValue();
+                }
+            } while (consume(','));
+
+            expect('}');
+        }
+
+        // A stitched payload usually spans the whole input, which is then kept rather than copied.
+        final String rawJSON =
+                start == 0 && pos == json.length() ? json : json.substring(start, pos);
+        return new RawPayload(rawJSON, keyCount, hasType, controlType);
+    }
+
+    /** Reads a string value, or the text of a scalar value, as {@link JSONObject} would. */
+    private String readText() throws JSONException {
+        skipWhitespace();
+
+        if (peek() == '"') {
+            return readString();
+        }
+
+        final int start = pos;
+        skipValue();
+        final String text = json.substring(start, pos).trim();
+        return "null".equals(text) ? null : text;
+    }
+
+    private Double readNumberOrSkip() throws JSONException {
+        final String text = readText();
+
+        if (text == null) {
+            return null;
+        }
+
+        try {
+            return Double.valueOf(text);
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private String readObjectOrSkip() throws JSONException {
+        skipWhitespace();
+        final int start = pos;
+        final boolean isObject = peek() == '{';
+        skipValue();
+        return isObject ? json.substring(start, pos) : null;
+    }
+
+    private String readString() throws JSONException {
+        expect('"');
+        StringBuilder unescaped = null;
+        int runStart = pos;
+
+        while (true) {
+            final char c = next();
+
+            if (c == '"') {
+                if (unescaped == null) {
+                    return json.substring(runStart, pos - 1);
+                }
+
+                return unescaped.append(json, runStart, pos - 1).toString();
+            }
+
+            if (c != '\\') {
+                continue;
+            }
+
+            if (unescaped == null) {
+                unescaped = new StringBuilder();
+            }
+
+            unescaped.append(json, runStart, pos - 1);
+            final char escaped = next();
+
+            switch (escaped) {
+                case 'b':
+                    unescaped.append('\b');
+                    break;
+                case 'f':
+                    unescaped.append('\f');
+                    break;
+                case 'n':
+                    unescaped.append('\n');
+                    break;
+                case 'r':
+                    unescaped.append('\r');
+                    break;
+                case 't':
+                    unescaped.append('\t');
+                    break;
+                case 'u':
+                    if (pos + 4 > json.length()) {
+                        throw syntaxError("Unterminated escape sequence");
+                    }
+
+                    try {
+                        unescaped.append(
+                                (char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+                    } catch (final NumberFormatException e) {
+                        throw syntaxError("Invalid escape sequence");
+                    }
+
+                    pos += 4;
+                    break;
+                default:
+                    unescaped.append(escaped);
+                    break;
+            }
+
+            runStart = pos;
+        }
+    }
+
+    /** Skips a value of any type, checking only that its brackets and strings are balanced. */
+    private void skipValue() throws JSONException {
+        skipWhitespace();
+        final char first = peek();
+
+        if (first == '"') {
+            skipString();
+            return;
+        }
+
+        if (first != '{' && first != '[') {
+            // A number or a literal, which ends where the enclosing value continues.
+            final int start = pos;
+
+            while (pos < json.length() && ",}] \t\r\n".indexOf(json.charAt(pos)) < 0) {
+                pos++;
+            }
+
+            if (pos == start) {
+                throw syntaxError("Expected a value");
+            }
+
+            return;
+        }
+
+        int depth = 0;
+
+        do {
+            final char c = next();
+
+            if (c == '"') {
+                pos--;
+                skipString();
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            }
+        } while (depth > 0);
+    }
+
+    private void skipString() throws JSONException {
+        expect('"');
+
+        while (true) {
+            final char c = next();
+
+            if (c == '"') {
+                return;
+            }
+
+            if (c == '\\') {
+                next();
+            }
+        }
+    }
+
+    private boolean consume(final char expected) {
+        skipWhitespace();
+
+        if (pos < json.length() && json.charAt(pos) == expected) {
+            pos++;
+            return true;
+        }
+
+        return false;
+    }
+
+    private void expect(final char expected) throws JSONException {
+        if (!consume(expected)) {
+            throw syntaxError("Expected '" + expected + "'");
+        }
+    }
+
+    private char peek() throws JSONException {
+        if (pos >= json.length()) {
+            throw syntaxError("Unexpected end of message");
+        }
+
+        return json.charAt(pos);
+    }
+
+    private char next() throws JSONException {
+        final char c = peek();
+        pos++;
+        return c;
+    }
+
+    private void skipWhitespace() {
+        while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private JSONException syntaxError(final String message) {
+        return new JSONException(message + " at character " + pos);
+    }
+
+    /**
+     * The payload of an inbound event, held as raw JSON until its contents are read. Whether it
+     * has keys and its string {@code "type"} are answered without parsing it.
+     */
+    static final class RawPayload extends AbstractMap<String, Object> {
+        private final String json;
+        private final int keyCount;
+        private final boolean hasType;
+        private final String type;
+        private Map<String, Object> parsed;
+
+        RawPayload(
+                final String json, final int keyCount, final boolean hasType, final String type) {
+            this.json = json;
+            this.keyCount = keyCount;
+            this.hasType = hasType;
+            this.type = type;
+        }
+
+        /**
+         * Returns the payload as received.
+         *
+         * @return the raw JSON of the payload
+         */
+        String getJSON() {
+            return json;
+        }
+
+        /**
+         * Returns whether the payload was converted to a map already.
+         *
+         * @return true if the payload was parsed
+         */
+        synchronized boolean isParsed() {
+            return parsed != null;
+        }
+
+        @Override
+        public Object get(final Object key) {
+            if (AssuranceConstants.PayloadDataKeys.TYPE.equals(key) && isTypeKnown()) {
+                return type;
+            }
+
+            return parsed().get(key);
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            if (AssuranceConstants.PayloadDataKeys.TYPE.equals(key) && isTypeKnown()) {
+                return hasType;
+            }
+
+            return parsed().containsKey(key);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return keyCount == 0;
+        }
+
+        @Override
+        public int size() {
+            return parsed().size();
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return parsed().entrySet();
+        }
+
+        /** Whether the "type" is absent or a string, which is all that was read of it. */
+        private boolean isTypeKnown() {
+            return !hasType || type != null;
+        }
+
+        private synchronized Map<String, Object> parsed() {
+            if (parsed == null) {
+                Map<String, Object> map = null;
+
+                try {
+                    map = JSONUtils.toMap(new JSONObject(json));
+                } catch (final JSONException e) {
+                    Log.warning(
+                            Assurance.LOG_TAG,
+                            LOG_TAG,
+                            "Unable to parse the payload of an inbound event: %s",
+                            e.getLocalizedMessage());
+                }
+
+                parsed = map != null ? map : new HashMap<String, Object>();
+            }
+
+            return parsed;
+        }
+    }
+}
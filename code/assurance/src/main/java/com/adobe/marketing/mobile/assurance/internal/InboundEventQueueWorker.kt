@@ -16,10 +16,18 @@ import com.adobe.marketing.mobile.Assurance
 import com.adobe.marketing.mobile.assurance.internal.InboundEventQueueWorker.InboundQueueEventListener
 import com.adobe.marketing.mobile.services.Log
 import com.adobe.marketing.mobile.util.SerialWorkDispatcher
+import org.json.JSONException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.RejectedExecutionException
 
 /**
  * Responsible for handling any [AssuranceEvent]'s from the socket and forwarding them to
  * [InboundQueueEventListener] as necessary.
+ *
+ * Messages received from the socket are decoded on a dedicated decoder thread, so that the thread
+ * reading the socket is never held up by parsing. The decoder reads only the envelope of each
+ * message, see [InboundEventDecoder].
  */
 internal class InboundEventQueueWorker {
 
@@ -40,16 +48,36 @@ internal class InboundEventQueueWorker {
 
     private val workDispatcher: SerialWorkDispatcher<AssuranceEvent>
 
-    internal constructor(listener: InboundQueueEventListener) : this(
+    /**
+     * Decodes the messages received from the socket, in the order they were received.
+     */
+    private val decoderExecutor: ExecutorService
+
+    /**
+     * Holds the chunks of the inbound events received in chunks, cleared when the worker stops.
+     */
+    private val eventStitcher: EventStitcher?
+
+    internal constructor(listener: InboundQueueEventListener) : this(EventStitcher(listener::onInboundEvent))
+
+    private constructor(eventStitcher: EventStitcher) : this(
         SerialWorkDispatcher(
             LOG_TAG,
-            WorkHandlerImpl(EventStitcher(listener::onInboundEvent))
-        )
+            WorkHandlerImpl(eventStitcher)
+        ),
+        Executors.newSingleThreadExecutor(),
+        eventStitcher
     )
 
     @VisibleForTesting
-    internal constructor(workDispatcher: SerialWorkDispatcher<AssuranceEvent>) {
+    internal constructor(
+        workDispatcher: SerialWorkDispatcher<AssuranceEvent>,
+        decoderExecutor: ExecutorService = Executors.newSingleThreadExecutor(),
+        eventStitcher: EventStitcher? = null
+    ) {
         this.workDispatcher = workDispatcher
+        this.decoderExecutor = decoderExecutor
+        this.eventStitcher = eventStitcher
     }
 
     /**
@@ -90,10 +118,61 @@ internal class InboundEventQueueWorker {
     }
 
     /**
-     * Stops the [SerialWorkDispatcher] that the [InboundEventQueueWorker] maintains.
+     * Hands a message received from the socket to the decoder thread, which queues the decoded
+     * [AssuranceEvent] to be processed. Messages that cannot be decoded are logged and dropped.
+     * If the dispatcher is shutdown, this method does nothing.
+     *
+     * @param message the message received from the socket
+     * @return true if the message was handed to the decoder thread
+     */
+    fun offerMessage(message: String): Boolean {
+        if (workDispatcher.getState() == SerialWorkDispatcher.State.SHUTDOWN) {
+            Log.trace(
+                Assurance.LOG_TAG,
+                LOG_TAG,
+                "Cannot queue message. Work dispatcher was shutdown."
+            )
+            return false
+        }
+
+        return try {
+            decoderExecutor.execute { decode(message) }
+            true
+        } catch (e: RejectedExecutionException) {
+            false
+        }
+    }
+
+    private fun decode(message: String) {
+        val event = try {
+            InboundEventDecoder.decode(message)
+        } catch (e: JSONException) {
+            Log.warning(
+                Assurance.LOG_TAG,
+                LOG_TAG,
+                "Unable to marshal inbound event due to json format. Error - ${e.localizedMessage}"
+            )
+            return
+        }
+
+        if (!offer(event)) {
+            Log.warning(
+                Assurance.LOG_TAG,
+                LOG_TAG,
+                "Cannot process the inbound Assurance event from server, problem queuing" +
+                    " event in inboundEventsQueue"
+            )
+        }
+    }
+
+    /**
+     * Stops the [SerialWorkDispatcher] that the [InboundEventQueueWorker] maintains, and drops the
+     * chunks of the events that were not received in full.
      */
     fun stop() {
+        decoderExecutor.shutdownNow()
         workDispatcher.shutdown()
+        eventStitcher?.clear()
     }
 
     @VisibleForTesting
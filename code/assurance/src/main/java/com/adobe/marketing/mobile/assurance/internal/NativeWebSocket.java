@@ -0,0 +1,984 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import androidx.annotation.VisibleForTesting;
+import com.adobe.marketing.mobile.Assurance;
+import com.adobe.marketing.mobile.services.Log;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.net.SocketFactory;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * A minimal RFC 6455 WebSocket client that runs directly on a {@link Socket} (an {@link SSLSocket}
+ * for {@code wss} URLs) instead of inside a {@code WebView}.
+ *
+ * <p>Each connection is served by its own reader thread that performs the opening handshake,
+ * decodes inbound frames and answers pings. Outbound data frames and pings are masked and written
+ * on the calling thread; close frames are written from a background control thread so that
+ * callers on the main thread never block on the network. {@link Listener} callbacks are invoked
+ * on the reader thread, except for {@link Listener#onBufferedAmountChanged(long)}. Keep-alive
+ * pings are left to the owner of the socket.
+ *
+ * <p>Extensions and subprotocols are not negotiated. Fragmented inbound messages are reassembled up
+ * to {@link #MAX_MESSAGE_SIZE} bytes.
+ */
+final class NativeWebSocket {
+    private static final String LOG_TAG = "NativeWebSocket";
+
+    /** Callbacks for the lifecycle of a {@link NativeWebSocket} connection. */
+    interface Listener {
+        /** Invoked once the opening handshake completed. */
+        void onOpen();
+
+        /**
+         * Invoked for every complete inbound message. Binary messages are decoded as UTF-8.
+         *
+         * @param message the message received
+         */
+        void onMessage(final String message);
+
+        /** Invoked when the server answers a ping sent through {@link #sendPing()}. */
+        void onPong();
+
+        /**
+         * Invoked exactly once per connection attempt, when the connection is closed.
+         *
+         * @param code the close code received from the server, or {@code 1006} if the connection
+         *     was closed without a closing handshake
+         * @param reason the close reason received from the server, empty if none
+         * @param wasClean whether the closing handshake completed
+         */
+        void onClose(final int code, final String reason, final boolean wasClean);
+
+        /**
+         * Invoked when the connection fails, before {@link #onClose(int, String, boolean)}.
+         *
+         * @param error the cause of the failure
+         */
+        void onError(final Exception error);
+
+        /**
+         * Invoked on the writing thread when {@link #getBufferedAmount()} drains to {@link
+         * #LOW_WATER_MARK} after reaching {@link #HIGH_WATER_MARK}.
+         *
+         * @param bufferedAmount the number of bytes handed to the socket and not written yet
+         */
+        void onBufferedAmountChanged(final long bufferedAmount);
+    }
+
+    @VisibleForTesting static final int CLOSE_NORMAL = 1000;
+    @VisibleForTesting static final int CLOSE_PROTOCOL_ERROR = 1002;
+    @VisibleForTesting static final int CLOSE_NO_STATUS = 1005;
+    @VisibleForTesting static final int CLOSE_ABNORMAL = 1006;
+    @VisibleForTesting static final int CLOSE_MESSAGE_TOO_BIG = 1009;
+
+    /** Maximum size in bytes of an inbound message, after reassembly of its fragments. */
+    @VisibleForTesting static final int MAX_MESSAGE_SIZE = 4 * 1024 * 1024;
+
+    /** Application level ping understood by the Assurance server, and its reply. */
+    @VisibleForTesting static final String PING_MESSAGE = "__ping__";
+
+    @VisibleForTesting static final String PONG_MESSAGE = "__pong__";
+
+    private static final byte[] PING_PAYLOAD = PING_MESSAGE.getBytes(UTF_8);
+
+    /**
+     * Unwritten bytes at which senders should stop handing frames to the socket. Frames are
+     * written on the sending thread, which blocks while the network is slow, so a single sender
+     * never buffers more than the frame it is writing. This is only reached when frames from other
+     * threads wait behind a frame that the network is slow to take.
+     */
+    static final long HIGH_WATER_MARK = 2L * AssuranceTransport.MAX_DATA_LENGTH;
+
+    /** Unwritten bytes at or below which senders paused at {@link #HIGH_WATER_MARK} may resume. */
+    static final long LOW_WATER_MARK = AssuranceTransport.MAX_DATA_LENGTH / 2;
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * Time given to the server to complete the TLS and opening handshakes. Once open, a silent
+     * server is detected by the {@link SocketHeartbeat} instead.
+     */
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 10000;
+
+    /** Time given to the server to answer a close frame before the connection is dropped. */
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    private static final long CONTROL_THREAD_KEEP_ALIVE_SECONDS = 10;
+
+    private static final int MAX_HANDSHAKE_RESPONSE_SIZE = 8 * 1024;
+    private static final String HANDSHAKE_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    private static final int OPCODE_CONTINUATION = 0x0;
+    private static final int OPCODE_TEXT = 0x1;
+    private static final int OPCODE_BINARY = 0x2;
+    private static final int OPCODE_CLOSE = 0x8;
+    private static final int OPCODE_PING = 0x9;
+    private static final int OPCODE_PONG = 0xA;
+
+    private static final char[] BASE64_ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    private final Listener listener;
+    private final SocketFactory socketFactory;
+    private final SSLSocketFactory sslSocketFactory;
+
+    /** Provides the connections opened while the session was being authorized, may be null. */
+    private final ConnectionPrewarmer prewarmer;
+
+    private final SecureRandom random = new SecureRandom();
+
+    /** Writes close frames and enforces the closing handshake timeout. */
+    private final ScheduledExecutorService controlExecutor = createControlExecutor();
+
+    /** Guards {@link #writeBuffer} and the output stream of the connection. */
+    private final Object writeLock = new Object();
+
+    /** Provides {@link #writeBuffer}, which masked frames are assembled in. */
+    private final FrameBufferPool frameBufferPool;
+
+    private byte[] writeBuffer;
+
+    private int handshakeTimeoutMillis = HANDSHAKE_TIMEOUT_MILLIS;
+
+    /** Bytes of the frames waiting for, or being written to, the output stream. */
+    private final AtomicLong unwrittenBytes = new AtomicLong();
+
+    /** Number of the frames waiting for, or being written to, the output stream. */
+    private final AtomicInteger unwrittenFrames = new AtomicInteger();
+
+    /** Whether {@link #unwrittenBytes} reached {@link #HIGH_WATER_MARK} and did not drain yet. */
+    private final AtomicBoolean highWaterMarkReached = new AtomicBoolean(false);
+
+    /** The connection currently served, or null if there is none. */
+    private volatile Connection connection;
+
+    NativeWebSocket(final Listener listener) {
+        this(listener, new FrameBufferPool());
+    }
+
+    NativeWebSocket(final Listener listener, final FrameBufferPool frameBufferPool) {
+        this(
+                listener,
+                frameBufferPool,
+                SocketFactory.getDefault(),
+                (SSLSocketFactory) SSLSocketFactory.getDefault(),
+                AssuranceComponentRegistry.connectionPrewarmer);
+    }
+
+    @VisibleForTesting
+    NativeWebSocket(
+            final Listener listener,
+            final FrameBufferPool frameBufferPool,
+            final SocketFactory socketFactory,
+            final SSLSocketFactory sslSocketFactory) {
+        this(listener, frameBufferPool, socketFactory, sslSocketFactory, null);
+    }
+
+    @VisibleForTesting
+    NativeWebSocket(
+            final Listener listener,
+            final FrameBufferPool frameBufferPool,
+            final SocketFactory socketFactory,
+            final SSLSocketFactory sslSocketFactory,
+            final ConnectionPrewarmer prewarmer) {
+        this.listener = listener;
+        this.frameBufferPool = frameBufferPool;
+        this.socketFactory = socketFactory;
+        this.sslSocketFactory = sslSocketFactory;
+        this.prewarmer = prewarmer;
+    }
+
+    @VisibleForTesting
+    void setHandshakeTimeoutMillis(final int handshakeTimeoutMillis) {
+        this.handshakeTimeoutMillis = handshakeTimeoutMillis;
+    }
+
+    /**
+     * Opens a connection to {@code url} in the background, closing the current connection if
+     * there is one. The outcome is reported to the {@link Listener}.
+     *
+     * @param url a {@code ws} or {@code wss} URL
+     */
+    void connect(final String url) {
+        final Connection previous = connection;
+
+        if (previous != null) {
+            previous.abort();
+        }
+
+        final Connection newConnection = new Connection(url);
+        connection = newConnection;
+        final Thread readerThread = new Thread(newConnection, "AssuranceWebSocket");
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    /**
+     * Starts the closing handshake of the current connection. The connection is dropped if the
+     * server does not answer within {@link #CLOSE_TIMEOUT_MILLIS}.
+     *
+     * @param code the close code to send
+     * @param reason the close reason to send
+     */
+    void close(final int code, final String reason) {
+        final Connection current = connection;
+
+        if (current == null) {
+            return;
+        }
+
+        controlExecutor.execute(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        current.close(code, reason);
+                    }
+                });
+    }
+
+    /**
+     * Drops the current connection without a closing handshake, as when the server stopped
+     * answering. The close is reported with code {@code 1006}.
+     */
+    void drop() {
+        final Connection current = connection;
+
+        if (current != null) {
+            // The reader thread notices the closed socket and reports it.
+            current.closeSocket();
+        }
+    }
+
+    /**
+     * Sends the application level ping, answered through {@link Listener#onPong()}, on the
+     * calling thread.
+     *
+     * @return true if the ping was written, false if the connection is not open or failed
+     */
+    boolean sendPing() {
+        return sendFrame(OPCODE_TEXT, PING_PAYLOAD, 0, PING_PAYLOAD.length);
+    }
+
+    /**
+     * Sends {@code text} as a single text frame on the calling thread.
+     *
+     * @param text the message to send
+     * @return true if the frame was written, false if the connection is not open or failed
+     */
+    boolean sendText(final String text) {
+        final byte[] payload = text.getBytes(UTF_8);
+        return sendFrame(OPCODE_TEXT, payload, 0, payload.length);
+    }
+
+    /**
+     * Sends {@code length} bytes of {@code utf8} starting at {@code offset} as a single text frame
+     * on the calling thread, without decoding them to a {@code String} first. The bytes are
+     * written before this method returns, so {@code utf8} may be reused afterwards.
+     *
+     * @param utf8 the buffer holding the UTF-8 encoded message
+     * @param offset offset of the message in {@code utf8}
+     * @param length length of the message
+     * @return true if the frame was written, false if the connection is not open or failed
+     */
+    boolean sendText(final byte[] utf8, final int offset, final int length) {
+        return sendFrame(OPCODE_TEXT, utf8, offset, length);
+    }
+
+    /**
+     * Sends {@code length} bytes of {@code data} starting at {@code offset} as a single binary
+     * frame on the calling thread. The bytes are written before this method returns, so {@code
+     * data} may be reused afterwards.
+     *
+     * @param data the buffer holding the message
+     * @param offset offset of the message in {@code data}
+     * @param length length of the message
+     * @return true if the frame was written, false if the connection is not open or failed
+     */
+    boolean sendBinary(final byte[] data, final int offset, final int length) {
+        return sendFrame(OPCODE_BINARY, data, offset, length);
+    }
+
+    /**
+     * Returns whether the current connection completed its opening handshake and is not closing.
+     *
+     * @return true if data can be sent
+     */
+    boolean isOpen() {
+        final Connection current = connection;
+        return current != null && current.open && !current.closing;
+    }
+
+    /**
+     * Returns the number of bytes handed to this socket that were not written to the network yet.
+     * Frames are written on the sending thread, so these are the frames waiting for another
+     * thread to finish writing, and the frame being written while the network is slower than the
+     * sender.
+     *
+     * @return the number of unwritten bytes, which the {@link Listener} is notified of when it
+     *     drains to {@link #LOW_WATER_MARK} after reaching {@link #HIGH_WATER_MARK}
+     */
+    long getBufferedAmount() {
+        return unwrittenBytes.get();
+    }
+
+    /**
+     * Returns the number of frames handed to this socket that were not written to the network yet.
+     *
+     * @return the number of unwritten frames
+     */
+    int getBufferedFrameCount() {
+        return unwrittenFrames.get();
+    }
+
+    private boolean sendFrame(
+            final int opcode, final byte[] payload, final int offset, final int length) {
+        final Connection current = connection;
+
+        if (current == null || !current.open || current.closing) {
+            Log.debug(Assurance.LOG_TAG, LOG_TAG, "Socket is not open, dropping outbound frame.");
+            return false;
+        }
+
+        return current.writeFrame(opcode, payload, offset, length);
+    }
+
+    private static ScheduledExecutorService createControlExecutor() {
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        // Do not keep a thread around while there is no connection to serve.
+        executor.setKeepAliveTime(CONTROL_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * Encodes {@code data} as standard Base64 with padding, as required for the handshake headers.
+     */
+    @VisibleForTesting
+    static String base64(final byte[] data) {
+        final StringBuilder encoded = new StringBuilder((data.length + 2) / 3 * 4);
+
+        for (int i = 0; i < data.length; i += 3) {
+            final int b0 = data[i] & 0xFF;
+            final int b1 = i + 1 < data.length ? data[i + 1] & 0xFF : 0;
+            final int b2 = i + 2 < data.length ? data[i + 2] & 0xFF : 0;
+            encoded.append(BASE64_ALPHABET[b0 >> 2]);
+            encoded.append(BASE64_ALPHABET[((b0 & 0x3) << 4) | (b1 >> 4)]);
+            encoded.append(
+                    i + 1 < data.length ? BASE64_ALPHABET[((b1 & 0xF) << 2) | (b2 >> 6)] : '=');
+            encoded.append(i + 2 < data.length ? BASE64_ALPHABET[b2 & 0x3F] : '=');
+        }
+
+        return encoded.toString();
+    }
+
+    /**
+     * Computes the {@code Sec-WebSocket-Accept} value the server must answer for {@code key}.
+     */
+    @VisibleForTesting
+    static String acceptKey(final String key) {
+        try {
+            final MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            return base64(sha1.digest((key + HANDSHAKE_GUID).getBytes(UTF_8)));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** A single connection attempt, served by its own reader thread. */
+    private final class Connection implements Runnable {
+        private final String url;
+        private final AtomicBoolean closeReported = new AtomicBoolean(false);
+
+        private volatile Socket socket;
+        private volatile OutputStream output;
+        private volatile boolean open;
+        private volatile boolean closing;
+
+        /** Set when this connection was replaced or dropped and must not report anything. */
+        private volatile boolean aborted;
+
+        /** Reassembly buffer for fragmented messages. Only used by the reader thread. */
+        private byte[] message = new byte[0];
+
+        private int messageLength;
+        private int messageOpcode = -1;
+
+        Connection(final String url) {
+            this.url = url;
+        }
+
+        @Override
+        public void run() {
+            try {
+                final InputStream input = openAndHandshake();
+
+                if (aborted || closing) {
+                    // Closed while connecting. The close was already reported.
+                    closeSocket();
+                    return;
+                }
+
+                open = true;
+                listener.onOpen();
+                readFrames(input);
+            } catch (final ProtocolException e) {
+                fail(e, e.closeCode);
+            } catch (final Exception e) {
+                fail(e, CLOSE_ABNORMAL);
+            }
+        }
+
+        private InputStream openAndHandshake() throws IOException, URISyntaxException {
+            final URI uri = new URI(url);
+            final String scheme =
+                    uri.getScheme() == null ? "" : uri.getScheme().toLowerCase(Locale.US);
+            final boolean secure = "wss".equals(scheme);
+
+            if (!secure && !"ws".equals(scheme)) {
+                throw new IOException("Unsupported WebSocket scheme: " + scheme);
+            }
+
+            final String host = uri.getHost();
+            final int port = uri.getPort() != -1 ? uri.getPort() : (secure ? 443 : 80);
+            final Socket warmSocket = prewarmer != null ? prewarmer.take(host, port, secure) : null;
+
+            if (warmSocket != null) {
+                // Connected and verified while the session was being authorized.
+                socket = warmSocket;
+            } else {
+                connectSocket(host, port, secure);
+            }
+
+            // Bounds the reads of the handshake response, which would otherwise block forever.
+            socket.setSoTimeout(handshakeTimeoutMillis);
+            final InputStream input = new BufferedInputStream(socket.getInputStream());
+            output = new BufferedOutputStream(socket.getOutputStream());
+
+            final byte[] nonce = new byte[16];
+            random.nextBytes(nonce);
+            final String key = base64(nonce);
+            final String path =
+                    (uri.getRawPath() == null || uri.getRawPath().isEmpty()
+                                    ? "/"
+                                    : uri.getRawPath())
+                            + (uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery());
+            final boolean defaultPort = uri.getPort() == -1 || uri.getPort() == (secure ? 443 : 80);
+            final String request =
+                    "GET "
+                            + path
+                            + " HTTP/1.1\r\n"
+                            + "Host: "
+                            + host
+                            + (defaultPort ? "" : ":" + port)
+                            + "\r\n"
+                            + "Upgrade: websocket\r\n"
+                            + "Connection: Upgrade\r\n"
+                            + "Sec-WebSocket-Key: "
+                            + key
+                            + "\r\n"
+                            + "Sec-WebSocket-Version: 13\r\n"
+                            + "\r\n";
+
+            synchronized (writeLock) {
+                output.write(request.getBytes(UTF_8));
+                output.flush();
+            }
+
+            verifyHandshakeResponse(readHandshakeResponse(input), key);
+            socket.setSoTimeout(0);
+            return input;
+        }
+
+        private void connectSocket(final String host, final int port, final boolean secure)
+                throws IOException {
+            final Socket plainSocket = socketFactory.createSocket();
+            socket = plainSocket;
+            plainSocket.setTcpNoDelay(true);
+            plainSocket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+            plainSocket.setSoTimeout(handshakeTimeoutMillis);
+
+            if (secure) {
+                final SSLSocket sslSocket =
+                        (SSLSocket) sslSocketFactory.createSocket(plainSocket, host, port, true);
+                socket = sslSocket;
+                sslSocket.startHandshake();
+
+                // SSLSocketFactory does not verify the host name on its own.
+                if (!HttpsURLConnection.getDefaultHostnameVerifier()
+                        .verify(host, sslSocket.getSession())) {
+                    throw new IOException("Server certificate does not match host: " + host);
+                }
+            }
+        }
+
+        private String readHandshakeResponse(final InputStream input) throws IOException {
+            final byte[] response = new byte[MAX_HANDSHAKE_RESPONSE_SIZE];
+            int length = 0;
+
+            while (length < 4
+                    || response[length - 4] != '\r'
+                    || response[length - 3] != '\n'
+                    || response[length - 2] != '\r'
+                    || response[length - 1] != '\n') {
+                if (length == response.length) {
+                    throw new IOException("Handshake response is too large.");
+                }
+
+                final int b = input.read();
+
+                if (b == -1) {
+                    throw new EOFException("Connection closed during the handshake.");
+                }
+
+                response[length++] = (byte) b;
+            }
+
+            return new String(response, 0, length, UTF_8);
+        }
+
+        private void verifyHandshakeResponse(final String response, final String key)
+                throws IOException {
+            final String[] lines = response.split("\r\n");
+            final String[] statusLine = lines[0].split(" ");
+
+            if (statusLine.length < 2 || !"101".equals(statusLine[1])) {
+                throw new IOException("Unexpected handshake response: " + lines[0]);
+            }
+
+            String accept = null;
+
+            for (int i = 1; i < lines.length; i++) {
+                final int separator = lines[i].indexOf(':');
+
+                final String name =
+                        separator > 0
+                                ? lines[i].substring(0, separator).trim().toLowerCase(Locale.US)
+                                : "";
+
+                if ("sec-websocket-accept".equals(name)) {
+                    accept = lines[i].substring(separator + 1).trim();
+                }
+            }
+
+            if (!acceptKey(key).equals(accept)) {
+                throw new IOException("Invalid Sec-WebSocket-Accept in handshake response.");
+            }
+        }
+
+        private void readFrames(final InputStream input) throws IOException, ProtocolException {
+            final byte[] header = new byte[8];
+
+            while (!aborted) {
+                final int b0 = input.read();
+
+                if (b0 == -1) {
+                    // The server went away without a closing handshake.
+                    closeSocket();
+                    reportClose(CLOSE_ABNORMAL, "", false);
+                    return;
+                }
+
+                readFully(input, header, 0, 1);
+                final boolean fin = (b0 & 0x80) != 0;
+                final int opcode = b0 & 0x0F;
+                final boolean masked = (header[0] & 0x80) != 0;
+                long length = header[0] & 0x7F;
+
+                if ((b0 & 0x70) != 0) {
+                    throw new ProtocolException(CLOSE_PROTOCOL_ERROR, "Unexpected RSV bits.");
+                }
+
+                if (masked) {
+                    throw new ProtocolException(CLOSE_PROTOCOL_ERROR, "Server frames are masked.");
+                }
+
+                if (length == 126) {
+                    readFully(input, header, 0, 2);
+                    length = ((header[0] & 0xFF) << 8) | (header[1] & 0xFF);
+                } else if (length == 127) {
+                    readFully(input, header, 0, 8);
+                    length = 0;
+
+                    for (int i = 0; i < 8; i++) {
+                        length = (length << 8) | (header[i] & 0xFF);
+                    }
+                }
+
+                if (opcode >= OPCODE_CLOSE) {
+                    if (!fin || length > 125) {
+                        throw new ProtocolException(
+                                CLOSE_PROTOCOL_ERROR, "Invalid control frame.");
+                    }
+
+                    final byte[] payload = new byte[(int) length];
+                    readFully(input, payload, 0, payload.length);
+
+                    if (handleControlFrame(opcode, payload)) {
+                        return;
+                    }
+
+                    continue;
+                }
+
+                if (opcode == OPCODE_CONTINUATION) {
+                    if (messageOpcode == -1) {
+                        throw new ProtocolException(
+                                CLOSE_PROTOCOL_ERROR, "Unexpected continuation frame.");
+                    }
+                } else if (opcode == OPCODE_TEXT || opcode == OPCODE_BINARY) {
+                    if (messageOpcode != -1) {
+                        throw new ProtocolException(
+                                CLOSE_PROTOCOL_ERROR, "Expected a continuation frame.");
+                    }
+
+                    messageOpcode = opcode;
+                    messageLength = 0;
+                } else {
+                    throw new ProtocolException(CLOSE_PROTOCOL_ERROR, "Unknown opcode " + opcode);
+                }
+
+                if (length < 0 || messageLength + length > MAX_MESSAGE_SIZE) {
+                    throw new ProtocolException(CLOSE_MESSAGE_TOO_BIG, "Message is too big.");
+                }
+
+                final int required = messageLength + (int) length;
+
+                if (required > message.length) {
+                    message = Arrays.copyOf(message, Math.max(required, message.length * 2));
+                }
+
+                readFully(input, message, messageLength, (int) length);
+                messageLength = required;
+
+                if (fin) {
+                    final String text = new String(message, 0, messageLength, UTF_8);
+                    messageOpcode = -1;
+                    messageLength = 0;
+
+                    if (message.length > 64 * 1024) {
+                        // Do not pin a large reassembly buffer for the rest of the connection.
+                        message = new byte[0];
+                    }
+
+                    if (PONG_MESSAGE.equals(text)) {
+                        listener.onPong();
+                    } else {
+                        listener.onMessage(text);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Handles a control frame.
+         *
+         * @return true if the connection is closed
+         */
+        private boolean handleControlFrame(final int opcode, final byte[] payload)
+                throws ProtocolException {
+            switch (opcode) {
+                case OPCODE_PING:
+                    writeFrame(OPCODE_PONG, payload, 0, payload.length);
+                    return false;
+
+                case OPCODE_PONG:
+                    return false;
+
+                case OPCODE_CLOSE:
+                    if (payload.length == 1) {
+                        throw new ProtocolException(CLOSE_PROTOCOL_ERROR, "Invalid close frame.");
+                    }
+
+                    final int code =
+                            payload.length >= 2
+                                    ? ((payload[0] & 0xFF) << 8) | (payload[1] & 0xFF)
+                                    : CLOSE_NO_STATUS;
+                    final String reason =
+                            payload.length > 2
+                                    ? new String(payload, 2, payload.length - 2, UTF_8)
+                                    : "";
+
+                    if (!closing) {
+                        // Echo the close frame to complete the closing handshake.
+                        closing = true;
+                        writeFrame(OPCODE_CLOSE, payload, 0, Math.min(payload.length, 2));
+                    }
+
+                    closeSocket();
+                    reportClose(code, reason, true);
+                    return true;
+
+                default:
+                    throw new ProtocolException(CLOSE_PROTOCOL_ERROR, "Unknown opcode " + opcode);
+            }
+        }
+
+        /**
+         * Writes a masked frame, accounting for it in {@link #getBufferedAmount()} until it is
+         * written. Safe to be invoked from any thread.
+         */
+        boolean writeFrame(
+                final int opcode, final byte[] payload, final int offset, final int length) {
+            final int headerLength = length < 126 ? 6 : length <= 0xFFFF ? 8 : 14;
+            final long frameLength = headerLength + (long) length;
+            unwrittenFrames.incrementAndGet();
+
+            if (unwrittenBytes.addAndGet(frameLength) >= HIGH_WATER_MARK) {
+                highWaterMarkReached.set(true);
+            }
+
+            try {
+                return writeMaskedFrame(opcode, payload, offset, length, headerLength);
+            } finally {
+                unwrittenFrames.decrementAndGet();
+                final long bufferedAmount = unwrittenBytes.addAndGet(-frameLength);
+
+                if (bufferedAmount <= LOW_WATER_MARK
+                        && highWaterMarkReached.compareAndSet(true, false)) {
+                    listener.onBufferedAmountChanged(bufferedAmount);
+                }
+            }
+        }
+
+        private boolean writeMaskedFrame(
+                final int opcode,
+                final byte[] payload,
+                final int offset,
+                final int length,
+                final int headerLength) {
+            synchronized (writeLock) {
+                final OutputStream out = output;
+
+                if (out == null || aborted) {
+                    return false;
+                }
+
+                if (writeBuffer == null) {
+                    writeBuffer = frameBufferPool.acquire();
+                }
+
+                // Frames beyond the size of the socket data limit are rare, so they do not keep a
+                // larger buffer around.
+                final byte[] frame =
+                        writeBuffer.length < headerLength + length
+                                ? new byte[headerLength + length]
+                                : writeBuffer;
+                int position = 0;
+                frame[position++] = (byte) (0x80 | opcode);
+
+                if (length < 126) {
+                    frame[position++] = (byte) (0x80 | length);
+                } else if (length <= 0xFFFF) {
+                    frame[position++] = (byte) (0x80 | 126);
+                    frame[position++] = (byte) (length >> 8);
+                    frame[position++] = (byte) length;
+                } else {
+                    frame[position++] = (byte) (0x80 | 127);
+
+                    for (int shift = 56; shift >= 0; shift -= 8) {
+                        frame[position++] = (byte) ((long) length >> shift);
+                    }
+                }
+
+                final int maskOffset = position;
+                final int mask = random.nextInt();
+                frame[position++] = (byte) (mask >> 24);
+                frame[position++] = (byte) (mask >> 16);
+                frame[position++] = (byte) (mask >> 8);
+                frame[position++] = (byte) mask;
+
+                for (int i = 0; i < length; i++) {
+                    frame[position++] = (byte) (payload[offset + i] ^ frame[maskOffset + (i & 3)]);
+                }
+
+                try {
+                    out.write(frame, 0, position);
+                    out.flush();
+                    return true;
+                } catch (final IOException e) {
+                    Log.debug(
+                            Assurance.LOG_TAG,
+                            LOG_TAG,
+                            "Unable to write WebSocket frame: %s",
+                            e.getLocalizedMessage());
+                    // The reader thread notices the broken connection and reports it.
+                    closeSocket();
+                    return false;
+                }
+            }
+        }
+
+        /** Starts the closing handshake. Invoked on the control thread. */
+        void close(final int code, final String reason) {
+            if (closing || aborted) {
+                return;
+            }
+
+            closing = true;
+
+            if (!open) {
+                // Still connecting. There is no handshake to perform.
+                closeSocket();
+                reportClose(code, reason, false);
+                return;
+            }
+
+            final byte[] reasonBytes = reason == null ? new byte[0] : reason.getBytes(UTF_8);
+            final byte[] payload = new byte[2 + Math.min(reasonBytes.length, 123)];
+            payload[0] = (byte) (code >> 8);
+            payload[1] = (byte) code;
+            System.arraycopy(reasonBytes, 0, payload, 2, payload.length - 2);
+            writeFrame(OPCODE_CLOSE, payload, 0, payload.length);
+
+            controlExecutor.schedule(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            // The server did not answer. The reader thread reports the close.
+                            closeSocket();
+                        }
+                    },
+                    CLOSE_TIMEOUT_MILLIS,
+                    TimeUnit.MILLISECONDS);
+        }
+
+        /** Drops the connection without reporting anything, as it was replaced. */
+        void abort() {
+            aborted = true;
+            closeSocket();
+        }
+
+        private void fail(final Exception error, final int closeCode) {
+            if (aborted) {
+                closeSocket();
+                return;
+            }
+
+            if (closing && !(error instanceof ProtocolException)) {
+                // The socket was dropped after the close frame went unanswered.
+                closeSocket();
+                reportClose(CLOSE_ABNORMAL, "", false);
+                return;
+            }
+
+            Log.debug(
+                    Assurance.LOG_TAG,
+                    LOG_TAG,
+                    "WebSocket connection failed: %s",
+                    error.getLocalizedMessage());
+
+            if (open && closeCode != CLOSE_ABNORMAL && !closing) {
+                // Let the server know why the connection is failed, on a best effort basis.
+                closing = true;
+                final byte[] payload = {(byte) (closeCode >> 8), (byte) closeCode};
+                writeFrame(OPCODE_CLOSE, payload, 0, payload.length);
+            }
+
+            closeSocket();
+
+            if (!closeReported.get()) {
+                listener.onError(error);
+            }
+
+            reportClose(CLOSE_ABNORMAL, "", false);
+        }
+
+        private void reportClose(final int code, final String reason, final boolean wasClean) {
+            open = false;
+
+            if (connection == this) {
+                connection = null;
+
+                // Hand the write buffer back to the pool while there is no connection to write to.
+                synchronized (writeLock) {
+                    frameBufferPool.release(writeBuffer);
+                    writeBuffer = null;
+                }
+            }
+
+            if (!aborted && closeReported.compareAndSet(false, true)) {
+                listener.onClose(code, reason, wasClean);
+            }
+        }
+
+        void closeSocket() {
+            final Socket current = socket;
+
+            if (current == null) {
+                return;
+            }
+
+            try {
+                current.close();
+            } catch (final IOException e) {
+                Log.trace(
+                        Assurance.LOG_TAG,
+                        LOG_TAG,
+                        "Error closing socket: %s",
+                        e.getLocalizedMessage());
+            }
+        }
+
+        private void readFully(
+                final InputStream input, final byte[] buffer, final int offset, final int length)
+                throws IOException {
+            int read = 0;
+
+            while (read < length) {
+                final int count = input.read(buffer, offset + read, length - read);
+
+                if (count == -1) {
+                    throw new EOFException("Connection closed mid frame.");
+                }
+
+                read += count;
+            }
+        }
+    }
+
+    /** A violation of the WebSocket protocol by the server. */
+    private static final class ProtocolException extends Exception {
+        final int closeCode;
+
+        ProtocolException(final int closeCode, final String message) {
+            super(message);
+            this.closeCode = closeCode;
+        }
+    }
+}
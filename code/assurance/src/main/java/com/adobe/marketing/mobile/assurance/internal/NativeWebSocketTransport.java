@@ -0,0 +1,273 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import com.adobe.marketing.mobile.Assurance;
+import com.adobe.marketing.mobile.services.Log;
+
+/**
+ * The {@link AssuranceTransport} connecting to the Assurance server over a {@link
+ * NativeWebSocket}, which keeps the WebView and the main thread out of the data path. Reports to
+ * the same {@link AssuranceWebViewSocketHandler} and sends the same Base64 text frames as {@link
+ * AssuranceWebViewSocket}, and binary frames when they are negotiated. The connection is kept alive
+ * and checked by a {@link SocketHeartbeat}.
+ *
+ * <p>Frames are written on the sending thread, which blocks while the network is slow, so a single
+ * sender is held back by the socket itself. Its water marks only come into play when frames from
+ * several threads wait behind one another.
+ */
+final class NativeWebSocketTransport implements AssuranceTransport {
+    private static final String LOG_TAG = "NativeWebSocketTransport";
+
+    private final AssuranceWebViewSocketHandler handler;
+
+    /** Buffers that outbound text frames are Base64 encoded into. */
+    private final FrameBufferPool frameBufferPool;
+
+    private final NativeWebSocket nativeSocket;
+    private final SocketHeartbeat heartbeat = new SocketHeartbeat(new HeartbeatTransport());
+
+    private volatile SocketReadyState state;
+    private volatile String connectionURL;
+
+    /**
+     * Creates a transport that is not connected yet.
+     *
+     * @param handler the {@link AssuranceWebViewSocketHandler} notified of the transport events
+     * @param frameBufferPool the buffers that outbound frames are encoded and written from
+     */
+    NativeWebSocketTransport(
+            final AssuranceWebViewSocketHandler handler, final FrameBufferPool frameBufferPool) {
+        this.handler = handler;
+        this.frameBufferPool = frameBufferPool;
+        this.nativeSocket = new NativeWebSocket(new NativeSocketListener(), frameBufferPool);
+        setState(SocketReadyState.UNKNOWN);
+    }
+
+    @Override
+    public void connect(final String url) {
+        if (!AssuranceUtil.isSafe(url)) {
+            Log.warning(
+                    Assurance.LOG_TAG, LOG_TAG, "URL is malformed, will not attempt to connect.");
+            return;
+        }
+
+        setState(SocketReadyState.CONNECTING);
+        connectionURL = url;
+        nativeSocket.connect(url);
+    }
+
+    @Override
+    public void disconnect() {
+        setState(SocketReadyState.CLOSING);
+        heartbeat.stop();
+        nativeSocket.close(NativeWebSocket.CLOSE_NORMAL, "");
+        connectionURL = null;
+    }
+
+    @Override
+    public void sendData(final byte[] data) {
+        sendData(data, 0, data.length);
+    }
+
+    /**
+     * Sends {@code length} bytes of {@code data} starting at {@code offset} as a Base64 encoded
+     * text frame. The bytes are encoded into a pooled buffer and written from there, so {@code
+     * data} may be reused once this method returns.
+     *
+     * @param data the buffer holding the frame
+     * @param offset offset of the frame in {@code data}
+     * @param length length of the frame
+     */
+    @Override
+    public void sendData(final byte[] data, final int offset, final int length) {
+        final int encodedLength = FrameBufferPool.base64Length(length);
+
+        if (encodedLength > MAX_DATA_LENGTH) {
+            Log.warning(
+                    Assurance.LOG_TAG,
+                    LOG_TAG,
+                    "Unable to send data packet, payload was "
+                            + encodedLength
+                            + " bytes, maximum is "
+                            + MAX_DATA_LENGTH
+                            + ".");
+            return;
+        }
+
+        final byte[] buffer = frameBufferPool.acquire();
+        heartbeat.onDataSent();
+
+        try {
+            FrameBufferPool.encodeBase64(data, offset, length, buffer);
+            nativeSocket.sendText(buffer, 0, encodedLength);
+        } finally {
+            frameBufferPool.release(buffer);
+        }
+    }
+
+    @Override
+    public boolean supportsBinaryFrames() {
+        return true;
+    }
+
+    /**
+     * Sends {@code length} bytes of {@code data} starting at {@code offset} as a binary frame,
+     * without Base64 encoding them.
+     *
+     * @param data the buffer holding the frame, which may be reused once this method returns
+     * @param offset offset of the frame in {@code data}
+     * @param length length of the frame, at most {@link #MAX_DATA_LENGTH}
+     */
+    @Override
+    public void sendBinaryData(final byte[] data, final int offset, final int length) {
+        if (length > MAX_DATA_LENGTH) {
+            Log.warning(
+                    Assurance.LOG_TAG,
+                    LOG_TAG,
+                    "Unable to send binary data packet, payload was "
+                            + length
+                            + " bytes, maximum is "
+                            + MAX_DATA_LENGTH
+                            + ".");
+            return;
+        }
+
+        heartbeat.onDataSent();
+        nativeSocket.sendBinary(data, offset, length);
+    }
+
+    @Override
+    public long getRoundTripTimeMillis() {
+        return heartbeat.getRoundTripTimeMillis();
+    }
+
+    /**
+     * Returns the number of bytes handed to this transport that have not been written yet, that is
+     * the frames waiting for another thread to finish writing along with the frame being written
+     * (see {@link NativeWebSocket#getBufferedAmount()}).
+     *
+     * @return the number of buffered bytes, which {@link AssuranceWebViewSocketHandler} is
+     *     notified of when it drains to the low water mark
+     */
+    @Override
+    public long getBufferedAmount() {
+        return nativeSocket.getBufferedAmount();
+    }
+
+    @Override
+    public int getBufferedFrameCount() {
+        return nativeSocket.getBufferedFrameCount();
+    }
+
+    @Override
+    public long getBufferedAmountHighWaterMark() {
+        return NativeWebSocket.HIGH_WATER_MARK;
+    }
+
+    @Override
+    public long getBufferedAmountLowWaterMark() {
+        return NativeWebSocket.LOW_WATER_MARK;
+    }
+
+    @Override
+    public String getConnectionURL() {
+        return connectionURL;
+    }
+
+    @Override
+    public SocketReadyState getState() {
+        return state;
+    }
+
+    private void setState(final SocketReadyState newState) {
+        this.state = newState;
+
+        if (handler != null) {
+            handler.onSocketStateChange(this, newState);
+        }
+    }
+
+    /** Forwards the events of the {@link #nativeSocket} to the {@link #handler}. */
+    private final class NativeSocketListener implements NativeWebSocket.Listener {
+        @Override
+        public void onOpen() {
+            setState(SocketReadyState.OPEN);
+            heartbeat.start();
+
+            if (handler != null) {
+                handler.onSocketConnected(NativeWebSocketTransport.this);
+            }
+        }
+
+        @Override
+        public void onMessage(final String message) {
+            heartbeat.onDataReceived();
+
+            if (handler != null) {
+                handler.onSocketDataReceived(NativeWebSocketTransport.this, message);
+            }
+        }
+
+        @Override
+        public void onPong() {
+            heartbeat.onPong();
+        }
+
+        @Override
+        public void onClose(final int code, final String reason, final boolean wasClean) {
+            setState(SocketReadyState.CLOSED);
+            heartbeat.stop();
+
+            if (handler != null) {
+                handler.onSocketDisconnected(
+                        NativeWebSocketTransport.this, reason, code, wasClean);
+            }
+        }
+
+        @Override
+        public void onError(final Exception error) {
+            setState(SocketReadyState.CLOSED);
+            heartbeat.stop();
+
+            if (handler != null) {
+                handler.onSocketError(NativeWebSocketTransport.this);
+            }
+        }
+
+        @Override
+        public void onBufferedAmountChanged(final long bufferedAmount) {
+            if (handler != null) {
+                handler.onSocketBufferedAmountChanged(
+                        NativeWebSocketTransport.this, bufferedAmount);
+            }
+        }
+    }
+
+    /** Pings the server over the {@link #nativeSocket}. */
+    private final class HeartbeatTransport implements SocketHeartbeat.Transport {
+        @Override
+        public void sendPing() {
+            nativeSocket.sendPing();
+        }
+
+        @Override
+        public void onConnectionDead(final int missedPongs) {
+            Log.warning(
+                    Assurance.LOG_TAG,
+                    LOG_TAG,
+                    "Socket did not answer %d pings, dropping the connection.",
+                    missedPongs);
+            nativeSocket.drop();
+        }
+    }
+}
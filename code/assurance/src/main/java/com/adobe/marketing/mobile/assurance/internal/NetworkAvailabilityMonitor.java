@@ -0,0 +1,118 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import com.adobe.marketing.mobile.Assurance;
+import com.adobe.marketing.mobile.services.Log;
+
+/**
+ * Notifies when a network with internet access becomes available, so that a lost connection can be
+ * retried right away instead of after its backoff delay. Monitoring requires the {@code
+ * ACCESS_NETWORK_STATE} permission, which Assurance does not request itself; without it, this
+ * monitor does nothing.
+ */
+final class NetworkAvailabilityMonitor {
+    private static final String LOG_TAG = "NetworkAvailabilityMonitor";
+
+    /** Receives the network availability notifications. */
+    interface Listener {
+        /** Invoked on a background thread when a network with internet access is available. */
+        void onNetworkAvailable();
+    }
+
+    private final Listener listener;
+    private ConnectivityManager connectivityManager;
+    private ConnectivityManager.NetworkCallback networkCallback;
+
+    NetworkAvailabilityMonitor(final Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts monitoring the networks. The network already available when monitoring starts is
+     * reported as well.
+     *
+     * @param context the application context, or null if it is unavailable
+     */
+    synchronized void start(final Context context) {
+        if (networkCallback != null || context == null) {
+            return;
+        }
+
+        if (context.checkCallingOrSelfPermission(Manifest.permission.ACCESS_NETWORK_STATE)
+                != PackageManager.PERMISSION_GRANTED) {
+            Log.debug(
+                    Assurance.LOG_TAG,
+                    LOG_TAG,
+                    "Network state permission is not granted, reconnects follow their backoff.");
+            return;
+        }
+
+        final ConnectivityManager manager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+
+        if (manager == null) {
+            return;
+        }
+
+        final ConnectivityManager.NetworkCallback callback =
+                new ConnectivityManager.NetworkCallback() {
+                    @Override
+                    public void onAvailable(final Network network) {
+                        listener.onNetworkAvailable();
+                    }
+                };
+
+        try {
+            manager.registerNetworkCallback(
+                    new NetworkRequest.Builder()
+                            .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                            .build(),
+                    callback);
+            connectivityManager = manager;
+            networkCallback = callback;
+        } catch (final RuntimeException e) {
+            Log.debug(
+                    Assurance.LOG_TAG,
+                    LOG_TAG,
+                    "Unable to monitor the network: %s",
+                    e.getLocalizedMessage());
+        }
+    }
+
+    /** Stops monitoring the networks. */
+    synchronized void stop() {
+        if (networkCallback == null) {
+            return;
+        }
+
+        try {
+            connectivityManager.unregisterNetworkCallback(networkCallback);
+        } catch (final RuntimeException e) {
+            Log.trace(
+                    Assurance.LOG_TAG,
+                    LOG_TAG,
+                    "Unable to stop monitoring the network: %s",
+                    e.getLocalizedMessage());
+        }
+
+        connectivityManager = null;
+        networkCallback = null;
+    }
+}
@@ -11,27 +11,32 @@
 
 package com.adobe.marketing.mobile.assurance.internal;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import androidx.annotation.VisibleForTesting;
 import com.adobe.marketing.mobile.Assurance;
 import com.adobe.marketing.mobile.services.Log;
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.nio.charset.Charset;
-import java.nio.charset.UnsupportedCharsetException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import org.json.JSONObject;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An {@link EventQueueWorker} that is responsible for sending {@link AssuranceEvent}'s to the
- * server over {@link AssuranceWebViewSocket}. Additionally, allows components controlling this
+ * server over an {@link AssuranceTransport}. Additionally, allows components controlling this
  * class to pause and resume processing (event forwarding). Note that the queue processing is paused
  * by default until controlling component invokes {@link #unblock()}.
+ *
+ * <p>Queued events are scheduled by an {@link OutboundTrafficScheduler}, so that interactive
+ * traffic such as control replies and blobs is sent ahead of bulk generic and log events.
  */
 class OutboundEventQueueWorker extends EventQueueWorker<AssuranceEvent> {
     private static final String LOG_TAG = "OutboundEventQueueWorker";
@@ -40,63 +45,123 @@ class OutboundEventQueueWorker extends EventQueueWorker<AssuranceEvent> {
      * Maximum number of bytes beyond which the {@code OutboundEventQueueWorker} fails to send data
      * over the socket.
      *
-     * <p>Note that the data sent over {@link AssuranceWebViewSocket} is Base64 encoded. So the
-     * limit for an event in Base64 terms is (UTF8_EVENT_SIZE_BYTES * 3)/4
+     * <p>Note that the data sent over {@link AssuranceTransport} is Base64 encoded. So the limit
+     * for an event in Base64 terms is (UTF8_EVENT_SIZE_BYTES * 3)/4
      */
     @VisibleForTesting
     static final int MAX_EVENT_SIZE =
-            (int) Math.floor((AssuranceWebViewSocket.MAX_DATA_LENGTH * 3) / 4.0);
+            (int) Math.floor((AssuranceTransport.MAX_DATA_LENGTH * 3) / 4.0);
 
     /**
-     * Maximum number of bytes that the payload of the chunked AssuranceEvent can be comprised of,
-     * to be processed by {@code OutboundEventQueueWorker}. This is inferred by doing the following
-     * :
-     *
-     * <ol>
-     *   <li>allot a default ceiling size of 2KB for the metadata associated with the {@code
-     *       AssuranceEvent}
-     *   <li/>
-     *   <li>subtract above from {@code AssuranceWebViewSocket.MAX_DATA_LENGTH} that can be
-     *       transported by the {@link AssuranceWebViewSocket}
-     *   <li/>
-     *   <li>reduce the remaining by half to accommodate JSON escaping with reconstruction
-     *   <li/>
-     *   <li>Since the data sent over {@code AssuranceWebViewSocket} is Base64 encoded, the limit
-     *       for an event in Base64 terms is (UTF8_PAYLOAD_SIZE_BYTES) * (3/4)
-     *   <li/>
-     *       <ol/>
+     * Maximum number of bytes of an event sent as a binary frame, when binary frames have been
+     * negotiated with the server. Binary frames are not Base64 encoded, so the whole {@code
+     * AssuranceTransport.MAX_DATA_LENGTH} is available to the event.
      */
     @VisibleForTesting
-    static final int MAX_PAYLOAD_CHUNK_SIZE = (int) Math.floor((15 * 1024 * 3) / 4.0);
+    static final int MAX_BINARY_EVENT_SIZE = AssuranceTransport.MAX_DATA_LENGTH;
+
+    /**
+     * Maximum time in milliseconds the worker waits for more events to join a batch after taking
+     * the first one, when batching has been negotiated with the server.
+     */
+    @VisibleForTesting static final long BATCH_LINGER_MILLIS = 20;
+
+    /**
+     * Minimum size in bytes of a frame to be considered for compression, when compression has been
+     * negotiated with the server. Smaller frames do not gain enough to be worth the effort.
+     */
+    @VisibleForTesting static final int MIN_COMPRESSIBLE_FRAME_SIZE = 512;
+
+    /**
+     * Largest ratio of an oversized event to the frame limit for which the whole event is
+     * compressed in the hope that it fits a single frame. Verbose JSON rarely deflates by more,
+     * so larger events go straight to chunking, where each chunk is compressed on its own.
+     */
+    @VisibleForTesting static final int MAX_TRIAL_COMPRESSION_RATIO = 8;
 
-    private final AssuranceWebViewSocket socket;
+    /**
+     * Number of bytes a chunked event may send per round-robin turn. Large enough for at least one
+     * chunk per turn, in either framing.
+     */
+    @VisibleForTesting static final int CHUNK_STREAM_QUANTUM = MAX_BINARY_EVENT_SIZE;
+
+    private final AssuranceTransport socket;
     private final AssuranceClientInfo clientInfo;
     private final OutboundEventChunker outboundEventChunker;
+
+    /** Chunker for events sent as binary frames, which may be larger than text frames. */
+    private final OutboundEventChunker binaryFrameChunker;
+
+    /** Accounts for the events held by the work queue. */
+    private final AssuranceMemoryGovernor memoryGovernor;
+
+    /** The work queue, which schedules events by traffic class in production. */
+    private final WorkQueue<AssuranceEvent> outboundQueue;
+
+    /**
+     * Reusable encoder for serializing outbound events. Guarded by itself because the client info
+     * event may be sent from a thread other than the worker thread.
+     */
+    private final AssuranceEventEncoder eventEncoder = new AssuranceEventEncoder();
+
+    /** Reusable encoder for chunk frames. Guarded by {@link #eventEncoder}. */
+    private final AssuranceEventEncoder chunkEncoder = new AssuranceEventEncoder();
+
+    /** Accumulates the batch frame. Only accessed from the worker thread. */
+    private final AssuranceEventEncoder batchEncoder = new AssuranceEventEncoder();
+
+    /** Number of events in {@link #batchEncoder}. Only accessed from the worker thread. */
+    private int batchedEventCount;
+
+    /** Reusable compressor for outbound frames. Guarded by {@link #eventEncoder}. */
+    private final FrameCompressor frameCompressor = new FrameCompressor();
+
+    /**
+     * Chunked events that are being sent in turns with each other and with the queued events, in
+     * round-robin order. The payload copy held by each stream is reserved under {@link
+     * AssuranceMemoryGovernor.Buffer#OUTBOUND_QUEUE} until its last chunk is sent. Guarded by
+     * {@link #eventEncoder}.
+     */
+    private final ArrayDeque<ChunkStream> chunkStreams = new ArrayDeque<>();
+
     private volatile boolean canStartForwarding;
+    private volatile boolean batchingEnabled;
+    private volatile boolean compressionEnabled;
+    private volatile boolean binaryFramesEnabled;
+
+    /** Whether sending is paused until the transport drains to the low water mark. */
+    private volatile boolean transportCongested;
 
     OutboundEventQueueWorker(
             final ExecutorService executorService,
-            final AssuranceWebViewSocket socket,
+            final AssuranceTransport socket,
             final AssuranceClientInfo clientInfo) {
         this(
                 executorService,
                 socket,
                 clientInfo,
-                new LinkedBlockingQueue<AssuranceEvent>(),
-                new OutboundEventChunker(MAX_PAYLOAD_CHUNK_SIZE));
+                new OutboundTrafficScheduler(),
+                OutboundEventChunker.fittingFrames(MAX_EVENT_SIZE),
+                DEFAULT_IDLE_TIMEOUT_MILLIS,
+                AssuranceComponentRegistry.memoryGovernor);
     }
 
     @VisibleForTesting
     OutboundEventQueueWorker(
             final ExecutorService executorService,
-            final AssuranceWebViewSocket socket,
+            final AssuranceTransport socket,
             final AssuranceClientInfo clientInfo,
-            final LinkedBlockingQueue<AssuranceEvent> queue,
-            final OutboundEventChunker outboundEventChunker) {
-        super(executorService, queue);
+            final WorkQueue<AssuranceEvent> queue,
+            final OutboundEventChunker outboundEventChunker,
+            final long idleTimeoutMillis,
+            final AssuranceMemoryGovernor memoryGovernor) {
+        super(executorService, queue, idleTimeoutMillis);
         this.socket = socket;
         this.clientInfo = clientInfo;
         this.outboundEventChunker = outboundEventChunker;
+        this.binaryFrameChunker = outboundEventChunker.withFrameLimit(MAX_BINARY_EVENT_SIZE);
+        this.memoryGovernor = memoryGovernor;
+        this.outboundQueue = queue;
         canStartForwarding = false;
     }
 
@@ -113,12 +178,135 @@ class OutboundEventQueueWorker extends EventQueueWorker<AssuranceEvent> {
         // the socket is connected.
         return canStartForwarding
                 && !(socket == null
-                        || socket.getState() != AssuranceWebViewSocket.SocketReadyState.OPEN);
+                        || socket.getState() != AssuranceTransport.SocketReadyState.OPEN)
+                && !isTransportCongested();
+    }
+
+    /**
+     * Applies the high and low water marks of the socket transport (see {@link
+     * AssuranceTransport#getBufferedAmountHighWaterMark()}) to the amount of data it buffers, so
+     * that a slow network holds events back in the bounded work queue rather than in the
+     * transport.
+     *
+     * @return true if sending should pause until the transport drains
+     */
+    private boolean isTransportCongested() {
+        final long highWaterMark = socket.getBufferedAmountHighWaterMark();
+
+        if (highWaterMark <= 0) {
+            return false;
+        }
+
+        final long bufferedAmount = socket.getBufferedAmount();
+
+        if (bufferedAmount >= highWaterMark) {
+            if (!transportCongested) {
+                transportCongested = true;
+                Log.debug(
+                        Assurance.LOG_TAG,
+                        LOG_TAG,
+                        "Socket transport is congested with %d bytes in %d frames, pausing.",
+                        bufferedAmount,
+                        socket.getBufferedFrameCount());
+            }
+        } else if (bufferedAmount <= socket.getBufferedAmountLowWaterMark()) {
+            transportCongested = false;
+        }
+
+        return transportCongested;
+    }
+
+    /**
+     * Resumes sending once the socket transport drained to its low water mark, if sending was
+     * paused because the transport reached its high water mark.
+     *
+     * @param bufferedAmount the number of bytes currently buffered by the socket transport
+     */
+    void onTransportBufferedAmountChanged(final long bufferedAmount) {
+        if (transportCongested && bufferedAmount <= socket.getBufferedAmountLowWaterMark()) {
+            transportCongested = false;
+            Log.debug(Assurance.LOG_TAG, LOG_TAG, "Socket transport drained, resuming.");
+            resume();
+        }
     }
 
+    /**
+     * Enqueues {@code event} after reserving its estimated size with the {@link
+     * AssuranceMemoryGovernor}. If the budget is exhausted, queued events are evicted to make room
+     * for it, oldest first from the least important traffic class (see {@link
+     * OutboundTrafficScheduler#evict()}); under {@link
+     * AssuranceMemoryGovernor.OverflowPolicy#DROP_LOW_PRIORITY} a low priority {@code event} is
+     * dropped instead.
+     *
+     * @param event the {@link AssuranceEvent} to be sent
+     * @return true if the event was queued; false if it was dropped
+     */
     @Override
-    protected void doWork(AssuranceEvent assuranceEvent) {
-        sendEventToSocket(assuranceEvent);
+    boolean offer(final AssuranceEvent event) {
+        final int eventSize = event.getEstimatedSize();
+        final boolean yieldsToQueued =
+                memoryGovernor.getOverflowPolicy()
+                                == AssuranceMemoryGovernor.OverflowPolicy.DROP_LOW_PRIORITY
+                        && AssuranceMemoryGovernor.isLowPriority(event);
+
+        while (!memoryGovernor.reserve(AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE, eventSize)) {
+            final AssuranceEvent evicted = yieldsToQueued ? null : evict();
+
+            if (evicted == null) {
+                // Either the event yields to the queued ones or the budget is held by other
+                // buffers. Drop the event itself.
+                memoryGovernor.recordDrop(
+                        AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE, eventSize);
+                return false;
+            }
+
+            releaseQueued(evicted);
+            memoryGovernor.recordDrop(
+                    AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE, evicted.getEstimatedSize());
+        }
+
+        if (!super.offer(event)) {
+            memoryGovernor.release(AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE, eventSize);
+            memoryGovernor.recordDrop(AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE, eventSize);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the bytes reserved for an event that was taken off the work queue to the {@link
+     * AssuranceMemoryGovernor}.
+     */
+    private void releaseQueued(final AssuranceEvent event) {
+        memoryGovernor.release(
+                AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE, event.getEstimatedSize());
+    }
+
+    @Override
+    protected void doWork(AssuranceEvent assuranceEvent) throws InterruptedException {
+        releaseQueued(assuranceEvent);
+
+        if (batchingEnabled) {
+            sendBatch(assuranceEvent);
+        } else {
+            sendEventToSocket(assuranceEvent, true);
+        }
+
+        // Give the chunked events their turn before the next queued event.
+        sendChunkStreamsRound();
+    }
+
+    @Override
+    protected boolean doPendingWork() {
+        return sendChunkStreamsRound();
+    }
+
+    @Override
+    protected boolean hasPendingWork() {
+        synchronized (eventEncoder) {
+            return !chunkStreams.isEmpty();
+        }
     }
 
     /** Pauses any further events being sent by blocking queue processing. */
@@ -132,6 +320,27 @@ class OutboundEventQueueWorker extends EventQueueWorker<AssuranceEvent> {
         resume();
     }
 
+    /**
+     * Applies the transport capabilities acknowledged by the server for the current connection.
+     * Must be invoked before {@link #unblock()} for the capabilities to apply to the events queued
+     * while the worker was blocked.
+     *
+     * @param capabilities the capabilities acknowledged by the server
+     */
+    void setAcknowledgedCapabilities(final Set<String> capabilities) {
+        batchingEnabled =
+                capabilities != null
+                        && capabilities.contains(AssuranceConstants.TransportCapability.BATCH);
+        compressionEnabled =
+                capabilities != null
+                        && capabilities.contains(AssuranceConstants.TransportCapability.DEFLATE);
+        binaryFramesEnabled =
+                capabilities != null
+                        && capabilities.contains(AssuranceConstants.TransportCapability.BINARY)
+                        && socket != null
+                        && socket.supportsBinaryFrames();
+    }
+
     /**
      * Creates and sends the clientInfo event to Assurance only if the the worker is blocked.
      * Invocation will be a no-op if the worker is already unblocked to prevent unnecessary client
@@ -151,83 +360,399 @@ class OutboundEventQueueWorker extends EventQueueWorker<AssuranceEvent> {
             return;
         }
 
+        // Capabilities are negotiated per connection, starting with this event.
+        batchingEnabled = false;
+        compressionEnabled = false;
+        binaryFramesEnabled = false;
         Log.debug(Assurance.LOG_TAG, LOG_TAG, "Sending client info event to Assurance");
         final AssuranceEvent clientInfoEvent =
                 new AssuranceEvent(
                         AssuranceConstants.AssuranceEventType.CLIENT, clientInfo.getData());
-        sendEventToSocket(clientInfoEvent);
+
+        synchronized (eventEncoder) {
+            // Chunks sent on a previous connection cannot be stitched with the ones sent on this
+            // one. Send the chunked events in progress again from their first chunk, sized for
+            // text frames until the server acknowledges binary frames again.
+            for (final ChunkStream stream : chunkStreams) {
+                stream.restart(outboundEventChunker);
+            }
+
+            // The client info event must be sent in full before any other event.
+            sendEventToSocket(clientInfoEvent, false);
+        }
     }
 
     /**
      * Sends the provided {@link AssuranceEvent} to Assurance via the connected socket connection.
      *
      * @param event the {@link AssuranceEvent} the needs to be sent.
+     * @param interleaveChunks whether the chunks of {@code event} (if it needs chunking) should be
+     *     sent in turns with other events instead of all at once
      */
-    private void sendEventToSocket(final AssuranceEvent event) {
+    private void sendEventToSocket(final AssuranceEvent event, final boolean interleaveChunks) {
         if (event == null) {
             Log.error(Assurance.LOG_TAG, LOG_TAG, "Cannot send null event.");
             return;
         }
 
-        try {
-            final byte[] eventData =
-                    event.getJSONRepresentation().getBytes(Charset.forName("UTF-8"));
-
-            // Check if the AssuranceEvent is within transportable limits, if not, perform chunking
-            // and resend resulting chunks.
-            if (eventData.length < MAX_EVENT_SIZE) {
-                socket.sendData(eventData);
-            } else {
-                if (event.getPayload() == null) {
-                    // The payload is null and the event size exceeds MAX_EVENT_SIZE. This implies
-                    // that
-                    // the metadata is contributing to the event size increase. Metadata currently
-                    // is data about
-                    // chunks. It follows that metadata cannot be chunked. The current logic assumes
-                    // that
-                    // metadata is always within a sane limit (as it is being added internally) and
-                    // any event
-                    // with a large metadata cannot be handled currently. So, discard this event.
-                    // When Assurance event is publicly instantiable, this assumption about metadata
-                    // does not hold.
-                    // If such a case arises, then the AssuranceEvent creation MUST handle
-                    // restricting the size
-                    // of metadata accordingly.
-                    Log.warning(
-                            Assurance.LOG_TAG,
-                            LOG_TAG,
-                            "Cannot send eventId: %s that exceeds permitted limit"
-                                    + "but has an empty payload!",
-                            event.eventID);
-                    return;
-                }
+        synchronized (eventEncoder) {
+            sendEncodedEvent(event, eventEncoder.encode(event), interleaveChunks);
+        }
+    }
 
-                final List<AssuranceEvent> chunkedEvents = outboundEventChunker.chunk(event);
+    /**
+     * Drains {@code firstEvent} and any events queued within {@link #BATCH_LINGER_MILLIS} into as
+     * few frames as possible. A batch frame is a JSON array of events that stays below the frame
+     * limit. Events that need chunking are sent on their own after flushing the events
+     * batched before them, preserving the order of events.
+     *
+     * @param firstEvent the event that starts the batch
+     * @throws InterruptedException if interrupted while waiting for more events
+     */
+    private void sendBatch(final AssuranceEvent firstEvent) throws InterruptedException {
+        final long lingerDeadline =
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BATCH_LINGER_MILLIS);
+        AssuranceEvent event = firstEvent;
 
-                for (final AssuranceEvent chunkedEvent : chunkedEvents) {
-                    socket.sendData(
-                            chunkedEvent
-                                    .getJSONRepresentation()
-                                    .getBytes(Charset.forName("UTF-8")));
-                }
+        while (event != null) {
+            addToBatch(event);
+
+            if (!canWork()) {
+                break;
+            }
+
+            event =
+                    pollWork(
+                            Math.max(0, lingerDeadline - System.nanoTime()),
+                            TimeUnit.NANOSECONDS);
+
+            if (event != null) {
+                releaseQueued(event);
             }
-        } catch (final UnsupportedCharsetException ex) {
-            // This can be thrown by Charset.forName(*). However, it is unlikely to reach here
-            // as we hardcode the charset name to UTF-8.
-            Log.error(
+        }
+
+        synchronized (eventEncoder) {
+            flushBatch();
+        }
+    }
+
+    private void addToBatch(final AssuranceEvent event) {
+        if (event == null) {
+            Log.error(Assurance.LOG_TAG, LOG_TAG, "Cannot send null event.");
+            return;
+        }
+
+        synchronized (eventEncoder) {
+            final int eventSize = eventEncoder.encode(event);
+            final int maxEventSize = maxEventSize();
+
+            if (eventSize >= maxEventSize) {
+                flushBatch();
+                sendEncodedEvent(event, eventSize, true);
+                return;
+            }
+
+            // Account for the separator preceding the event and the closing bracket.
+            if (batchEncoder.size() + eventSize + 2 >= maxEventSize) {
+                flushBatch();
+            }
+
+            batchEncoder.writeByte(batchedEventCount == 0 ? '[' : ',');
+            batchEncoder.writeRaw(eventEncoder.getBuffer(), 0, eventSize);
+            batchedEventCount++;
+        }
+    }
+
+    /**
+     * Sends the events accumulated in {@link #batchEncoder}. Must be invoked while holding the lock
+     * on {@link #eventEncoder}.
+     */
+    private void flushBatch() {
+        if (batchedEventCount == 0) {
+            return;
+        }
+
+        if (batchedEventCount == 1) {
+            // A lone event is sent as is, without the batch envelope.
+            sendFrame(batchEncoder.getBuffer(), 1, batchEncoder.size() - 1);
+        } else {
+            batchEncoder.writeByte(']');
+            sendFrame(batchEncoder.getBuffer(), 0, batchEncoder.size());
+        }
+
+        batchEncoder.reset();
+        batchedEventCount = 0;
+    }
+
+    /**
+     * Sends the event held by {@link #eventEncoder}, chunking it if necessary. Must be invoked
+     * while holding the lock on {@link #eventEncoder}.
+     *
+     * @param event the {@link AssuranceEvent} that was encoded
+     * @param eventSize the size of the encoded event
+     * @param interleaveChunks whether the chunks of {@code event} (if it needs chunking) should be
+     *     queued as a {@link ChunkStream} instead of being sent all at once
+     */
+    private void sendEncodedEvent(
+            final AssuranceEvent event, final int eventSize, final boolean interleaveChunks) {
+        // Check if the AssuranceEvent is within transportable limits, if not, perform chunking
+        // and resend resulting chunks.
+        final int maxEventSize = maxEventSize();
+
+        if (eventSize < maxEventSize) {
+            sendFrame(eventEncoder.getBuffer(), 0, eventSize);
+            return;
+        }
+
+        // Prefer a single compressed frame over chunking if the compressed event may fit.
+        if (compressionEnabled && eventSize / MAX_TRIAL_COMPRESSION_RATIO < maxEventSize) {
+            final int compressedSize =
+                    frameCompressor.compress(eventEncoder.getBuffer(), 0, eventSize);
+
+            if (compressedSize < maxEventSize) {
+                writeToSocket(frameCompressor.getBuffer(), 0, compressedSize);
+                return;
+            }
+        }
+
+        if (event.getPayload() == null) {
+            // Only the payload can be chunked, so the metadata alone exceeds the limit. Metadata
+            // is added internally (it describes chunks) and is assumed to stay small, so such an
+            // event cannot be sent and is discarded. This assumption needs revisiting if
+            // AssuranceEvent becomes publicly instantiable.
+            Log.warning(
                     Assurance.LOG_TAG,
                     LOG_TAG,
-                    String.format(
-                            "UnsupportedCharsetException while converting Assurance event object"
-                                    + " to bytes representation: %s",
-                            ex.getLocalizedMessage()));
+                    "Cannot send eventId: %s that exceeds permitted limit"
+                            + " but has an empty payload!",
+                    event.eventID);
+            return;
+        }
+
+        // Chunk the payload bytes that were just encoded instead of re-serializing it.
+        final byte[] encodedEvent = eventEncoder.getBuffer();
+        final int payloadOffset = eventEncoder.getPayloadOffset();
+        final int payloadLength = eventEncoder.getPayloadLength();
+
+        final OutboundEventChunker chunker =
+                binaryFramesEnabled ? binaryFrameChunker : outboundEventChunker;
+
+        if (!chunker.needsChunking(eventSize, payloadLength)) {
+            // Payload is within the chunk limit. Nothing to chunk.
+            sendFrame(encodedEvent, 0, eventSize);
+            return;
+        }
+
+        // The encoder is reused for the next event, so an interleaved stream keeps its own copy of
+        // the payload, for which there must be room in the budget of the queue. Otherwise the
+        // chunks are sent right away, straight from the encoder.
+        final boolean interleaved =
+                interleaveChunks
+                        && memoryGovernor.reserve(
+                                AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE, payloadLength);
+        final OutboundEventChunker.ChunkCursor cursor =
+                interleaved
+                        ? chunker.cursor(
+                                event,
+                                Arrays.copyOfRange(
+                                        encodedEvent,
+                                        payloadOffset,
+                                        payloadOffset + payloadLength),
+                                0,
+                                payloadLength)
+                        : chunker.cursor(event, encodedEvent, payloadOffset, payloadLength);
+
+        if (cursor == null) {
+            if (interleaved) {
+                memoryGovernor.release(
+                        AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE, payloadLength);
+            }
+
+            Log.warning(
+                    Assurance.LOG_TAG,
+                    LOG_TAG,
+                    "Cannot send eventId: %s, its chunk envelope exceeds permitted limit!",
+                    event.eventID);
+            return;
+        }
+
+        final ChunkStream stream = new ChunkStream(event, cursor);
+
+        if (interleaved) {
+            chunkStreams.addLast(stream);
+            return;
+        }
+
+        while (!stream.isDone()) {
+            stream.sendNextChunk();
+        }
+    }
+
+    /**
+     * Gives every {@link ChunkStream} in {@link #chunkStreams} a turn of up to {@link
+     * #CHUNK_STREAM_QUANTUM} bytes (deficit round-robin), in order. Streams that are done are
+     * discarded.
+     *
+     * @return true if there were chunk streams to send, false otherwise
+     */
+    private boolean sendChunkStreamsRound() {
+        synchronized (eventEncoder) {
+            if (chunkStreams.isEmpty()) {
+                return false;
+            }
+
+            for (int turns = chunkStreams.size(); turns > 0 && canWork(); turns--) {
+                final ChunkStream stream = chunkStreams.pollFirst();
+                stream.deficit += CHUNK_STREAM_QUANTUM;
+
+                while (!stream.isDone() && stream.nextChunkLength() <= stream.deficit) {
+                    stream.deficit -= stream.sendNextChunk();
+                }
+
+                if (!stream.isDone()) {
+                    chunkStreams.addLast(stream);
+                } else {
+                    memoryGovernor.release(
+                            AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE,
+                            stream.getPayloadLength());
+                }
+            }
+
+            return true;
         }
     }
 
+    /**
+     * Sends {@code length} bytes of {@code frame} starting at {@code offset} over the socket,
+     * compressing them if compression was negotiated and worthwhile. Must be invoked while holding
+     * the lock on {@link #eventEncoder}.
+     */
+    private void sendFrame(final byte[] frame, final int offset, final int length) {
+        if (compressionEnabled && length >= MIN_COMPRESSIBLE_FRAME_SIZE) {
+            final int compressedSize = frameCompressor.compress(frame, offset, length);
+
+            if (compressedSize < length) {
+                writeToSocket(frameCompressor.getBuffer(), 0, compressedSize);
+                return;
+            }
+        }
+
+        writeToSocket(frame, offset, length);
+    }
+
+    /**
+     * Writes a frame to the socket straight from {@code frame}, as a binary frame if binary frames
+     * were negotiated, or Base64 encoded otherwise.
+     */
+    private void writeToSocket(final byte[] frame, final int offset, final int length) {
+        if (binaryFramesEnabled) {
+            socket.sendBinaryData(frame, offset, length);
+        } else {
+            socket.sendData(frame, offset, length);
+        }
+    }
+
+    /**
+     * Returns the limit that a frame must stay below in the framing negotiated for the current
+     * connection.
+     */
+    private int maxEventSize() {
+        return binaryFramesEnabled ? MAX_BINARY_EVENT_SIZE : MAX_EVENT_SIZE;
+    }
+
     @Override
     void stop() {
+        if (outboundQueue instanceof OutboundTrafficScheduler) {
+            ((OutboundTrafficScheduler) outboundQueue).logStats();
+        }
+
         super.stop();
+        memoryGovernor.releaseAll(AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE);
         canStartForwarding = false;
+        batchingEnabled = false;
+        compressionEnabled = false;
+        binaryFramesEnabled = false;
+        transportCongested = false;
+
+        synchronized (eventEncoder) {
+            chunkStreams.clear();
+            frameCompressor.release();
+        }
+    }
+
+    /**
+     * The chunks of an event whose payload exceeds the chunk limit, sent one at a time so that the
+     * event does not hold up the rest of the traffic until its last chunk is sent. Chunks are sent
+     * in order of their {@code chunkSequenceNumber} and each chunk frame is only created when it
+     * is about to be sent. Must be accessed while holding the lock on {@link #eventEncoder}.
+     */
+    private final class ChunkStream {
+        private final AssuranceEvent event;
+        private OutboundEventChunker.ChunkCursor cursor;
+        private String chunkId;
+
+        /** Bytes this stream may still send in its current turn. */
+        int deficit;
+
+        ChunkStream(final AssuranceEvent event, final OutboundEventChunker.ChunkCursor cursor) {
+            this.event = event;
+            this.cursor = cursor;
+            this.chunkId = UUID.randomUUID().toString();
+        }
+
+        boolean isDone() {
+            return !cursor.hasNext();
+        }
+
+        int nextChunkLength() {
+            return cursor.nextLength();
+        }
+
+        /** Returns the length of the payload copy held by the stream. */
+        int getPayloadLength() {
+            return cursor.source().length;
+        }
+
+        /**
+         * Sends the next chunk of the event.
+         *
+         * @return the size of the chunk frame
+         */
+        int sendNextChunk() {
+            final int sequenceNumber = cursor.nextIndex();
+            final int length = cursor.nextLength();
+            final int offset = cursor.next();
+            chunkEncoder.reset();
+            chunkEncoder.writeChunkEvent(
+                    OutboundEventChunker.createChunkEnvelope(
+                            event, chunkId, cursor.count(), sequenceNumber),
+                    cursor.source(),
+                    offset,
+                    length);
+            sendFrame(chunkEncoder.getBuffer(), 0, chunkEncoder.size());
+            return chunkEncoder.size();
+        }
+
+        /**
+         * Starts over from the first chunk, under a new chunk id.
+         *
+         * @param chunker the chunker that sizes the chunks for the frames of the new connection
+         */
+        void restart(final OutboundEventChunker chunker) {
+            final byte[] payload = cursor.source();
+            final OutboundEventChunker.ChunkCursor resized =
+                    chunker.cursor(event, payload, 0, payload.length);
+
+            // Keep the previous chunks if the envelope does not fit the new frame limit; the
+            // socket then refuses any chunk that turns out too large.
+            if (resized != null) {
+                cursor = resized;
+            }
+
+            chunkId = UUID.randomUUID().toString();
+            cursor.reset();
+            deficit = 0;
+        }
     }
 
     /**
@@ -236,10 +761,63 @@ class OutboundEventQueueWorker extends EventQueueWorker<AssuranceEvent> {
      */
     @VisibleForTesting
     static class OutboundEventChunker implements EventChunker<AssuranceEvent, AssuranceEvent> {
+        /**
+         * Stands in for the chunk id and the event id when measuring a chunk envelope. Both are
+         * UUIDs.
+         */
+        private static final String UUID_PLACEHOLDER = "00000000-0000-0000-0000-000000000000";
+
+        /** Room needed for at least one byte of chunk data, escaped as a unicode escape. */
+        private static final int MIN_CHUNK_DATA_SIZE = 6;
+
         private final int maxChunkSize;
 
+        /** Limit for a whole chunk frame, or 0 if chunks are sized by {@link #maxChunkSize}. */
+        private final int maxFrameSize;
+
+        /** Encodes the chunk envelopes being measured, created on first use and then reused. */
+        private AssuranceEventEncoder envelopeEncoder;
+
+        /**
+         * @param maxChunkSize fixed limit for the UTF-8 encoded payload of each chunk, regardless
+         *     of the size of the chunk envelope and of escaping
+         */
         OutboundEventChunker(final int maxChunkSize) {
+            this(maxChunkSize, 0);
+        }
+
+        private OutboundEventChunker(final int maxChunkSize, final int maxFrameSize) {
             this.maxChunkSize = maxChunkSize;
+            this.maxFrameSize = maxFrameSize;
+        }
+
+        /**
+         * Creates a chunker that packs every chunk frame as close as possible to {@code
+         * maxFrameSize}. The envelope of the chunks is measured for each event, and the chunk data
+         * is cut based on the size it takes once escaped in the chunk frame instead of on its raw
+         * size.
+         *
+         * @param maxFrameSize limit that every encoded chunk frame stays strictly below
+         * @return a new {@code OutboundEventChunker}
+         */
+        static OutboundEventChunker fittingFrames(final int maxFrameSize) {
+            return new OutboundEventChunker(maxFrameSize, maxFrameSize);
+        }
+
+        /**
+         * Returns a chunker that fits chunk frames to {@code maxFrameSize} instead. A chunker
+         * created with a fixed chunk size is returned as is, its chunks fit any frame limit that
+         * it was chosen for.
+         *
+         * @param maxFrameSize limit that every encoded chunk frame stays strictly below
+         * @return an {@code OutboundEventChunker} for {@code maxFrameSize}
+         */
+        OutboundEventChunker withFrameLimit(final int maxFrameSize) {
+            if (this.maxFrameSize == 0 || this.maxFrameSize == maxFrameSize) {
+                return this;
+            }
+
+            return fittingFrames(maxFrameSize);
         }
 
         /**
@@ -254,8 +832,27 @@ class OutboundEventQueueWorker extends EventQueueWorker<AssuranceEvent> {
          */
         @Override
         public List<AssuranceEvent> chunk(final AssuranceEvent event) {
+            final Iterator<AssuranceEvent> chunks = chunkIterator(event);
+            final List<AssuranceEvent> chunkedEvents = new ArrayList<>();
+
+            while (chunks.hasNext()) {
+                chunkedEvents.add(chunks.next());
+            }
+
+            return chunkedEvents;
+        }
+
+        /**
+         * Same as {@link #chunk(AssuranceEvent)}, except that each chunk is only created when it is
+         * requested from the returned {@link Iterator}. Only the encoded payload is held while
+         * iterating, instead of every chunk at once.
+         *
+         * @param event AssuranceEvent that needs to be chunked.
+         * @return an {@code Iterator} over the events {@link #chunk(AssuranceEvent)} would return
+         */
+        Iterator<AssuranceEvent> chunkIterator(final AssuranceEvent event) {
             if (event == null) {
-                return Collections.EMPTY_LIST;
+                return Collections.<AssuranceEvent>emptyList().iterator();
             }
 
             // Return the same event if the original payload is null. Nothing to chunk.
@@ -265,58 +862,360 @@ class OutboundEventQueueWorker extends EventQueueWorker<AssuranceEvent> {
                         LOG_TAG,
                         "Cannot chunk event: %s with an empty payload!",
                         event.eventID);
-                return Collections.singletonList(event);
+                return Collections.singletonList(event).iterator();
             }
 
-            final JSONObject payloadJson = new JSONObject(event.getPayload());
-            final byte[] payloadBytes = payloadJson.toString().getBytes(Charset.forName("UTF-8"));
+            final AssuranceEventEncoder eventEncoder = new AssuranceEventEncoder();
+            final int eventSize = eventEncoder.encode(event);
+            final int payloadOffset = eventEncoder.getPayloadOffset();
+            final int payloadLength = eventEncoder.getPayloadLength();
 
             // Original payload is within deliverable limit. Nothing to chunk.
-            if (payloadBytes.length < maxChunkSize) {
-                return Collections.singletonList(event);
+            if (!needsChunking(eventSize, payloadLength)) {
+                return Collections.singletonList(event).iterator();
             }
 
-            final List<AssuranceEvent> chunkedEvents = new ArrayList<>();
-            final double totalChunks = Math.ceil(payloadBytes.length / (double) maxChunkSize);
-            final ByteArrayInputStream byteArrayInputStream =
-                    new ByteArrayInputStream(payloadBytes);
-            final byte[] buffer = new byte[maxChunkSize];
+            final ChunkCursor cursor =
+                    cursor(
+                            event,
+                            Arrays.copyOfRange(
+                                    eventEncoder.getBuffer(),
+                                    payloadOffset,
+                                    payloadOffset + payloadLength),
+                            0,
+                            payloadLength);
+
+            if (cursor == null) {
+                Log.warning(
+                        Assurance.LOG_TAG,
+                        LOG_TAG,
+                        "Cannot chunk event: %s, its chunk envelope exceeds the frame limit!",
+                        event.eventID);
+                return Collections.singletonList(event).iterator();
+            }
+
+            final String chunkId = UUID.randomUUID().toString();
 
-            try {
-                final String chunkId = UUID.randomUUID().toString();
-                int chunkNumber = 0;
+            return new Iterator<AssuranceEvent>() {
+                @Override
+                public boolean hasNext() {
+                    return cursor.hasNext();
+                }
+
+                @Override
+                public AssuranceEvent next() {
+                    if (!cursor.hasNext()) {
+                        throw new NoSuchElementException();
+                    }
 
-                int bytesRead;
-                while ((bytesRead = byteArrayInputStream.read(buffer)) != -1) {
+                    final int sequenceNumber = cursor.nextIndex();
+                    final int length = cursor.nextLength();
+                    final int offset = cursor.next();
                     final HashMap<String, Object> payload = new HashMap<>();
+                    // Chunks never split a multi-byte sequence, so decoding them is lossless.
                     payload.put(
                             AssuranceConstants.AssuranceEventKeys.CHUNK_DATA,
-                            new String(buffer, 0, bytesRead, Charset.forName("UTF-8")));
-
-                    final HashMap<String, Object> metadata = new HashMap<>();
-                    metadata.put(AssuranceConstants.AssuranceEventKeys.CHUNK_ID, chunkId);
-                    metadata.put(
-                            AssuranceConstants.AssuranceEventKeys.CHUNK_TOTAL, (int) totalChunks);
-                    metadata.put(
-                            AssuranceConstants.AssuranceEventKeys.CHUNK_SEQUENCE_NUMBER,
-                            chunkNumber++);
-
-                    final AssuranceEvent assuranceEvent =
-                            new AssuranceEvent(
-                                    event.vendor, event.type, metadata, payload, event.timestamp);
-                    chunkedEvents.add(assuranceEvent);
+                            new String(cursor.source(), offset, length, UTF_8));
+
+                    return new AssuranceEvent(
+                            event.vendor,
+                            event.type,
+                            chunkMetadata(chunkId, cursor.count(), sequenceNumber),
+                            payload,
+                            event.timestamp);
                 }
-            } catch (final IOException e) {
-                Log.warning(
-                        Assurance.LOG_TAG,
-                        LOG_TAG,
-                        "Failed to chunk event with ID: %s. Exception: %s",
-                        event.eventID,
-                        e.getMessage());
-                return Collections.EMPTY_LIST;
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        /**
+         * Determines whether an event needs to be sent in chunks.
+         *
+         * @param eventSize size of the encoded event
+         * @param payloadLength length of the UTF-8 encoded payload of the event
+         * @return true if the event exceeds the frame limit, or if its payload exceeds the fixed
+         *     chunk limit when chunks are not fitted to frames
+         */
+        boolean needsChunking(final int eventSize, final int payloadLength) {
+            return maxFrameSize > 0 ? eventSize >= maxFrameSize : payloadLength >= maxChunkSize;
+        }
+
+        /**
+         * Splits the UTF-8 encoded payload held in {@code source} into views of at most {@code
+         * maxChunkSize} bytes. The payload bytes are neither copied nor re-parsed, and a view never
+         * ends in the middle of a multi-byte UTF-8 sequence.
+         *
+         * @param source buffer holding the UTF-8 encoded payload
+         * @param offset offset of the payload in {@code source}
+         * @param length length of the payload in {@code source}
+         * @return a singleton List spanning the whole payload if it is within {@code
+         *     maxChunkSize}; the {@code PayloadSlice}'s covering the payload in order otherwise.
+         */
+        List<PayloadSlice> slice(final byte[] source, final int offset, final int length) {
+            final ChunkCursor cursor = cursor(source, offset, length);
+            final List<PayloadSlice> slices = new ArrayList<>(cursor.count());
+
+            while (cursor.hasNext()) {
+                final int sliceLength = cursor.nextLength();
+                slices.add(new PayloadSlice(cursor.next(), sliceLength));
             }
 
-            return chunkedEvents;
+            return slices;
+        }
+
+        /**
+         * Returns a {@link ChunkCursor} over the same views {@link #slice(byte[], int, int)} would
+         * return, computed one at a time as the cursor advances.
+         *
+         * @param source buffer holding the UTF-8 encoded payload
+         * @param offset offset of the payload in {@code source}
+         * @param length length of the payload in {@code source}
+         * @return a {@code ChunkCursor} positioned before the first view
+         */
+        ChunkCursor cursor(final byte[] source, final int offset, final int length) {
+            return new ChunkCursor(source, offset, length, maxChunkSize, false);
+        }
+
+        /**
+         * Returns a {@link ChunkCursor} over the chunk data of {@code event}. When chunks are
+         * fitted to frames, the views are sized so that each chunk frame, envelope included, stays
+         * below the frame limit once its data is escaped.
+         *
+         * @param event the {@code AssuranceEvent} being chunked
+         * @param source buffer holding the UTF-8 encoded payload of {@code event}
+         * @param offset offset of the payload in {@code source}
+         * @param length length of the payload in {@code source}
+         * @return a {@code ChunkCursor} positioned before the first view, or null if the chunk
+         *     envelope leaves no room for chunk data within the frame limit
+         */
+        ChunkCursor cursor(
+                final AssuranceEvent event,
+                final byte[] source,
+                final int offset,
+                final int length) {
+            if (maxFrameSize <= 0) {
+                return cursor(source, offset, length);
+            }
+
+            final int maxChunkDataSize =
+                    maxFrameSize - 1 - measureChunkEnvelope(event, length);
+
+            if (maxChunkDataSize < MIN_CHUNK_DATA_SIZE) {
+                return null;
+            }
+
+            return new ChunkCursor(source, offset, length, maxChunkDataSize, true);
+        }
+
+        /**
+         * Measures the size of the largest chunk frame of {@code event} without its chunk data.
+         * Chunk ids have a fixed length and neither the sequence number nor the total number of
+         * chunks can exceed the payload length, so the envelope of every chunk fits in the
+         * returned size.
+         *
+         * <p>The envelope carries the longest event number rather than one taken from {@link
+         * AssuranceEvent#nextEventNumber()}, which would leave a gap in the numbers of the events
+         * sent.
+         */
+        private int measureChunkEnvelope(final AssuranceEvent event, final int payloadLength) {
+            final AssuranceEvent envelope =
+                    new AssuranceEvent(
+                            UUID_PLACEHOLDER,
+                            event.vendor,
+                            event.type,
+                            chunkMetadata(UUID_PLACEHOLDER, payloadLength, payloadLength),
+                            null,
+                            event.timestamp,
+                            Integer.MIN_VALUE);
+
+            if (envelopeEncoder == null) {
+                envelopeEncoder = new AssuranceEventEncoder();
+            }
+
+            envelopeEncoder.reset();
+            envelopeEncoder.writeChunkEvent(envelope, new byte[0], 0, 0);
+            return envelopeEncoder.size();
+        }
+
+        /**
+         * Creates the envelope for the chunk {@code sequenceNumber} of {@code event}. The returned
+         * event carries the chunk metadata but no payload; the chunk data is expected to be written
+         * separately via {@link AssuranceEventEncoder#writeChunkEvent}.
+         */
+        static AssuranceEvent createChunkEnvelope(
+                final AssuranceEvent event,
+                final String chunkId,
+                final int totalChunks,
+                final int sequenceNumber) {
+            return new AssuranceEvent(
+                    event.vendor,
+                    event.type,
+                    chunkMetadata(chunkId, totalChunks, sequenceNumber),
+                    null,
+                    event.timestamp);
+        }
+
+        private static HashMap<String, Object> chunkMetadata(
+                final String chunkId, final int totalChunks, final int sequenceNumber) {
+            final HashMap<String, Object> metadata = new HashMap<>();
+            metadata.put(AssuranceConstants.AssuranceEventKeys.CHUNK_ID, chunkId);
+            metadata.put(AssuranceConstants.AssuranceEventKeys.CHUNK_TOTAL, totalChunks);
+            metadata.put(
+                    AssuranceConstants.AssuranceEventKeys.CHUNK_SEQUENCE_NUMBER, sequenceNumber);
+            return metadata;
+        }
+
+        /**
+         * Walks the chunk views of a UTF-8 encoded payload without materializing them. The number
+         * of views is counted up front since every chunk carries the total, but the views
+         * themselves are computed as the cursor advances and can be walked again after {@link
+         * #reset()}.
+         *
+         * <p>Views are limited either by their raw size, or by the size they take once escaped as
+         * a JSON string (see {@link AssuranceEventEncoder#escapedLength(byte)}).
+         */
+        static final class ChunkCursor {
+            private final byte[] source;
+            private final int offset;
+            private final int end;
+            private final int maxChunkSize;
+
+            /** Whether {@link #maxChunkSize} applies to the escaped size of a view. */
+            private final boolean escaped;
+
+            private final int count;
+
+            /** Start of the next view. */
+            private int start;
+
+            /** End of the next view, or -1 if not computed yet. */
+            private int cut = -1;
+
+            private int index;
+
+            ChunkCursor(
+                    final byte[] source,
+                    final int offset,
+                    final int length,
+                    final int maxChunkSize,
+                    final boolean escaped) {
+                this.source = source;
+                this.offset = offset;
+                this.end = offset + length;
+                this.maxChunkSize = maxChunkSize;
+                this.escaped = escaped;
+
+                int views = 0;
+
+                for (int position = offset; position < end; views++) {
+                    position = cutAfter(position);
+                }
+
+                // An empty payload is still sent as a single (empty) view.
+                this.count = Math.max(1, views);
+                this.start = offset;
+            }
+
+            /** Returns the buffer the views refer to. */
+            byte[] source() {
+                return source;
+            }
+
+            /** Returns the total number of views. */
+            int count() {
+                return count;
+            }
+
+            boolean hasNext() {
+                return index < count;
+            }
+
+            /** Returns the index of the view {@link #next()} will return. */
+            int nextIndex() {
+                return index;
+            }
+
+            /** Returns the length of the view {@link #next()} will return. */
+            int nextLength() {
+                return nextCut() - start;
+            }
+
+            /**
+             * Advances past the next view.
+             *
+             * @return the offset of the view in {@link #source()}
+             */
+            int next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                final int viewStart = start;
+                start = nextCut();
+                cut = -1;
+                index++;
+                return viewStart;
+            }
+
+            /** Moves the cursor back before the first view. */
+            void reset() {
+                start = offset;
+                cut = -1;
+                index = 0;
+            }
+
+            private int nextCut() {
+                if (cut < 0) {
+                    cut = cutAfter(start);
+                }
+
+                return cut;
+            }
+
+            private int cutAfter(final int from) {
+                int position = Math.min(from + maxChunkSize, end);
+
+                if (escaped) {
+                    // Escaping only ever grows a view, so its raw size is an upper bound.
+                    int viewSize = 0;
+
+                    for (int i = from; i < position; i++) {
+                        viewSize += AssuranceEventEncoder.escapedLength(source[i]);
+
+                        if (viewSize > maxChunkSize) {
+                            position = i;
+                            break;
+                        }
+                    }
+                }
+
+                // Back up to the lead byte if the cut lands on a continuation byte (10xxxxxx).
+                while (position < end && position > from && (source[position] & 0xC0) == 0x80) {
+                    position--;
+                }
+
+                if (position == from) {
+                    // maxChunkSize is smaller than a single code point. Cut as is.
+                    position = Math.min(from + maxChunkSize, end);
+                }
+
+                return position;
+            }
+        }
+
+        /** An offset/length view of a chunk within an encoded payload. */
+        static final class PayloadSlice {
+            final int offset;
+            final int length;
+
+            PayloadSlice(final int offset, final int length) {
+                this.offset = offset;
+                this.length = length;
+            }
         }
     }
 }
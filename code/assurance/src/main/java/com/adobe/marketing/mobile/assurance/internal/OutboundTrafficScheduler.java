@@ -0,0 +1,316 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import androidx.annotation.VisibleForTesting;
+import com.adobe.marketing.mobile.Assurance;
+import com.adobe.marketing.mobile.services.Log;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link EventQueueWorker.WorkQueue} that schedules outbound {@link AssuranceEvent}s by traffic
+ * class instead of in a single FIFO, so that interactive traffic is not delayed by bulk traffic.
+ *
+ * <p>Each {@link TrafficClass} has its own {@link EventRingBuffer}. {@link #poll()} returns the
+ * head of the highest priority interactive class that has queued events. Otherwise, bulk classes
+ * take turns in a deficit round robin: each turn lets a class send up to its weight times {@link
+ * #BULK_QUANTUM_BYTES}, so that when bulk classes compete they share the socket in proportion to
+ * their weights. Scheduling is a weighted priority rather than a rate limit: a class is never held
+ * back while the others have nothing to send, so the socket is never left idle while there is
+ * work.
+ *
+ * <p>Events are ordered within a class but not across classes.
+ */
+final class OutboundTrafficScheduler implements EventQueueWorker.WorkQueue<AssuranceEvent> {
+    private static final String LOG_TAG = "OutboundTrafficScheduler";
+
+    /**
+     * Number of estimated bytes (see {@link AssuranceEvent#getEstimatedSize()}) a bulk class of
+     * weight 1 may send per turn.
+     */
+    @VisibleForTesting static final long BULK_QUANTUM_BYTES = AssuranceTransport.MAX_DATA_LENGTH;
+
+    /** Traffic classes, declared in decreasing order of priority. */
+    enum TrafficClass {
+        /** Replies to control events, such as the acknowledgement of a configuration update. */
+        CONTROL(256, 0),
+        /** The client info event. */
+        CLIENT(256, 0),
+        /** Blob references, such as the result of a screenshot request. */
+        BLOB(256, 0),
+        /** Events dispatched through the SDK and shared states. */
+        GENERIC(EventRingBuffer.DEFAULT_CAPACITY, 8),
+        /** Forwarded logs. */
+        LOG(EventRingBuffer.DEFAULT_CAPACITY / 2, 1);
+
+        private final int capacity;
+        private final int defaultWeight;
+
+        TrafficClass(final int capacity, final int defaultWeight) {
+            this.capacity = capacity;
+            this.defaultWeight = defaultWeight;
+        }
+
+        /**
+         * Classifies {@code event} by its {@link AssuranceConstants.AssuranceEventType}. Unknown
+         * types are treated as {@link #GENERIC}.
+         *
+         * @param event the {@link AssuranceEvent} to classify
+         * @return the {@link TrafficClass} of {@code event}
+         */
+        static TrafficClass of(final AssuranceEvent event) {
+            final String type = event.type;
+
+            if (AssuranceConstants.AssuranceEventType.CONTROL.equals(type)) {
+                return CONTROL;
+            } else if (AssuranceConstants.AssuranceEventType.CLIENT.equals(type)) {
+                return CLIENT;
+            } else if (AssuranceConstants.AssuranceEventType.BLOB.equals(type)) {
+                return BLOB;
+            } else if (AssuranceConstants.AssuranceEventType.LOG.equals(type)) {
+                return LOG;
+            }
+
+            return GENERIC;
+        }
+    }
+
+    /** Per class state. Guarded by the enclosing scheduler, except for {@link #queue}. */
+    private static final class ClassState {
+        final EventRingBuffer<AssuranceEvent> queue;
+
+        /** Share of the socket among bulk classes. 0 for an interactive class. */
+        int weight;
+
+        /** Estimated bytes the class may still send in its current turn. */
+        long deficitBytes;
+
+        long dequeuedCount;
+        long totalWaitNanos;
+        long maxWaitNanos;
+
+        ClassState(final TrafficClass trafficClass) {
+            this.queue = new EventRingBuffer<>(trafficClass.capacity);
+            this.weight = trafficClass.defaultWeight;
+        }
+
+        boolean isBulk() {
+            return weight > 0;
+        }
+    }
+
+    private final TrafficClass[] classes = TrafficClass.values();
+    private final ClassState[] states = new ClassState[classes.length];
+
+    /** Index in {@link #states} of the bulk class whose turn it is. */
+    private int bulkTurn = -1;
+
+    OutboundTrafficScheduler() {
+        for (final TrafficClass trafficClass : classes) {
+            states[trafficClass.ordinal()] = new ClassState(trafficClass);
+        }
+    }
+
+    /**
+     * Updates the share of the socket of the bulk class {@code trafficClass}. Has no effect on
+     * interactive classes.
+     *
+     * @param trafficClass the {@link TrafficClass} to configure
+     * @param weight the share of the socket of {@code trafficClass} when bulk classes compete,
+     *     relative to the weights of the other bulk classes. At least 1.
+     */
+    synchronized void configure(final TrafficClass trafficClass, final int weight) {
+        final ClassState state = states[trafficClass.ordinal()];
+
+        if (state.isBulk()) {
+            state.weight = Math.max(1, weight);
+        }
+    }
+
+    @Override
+    public boolean offer(final AssuranceEvent event) {
+        return states[TrafficClass.of(event).ordinal()].queue.offer(event);
+    }
+
+    @Override
+    public synchronized AssuranceEvent poll() {
+        ClassState selected = null;
+        boolean hasBulkWork = false;
+
+        for (final ClassState state : states) {
+            if (state.queue.peek() == null) {
+                continue;
+            }
+
+            if (!state.isBulk()) {
+                selected = state;
+                break;
+            }
+
+            hasBulkWork = true;
+        }
+
+        if (selected == null && hasBulkWork) {
+            selected = nextBulkClass();
+        }
+
+        if (selected == null) {
+            return null;
+        }
+
+        final long now = System.nanoTime();
+        final AssuranceEvent event = selected.queue.poll();
+        final long waitNanos = now - selected.queue.getLastPolledPublishNanos();
+        selected.dequeuedCount++;
+        selected.totalWaitNanos += waitNanos;
+        selected.maxWaitNanos = Math.max(selected.maxWaitNanos, waitNanos);
+        return event;
+    }
+
+    /**
+     * Selects the bulk class to send the next event, charging the event to its turn. Must be
+     * invoked while holding the lock of the scheduler, when a bulk class has queued events.
+     *
+     * @return the selected bulk {@link ClassState}
+     */
+    private ClassState nextBulkClass() {
+        while (true) {
+            if (bulkTurn >= 0) {
+                final ClassState state = states[bulkTurn];
+                final AssuranceEvent head = state.queue.peek();
+
+                if (head == null) {
+                    // An idle class does not save up turns.
+                    state.deficitBytes = 0;
+                } else if (head.getEstimatedSize() <= state.deficitBytes) {
+                    state.deficitBytes -= head.getEstimatedSize();
+                    return state;
+                }
+            }
+
+            // Events larger than a quantum are sent after enough turns.
+            do {
+                bulkTurn = (bulkTurn + 1) % states.length;
+            } while (!states[bulkTurn].isBulk());
+
+            final ClassState state = states[bulkTurn];
+            state.deficitBytes += state.weight * BULK_QUANTUM_BYTES;
+        }
+    }
+
+    @Override
+    public AssuranceEvent peek() {
+        for (final ClassState state : states) {
+            final AssuranceEvent head = state.queue.peek();
+
+            if (head != null) {
+                return head;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Retrieves and removes the oldest event of the lowest priority class that has queued events.
+     *
+     * @return the evicted event, or null if there are no queued events
+     */
+    @Override
+    public synchronized AssuranceEvent evict() {
+        for (int i = states.length - 1; i >= 0; i--) {
+            final AssuranceEvent event = states[i].queue.poll();
+
+            if (event != null) {
+                return event;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public synchronized void clear() {
+        for (final ClassState state : states) {
+            state.queue.clear();
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+
+        for (final ClassState state : states) {
+            size += state.queue.size();
+        }
+
+        return size;
+    }
+
+    /**
+     * Returns the number of events of {@code trafficClass} waiting to be sent.
+     *
+     * @param trafficClass the {@link TrafficClass} to query
+     * @return the queue depth of {@code trafficClass}
+     */
+    int getQueueDepth(final TrafficClass trafficClass) {
+        return states[trafficClass.ordinal()].queue.size();
+    }
+
+    /**
+     * Returns the number of events of {@code trafficClass} dequeued so far.
+     *
+     * @param trafficClass the {@link TrafficClass} to query
+     * @return the number of events of {@code trafficClass} dequeued
+     */
+    synchronized long getDequeuedCount(final TrafficClass trafficClass) {
+        return states[trafficClass.ordinal()].dequeuedCount;
+    }
+
+    /**
+     * Returns the average time events of {@code trafficClass} spent queued.
+     *
+     * @param trafficClass the {@link TrafficClass} to query
+     * @return the average wait time in milliseconds, 0 if no event was dequeued
+     */
+    synchronized long getAverageWaitMillis(final TrafficClass trafficClass) {
+        final ClassState state = states[trafficClass.ordinal()];
+        return state.dequeuedCount == 0
+                ? 0
+                : TimeUnit.NANOSECONDS.toMillis(state.totalWaitNanos / state.dequeuedCount);
+    }
+
+    /**
+     * Returns the longest time an event of {@code trafficClass} spent queued.
+     *
+     * @param trafficClass the {@link TrafficClass} to query
+     * @return the maximum wait time in milliseconds
+     */
+    synchronized long getMaxWaitMillis(final TrafficClass trafficClass) {
+        return TimeUnit.NANOSECONDS.toMillis(states[trafficClass.ordinal()].maxWaitNanos);
+    }
+
+    /** Logs the queue depth and wait times of every traffic class for tuning purposes. */
+    void logStats() {
+        for (final TrafficClass trafficClass : classes) {
+            Log.debug(
+                    Assurance.LOG_TAG,
+                    LOG_TAG,
+                    "%s: depth=%d dequeued=%d avgWaitMs=%d maxWaitMs=%d",
+                    trafficClass,
+                    getQueueDepth(trafficClass),
+                    getDequeuedCount(trafficClass),
+                    getAverageWaitMillis(trafficClass),
+                    getMaxWaitMillis(trafficClass));
+        }
+    }
+}
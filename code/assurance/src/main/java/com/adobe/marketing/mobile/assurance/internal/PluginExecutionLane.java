@@ -0,0 +1,224 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import androidx.annotation.VisibleForTesting;
+import com.adobe.marketing.mobile.Assurance;
+import com.adobe.marketing.mobile.services.Log;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A serial lane on which the callbacks of an {@link AssurancePlugin} with the {@link
+ * AssurancePlugin.ExecutionPolicy#SERIAL_LANE} policy are run, so that a slow plugin does not delay
+ * the processing of the inbound events that follow.
+ *
+ * <p>Callbacks run one at a time, in the order they are submitted. At most {@link
+ * #MAX_QUEUED_EVENTS} events wait for the plugin at any time: further events are dropped until the
+ * plugin catches up. Session lifecycle callbacks are never dropped, so that the plugin always
+ * learns about the end of the session. The lane keeps no thread around while idle.
+ */
+final class PluginExecutionLane {
+    private static final String LOG_TAG = "PluginExecutionLane";
+
+    /** Default number of events allowed to wait for the plugin. */
+    static final int MAX_QUEUED_EVENTS = 64;
+
+    /** Callbacks running longer than this are reported. */
+    private static final long SLOW_CALLBACK_MILLIS = 1000;
+
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 10;
+
+    private final String name;
+    private final int maxQueuedEvents;
+    private final ThreadPoolExecutor executor;
+
+    /** Events submitted and not yet delivered. */
+    private final AtomicInteger queuedEvents = new AtomicInteger();
+
+    private final AtomicLong deliveredEventCount = new AtomicLong();
+    private final AtomicLong droppedEventCount = new AtomicLong();
+    private final AtomicLong totalRunNanos = new AtomicLong();
+    private final AtomicLong maxRunNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    PluginExecutionLane(final String name) {
+        this(name, MAX_QUEUED_EVENTS);
+    }
+
+    @VisibleForTesting
+    PluginExecutionLane(final String name, final int maxQueuedEvents) {
+        this.name = name;
+        this.maxQueuedEvents = maxQueuedEvents;
+        this.executor =
+                new ThreadPoolExecutor(
+                        1,
+                        1,
+                        THREAD_KEEP_ALIVE_SECONDS,
+                        TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues the delivery of {@code event} to {@code plugin}, unless {@link #MAX_QUEUED_EVENTS}
+     * events are already waiting.
+     *
+     * @param plugin the plugin to deliver {@code event} to
+     * @param event the inbound event
+     * @return true if the event was queued, false if it was dropped
+     */
+    boolean deliver(final AssurancePlugin plugin, final AssuranceEvent event) {
+        if (queuedEvents.incrementAndGet() > maxQueuedEvents) {
+            queuedEvents.decrementAndGet();
+            droppedEventCount.incrementAndGet();
+            Log.warning(
+                    Assurance.LOG_TAG,
+                    LOG_TAG,
+                    "Dropping the %s event for %s, %d events are already waiting.",
+                    event.getControlType(),
+                    name,
+                    maxQueuedEvents);
+            return false;
+        }
+
+        final long submittedNanos = System.nanoTime();
+        executor.execute(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        queuedEvents.decrementAndGet();
+                        updateMax(maxWaitNanos, System.nanoTime() - submittedNanos);
+                        final long startNanos = System.nanoTime();
+
+                        try {
+                            plugin.onEventReceived(event);
+                        } catch (final Exception e) {
+                            Log.error(
+                                    Assurance.LOG_TAG,
+                                    LOG_TAG,
+                                    "%s failed to handle an event: %s",
+                                    name,
+                                    e.getLocalizedMessage());
+                        }
+
+                        record(System.nanoTime() - startNanos);
+                    }
+                });
+        return true;
+    }
+
+    /**
+     * Queues a session lifecycle callback of the plugin behind the events already queued.
+     *
+     * @param callback the callback to run
+     */
+    void run(final Runnable callback) {
+        executor.execute(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            callback.run();
+                        } catch (final Exception e) {
+                            Log.error(
+                                    Assurance.LOG_TAG,
+                                    LOG_TAG,
+                                    "%s failed to handle a session callback: %s",
+                                    name,
+                                    e.getLocalizedMessage());
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Returns the number of events waiting to be delivered.
+     *
+     * @return the number of queued events
+     */
+    int getQueuedEventCount() {
+        return queuedEvents.get();
+    }
+
+    /**
+     * Returns the number of events delivered to the plugin.
+     *
+     * @return the number of delivered events
+     */
+    long getDeliveredEventCount() {
+        return deliveredEventCount.get();
+    }
+
+    /**
+     * Returns the number of events dropped because too many were waiting.
+     *
+     * @return the number of dropped events
+     */
+    long getDroppedEventCount() {
+        return droppedEventCount.get();
+    }
+
+    /**
+     * Returns the average time the plugin took to handle an event.
+     *
+     * @return the average handling time in milliseconds, 0 if no event was delivered
+     */
+    long getAverageRunTimeMillis() {
+        final long delivered = deliveredEventCount.get();
+        return delivered == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalRunNanos.get() / delivered);
+    }
+
+    /**
+     * Returns the longest time the plugin took to handle an event.
+     *
+     * @return the longest handling time in milliseconds
+     */
+    long getMaxRunTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxRunNanos.get());
+    }
+
+    /**
+     * Returns the longest time an event waited in the lane before being delivered.
+     *
+     * @return the longest wait in milliseconds
+     */
+    long getMaxWaitTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    private void record(final long runNanos) {
+        deliveredEventCount.incrementAndGet();
+        totalRunNanos.addAndGet(runNanos);
+        updateMax(maxRunNanos, runNanos);
+
+        if (TimeUnit.NANOSECONDS.toMillis(runNanos) > SLOW_CALLBACK_MILLIS) {
+            Log.debug(
+                    Assurance.LOG_TAG,
+                    LOG_TAG,
+                    "%s took %d ms to handle an event.",
+                    name,
+                    TimeUnit.NANOSECONDS.toMillis(runNanos));
+        }
+    }
+
+    private static void updateMax(final AtomicLong max, final long value) {
+        long current;
+
+        do {
+            current = max.get();
+        } while (value > current && !max.compareAndSet(current, value));
+    }
+}
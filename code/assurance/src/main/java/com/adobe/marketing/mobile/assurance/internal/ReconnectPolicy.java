@@ -0,0 +1,146 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import androidx.annotation.VisibleForTesting;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when an {@link AssuranceSession} retries to connect after losing its socket connection.
+ *
+ * <p>The delay before each attempt is drawn uniformly between zero and an exponentially growing
+ * cap ("full jitter"), so that devices disconnected at the same time do not reconnect at the same
+ * time. The cap doubles from {@link #BASE_DELAY_MILLIS} with every attempt, up to {@link
+ * #MAX_DELAY_MILLIS}. After {@link #MAX_ATTEMPTS} attempts without connecting, the budget is spent
+ * and the session stops retrying on its own.
+ *
+ * <p>Safe to be used from any thread.
+ */
+final class ReconnectPolicy {
+
+    /** Cap of the delay before the first attempt. */
+    @VisibleForTesting static final long BASE_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(2);
+
+    /** Largest delay before an attempt. */
+    @VisibleForTesting static final long MAX_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+    /** Number of attempts after which the session stops retrying. */
+    @VisibleForTesting static final int MAX_ATTEMPTS = 12;
+
+    /** Returned by {@link #nextDelayMillis(long)} once the budget is spent. */
+    static final long NO_MORE_ATTEMPTS = -1;
+
+    private final Random random;
+    private final int maxAttempts;
+
+    /** Attempts made since the connection was lost, counted against the budget. */
+    private int attempts;
+
+    /** Position of the next delay in the exponential sequence. */
+    private int backoffStep;
+
+    /** When the connection was lost, or -1 if it is connected. */
+    private long disconnectedAtMillis = -1;
+
+    private long totalDelayMillis;
+
+    ReconnectPolicy() {
+        this(new Random(), MAX_ATTEMPTS);
+    }
+
+    @VisibleForTesting
+    ReconnectPolicy(final Random random, final int maxAttempts) {
+        this.random = random;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Accounts for a new attempt to connect and returns how long to wait before making it.
+     *
+     * @param now the current time in milliseconds
+     * @return the delay before the attempt in milliseconds, or {@link #NO_MORE_ATTEMPTS} if the
+     *     budget is spent
+     */
+    synchronized long nextDelayMillis(final long now) {
+        if (disconnectedAtMillis < 0) {
+            disconnectedAtMillis = now;
+        }
+
+        if (attempts >= maxAttempts) {
+            return NO_MORE_ATTEMPTS;
+        }
+
+        // Cap the shift, the delay reached its maximum long before it could overflow.
+        final long cap =
+                Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << Math.min(backoffStep, 20));
+        final long delay = (long) (random.nextDouble() * (cap + 1));
+        attempts++;
+        backoffStep++;
+        totalDelayMillis += delay;
+        return delay;
+    }
+
+    /**
+     * Restarts the exponential sequence, as when the network changed and the next attempt is
+     * likely to succeed. Attempts remain counted against the budget.
+     */
+    synchronized void onNetworkAvailable() {
+        backoffStep = 0;
+    }
+
+    /** Forgets the attempts made once the session connected again. */
+    synchronized void reset() {
+        attempts = 0;
+        backoffStep = 0;
+        disconnectedAtMillis = -1;
+        totalDelayMillis = 0;
+    }
+
+    /**
+     * Returns the number of attempts made since the connection was lost.
+     *
+     * @return the number of attempts
+     */
+    synchronized int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Returns the number of attempts that can be made before the budget is spent.
+     *
+     * @return the attempt budget
+     */
+    int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Returns for how long the connection has been lost.
+     *
+     * @param now the current time in milliseconds
+     * @return the time since the connection was lost in milliseconds, or 0 if it is connected
+     */
+    synchronized long getDisconnectedMillis(final long now) {
+        return disconnectedAtMillis < 0 ? 0 : now - disconnectedAtMillis;
+    }
+
+    /**
+     * Returns the sum of the delays waited before the attempts, excluding the time the attempts
+     * themselves took.
+     *
+     * @return the total backoff in milliseconds
+     */
+    synchronized long getTotalDelayMillis() {
+        return totalDelayMillis;
+    }
+}
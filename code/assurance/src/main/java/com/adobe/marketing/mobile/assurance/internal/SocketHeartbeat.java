@@ -0,0 +1,283 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import androidx.annotation.VisibleForTesting;
+import com.adobe.marketing.mobile.Assurance;
+import com.adobe.marketing.mobile.services.Log;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a socket connection alive and detects when it silently died. The server is pinged once
+ * nothing was heard from it for a while: often while the connection is idle, and rarely while
+ * events are being sent, as inbound traffic proves the connection alive anyway. Every pong
+ * measures the round trip time, which bounds how long a pong is waited for. The connection is
+ * declared dead after {@link #MAX_MISSED_PONGS} pings in a row went unanswered.
+ */
+final class SocketHeartbeat {
+
+    /** The transport pinged by the heartbeat. */
+    interface Transport {
+        /** Sends an application level ping, which the server answers with a pong. */
+        void sendPing();
+
+        /**
+         * Invoked when the server stopped answering pings. The transport is expected to drop the
+         * connection and report it as closed abnormally.
+         *
+         * @param missedPongs the number of pings left unanswered
+         */
+        void onConnectionDead(final int missedPongs);
+    }
+
+    private static final String LOG_TAG = "SocketHeartbeat";
+
+    /**
+     * Time without hearing from the server after which an idle connection is pinged. A connection
+     * is idle once nothing was sent for as long.
+     */
+    @VisibleForTesting static final long IDLE_PING_INTERVAL_MILLIS = 10000;
+
+    /** Time without hearing from the server after which a connection sending data is pinged. */
+    @VisibleForTesting static final long ACTIVE_PING_INTERVAL_MILLIS = 30000;
+
+    /** Number of pings in a row left unanswered after which the connection is dead. */
+    @VisibleForTesting static final int MAX_MISSED_PONGS = 3;
+
+    /** Time a pong is waited for until the round trip time was measured. */
+    @VisibleForTesting static final long DEFAULT_PONG_TIMEOUT_MILLIS = 5000;
+
+    /** Lower bound of the pong timeout derived from the round trip time. */
+    @VisibleForTesting static final long MIN_PONG_TIMEOUT_MILLIS = 2000;
+
+    private static final int PONG_TIMEOUT_RTT_MULTIPLIER = 4;
+
+    private static final long EXECUTOR_KEEP_ALIVE_SECONDS = 10;
+
+    private final Transport transport;
+    private final ScheduledExecutorService executor;
+
+    private final Runnable tickTask =
+            new Runnable() {
+                @Override
+                public void run() {
+                    tick(now());
+                }
+            };
+
+    private ScheduledFuture<?> nextTick;
+    private boolean running;
+    private long lastSentMillis;
+    private long lastReceivedMillis;
+
+    /** When the unanswered ping was sent, or -1 if there is none. */
+    private long pingSentMillis = -1;
+
+    private int missedPongs;
+
+    /** Smoothed round trip time, or -1 if it was not measured yet. */
+    private volatile long roundTripTimeMillis = -1;
+
+    SocketHeartbeat(final Transport transport) {
+        this(transport, createExecutor());
+    }
+
+    @VisibleForTesting
+    SocketHeartbeat(final Transport transport, final ScheduledExecutorService executor) {
+        this.transport = transport;
+        this.executor = executor;
+    }
+
+    /** Starts the heartbeat for a connection that just opened, forgetting any previous one. */
+    void start() {
+        start(now());
+    }
+
+    @VisibleForTesting
+    synchronized void start(final long now) {
+        running = true;
+        lastSentMillis = now;
+        lastReceivedMillis = now;
+        pingSentMillis = -1;
+        missedPongs = 0;
+        roundTripTimeMillis = -1;
+        schedule(IDLE_PING_INTERVAL_MILLIS);
+    }
+
+    /** Stops the heartbeat once the connection closed. */
+    synchronized void stop() {
+        running = false;
+
+        if (nextTick != null) {
+            nextTick.cancel(false);
+            nextTick = null;
+        }
+    }
+
+    /** Records that data was sent, which postpones the pings of an idle connection. */
+    void onDataSent() {
+        onDataSent(now());
+    }
+
+    @VisibleForTesting
+    synchronized void onDataSent(final long now) {
+        lastSentMillis = now;
+    }
+
+    /** Records that data was received from the server, which proves the connection alive. */
+    void onDataReceived() {
+        onDataReceived(now());
+    }
+
+    @VisibleForTesting
+    synchronized void onDataReceived(final long now) {
+        lastReceivedMillis = now;
+        missedPongs = 0;
+    }
+
+    /** Records the pong answering the last ping and measures the round trip time. */
+    void onPong() {
+        onPong(now());
+    }
+
+    @VisibleForTesting
+    synchronized void onPong(final long now) {
+        lastReceivedMillis = now;
+        missedPongs = 0;
+
+        if (pingSentMillis < 0) {
+            return;
+        }
+
+        final long sample = now - pingSentMillis;
+        pingSentMillis = -1;
+        // Smoothed the same way as the round trip time of TCP.
+        roundTripTimeMillis =
+                roundTripTimeMillis < 0 ? sample : (7 * roundTripTimeMillis + sample) / 8;
+    }
+
+    /**
+     * Returns the smoothed round trip time of the pings on the current connection.
+     *
+     * @return the round trip time in milliseconds, or -1 if no pong was received yet
+     */
+    long getRoundTripTimeMillis() {
+        return roundTripTimeMillis;
+    }
+
+    /**
+     * Pings the server if it was not heard from for the current ping interval, and counts the
+     * pings that went unanswered.
+     *
+     * @param now the current time in milliseconds
+     */
+    @VisibleForTesting
+    void tick(final long now) {
+        final boolean ping;
+        final boolean dead;
+
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+
+            if (pingSentMillis >= 0 && lastReceivedMillis >= pingSentMillis) {
+                // Data arrived instead of the pong, the connection is alive.
+                pingSentMillis = -1;
+            }
+
+            if (pingSentMillis >= 0) {
+                final long waited = now - pingSentMillis;
+                final long pongTimeout = pongTimeoutMillis();
+
+                if (waited < pongTimeout) {
+                    schedule(pongTimeout - waited);
+                    return;
+                }
+
+                missedPongs++;
+                dead = missedPongs >= MAX_MISSED_PONGS;
+                ping = !dead;
+            } else {
+                final boolean active = now - lastSentMillis < IDLE_PING_INTERVAL_MILLIS;
+                final long interval =
+                        active ? ACTIVE_PING_INTERVAL_MILLIS : IDLE_PING_INTERVAL_MILLIS;
+                final long silence = now - lastReceivedMillis;
+
+                if (silence < interval) {
+                    // Check again when the connection may have turned idle.
+                    schedule(Math.min(interval - silence, IDLE_PING_INTERVAL_MILLIS));
+                    return;
+                }
+
+                dead = false;
+                ping = true;
+            }
+
+            if (dead) {
+                running = false;
+                nextTick = null;
+            } else {
+                pingSentMillis = now;
+                schedule(pongTimeoutMillis());
+            }
+        }
+
+        if (dead) {
+            Log.debug(
+                    Assurance.LOG_TAG,
+                    LOG_TAG,
+                    "Socket missed %d pongs in a row, dropping the connection.",
+                    MAX_MISSED_PONGS);
+            transport.onConnectionDead(MAX_MISSED_PONGS);
+        } else if (ping) {
+            transport.sendPing();
+        }
+    }
+
+    /** Returns how long a pong is waited for, as a multiple of the round trip time. */
+    private long pongTimeoutMillis() {
+        final long rtt = roundTripTimeMillis;
+
+        if (rtt < 0) {
+            return DEFAULT_PONG_TIMEOUT_MILLIS;
+        }
+
+        return Math.min(
+                Math.max(rtt * PONG_TIMEOUT_RTT_MULTIPLIER, MIN_PONG_TIMEOUT_MILLIS),
+                IDLE_PING_INTERVAL_MILLIS);
+    }
+
+    private void schedule(final long delayMillis) {
+        if (nextTick != null) {
+            nextTick.cancel(false);
+        }
+
+        nextTick = executor.schedule(tickTask, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    private static ScheduledExecutorService createExecutor() {
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        // Do not keep a thread around while there is no connection to ping.
+        executor.setKeepAliveTime(EXECUTOR_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Negotiation of optional transport features between the client and the Assurance server. The
+ * client advertises the capabilities it supports via the client info event. A capability is only
+ * put to use once the server echoes it back in the details of the {@code startEventForwarding}
+ * control event, so that servers unaware of a capability keep receiving the default framing.
+ *
+ * <p>An acknowledged capability permits the client to use a feature without obliging it to. For
+ * instance, {@link AssuranceConstants.TransportCapability#BINARY} frames are only sent when the
+ * socket transport supports them.
+ */
+final class TransportCapabilities {
+
+    /** Capabilities supported by this client, in the order they are advertised. */
+    private static final List<String> SUPPORTED =
+            Collections.unmodifiableList(
+                    Arrays.asList(
+                            AssuranceConstants.TransportCapability.BATCH,
+                            AssuranceConstants.TransportCapability.DEFLATE,
+                            AssuranceConstants.TransportCapability.BINARY));
+
+    private TransportCapabilities() {}
+
+    /**
+     * Returns the capabilities to be advertised in the client info event.
+     *
+     * @return a new mutable {@code List} of the capabilities supported by this client
+     */
+    static List<String> advertised() {
+        return new ArrayList<>(SUPPORTED);
+    }
+
+    /**
+     * Returns the capabilities that the server acknowledged in the provided {@code
+     * startEventForwarding} control event and that are supported by this client.
+     *
+     * @param startForwardingEvent the {@code startEventForwarding} control event
+     * @return the acknowledged capabilities; an empty {@code Set} if the server did not
+     *     acknowledge any
+     */
+    static Set<String> acknowledged(final AssuranceEvent startForwardingEvent) {
+        final Map<String, Object> controlDetail =
+                startForwardingEvent == null ? null : startForwardingEvent.getControlDetail();
+
+        if (controlDetail == null) {
+            return Collections.emptySet();
+        }
+
+        final Object capabilities =
+                controlDetail.get(AssuranceConstants.ClientInfoKeys.CAPABILITIES);
+
+        if (!(capabilities instanceof Collection)) {
+            return Collections.emptySet();
+        }
+
+        final Set<String> acknowledged = new HashSet<>();
+
+        for (final Object capability : (Collection<?>) capabilities) {
+            if (SUPPORTED.contains(capability)) {
+                acknowledged.add((String) capability);
+            }
+        }
+
+        return acknowledged;
+    }
+}
@@ -116,6 +116,16 @@ class AssuranceClientInfoTest {
         // Check "type" key
         Assert.assertEquals("connect", data[AssuranceConstants.PayloadDataKeys.TYPE])
 
+        // Check "capabilities" key
+        Assert.assertEquals(
+            listOf(
+                AssuranceConstants.TransportCapability.BATCH,
+                AssuranceConstants.TransportCapability.DEFLATE,
+                AssuranceConstants.TransportCapability.BINARY
+            ),
+            data[AssuranceConstants.ClientInfoKeys.CAPABILITIES]
+        )
+
         // Check "appSettings" object
         val expectedAppSettings = createManifestJson(TEST_APP_PACKAGE_NAME, TEST_APP_NAME)
         Assert.assertEquals(
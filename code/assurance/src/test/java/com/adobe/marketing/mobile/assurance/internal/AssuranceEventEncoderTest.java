@@ -0,0 +1,216 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.adobe.marketing.mobile.util.JSONUtils;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class AssuranceEventEncoderTest {
+
+    @Test
+    public void test_encode_eventWithoutPayload_matchesJSONRepresentation() {
+        final AssuranceEvent event =
+                new AssuranceEvent(AssuranceConstants.AssuranceEventType.CONTROL, null);
+        final AssuranceEventEncoder encoder = new AssuranceEventEncoder();
+
+        final int size = encoder.encode(event);
+
+        assertEquals(size, encoder.size());
+        assertArrayEquals(
+                event.getJSONRepresentation().getBytes(StandardCharsets.UTF_8),
+                encoder.toByteArray());
+    }
+
+    @Test
+    public void test_encode_eventWithPayloadAndMetadata_matchesJSONRepresentation() {
+        final HashMap<String, Object> metadata = new HashMap<>();
+        metadata.put(AssuranceConstants.AssuranceEventKeys.CHUNK_ID, "chunkId");
+        final HashMap<String, Object> payload = new HashMap<>();
+        payload.put("key", "välue with \"quotes\", tabs\t and emoji 😀");
+        final AssuranceEvent event =
+                new AssuranceEvent(
+                        AssuranceConstants.VENDOR_ASSURANCE_MOBILE,
+                        AssuranceConstants.AssuranceEventType.GENERIC,
+                        metadata,
+                        payload,
+                        1234L);
+        final AssuranceEventEncoder encoder = new AssuranceEventEncoder();
+
+        encoder.encode(event);
+
+        assertArrayEquals(
+                event.getJSONRepresentation().getBytes(StandardCharsets.UTF_8),
+                encoder.toByteArray());
+    }
+
+    @Test
+    public void test_encode_nestedValues_roundTrip() throws JSONException {
+        final HashMap<String, Object> payload = new HashMap<>();
+        payload.put("string", "line\nbreak \u0001 control");
+        payload.put("int", 42);
+        payload.put("long", 1L << 40);
+        payload.put("double", 1.5);
+        payload.put("boolean", true);
+        payload.put("list", Arrays.asList(1, "two", Collections.singletonMap("three", 3)));
+        payload.put(
+                "map", Collections.singletonMap("nested", Collections.singletonMap("k", "v")));
+        final AssuranceEvent event =
+                new AssuranceEvent(AssuranceConstants.AssuranceEventType.GENERIC, payload);
+        final AssuranceEventEncoder encoder = new AssuranceEventEncoder();
+
+        encoder.encode(event);
+        final AssuranceEvent decoded =
+                new AssuranceEvent(new String(encoder.toByteArray(), StandardCharsets.UTF_8));
+
+        assertEquals(event.eventID, decoded.eventID);
+        assertEquals(event.eventNumber, decoded.eventNumber);
+        assertEquals(event.timestamp, decoded.timestamp);
+        assertEquals(
+                JSONUtils.toMap(new JSONObject(event.getJSONRepresentation()))
+                        .get(AssuranceConstants.AssuranceEventKeys.PAYLOAD),
+                decoded.getPayload());
+    }
+
+    @Test
+    public void test_encode_largePayload_matchesJSONRepresentation() throws IOException {
+        final HashMap<String, Object> payload = new HashMap<>();
+        payload.put(
+                "largeKey", readFromResource("assurance_large_event_payload_key_value_40KB.txt"));
+        final AssuranceEvent event =
+                new AssuranceEvent(AssuranceConstants.AssuranceEventType.GENERIC, payload);
+        final AssuranceEventEncoder encoder = new AssuranceEventEncoder();
+
+        encoder.encode(event);
+
+        assertArrayEquals(
+                event.getJSONRepresentation().getBytes(StandardCharsets.UTF_8),
+                encoder.toByteArray());
+    }
+
+    @Test
+    public void test_encode_recordsPayloadRange() {
+        final HashMap<String, Object> payload = new HashMap<>();
+        payload.put("key", "välue");
+        final AssuranceEvent event =
+                new AssuranceEvent(AssuranceConstants.AssuranceEventType.GENERIC, payload);
+        final AssuranceEventEncoder encoder = new AssuranceEventEncoder();
+
+        encoder.encode(event);
+
+        assertEquals(
+                new JSONObject(payload).toString(),
+                new String(
+                        encoder.getBuffer(),
+                        encoder.getPayloadOffset(),
+                        encoder.getPayloadLength(),
+                        StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void test_writeChunkEvent_matchesJSONRepresentation() {
+        final String chunkData = "{\"key\":\"välue \\\"😀\\\" </tag>\n\u0001\"}";
+        final byte[] source = ("xx" + chunkData).getBytes(StandardCharsets.UTF_8);
+        final HashMap<String, Object> metadata = new HashMap<>();
+        metadata.put(AssuranceConstants.AssuranceEventKeys.CHUNK_ID, "chunkId");
+        final AssuranceEvent envelope =
+                new AssuranceEvent(
+                        AssuranceConstants.VENDOR_ASSURANCE_MOBILE,
+                        AssuranceConstants.AssuranceEventType.GENERIC,
+                        metadata,
+                        null,
+                        1234L);
+        final AssuranceEventEncoder encoder = new AssuranceEventEncoder();
+
+        encoder.writeChunkEvent(envelope, source, 2, source.length - 2);
+
+        final HashMap<String, Object> payload = new HashMap<>();
+        payload.put(AssuranceConstants.AssuranceEventKeys.CHUNK_DATA, chunkData);
+        final AssuranceEvent expected =
+                new AssuranceEvent(
+                        envelope.vendor,
+                        envelope.type,
+                        metadata,
+                        payload,
+                        envelope.timestamp);
+        final String expectedJson =
+                expected.getJSONRepresentation()
+                        .replace(expected.eventID, envelope.eventID)
+                        .replace(
+                                "\"eventNumber\":" + expected.eventNumber,
+                                "\"eventNumber\":" + envelope.eventNumber);
+        assertArrayEquals(expectedJson.getBytes(StandardCharsets.UTF_8), encoder.toByteArray());
+    }
+
+    @Test
+    public void test_encode_reusesBuffer() {
+        final AssuranceEventEncoder encoder = new AssuranceEventEncoder();
+        final Map<String, Object> payload = Collections.singletonMap("key", (Object) "value");
+
+        encoder.encode(new AssuranceEvent(AssuranceConstants.AssuranceEventType.GENERIC, payload));
+        final byte[] buffer = encoder.getBuffer();
+        final AssuranceEvent second =
+                new AssuranceEvent(AssuranceConstants.AssuranceEventType.GENERIC, payload);
+        encoder.encode(second);
+
+        assertSame(buffer, encoder.getBuffer());
+        assertArrayEquals(
+                second.getJSONRepresentation().getBytes(StandardCharsets.UTF_8),
+                encoder.toByteArray());
+    }
+
+    @Test
+    public void test_reset_releasesOversizedBuffer() {
+        final AssuranceEventEncoder encoder = new AssuranceEventEncoder();
+        final char[] large = new char[512 * 1024];
+        Arrays.fill(large, 'a');
+
+        encoder.writeString(new String(large));
+        assertTrue(encoder.getBuffer().length > large.length);
+
+        encoder.reset();
+
+        assertEquals(0, encoder.size());
+        assertTrue(encoder.getBuffer().length < large.length);
+    }
+
+    private String readFromResource(final String resourceName) throws IOException {
+        final InputStream payloadValueStream =
+                this.getClass().getClassLoader().getResourceAsStream(resourceName);
+        final BufferedReader bufferedReader =
+                new BufferedReader(new InputStreamReader(payloadValueStream));
+        final StringBuilder resourceContent = new StringBuilder();
+
+        String curentLine;
+
+        while ((curentLine = bufferedReader.readLine()) != null) {
+            resourceContent.append(curentLine);
+        }
+
+        return resourceContent.toString();
+    }
+}
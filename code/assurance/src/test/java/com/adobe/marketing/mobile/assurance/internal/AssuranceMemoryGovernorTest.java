@@ -0,0 +1,226 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class AssuranceMemoryGovernorTest {
+
+    @Test
+    public void test_reserve_withinBufferShare() {
+        final AssuranceMemoryGovernor governor =
+                new AssuranceMemoryGovernor(
+                        800, AssuranceMemoryGovernor.OverflowPolicy.DROP_OLDEST);
+
+        assertEquals(400, governor.getBudgetBytes(AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE));
+        assertEquals(300, governor.getBudgetBytes(AssuranceMemoryGovernor.Buffer.SESSION_BUFFER));
+        assertEquals(100, governor.getBudgetBytes(AssuranceMemoryGovernor.Buffer.STITCHER));
+
+        assertTrue(governor.reserve(AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE, 300));
+        assertTrue(governor.reserve(AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE, 100));
+        assertFalse(governor.reserve(AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE, 1));
+
+        // Other buffers are not starved by a full outbound queue.
+        assertTrue(governor.reserve(AssuranceMemoryGovernor.Buffer.STITCHER, 100));
+        assertFalse(governor.reserve(AssuranceMemoryGovernor.Buffer.STITCHER, 1));
+
+        assertEquals(400, governor.getUsedBytes(AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE));
+        assertEquals(100, governor.getUsedBytes(AssuranceMemoryGovernor.Buffer.STITCHER));
+        assertEquals(500, governor.getUsedBytes());
+    }
+
+    @Test
+    public void test_release() {
+        final AssuranceMemoryGovernor governor =
+                new AssuranceMemoryGovernor(
+                        800, AssuranceMemoryGovernor.OverflowPolicy.DROP_OLDEST);
+        governor.reserve(AssuranceMemoryGovernor.Buffer.SESSION_BUFFER, 200);
+        governor.reserve(AssuranceMemoryGovernor.Buffer.SESSION_BUFFER, 100);
+
+        governor.release(AssuranceMemoryGovernor.Buffer.SESSION_BUFFER, 100);
+        assertEquals(200, governor.getUsedBytes(AssuranceMemoryGovernor.Buffer.SESSION_BUFFER));
+        assertTrue(governor.reserve(AssuranceMemoryGovernor.Buffer.SESSION_BUFFER, 100));
+
+        governor.releaseAll(AssuranceMemoryGovernor.Buffer.SESSION_BUFFER);
+        assertEquals(0, governor.getUsedBytes(AssuranceMemoryGovernor.Buffer.SESSION_BUFFER));
+
+        // A late release after releaseAll does not result in negative usage.
+        governor.release(AssuranceMemoryGovernor.Buffer.SESSION_BUFFER, 100);
+        assertEquals(0, governor.getUsedBytes(AssuranceMemoryGovernor.Buffer.SESSION_BUFFER));
+    }
+
+    @Test
+    public void test_recordDrop_reportsFirstDropAndAggregatesTheRest() {
+        final AssuranceMemoryGovernor governor = new AssuranceMemoryGovernor();
+        final List<long[]> reports = new ArrayList<>();
+        governor.setOverflowListener(
+                new AssuranceMemoryGovernor.OverflowListener() {
+                    @Override
+                    public void onEventsDropped(final long droppedEvents, final long droppedBytes) {
+                        reports.add(new long[] {droppedEvents, droppedBytes});
+                    }
+                });
+
+        governor.recordDrop(AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE, 10);
+        governor.recordDrop(AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE, 20);
+        governor.recordDrop(AssuranceMemoryGovernor.Buffer.STITCHER, 30);
+
+        // Subsequent drops within the report interval are not reported right away.
+        assertEquals(1, reports.size());
+        assertEquals(1, reports.get(0)[0]);
+        assertEquals(10, reports.get(0)[1]);
+
+        assertEquals(
+                2, governor.getDroppedEventCount(AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE));
+        assertEquals(30, governor.getDroppedBytes(AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE));
+        assertEquals(1, governor.getDroppedEventCount(AssuranceMemoryGovernor.Buffer.STITCHER));
+        assertEquals(
+                0, governor.getDroppedEventCount(AssuranceMemoryGovernor.Buffer.SESSION_BUFFER));
+    }
+
+    @Test
+    public void test_removeOverflowListener_onlyRemovesCurrentListener() {
+        final AssuranceMemoryGovernor governor = new AssuranceMemoryGovernor();
+        final List<Long> reports = new ArrayList<>();
+        final AssuranceMemoryGovernor.OverflowListener current =
+                new AssuranceMemoryGovernor.OverflowListener() {
+                    @Override
+                    public void onEventsDropped(final long droppedEvents, final long droppedBytes) {
+                        reports.add(droppedEvents);
+                    }
+                };
+        final AssuranceMemoryGovernor.OverflowListener stale =
+                new AssuranceMemoryGovernor.OverflowListener() {
+                    @Override
+                    public void onEventsDropped(final long droppedEvents, final long droppedBytes) {
+                        throw new IllegalStateException("Stale listener notified");
+                    }
+                };
+        governor.setOverflowListener(current);
+
+        governor.removeOverflowListener(stale);
+        governor.recordDrop(AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE, 10);
+
+        assertEquals(Collections.singletonList(1L), reports);
+    }
+
+    @Test
+    public void test_isLowPriority() {
+        final HashMap<String, Object> sharedStatePayload = new HashMap<>();
+        sharedStatePayload.put(
+                AssuranceConstants.GenericEventPayloadKey.ACP_EXTENSION_EVENT_NAME,
+                AssuranceConstants.SDKEventName.XDM_SHARED_STATE_CHANGE);
+        final HashMap<String, Object> genericPayload = new HashMap<>();
+        genericPayload.put(
+                AssuranceConstants.GenericEventPayloadKey.ACP_EXTENSION_EVENT_NAME,
+                "Analytics Track");
+
+        assertFalse(
+                AssuranceMemoryGovernor.isLowPriority(
+                        new AssuranceEvent(
+                                AssuranceConstants.AssuranceEventType.GENERIC,
+                                sharedStatePayload)));
+        assertFalse(
+                AssuranceMemoryGovernor.isLowPriority(
+                        new AssuranceEvent(AssuranceConstants.AssuranceEventType.CONTROL, null)));
+        assertTrue(
+                AssuranceMemoryGovernor.isLowPriority(
+                        new AssuranceEvent(
+                                AssuranceConstants.AssuranceEventType.GENERIC, genericPayload)));
+        assertTrue(
+                AssuranceMemoryGovernor.isLowPriority(
+                        new AssuranceEvent(AssuranceConstants.AssuranceEventType.LOG, null)));
+    }
+
+    @Test
+    public void test_estimateSize_growsWithPayload() {
+        final HashMap<String, Object> smallPayload = new HashMap<>();
+        smallPayload.put("key", "value");
+        final HashMap<String, Object> largePayload = new HashMap<>(smallPayload);
+        largePayload.put("list", Collections.nCopies(100, "0123456789"));
+        final AssuranceEvent smallEvent =
+                new AssuranceEvent(AssuranceConstants.AssuranceEventType.GENERIC, smallPayload);
+        final AssuranceEvent largeEvent =
+                new AssuranceEvent(AssuranceConstants.AssuranceEventType.GENERIC, largePayload);
+
+        assertTrue(largeEvent.getEstimatedSize() - smallEvent.getEstimatedSize() >= 100 * 20);
+        assertEquals(smallEvent.getEstimatedSize(), smallEvent.getEstimatedSize());
+    }
+
+    @Test
+    public void test_estimateSize_samplesLargePayloads() {
+        final List<Object> rows = new ArrayList<>();
+
+        for (int i = 0; i < 10000; i++) {
+            rows.add(Collections.singletonMap("row", Collections.nCopies(10, "0123456789")));
+        }
+
+        final HashMap<String, Object> payload = new HashMap<>();
+        payload.put("rows", rows);
+        final AssuranceEvent event =
+                new AssuranceEvent(AssuranceConstants.AssuranceEventType.GENERIC, payload);
+        final HashMap<String, Object> fewerRowsPayload = new HashMap<>();
+        fewerRowsPayload.put("rows", rows.subList(0, 100));
+        final AssuranceEvent fewerRowsEvent =
+                new AssuranceEvent(
+                        AssuranceConstants.AssuranceEventType.GENERIC, fewerRowsPayload);
+
+        // Rows past the sampled ones are extrapolated, so the estimate still scales with them.
+        assertTrue(event.getEstimatedSize() > 50 * fewerRowsEvent.getEstimatedSize());
+    }
+
+    @Test
+    public void test_estimateSize_followsEncodedSizeOfDeeplyNestedPayloads() {
+        // A shared state several levels deep under a few keys, like an XDM shared state.
+        final HashMap<String, Object> sharedState = new HashMap<>();
+        sharedState.put("xdm", nestedMap(6, 5));
+        final HashMap<String, Object> payload = new HashMap<>();
+        payload.put(
+                AssuranceConstants.GenericEventPayloadKey.ACP_EXTENSION_EVENT_NAME,
+                AssuranceConstants.SDKEventName.XDM_SHARED_STATE_CHANGE);
+        payload.put(
+                AssuranceConstants.GenericEventPayloadKey.ACP_EXTENSION_EVENT_DATA,
+                Collections.singletonMap("state.data", sharedState));
+        final AssuranceEvent event =
+                new AssuranceEvent(AssuranceConstants.AssuranceEventType.GENERIC, payload);
+
+        final int encodedSize = new AssuranceEventEncoder().encode(event);
+        final int estimatedSize = event.getEstimatedSize();
+
+        assertTrue(encodedSize > 1024 * 1024);
+        assertTrue(estimatedSize >= encodedSize / 2);
+        assertTrue(estimatedSize <= encodedSize * 4);
+    }
+
+    private static Map<String, Object> nestedMap(final int depth, final int width) {
+        final HashMap<String, Object> map = new HashMap<>();
+
+        for (int i = 0; i < width; i++) {
+            map.put(
+                    "key" + i,
+                    depth == 0
+                            ? String.format("%0200d", i)
+                            : nestedMap(depth - 1, width));
+        }
+
+        return map;
+    }
+}
@@ -13,13 +13,16 @@ package com.adobe.marketing.mobile.assurance.internal;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
@@ -96,6 +99,36 @@ public class AssurancePluginManagerTest {
         verify(mockPlugin1, times(1)).onEventReceived(mockAssuranceEvent);
     }
 
+    @Test
+    public void test_onAssuranceEvent_routesByControlTypeInRegistrationOrder() {
+        when(mockPlugin1.getControlType()).thenReturn(AssuranceConstants.ControlType.WILDCARD);
+        when(mockPlugin2.getControlType()).thenReturn(AssuranceConstants.ControlType.SCREENSHOT);
+        assurancePluginManager.addPlugin(mockPlugin1);
+        assurancePluginManager.addPlugin(mockPlugin2);
+        AssuranceEvent screenshotEvent = mock(AssuranceEvent.class);
+        when(screenshotEvent.getVendor()).thenReturn(AssuranceConstants.VENDOR_ASSURANCE_MOBILE);
+        when(screenshotEvent.getControlType())
+                .thenReturn(AssuranceConstants.ControlType.SCREENSHOT);
+        AssuranceEvent fakeEvent = mock(AssuranceEvent.class);
+        when(fakeEvent.getVendor()).thenReturn(AssuranceConstants.VENDOR_ASSURANCE_MOBILE);
+        when(fakeEvent.getControlType()).thenReturn(AssuranceConstants.ControlType.FAKE_EVENT);
+        AssuranceEvent otherVendorEvent = mock(AssuranceEvent.class);
+        when(otherVendorEvent.getVendor()).thenReturn("com.example.vendor");
+
+        assurancePluginManager.onAssuranceEvent(screenshotEvent);
+        assurancePluginManager.onAssuranceEvent(fakeEvent);
+        assurancePluginManager.onAssuranceEvent(otherVendorEvent);
+
+        final InOrder inOrder = inOrder(mockPlugin1, mockPlugin2);
+        inOrder.verify(mockPlugin1).onEventReceived(screenshotEvent);
+        inOrder.verify(mockPlugin2).onEventReceived(screenshotEvent);
+        verify(mockPlugin1).onEventReceived(fakeEvent);
+        verify(mockPlugin2, never()).onEventReceived(fakeEvent);
+        verify(mockPlugin1, never()).onEventReceived(otherVendorEvent);
+        // Read when the plugin was added, not when routing events.
+        verify(mockPlugin2, times(1)).getControlType();
+    }
+
     @Test
     public void test_onSessionConnected_notifiesPlugin() {
         assurancePluginManager.addPlugin(mockPlugin1);
@@ -123,4 +156,29 @@ public class AssurancePluginManagerTest {
 
         verify(mockPlugin1, times(1)).onSessionTerminated();
     }
+
+    @Test
+    public void test_serialLanePlugin_notifiedInOrderOffTheCallingThread() {
+        when(mockPlugin1.getControlType()).thenReturn(AssuranceConstants.ControlType.WILDCARD);
+        when(mockPlugin1.getExecutionPolicy())
+                .thenReturn(AssurancePlugin.ExecutionPolicy.SERIAL_LANE);
+        when(mockPlugin2.getControlType()).thenReturn(AssuranceConstants.ControlType.WILDCARD);
+        when(mockPlugin2.getExecutionPolicy()).thenReturn(AssurancePlugin.ExecutionPolicy.INLINE);
+        assurancePluginManager.addPlugin(mockPlugin1);
+        assurancePluginManager.addPlugin(mockPlugin2);
+        AssuranceEvent mockAssuranceEvent = mock(AssuranceEvent.class);
+        when(mockAssuranceEvent.getVendor()).thenReturn(AssuranceConstants.VENDOR_ASSURANCE_MOBILE);
+
+        assurancePluginManager.onAssuranceEvent(mockAssuranceEvent);
+        assurancePluginManager.onSessionTerminated();
+
+        verify(mockPlugin2).onEventReceived(mockAssuranceEvent);
+        verify(mockPlugin2).onSessionTerminated();
+        assertNull(assurancePluginManager.getLane(mockPlugin2));
+        verify(mockPlugin1, timeout(5000)).onSessionTerminated();
+        final InOrder inOrder = inOrder(mockPlugin1);
+        inOrder.verify(mockPlugin1).onEventReceived(mockAssuranceEvent);
+        inOrder.verify(mockPlugin1).onSessionTerminated();
+        assertEquals(1, assurancePluginManager.getLane(mockPlugin1).getDeliveredEventCount());
+    }
 }
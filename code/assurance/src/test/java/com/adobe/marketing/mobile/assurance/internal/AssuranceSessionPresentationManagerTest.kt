@@ -228,23 +228,23 @@ class AssuranceSessionPresentationManagerTest {
         )
 
         // Test
-        assuranceSessionPresentationManager.onSessionStateChange(AssuranceWebViewSocket.SocketReadyState.CLOSED)
+        assuranceSessionPresentationManager.onSessionStateChange(AssuranceTransport.SocketReadyState.CLOSED)
         verify(mockAssuranceFloatingButton).updateGraphic(false)
         reset(mockAssuranceFloatingButton)
 
-        assuranceSessionPresentationManager.onSessionStateChange(AssuranceWebViewSocket.SocketReadyState.OPEN)
+        assuranceSessionPresentationManager.onSessionStateChange(AssuranceTransport.SocketReadyState.OPEN)
         verify(mockAssuranceFloatingButton).updateGraphic(true)
         reset(mockAssuranceFloatingButton)
 
-        assuranceSessionPresentationManager.onSessionStateChange(AssuranceWebViewSocket.SocketReadyState.CLOSING)
+        assuranceSessionPresentationManager.onSessionStateChange(AssuranceTransport.SocketReadyState.CLOSING)
         verify(mockAssuranceFloatingButton).updateGraphic(false)
         reset(mockAssuranceFloatingButton)
 
-        assuranceSessionPresentationManager.onSessionStateChange(AssuranceWebViewSocket.SocketReadyState.CONNECTING)
+        assuranceSessionPresentationManager.onSessionStateChange(AssuranceTransport.SocketReadyState.CONNECTING)
         verify(mockAssuranceFloatingButton).updateGraphic(false)
         reset(mockAssuranceFloatingButton)
 
-        assuranceSessionPresentationManager.onSessionStateChange(AssuranceWebViewSocket.SocketReadyState.UNKNOWN)
+        assuranceSessionPresentationManager.onSessionStateChange(AssuranceTransport.SocketReadyState.UNKNOWN)
         verify(mockAssuranceFloatingButton).updateGraphic(false)
         reset(mockAssuranceFloatingButton)
     }
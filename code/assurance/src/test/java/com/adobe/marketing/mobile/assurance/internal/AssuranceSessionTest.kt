@@ -28,15 +28,18 @@ import org.junit.runner.RunWith
 import org.mockito.Mock
 import org.mockito.MockedStatic
 import org.mockito.Mockito
+import org.mockito.Mockito.anyLong
 import org.mockito.Mockito.eq
 import org.mockito.Mockito.times
 import org.mockito.Mockito.`when`
 import org.mockito.MockitoAnnotations
 import org.mockito.kotlin.any
+import org.mockito.kotlin.inOrder
 import org.mockito.kotlin.never
 import org.mockito.kotlin.verify
 import org.robolectric.RobolectricTestRunner
 import org.robolectric.annotation.Config
+import java.util.Random
 
 @RunWith(RobolectricTestRunner::class)
 @Config(sdk = [28])
@@ -163,7 +166,7 @@ class AssuranceSessionTest {
     @Test
     fun `AssuranceSession#disconnect() disconnects socket and clears the session`() {
         // setup
-        `when`(mockSocket.state).thenReturn(AssuranceWebViewSocket.SocketReadyState.OPEN)
+        `when`(mockSocket.state).thenReturn(AssuranceTransport.SocketReadyState.OPEN)
 
         assuranceSession = setupAssuranceSession(SessionAuthorizingPresentationType.PIN)
 
@@ -286,7 +289,7 @@ class AssuranceSessionTest {
     }
 
     @Test
-    fun `Test AssuranceSession#onSocketDataReceived on valid AssuranceEvent`() {
+    fun `Test AssuranceSession#onSocketDataReceived hands the message to the inbound worker`() {
         // setup
         val event = AssuranceEvent(
             AssuranceConstants.VENDOR_ASSURANCE_MOBILE,
@@ -303,21 +306,7 @@ class AssuranceSessionTest {
         assuranceSession.onSocketDataReceived(mockSocket, eventJson)
 
         // verify
-        verify(mockInboundEventQueueWorker).offer(any<AssuranceEvent>())
-    }
-
-    @Test
-    fun `Test AssuranceSession#onSocketDataReceived on an in-valid AssuranceEvent`() {
-        // setup
-        val eventJson = "{invalidJson}"
-
-        assuranceSession = setupAssuranceSession(SessionAuthorizingPresentationType.PIN)
-
-        // test
-        assuranceSession.onSocketDataReceived(mockSocket, eventJson)
-
-        // verify
-        verify(mockInboundEventQueueWorker, never()).offer(any<AssuranceEvent>())
+        verify(mockInboundEventQueueWorker).offerMessage(eventJson)
     }
 
     @Test
@@ -371,7 +360,7 @@ class AssuranceSessionTest {
         )
 
         verify(mockAssuranceSessionPresentationManager).onSessionReconnecting()
-        verify(mockHandler).postDelayed(any(), eq(5000L))
+        verify(mockHandler).postDelayed(any(), eq(1000L))
     }
 
     @Test
@@ -401,7 +390,7 @@ class AssuranceSessionTest {
         )
 
         verify(mockAssuranceSessionPresentationManager, never()).onSessionReconnecting()
-        verify(mockHandler, never()).postDelayed(any(), eq(5000L))
+        verify(mockHandler, never()).postDelayed(any(), anyLong())
     }
 
     @Test
@@ -436,7 +425,92 @@ class AssuranceSessionTest {
         )
 
         verify(mockAssuranceSessionPresentationManager, times(1)).onSessionReconnecting()
-        verify(mockHandler, times(2)).postDelayed(any(), eq(5000L))
+        // The delay cap doubles with every attempt.
+        verify(mockHandler).postDelayed(any(), eq(1000L))
+        verify(mockHandler).postDelayed(any(), eq(2000L))
+    }
+
+    @Test
+    fun `Test AssuranceSession#onSocketDisconnected on ABNORMAL disconnection stops retrying once the attempt budget is spent`() {
+        // setup
+        `when`(mockAssuranceSessionPresentationManager.isAuthorizingPresentationActive()).thenReturn(false)
+        assuranceSession = setupAssuranceSession(SessionAuthorizingPresentationType.PIN)
+        setInternalState(assuranceSession, "reconnectPolicy", ReconnectPolicy(HalfRandom(), 1))
+
+        // test
+        assuranceSession.onSocketDisconnected(
+            mockSocket,
+            "Abnormal Disconnection",
+            AssuranceConstants.SocketCloseCode.ABNORMAL,
+            false
+        )
+        assuranceSession.onSocketDisconnected(
+            mockSocket,
+            "Abnormal Disconnection",
+            AssuranceConstants.SocketCloseCode.ABNORMAL,
+            false
+        )
+
+        // verify that the session gives up and shows the error screen
+        verify(mockHandler, times(1)).postDelayed(any(), anyLong())
+        verify(mockAssuranceSessionPresentationManager).onSessionDisconnected(
+            AssuranceConstants.SocketCloseCode.ABNORMAL
+        )
+    }
+
+    @Test
+    fun `Test AssuranceSession#reconnectNow reconnects without waiting for the backoff delay`() {
+        // setup
+        `when`(mockAssuranceSessionPresentationManager.isAuthorizingPresentationActive()).thenReturn(false)
+        `when`(mockAssuranceStateManager.getOrgId(true)).thenReturn("ORG_ID")
+        `when`(mockAssuranceStateManager.getClientId()).thenReturn("CLIENT_ID")
+        assuranceSession = setupAssuranceSession(SessionAuthorizingPresentationType.PIN)
+
+        // network availability is ignored while connected
+        assuranceSession.reconnectNow()
+        verify(mockSocket, never()).connect(any())
+
+        assuranceSession.onSocketDisconnected(
+            mockSocket,
+            "Abnormal Disconnection",
+            AssuranceConstants.SocketCloseCode.ABNORMAL,
+            false
+        )
+
+        // test
+        assuranceSession.reconnectNow()
+
+        // verify
+        verify(mockHandler).removeCallbacks(any())
+        verify(mockSocket).connect(setupUri("SESSION_ID", "SESSION_PIN", "ORG_ID", "CLIENT_ID"))
+    }
+
+    @Test
+    fun `Test AssuranceSession#reconnectNow on a flapping network stops after the reconnect budget`() {
+        // setup
+        `when`(mockAssuranceSessionPresentationManager.isAuthorizingPresentationActive()).thenReturn(false)
+        `when`(mockAssuranceStateManager.getOrgId(true)).thenReturn("ORG_ID")
+        `when`(mockAssuranceStateManager.getClientId()).thenReturn("CLIENT_ID")
+        assuranceSession = setupAssuranceSession(SessionAuthorizingPresentationType.PIN)
+
+        // test: the network comes back twice before every attempt fails
+        repeat(ReconnectPolicy.MAX_ATTEMPTS + 1) {
+            assuranceSession.onSocketDisconnected(
+                mockSocket,
+                "Abnormal Disconnection",
+                AssuranceConstants.SocketCloseCode.ABNORMAL,
+                false
+            )
+            assuranceSession.reconnectNow()
+            assuranceSession.reconnectNow()
+        }
+
+        // verify that only the attempts of the budget are made, then the session gives up
+        verify(mockSocket, times(ReconnectPolicy.MAX_ATTEMPTS)).connect(any())
+        verify(mockHandler, times(ReconnectPolicy.MAX_ATTEMPTS)).postDelayed(any(), anyLong())
+        verify(mockAssuranceSessionPresentationManager).onSessionDisconnected(
+            AssuranceConstants.SocketCloseCode.ABNORMAL
+        )
     }
 
     @Test
@@ -563,7 +637,7 @@ class AssuranceSessionTest {
     fun `Test AssuranceSession#onSocketStateChange notifies AssurancePresentationManager`() {
         // setup
         assuranceSession = setupAssuranceSession(SessionAuthorizingPresentationType.PIN)
-        val states = AssuranceWebViewSocket.SocketReadyState.values()
+        val states = AssuranceTransport.SocketReadyState.values()
 
         // test
         states.forEach {
@@ -613,6 +687,37 @@ class AssuranceSessionTest {
         verify(mockAssurancePluginManager, never()).onAssuranceEvent(startEventForwardingEvent)
     }
 
+    @Test
+    fun `Test that START_EVENT_FORWARDING event applies acknowledged capabilities`() {
+        // setup
+        val startEventForwardingEvent = AssuranceEvent(
+            AssuranceConstants.VENDOR_ASSURANCE_MOBILE,
+            AssuranceConstants.AssuranceEventType.CONTROL,
+            mutableMapOf(),
+            mutableMapOf<String, Any?>(
+                AssuranceConstants.PayloadDataKeys.TYPE to AssuranceConstants.ControlType.START_EVENT_FORWARDING,
+                AssuranceConstants.PayloadDataKeys.DETAIL to hashMapOf<String, Any>(
+                    AssuranceConstants.ClientInfoKeys.CAPABILITIES to listOf(
+                        AssuranceConstants.TransportCapability.BATCH,
+                        "unknownCapability"
+                    )
+                )
+            ),
+            300L
+        )
+
+        assuranceSession = setupAssuranceSession(SessionAuthorizingPresentationType.PIN)
+
+        // test
+        assuranceSession.inboundQueueEventListener.onInboundEvent(startEventForwardingEvent)
+
+        // verify
+        val inOrder = inOrder(mockOutboundEventQueueWorker)
+        inOrder.verify(mockOutboundEventQueueWorker)
+            .setAcknowledgedCapabilities(setOf(AssuranceConstants.TransportCapability.BATCH))
+        inOrder.verify(mockOutboundEventQueueWorker).unblock()
+    }
+
     @Test
     fun `Test that InboundEventQueueWorker forwards events to plugin manager`() {
         // setup
@@ -697,6 +802,12 @@ class AssuranceSessionTest {
         setInternalState(assuranceSession, "socket", mockSocket)
         setInternalState(assuranceSession, "pluginManager", mockAssurancePluginManager)
         setInternalState(assuranceSession, "socketReconnectHandler", mockHandler)
+        setInternalState(assuranceSession, "reconnectPolicy", ReconnectPolicy(HalfRandom(), ReconnectPolicy.MAX_ATTEMPTS))
         return assuranceSession
     }
+
+    /** Draws every reconnect delay halfway to its cap. */
+    private class HalfRandom : Random() {
+        override fun nextDouble(): Double = 0.5
+    }
 }
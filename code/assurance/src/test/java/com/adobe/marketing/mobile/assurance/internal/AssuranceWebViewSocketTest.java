@@ -17,7 +17,6 @@ import static org.mockito.Mockito.*;
 
 import android.net.Uri;
 import android.os.Handler;
-import android.util.Base64;
 import android.webkit.WebView;
 import java.util.concurrent.ExecutorService;
 import org.junit.After;
@@ -88,8 +87,8 @@ public class AssuranceWebViewSocketTest {
 
         // verify webview load url is called
         ArgumentCaptor<String> argumentCaptor = ArgumentCaptor.forClass(String.class);
-        verify(mockWebview).loadUrl(argumentCaptor.capture());
-        assertEquals("javascript: connect('" + CONST_URL + "')", argumentCaptor.getValue());
+        verify(mockWebview).evaluateJavascript(argumentCaptor.capture(), isNull());
+        assertEquals("connect('" + CONST_URL + "')", argumentCaptor.getValue());
     }
 
     @Test
@@ -116,7 +115,7 @@ public class AssuranceWebViewSocketTest {
 
         // verify webview load url is not called
         ArgumentCaptor<String> argumentCaptor = ArgumentCaptor.forClass(String.class);
-        verify(mockWebview, never()).loadUrl(argumentCaptor.capture());
+        verify(mockWebview, never()).evaluateJavascript(argumentCaptor.capture(), any());
     }
 
     @Test
@@ -142,48 +141,124 @@ public class AssuranceWebViewSocketTest {
 
         // verify webview load url is called
         ArgumentCaptor<String> argumentCaptor = ArgumentCaptor.forClass(String.class);
-        verify(mockWebview).loadUrl(argumentCaptor.capture());
-        assertEquals("javascript: disconnect()", argumentCaptor.getValue());
+        verify(mockWebview).evaluateJavascript(argumentCaptor.capture(), isNull());
+        assertEquals("disconnect()", argumentCaptor.getValue());
     }
 
     @Test
-    public void test_sendData() throws InterruptedException {
+    public void test_sendData() {
         mockValidURL();
         mockExecutorService();
         mockMainHandlerAndRunTheRunnable();
 
-        // mock encodedDataString
-        String encodedDataString = "encodedDataString";
-
-        // Mock Base64
-        MockedStatic<Base64> mockedStaticBase64 = Mockito.mockStatic(Base64.class);
-        mockedStaticBase64
-                .when(() -> Base64.encodeToString(any(byte[].class), anyInt()))
-                .thenReturn(encodedDataString);
-
         byte[] mockDataBytes = "MockData".getBytes();
         // test
         assuranceWebViewSocket.sendData(mockDataBytes);
 
-        Thread.sleep(4000);
+        // verify webview is signalled
+        ArgumentCaptor<String> argumentCaptor = ArgumentCaptor.forClass(String.class);
+        verify(mockWebview).evaluateJavascript(argumentCaptor.capture(), isNull());
+        assertEquals("framesAvailable()", argumentCaptor.getValue());
 
-        // verify arguments are same as the mock arguments
-        ArgumentCaptor<byte[]> argumentCaptor = ArgumentCaptor.forClass(byte[].class);
-        ArgumentCaptor<Integer> argumentCaptor1 = ArgumentCaptor.forClass(Integer.class);
+        // verify the webview pulls the data, Base64 encoded without padding
+        assertEquals("TW9ja0RhdGE", assuranceWebViewSocket.nextFrames(1024));
+        assertEquals("", assuranceWebViewSocket.nextFrames(1024));
+    }
 
-        // verify encodeToString is called
-        mockedStaticBase64.verify(
-                () -> Base64.encodeToString(argumentCaptor.capture(), argumentCaptor1.capture()));
+    @Test
+    public void test_sendData_offsetAndLength() {
+        mockExecutorService();
+        mockMainHandlerAndRunTheRunnable();
 
-        assertEquals(mockDataBytes, argumentCaptor.getValue());
-        assertEquals(
-                Integer.valueOf(Base64.NO_WRAP | Base64.NO_PADDING), argumentCaptor1.getValue());
+        // test
+        assuranceWebViewSocket.sendData("[MockData]".getBytes(), 1, 8);
 
-        // verify webview load url is called
-        ArgumentCaptor<String> argumentCaptor2 = ArgumentCaptor.forClass(String.class);
-        verify(mockWebview).loadUrl(argumentCaptor2.capture());
-        assertEquals(
-                "javascript: sendData('" + encodedDataString + "')", argumentCaptor2.getValue());
+        assertEquals("TW9ja0RhdGE", assuranceWebViewSocket.nextFrames(1024));
+    }
+
+    @Test
+    public void test_sendData_overMaxDataLength_dropped() {
+        mockExecutorService();
+        mockMainHandlerAndRunTheRunnable();
+
+        // test
+        assuranceWebViewSocket.sendData(
+                new byte[AssuranceWebViewSocket.MAX_DATA_LENGTH * 3 / 4 + 1]);
+
+        verify(mockWebview, never()).evaluateJavascript(anyString(), any());
+        assertEquals("", assuranceWebViewSocket.nextFrames(AssuranceWebViewSocket.MAX_DATA_LENGTH));
+    }
+
+    @Test
+    public void test_sendData_signalsOnceUntilFramesArePulled() {
+        mockExecutorService();
+        mockMainHandlerAndRunTheRunnable();
+
+        // test
+        assuranceWebViewSocket.sendData("data1".getBytes());
+        assuranceWebViewSocket.sendData("data2".getBytes());
+        assuranceWebViewSocket.sendData("data3".getBytes());
+
+        // verify the webview is signalled once and pulls all pending frames together
+        verify(mockWebview, times(1)).evaluateJavascript(eq("framesAvailable()"), isNull());
+        assertEquals("ZGF0YTE\nZGF0YTI\nZGF0YTM", assuranceWebViewSocket.nextFrames(1024));
+        assertEquals("", assuranceWebViewSocket.nextFrames(1024));
+
+        // verify the webview is signalled again once it has drained the queue
+        assuranceWebViewSocket.sendData("data4".getBytes());
+        verify(mockWebview, times(2)).evaluateJavascript(eq("framesAvailable()"), isNull());
+        assertEquals("ZGF0YTQ", assuranceWebViewSocket.nextFrames(1024));
+    }
+
+    @Test
+    public void test_nextFrames_cappedByMaxLength() {
+        mockExecutorService();
+        mockMainHandlerAndRunTheRunnable();
+        // 24kb of data take up the whole 32kb frame once Base64 encoded.
+        final byte[] data = new byte[AssuranceWebViewSocket.MAX_DATA_LENGTH * 3 / 4];
+        final StringBuilder frame = new StringBuilder();
+
+        while (frame.length() < AssuranceWebViewSocket.MAX_DATA_LENGTH) {
+            frame.append('A');
+        }
+
+        // test
+        for (int i = 0; i < 9; i++) {
+            assuranceWebViewSocket.sendData(data);
+        }
+
+        // verify 9 frames of 32kb take two pulls of at most 256kb
+        final int maxLength = AssuranceWebViewSocket.MAX_DATA_LENGTH * 8;
+        final String firstPull = assuranceWebViewSocket.nextFrames(maxLength);
+        final String secondPull = assuranceWebViewSocket.nextFrames(maxLength);
+        assertTrue(firstPull.length() <= maxLength);
+        assertEquals(7, firstPull.split("\n").length);
+        assertEquals(frame + "\n" + frame, secondPull);
+        assertEquals("", assuranceWebViewSocket.nextFrames(maxLength));
+    }
+
+    @Test
+    public void test_getBufferedAmount_countsPendingAndPageFrames() {
+        mockExecutorService();
+        mockMainHandlerAndRunTheRunnable();
+
+        // test
+        assuranceWebViewSocket.sendData("data1".getBytes());
+        assuranceWebViewSocket.sendData("data2".getBytes());
+
+        // verify both frames are buffered until the page pulls them
+        assertEquals(14, assuranceWebViewSocket.getBufferedAmount());
+        assertEquals(2, assuranceWebViewSocket.getBufferedFrameCount());
+
+        assertEquals("ZGF0YTE\nZGF0YTI", assuranceWebViewSocket.nextFrames(1024));
+        assertEquals(0, assuranceWebViewSocket.getBufferedAmount());
+
+        // verify the amount reported by the page is forwarded to the handler
+        assuranceWebViewSocket.onPageBufferedAmountChanged(100, 1);
+        assertEquals(100, assuranceWebViewSocket.getBufferedAmount());
+        assertEquals(1, assuranceWebViewSocket.getBufferedFrameCount());
+        verify(mockAssuranceWebViewSocketHandler)
+                .onSocketBufferedAmountChanged(assuranceWebViewSocket, 100);
     }
 
     @After
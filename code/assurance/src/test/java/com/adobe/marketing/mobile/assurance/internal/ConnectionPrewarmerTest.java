@@ -0,0 +1,88 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConnectionPrewarmerTest {
+
+    private static final String HOST = "127.0.0.1";
+
+    private final ConnectionPrewarmer prewarmer = new ConnectionPrewarmer();
+    private ServerSocket serverSocket;
+    private Socket serverConnection;
+
+    @Before
+    public void setup() throws IOException {
+        serverSocket = new ServerSocket(0);
+    }
+
+    @After
+    public void teardown() throws IOException {
+        prewarmer.cancel();
+
+        if (serverConnection != null) {
+            serverConnection.close();
+        }
+
+        serverSocket.close();
+    }
+
+    @Test
+    public void test_take_onlyMatchingConnection() throws Exception {
+        final int port = serverSocket.getLocalPort();
+        warm(port);
+
+        assertNull(prewarmer.take(HOST, port + 1, false));
+        assertNull(prewarmer.take(HOST, port, true));
+
+        final Socket socket = prewarmer.take(HOST, port, false);
+        assertNotNull(socket);
+        assertTrue(socket.isConnected());
+        assertFalse(prewarmer.hasWarmConnection());
+        assertNull(prewarmer.take(HOST, port, false));
+        socket.close();
+    }
+
+    @Test
+    public void test_cancel_closesWarmConnection() throws Exception {
+        warm(serverSocket.getLocalPort());
+
+        prewarmer.cancel();
+
+        assertFalse(prewarmer.hasWarmConnection());
+        serverConnection.setSoTimeout(5000);
+        assertEquals(-1, serverConnection.getInputStream().read());
+    }
+
+    private void warm(final int port) throws Exception {
+        prewarmer.prewarm(HOST, port, false);
+        serverConnection = serverSocket.accept();
+
+        for (int i = 0; i < 100 && !prewarmer.hasWarmConnection(); i++) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(prewarmer.hasWarmConnection());
+    }
+}
@@ -0,0 +1,280 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+public class EventQueueWorkerTest {
+
+    private final ThreadPoolExecutor executorService =
+            new ThreadPoolExecutor(
+                    1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void test_offer_parkedWorkerIsReused() throws InterruptedException {
+        final TestWorker worker = new TestWorker(executorService, 60_000L, 100);
+        worker.start();
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(worker.offer(i));
+
+            // Let the worker drain and park between items.
+            if (i % 10 == 0) {
+                Thread.sleep(5);
+            }
+        }
+
+        assertTrue(worker.latch.await(5, TimeUnit.SECONDS));
+        // Verify that a single long-lived task drained all items.
+        assertEquals(1, executorService.getTaskCount());
+        assertEquals(100, worker.processed.size());
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Integer.valueOf(i), worker.processed.get(i));
+        }
+
+        worker.stop();
+    }
+
+    @Test
+    public void test_offer_multipleProducers_noItemStranded() throws InterruptedException {
+        // A zero idle timeout maximizes the hand-offs between an exiting and a new worker task.
+        final int producerCount = 4;
+        final int itemsPerProducer = 2_000;
+        final TestWorker worker =
+                new TestWorker(executorService, 0L, producerCount * itemsPerProducer);
+        worker.start();
+
+        final ExecutorService producers = Executors.newFixedThreadPool(producerCount);
+
+        for (int p = 0; p < producerCount; p++) {
+            producers.submit(
+                    () -> {
+                        for (int i = 0; i < itemsPerProducer; i++) {
+                            while (!worker.offer(i)) {
+                                Thread.yield();
+                            }
+                        }
+                    });
+        }
+
+        producers.shutdown();
+        assertTrue(producers.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(worker.latch.await(5, TimeUnit.SECONDS));
+        assertEquals(producerCount * itemsPerProducer, worker.processed.size());
+        worker.stop();
+    }
+
+    @Test
+    public void test_pollWork_wokenUpByOffer() throws Exception {
+        final CountDownLatch firstItemTaken = new CountDownLatch(1);
+        final AtomicInteger polled = new AtomicInteger(-1);
+        final EventQueueWorker<Integer> worker =
+                new EventQueueWorker<Integer>(executorService, new EventRingBuffer<>(8), 60_000L) {
+                    @Override
+                    protected void prepare() {}
+
+                    @Override
+                    protected boolean canWork() {
+                        return true;
+                    }
+
+                    @Override
+                    protected void doWork(final Integer workItem) throws InterruptedException {
+                        firstItemTaken.countDown();
+                        final Integer next = pollWork(5, TimeUnit.SECONDS);
+                        polled.set(next == null ? -1 : next);
+                    }
+                };
+        worker.start();
+        worker.offer(1);
+
+        assertTrue(firstItemTaken.await(5, TimeUnit.SECONDS));
+        final long offeredAt = System.nanoTime();
+        worker.offer(2);
+
+        // Wait for the worker to park again, polled is set once pollWork returns.
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while (polled.get() != 2 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+
+        assertEquals(2, polled.get());
+        assertTrue(System.nanoTime() - offeredAt < TimeUnit.SECONDS.toNanos(4));
+        worker.stop();
+    }
+
+    @Test
+    public void test_offer_full() {
+        final TestWorker worker =
+                new TestWorker(executorService, 0L, 0, new EventRingBuffer<Integer>(2));
+
+        // Not started, so nothing is drained.
+        assertTrue(worker.offer(1));
+        assertTrue(worker.offer(2));
+        assertFalse(worker.offer(3));
+    }
+
+    @Test
+    public void test_stop_interruptsParkedWorker() throws Exception {
+        final TestWorker worker = new TestWorker(executorService, 60_000L, 1);
+        worker.start();
+        worker.offer(1);
+        assertTrue(worker.latch.await(5, TimeUnit.SECONDS));
+
+        worker.stop();
+
+        // Verify that the parked worker returns the thread to the executor.
+        final Future<?> probe = executorService.submit(() -> {});
+        probe.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void test_stopThenStart_cancelledWorkerDoesNotReleaseNewWorker() throws Exception {
+        final ThreadPoolExecutor twoThreadExecutor =
+                new ThreadPoolExecutor(
+                        2, 2, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+        final CountDownLatch firstItemTaken = new CountDownLatch(1);
+        final CountDownLatch releaseFirstItem = new CountDownLatch(1);
+        final List<Integer> processed = new CopyOnWriteArrayList<>();
+        final EventQueueWorker<Integer> worker =
+                new EventQueueWorker<Integer>(
+                        twoThreadExecutor, new EventRingBuffer<>(8), 60_000L) {
+                    @Override
+                    protected void prepare() {}
+
+                    @Override
+                    protected boolean canWork() {
+                        return true;
+                    }
+
+                    @Override
+                    protected void doWork(final Integer workItem) {
+                        processed.add(workItem);
+
+                        if (workItem != 1) {
+                            return;
+                        }
+
+                        // Outlive stop(), as a worker blocked on I/O would.
+                        firstItemTaken.countDown();
+                        boolean interrupted = false;
+
+                        while (true) {
+                            try {
+                                releaseFirstItem.await();
+                                break;
+                            } catch (final InterruptedException exception) {
+                                interrupted = true;
+                            }
+                        }
+
+                        if (interrupted) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                };
+
+        try {
+            worker.start();
+            worker.offer(1);
+            assertTrue(firstItemTaken.await(5, TimeUnit.SECONDS));
+
+            worker.stop();
+            worker.start();
+            worker.offer(2);
+
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+            while (processed.size() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+
+            // Let the cancelled worker finish while the new one is parked.
+            releaseFirstItem.countDown();
+
+            while (twoThreadExecutor.getCompletedTaskCount() < 1
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+
+            worker.offer(3);
+
+            while (processed.size() < 3 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+
+            // Verify that the parked worker was woken up instead of a second one being submitted.
+            assertEquals(3, processed.size());
+            assertEquals(2, twoThreadExecutor.getTaskCount());
+            worker.stop();
+        } finally {
+            twoThreadExecutor.shutdownNow();
+        }
+    }
+
+    private static class TestWorker extends EventQueueWorker<Integer> {
+        final List<Integer> processed = new CopyOnWriteArrayList<>();
+        final CountDownLatch latch;
+
+        TestWorker(
+                final ExecutorService executorService,
+                final long idleTimeoutMillis,
+                final int expectedItems) {
+            this(executorService, idleTimeoutMillis, expectedItems, new EventRingBuffer<>(64));
+        }
+
+        TestWorker(
+                final ExecutorService executorService,
+                final long idleTimeoutMillis,
+                final int expectedItems,
+                final EventRingBuffer<Integer> queue) {
+            super(executorService, queue, idleTimeoutMillis);
+            this.latch = new CountDownLatch(expectedItems);
+        }
+
+        @Override
+        protected void prepare() {}
+
+        @Override
+        protected boolean canWork() {
+            return true;
+        }
+
+        @Override
+        protected void doWork(final Integer workItem) {
+            processed.add(workItem);
+            latch.countDown();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+
+public class EventRingBufferTest {
+
+    @Test
+    public void test_capacity_roundedUpToPowerOfTwo() {
+        assertEquals(1, new EventRingBuffer<String>(1).capacity());
+        assertEquals(8, new EventRingBuffer<String>(5).capacity());
+        assertEquals(16, new EventRingBuffer<String>(16).capacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_capacity_mustBePositive() {
+        new EventRingBuffer<String>(0);
+    }
+
+    @Test
+    public void test_offerAndPoll_fifo() {
+        final EventRingBuffer<String> ringBuffer = new EventRingBuffer<>(4);
+
+        assertTrue(ringBuffer.offer("1"));
+        assertTrue(ringBuffer.offer("2"));
+        assertEquals(2, ringBuffer.size());
+
+        assertEquals("1", ringBuffer.peek());
+        assertEquals("1", ringBuffer.poll());
+        assertEquals("2", ringBuffer.poll());
+        assertNull(ringBuffer.poll());
+        assertNull(ringBuffer.peek());
+        assertEquals(0, ringBuffer.size());
+    }
+
+    @Test
+    public void test_offer_full() {
+        final EventRingBuffer<String> ringBuffer = new EventRingBuffer<>(2);
+
+        assertTrue(ringBuffer.offer("1"));
+        assertTrue(ringBuffer.offer("2"));
+        assertFalse(ringBuffer.offer("3"));
+
+        // Verify that a slot becomes available once consumed
+        assertEquals("1", ringBuffer.poll());
+        assertTrue(ringBuffer.offer("3"));
+        assertEquals("2", ringBuffer.poll());
+        assertEquals("3", ringBuffer.poll());
+    }
+
+    @Test
+    public void test_offerAndPoll_wrapsAround() {
+        final EventRingBuffer<Integer> ringBuffer = new EventRingBuffer<>(4);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(ringBuffer.offer(i));
+            assertTrue(ringBuffer.offer(i + 1000));
+            assertEquals(Integer.valueOf(i), ringBuffer.poll());
+            assertEquals(Integer.valueOf(i + 1000), ringBuffer.poll());
+        }
+
+        assertNull(ringBuffer.poll());
+    }
+
+    @Test
+    public void test_clear() {
+        final EventRingBuffer<String> ringBuffer = new EventRingBuffer<>(4);
+        ringBuffer.offer("1");
+        ringBuffer.offer("2");
+
+        ringBuffer.clear();
+
+        assertNull(ringBuffer.poll());
+        assertEquals(0, ringBuffer.size());
+        assertTrue(ringBuffer.offer("3"));
+        assertEquals("3", ringBuffer.poll());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void test_offer_null() {
+        new EventRingBuffer<String>(4).offer(null);
+    }
+
+    @Test
+    public void test_offer_multipleProducers() throws InterruptedException {
+        final int producerCount = 4;
+        final int itemsPerProducer = 10_000;
+        final EventRingBuffer<int[]> ringBuffer = new EventRingBuffer<>(64);
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final List<Thread> producers = new ArrayList<>();
+
+        for (int p = 0; p < producerCount; p++) {
+            final int producer = p;
+            final Thread thread =
+                    new Thread(
+                            () -> {
+                                try {
+                                    startLatch.await();
+                                } catch (final InterruptedException e) {
+                                    return;
+                                }
+
+                                for (int i = 0; i < itemsPerProducer; i++) {
+                                    while (!ringBuffer.offer(new int[] {producer, i})) {
+                                        Thread.yield();
+                                    }
+                                }
+                            });
+            producers.add(thread);
+            thread.start();
+        }
+
+        startLatch.countDown();
+
+        // Verify that every item is consumed exactly once and in order per producer.
+        final int[] nextExpected = new int[producerCount];
+        int consumed = 0;
+
+        while (consumed < producerCount * itemsPerProducer) {
+            final int[] item = ringBuffer.poll();
+
+            if (item == null) {
+                Thread.yield();
+                continue;
+            }
+
+            assertEquals(nextExpected[item[0]]++, item[1]);
+            consumed++;
+        }
+
+        for (final Thread producer : producers) {
+            producer.join();
+        }
+
+        assertNull(ringBuffer.poll());
+    }
+}
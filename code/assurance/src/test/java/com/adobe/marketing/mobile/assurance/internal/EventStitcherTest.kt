@@ -19,12 +19,22 @@ import org.junit.Assert.assertTrue
 import org.junit.Assert.fail
 import org.junit.Before
 import org.junit.Test
+import org.mockito.Mockito.`when`
+import org.mockito.kotlin.any
+import org.mockito.kotlin.argumentCaptor
+import org.mockito.kotlin.eq
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.times
+import org.mockito.kotlin.verify
 import java.util.UUID
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
 
 class EventStitcherTest {
 
     private lateinit var eventStitcher: EventStitcher
-    private val queue: MutableMap<String, MutableList<AssuranceEvent>> = mutableMapOf()
+    private val queue: MutableMap<String, EventStitcher.ChunkGroup> = mutableMapOf()
     private val stitchedEvents = mutableListOf<AssuranceEvent>()
 
     @Before
@@ -107,7 +117,7 @@ class EventStitcherTest {
         eventStitcher.onEvent(chunkedEventPart1)
         assertTrue(stitchedEvents.isEmpty())
         assertTrue(queue.size == 1)
-        assertEquals(1, queue[chunkId]?.size)
+        assertEquals(1, queue[chunkId]?.receivedCount)
 
         val chunkedEventPart2 = AssuranceEvent(
             AssuranceConstants.VENDOR_ASSURANCE_MOBILE,
@@ -127,7 +137,7 @@ class EventStitcherTest {
         eventStitcher.onEvent(chunkedEventPart2)
         assert(stitchedEvents.size == 0)
         assert(queue.size == 1)
-        assertEquals(2, queue[chunkId]?.size)
+        assertEquals(2, queue[chunkId]?.receivedCount)
 
         val chunkedEventPart3 = AssuranceEvent(
             AssuranceConstants.VENDOR_ASSURANCE_MOBILE,
@@ -263,7 +273,7 @@ class EventStitcherTest {
             System.currentTimeMillis()
         )
 
-        val response = eventStitcher.stitch(mutableListOf(chunkedEventPart1, chunkedEventPart2))
+        val response = eventStitcher.stitch(chunkGroupOf(chunkedEventPart1, chunkedEventPart2))
         assertTrue(response is Response.Failure)
         assertTrue(queue.isEmpty())
     }
@@ -313,7 +323,7 @@ class EventStitcherTest {
         )
 
         val response: Response<AssuranceEvent, Exception> = eventStitcher.stitch(
-            mutableListOf(
+            chunkGroupOf(
                 chunkedEventPart1,
                 chunkedEventPart2,
                 chunkedEventPart3
@@ -357,7 +367,7 @@ class EventStitcherTest {
         eventStitcher.onEvent(chunkedEventPart1)
         assertTrue(stitchedEvents.isEmpty())
         assertTrue(queue.size == 1)
-        assertEquals(1, queue[chunkId]?.size)
+        assertEquals(1, queue[chunkId]?.receivedCount)
 
         val chunkedEventPart2 = AssuranceEvent(
             AssuranceConstants.VENDOR_ASSURANCE_MOBILE,
@@ -377,7 +387,7 @@ class EventStitcherTest {
         eventStitcher.onEvent(chunkedEventPart2)
         assert(stitchedEvents.size == 0)
         assert(queue.size == 1)
-        assertEquals(2, queue[chunkId]?.size)
+        assertEquals(2, queue[chunkId]?.receivedCount)
 
         val chunkedEventPart3 = AssuranceEvent(
             AssuranceConstants.VENDOR_ASSURANCE_MOBILE,
@@ -409,6 +419,189 @@ class EventStitcherTest {
         )
     }
 
+    @Test
+    fun `onEvent evicts the oldest chunk group when over the memory budget`() {
+        val firstChunkId = UUID.randomUUID().toString()
+        val secondChunkId = UUID.randomUUID().toString()
+        val firstGroupPart1 = createChunk(firstChunkId, 0)
+        val firstGroupPart2 = createChunk(firstChunkId, 1)
+        val secondGroupPart1 = createChunk(secondChunkId, 0)
+        // Leave room in the stitcher share of the budget for exactly two chunks.
+        val memoryGovernor = AssuranceMemoryGovernor(
+            8L * (firstGroupPart1.estimatedSize + firstGroupPart2.estimatedSize),
+            AssuranceMemoryGovernor.OverflowPolicy.DROP_OLDEST
+        )
+        val stitcher = EventStitcher(queue, { stitchedEvents.add(it) }, memoryGovernor)
+
+        stitcher.onEvent(firstGroupPart1)
+        stitcher.onEvent(firstGroupPart2)
+        assertEquals(2, queue[firstChunkId]?.receivedCount)
+
+        stitcher.onEvent(secondGroupPart1)
+
+        assertFalse(queue.containsKey(firstChunkId))
+        assertEquals(1, queue[secondChunkId]?.receivedCount)
+        assertEquals(
+            secondGroupPart1.estimatedSize.toLong(),
+            memoryGovernor.getUsedBytes(AssuranceMemoryGovernor.Buffer.STITCHER)
+        )
+        assertEquals(2L, memoryGovernor.getDroppedEventCount(AssuranceMemoryGovernor.Buffer.STITCHER))
+        assertTrue(stitchedEvents.isEmpty())
+    }
+
+    @Test
+    fun `onEvent releases the memory budget once the chunk group is stitched`() {
+        val chunkId = UUID.randomUUID().toString()
+        val memoryGovernor = AssuranceMemoryGovernor()
+        val stitcher = EventStitcher(queue, { stitchedEvents.add(it) }, memoryGovernor)
+
+        stitcher.onEvent(createChunk(chunkId, 0, 2, "{ \"key\":"))
+        assertTrue(memoryGovernor.getUsedBytes(AssuranceMemoryGovernor.Buffer.STITCHER) > 0)
+        stitcher.onEvent(createChunk(chunkId, 1, 2, " \"value\" }"))
+
+        assertEquals(1, stitchedEvents.size)
+        assertEquals(0L, memoryGovernor.getUsedBytes(AssuranceMemoryGovernor.Buffer.STITCHER))
+    }
+
+    @Test
+    fun `onEvent drops a chunk group that misses its deadline`() {
+        var now = 0L
+        val memoryGovernor = AssuranceMemoryGovernor()
+        val stitcher = EventStitcher(queue, { stitchedEvents.add(it) }, memoryGovernor) { now }
+        val staleChunkId = UUID.randomUUID().toString()
+        val liveChunkId = UUID.randomUUID().toString()
+
+        stitcher.onEvent(createChunk(staleChunkId, 0))
+        now += EventStitcher.CHUNK_GROUP_TIMEOUT_MILLIS / 2
+        stitcher.onEvent(createChunk(liveChunkId, 0))
+        now += EventStitcher.CHUNK_GROUP_TIMEOUT_MILLIS / 2
+        stitcher.onEvent(createChunk(liveChunkId, 1))
+
+        assertFalse(queue.containsKey(staleChunkId))
+        assertEquals(2, queue[liveChunkId]?.receivedCount)
+        assertEquals(1L, stitcher.expiredGroupCount)
+        assertEquals(0L, stitcher.evictedGroupCount)
+        assertEquals(1L, memoryGovernor.getDroppedEventCount(AssuranceMemoryGovernor.Buffer.STITCHER))
+
+        // A chunk arriving after its group expired starts the group over.
+        stitcher.onEvent(createChunk(staleChunkId, 1))
+        assertEquals(1, queue[staleChunkId]?.receivedCount)
+        assertTrue(stitchedEvents.isEmpty())
+    }
+
+    @Test
+    fun `sweep drops a chunk group that misses its deadline while no chunk arrives`() {
+        var now = 0L
+        val memoryGovernor = AssuranceMemoryGovernor()
+        val sweepExecutor: ScheduledExecutorService = mock()
+        `when`(sweepExecutor.schedule(any<Runnable>(), any(), any())).thenReturn(mock<ScheduledFuture<*>>())
+        val stitcher = EventStitcher(queue, { stitchedEvents.add(it) }, memoryGovernor, sweepExecutor) { now }
+        val chunkId = UUID.randomUUID().toString()
+
+        stitcher.onEvent(createChunk(chunkId, 0))
+        stitcher.onEvent(createChunk(chunkId, 1))
+
+        // A single sweep is scheduled for the deadline of the group.
+        val sweepCaptor = argumentCaptor<Runnable>()
+        verify(sweepExecutor, times(1)).schedule(
+            sweepCaptor.capture(),
+            eq(EventStitcher.CHUNK_GROUP_TIMEOUT_MILLIS),
+            eq(TimeUnit.MILLISECONDS)
+        )
+
+        now += EventStitcher.CHUNK_GROUP_TIMEOUT_MILLIS
+        sweepCaptor.firstValue.run()
+
+        assertTrue(queue.isEmpty())
+        assertEquals(1L, stitcher.expiredGroupCount)
+        assertEquals(0L, memoryGovernor.getUsedBytes(AssuranceMemoryGovernor.Buffer.STITCHER))
+        // No sweep is scheduled once no chunk group is left.
+        verify(sweepExecutor, times(1)).schedule(any<Runnable>(), any(), any())
+    }
+
+    @Test
+    fun `onEvent evicts the least recently updated chunk group beyond the group limit`() {
+        val memoryGovernor = AssuranceMemoryGovernor()
+        val stitcher = EventStitcher(queue, { stitchedEvents.add(it) }, memoryGovernor) { 0L }
+        val chunkIds = List(EventStitcher.MAX_CHUNK_GROUPS + 1) { UUID.randomUUID().toString() }
+
+        chunkIds.dropLast(1).forEach { stitcher.onEvent(createChunk(it, 0)) }
+        // Touch the oldest group so that the second one becomes the least recently updated.
+        stitcher.onEvent(createChunk(chunkIds[0], 1))
+        stitcher.onEvent(createChunk(chunkIds.last(), 0))
+
+        assertEquals(EventStitcher.MAX_CHUNK_GROUPS, queue.size)
+        assertEquals(2, queue[chunkIds[0]]?.receivedCount)
+        assertFalse(queue.containsKey(chunkIds[1]))
+        assertEquals(1L, stitcher.evictedGroupCount)
+        assertEquals(
+            (EventStitcher.MAX_CHUNK_GROUPS + 1) * createChunk(chunkIds[0], 0).estimatedSize.toLong(),
+            memoryGovernor.getUsedBytes(AssuranceMemoryGovernor.Buffer.STITCHER)
+        )
+    }
+
+    @Test
+    fun `onEvent places chunks by sequence number and ignores duplicates`() {
+        val chunkId = UUID.randomUUID().toString()
+        val memoryGovernor = AssuranceMemoryGovernor()
+        val stitcher = EventStitcher(queue, { stitchedEvents.add(it) }, memoryGovernor)
+
+        stitcher.onEvent(createChunk(chunkId, 2, 3, " \"bool\": true }"))
+        stitcher.onEvent(createChunk(chunkId, 0, 3, "{ \"str\": \"Hello\","))
+        // A retransmitted chunk must neither complete the group nor be stitched twice.
+        stitcher.onEvent(createChunk(chunkId, 0, 3, "{ \"str\": \"Hello\","))
+        assertEquals(2, queue[chunkId]?.receivedCount)
+        assertTrue(stitchedEvents.isEmpty())
+
+        stitcher.onEvent(createChunk(chunkId, 1, 3, " \"num\": 56000,"))
+
+        assertEquals(1, stitchedEvents.size)
+        assertEquals(
+            mapOf("str" to "Hello", "num" to 56000, "bool" to true),
+            stitchedEvents[0].payload
+        )
+        assertEquals(0L, memoryGovernor.getUsedBytes(AssuranceMemoryGovernor.Buffer.STITCHER))
+    }
+
+    @Test
+    fun `onEvent ignores chunks outside of the chunk total`() {
+        val chunkId = UUID.randomUUID().toString()
+
+        eventStitcher.onEvent(createChunk(chunkId, 3, 3))
+        eventStitcher.onEvent(createChunk(chunkId, -1, 3))
+        eventStitcher.onEvent(createChunk(chunkId, 0, EventStitcher.MAX_CHUNKS_PER_GROUP + 1))
+
+        assertTrue(queue.isEmpty())
+        assertTrue(stitchedEvents.isEmpty())
+    }
+
+    private fun chunkGroupOf(vararg chunks: AssuranceEvent): EventStitcher.ChunkGroup {
+        val chunkGroup = EventStitcher.ChunkGroup(chunks.size)
+        chunks.forEach {
+            chunkGroup.place(it.metadata[AssuranceConstants.AssuranceEventKeys.CHUNK_SEQUENCE_NUMBER] as Int, it)
+        }
+        return chunkGroup
+    }
+
+    private fun createChunk(
+        chunkId: String,
+        sequenceNumber: Int,
+        totalChunks: Int = 3,
+        chunkData: String = "0123456789"
+    ): AssuranceEvent {
+        return AssuranceEvent(
+            AssuranceConstants.VENDOR_ASSURANCE_MOBILE,
+            AssuranceConstants.AssuranceEventType.CONTROL,
+            mapOf(
+                AssuranceConstants.AssuranceEventKeys.CHUNK_ID to chunkId,
+                AssuranceConstants.AssuranceEventKeys.CHUNK_SEQUENCE_NUMBER to sequenceNumber,
+                AssuranceConstants.AssuranceEventKeys.CHUNK_TOTAL to totalChunks
+            ),
+            mapOf(AssuranceConstants.AssuranceEventKeys.CHUNK_DATA to chunkData),
+            System.currentTimeMillis()
+        )
+    }
+
     @After
     fun tearDown() {
         stitchedEvents.clear()
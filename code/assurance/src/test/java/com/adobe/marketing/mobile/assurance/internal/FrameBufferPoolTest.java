@@ -0,0 +1,92 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+import org.junit.Test;
+
+public class FrameBufferPoolTest {
+
+    @Test
+    public void test_acquire_reusesReleasedBuffers() {
+        final FrameBufferPool pool = new FrameBufferPool(1);
+
+        final byte[] first = pool.acquire();
+        assertEquals(FrameBufferPool.BUFFER_SIZE, first.length);
+        pool.release(first);
+        assertEquals(1, pool.pooledCount());
+
+        assertSame(first, pool.acquire());
+        assertEquals(0, pool.pooledCount());
+    }
+
+    @Test
+    public void test_release_keepsAtMostCapacityBuffers() {
+        final FrameBufferPool pool = new FrameBufferPool(1);
+        final byte[] first = pool.acquire();
+        final byte[] second = pool.acquire();
+        assertNotSame(first, second);
+
+        pool.release(first);
+        pool.release(second);
+        assertEquals(1, pool.pooledCount());
+
+        // Buffers of another size were not handed out by the pool.
+        pool.acquire();
+        pool.release(new byte[16]);
+        pool.release(null);
+        assertEquals(0, pool.pooledCount());
+    }
+
+    @Test
+    public void test_encodeBase64_matchesUnpaddedBase64() {
+        final Random random = new Random(42);
+        final byte[] destination = new byte[FrameBufferPool.BUFFER_SIZE];
+
+        for (int length = 0; length < 64; length++) {
+            final byte[] source = new byte[length + 3];
+            random.nextBytes(source);
+
+            final String expected =
+                    Base64.getEncoder()
+                            .withoutPadding()
+                            .encodeToString(Arrays.copyOfRange(source, 2, 2 + length));
+            final int encodedLength =
+                    FrameBufferPool.encodeBase64(source, 2, length, destination);
+
+            assertEquals(FrameBufferPool.base64Length(length), encodedLength);
+            assertEquals(expected, new String(destination, 0, encodedLength, US_ASCII));
+        }
+    }
+
+    @Test
+    public void test_encodeBase64_largestFrameFitsBuffer() {
+        final byte[] source = new byte[AssuranceWebViewSocket.MAX_DATA_LENGTH * 3 / 4];
+        new Random(7).nextBytes(source);
+
+        final byte[] destination = new FrameBufferPool(1).acquire();
+        final int encodedLength =
+                FrameBufferPool.encodeBase64(source, 0, source.length, destination);
+
+        assertEquals(AssuranceWebViewSocket.MAX_DATA_LENGTH, encodedLength);
+        assertEquals(
+                Base64.getEncoder().withoutPadding().encodeToString(source),
+                new String(destination, 0, encodedLength, US_ASCII));
+    }
+}
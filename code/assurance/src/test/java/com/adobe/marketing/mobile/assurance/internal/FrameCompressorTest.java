@@ -0,0 +1,99 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import org.junit.Test;
+
+public class FrameCompressorTest {
+
+    @Test
+    public void test_compress_roundTrip() throws DataFormatException {
+        final byte[] frame = repeat("{\"ACPExtensionEventType\":\"com.adobe.eventType.hub\"}", 500);
+        final FrameCompressor frameCompressor = new FrameCompressor();
+
+        final int size = frameCompressor.compress(frame, 0, frame.length);
+
+        assertEquals(size, frameCompressor.size());
+        assertTrue(size < frame.length / 5);
+        // zlib header for the default window size
+        assertEquals(0x78, frameCompressor.getBuffer()[0]);
+        assertArrayEquals(frame, inflate(frameCompressor.toByteArray(), frame.length));
+    }
+
+    @Test
+    public void test_compress_withOffset() throws DataFormatException {
+        final byte[] frame = "xx{\"key\":\"value\"}".getBytes(StandardCharsets.UTF_8);
+        final FrameCompressor frameCompressor = new FrameCompressor();
+
+        frameCompressor.compress(frame, 2, frame.length - 2);
+
+        assertArrayEquals(
+                "{\"key\":\"value\"}".getBytes(StandardCharsets.UTF_8),
+                inflate(frameCompressor.toByteArray(), frame.length - 2));
+    }
+
+    @Test
+    public void test_compress_reusesBuffer() throws DataFormatException {
+        final byte[] first = repeat("first", 100);
+        final byte[] second = repeat("second", 100);
+        final FrameCompressor frameCompressor = new FrameCompressor();
+
+        frameCompressor.compress(first, 0, first.length);
+        final byte[] buffer = frameCompressor.getBuffer();
+        frameCompressor.compress(second, 0, second.length);
+
+        assertSame(buffer, frameCompressor.getBuffer());
+        assertArrayEquals(second, inflate(frameCompressor.toByteArray(), second.length));
+    }
+
+    @Test
+    public void test_compress_afterRelease() throws DataFormatException {
+        final byte[] frame = repeat("frame", 100);
+        final FrameCompressor frameCompressor = new FrameCompressor();
+
+        frameCompressor.compress(frame, 0, frame.length);
+        frameCompressor.release();
+        assertEquals(0, frameCompressor.size());
+        frameCompressor.compress(frame, 0, frame.length);
+
+        assertArrayEquals(frame, inflate(frameCompressor.toByteArray(), frame.length));
+    }
+
+    private static byte[] repeat(final String value, final int count) {
+        final StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < count; i++) {
+            builder.append(value);
+        }
+
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] inflate(final byte[] compressed, final int expectedLength)
+            throws DataFormatException {
+        final Inflater inflater = new Inflater();
+        inflater.setInput(compressed);
+        final byte[] inflated = new byte[expectedLength];
+        assertEquals(expectedLength, inflater.inflate(inflated));
+        assertTrue(inflater.finished());
+        inflater.end();
+        return inflated;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.json.JSONException;
+import org.junit.Test;
+
+public class InboundEventDecoderTest {
+
+    @Test
+    public void test_decode_readsEnvelopeAndControlTypeWithoutParsingPayload()
+            throws JSONException {
+        final String json =
+                "{ \"eventID\": \"id\", \"vendor\": \"com.adobe.griffon.mobile\","
+                        + " \"type\": \"control\", \"timestamp\": 1700000000123,"
+                        + " \"eventNumber\": 7, \"unknown\": [1, {\"a\": \"}\"}],"
+                        + " \"payload\": {\"detail\": {\"note\": \"a \\\"quoted\\\" }\"},"
+                        + " \"type\": \"logForwarding\"} }";
+
+        final AssuranceEvent event = InboundEventDecoder.decode(json);
+
+        assertEquals("id", event.eventID);
+        assertEquals("com.adobe.griffon.mobile", event.vendor);
+        assertEquals(AssuranceConstants.AssuranceEventType.CONTROL, event.type);
+        assertEquals(1700000000123L, event.timestamp);
+        assertEquals(7, event.eventNumber);
+        assertNull(event.metadata);
+        assertEquals(AssuranceConstants.ControlType.LOG_FORWARDING, event.getControlType());
+        assertFalse(((InboundEventDecoder.RawPayload) event.payload).isParsed());
+    }
+
+    @Test
+    public void test_decode_payloadParsedWhenRead() throws JSONException {
+        final String json =
+                "{\"eventID\":\"id\",\"vendor\":\"v\",\"type\":\"control\","
+                        + "\"payload\":{\"type\":\"configUpdate\","
+                        + "\"detail\":{\"key\":\"caf\\u00e9\\n\",\"count\":3}}}";
+
+        final AssuranceEvent event = InboundEventDecoder.decode(json);
+        final AssuranceEvent expected = new AssuranceEvent(json);
+
+        assertEquals(expected.getControlDetail(), event.getControlDetail());
+        assertEquals("café\n", event.getControlDetail().get("key"));
+        assertTrue(((InboundEventDecoder.RawPayload) event.payload).isParsed());
+        assertEquals(expected.payload, event.payload);
+    }
+
+    @Test
+    public void test_decode_readsChunkMetadata() throws JSONException {
+        final String json =
+                "{\"eventID\":\"id\",\"vendor\":\"v\",\"type\":\"generic\","
+                        + "\"metadata\":{\"chunkId\":\"chunk\",\"chunkSequenceNumber\":1,"
+                        + "\"chunkTotal\":2},\"payload\":{\"chunkData\":\"{\\\"a\\\":\"}}";
+
+        final AssuranceEvent event = InboundEventDecoder.decode(json);
+
+        assertTrue(EventStitcher.isChunked(event));
+        assertEquals(2, event.metadata.get(AssuranceConstants.AssuranceEventKeys.CHUNK_TOTAL));
+        assertNull(event.getControlType());
+        assertEquals(
+                "{\"a\":",
+                event.payload.get(AssuranceConstants.AssuranceEventKeys.CHUNK_DATA));
+    }
+
+    @Test
+    public void test_decode_nonStringControlType_readFromParsedPayload() throws JSONException {
+        final Map<String, Object> payload = new HashMap<>();
+        payload.put("type", 5);
+
+        final AssuranceEvent event =
+                InboundEventDecoder.decode(
+                        "{\"eventID\":\"id\",\"vendor\":\"v\",\"type\":\"control\","
+                                + "\"payload\":{\"type\":5}}");
+
+        assertNull(event.getControlType());
+        assertEquals(payload, event.payload);
+    }
+
+    @Test
+    public void test_decodePayload_stitchedPayload() throws JSONException {
+        final InboundEventDecoder.RawPayload payload =
+                InboundEventDecoder.decodePayload(" {\"type\":\"startEventForwarding\",\"n\":1} ");
+
+        assertEquals(AssuranceConstants.ControlType.START_EVENT_FORWARDING, payload.get("type"));
+        assertFalse(payload.isParsed());
+        assertEquals(1, payload.get("n"));
+
+        // A payload spanning the whole input is not copied.
+        final String json = "{\"type\":\"startEventForwarding\"}";
+        assertSame(json, InboundEventDecoder.decodePayload(json).getJSON());
+
+        for (final String malformed : new String[] {"{\"a\":1} {}", "notJson", "{\"a\":"}) {
+            try {
+                InboundEventDecoder.decodePayload(malformed);
+                fail("Decoded " + malformed);
+            } catch (final JSONException expected) {
+                // Rejected.
+            }
+        }
+    }
+
+    @Test
+    public void test_decode_malformedMessages() {
+        final String[] messages = {
+            "{invalidJson}",
+            "{\"eventID\":\"id\",\"vendor\":\"v\"}",
+            "{\"eventID\":\"id\",\"vendor\":\"v\",\"type\":\"control\",\"payload\":{\"type\":",
+            "[]",
+            ""
+        };
+
+        for (final String message : messages) {
+            try {
+                InboundEventDecoder.decode(message);
+                fail("Decoded " + message);
+            } catch (final JSONException expected) {
+                // Rejected.
+            }
+        }
+    }
+}
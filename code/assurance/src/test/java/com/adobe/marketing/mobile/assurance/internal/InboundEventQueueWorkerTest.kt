@@ -13,15 +13,21 @@ package com.adobe.marketing.mobile.assurance.internal
 
 import com.adobe.marketing.mobile.util.SerialWorkDispatcher
 import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
 import org.junit.Assert.fail
 import org.junit.Before
 import org.junit.Test
+import org.mockito.ArgumentCaptor
 import org.mockito.Mock
 import org.mockito.Mockito
 import org.mockito.Mockito.`when`
 import org.mockito.MockitoAnnotations
+import org.mockito.kotlin.any
 import org.mockito.kotlin.never
 import org.mockito.kotlin.verify
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
 
 class InboundEventQueueWorkerTest {
 
@@ -113,6 +119,43 @@ class InboundEventQueueWorkerTest {
         verify(mockSerialWorkDispatcher, never()).offer(mockAssuranceEvent)
     }
 
+    @Test
+    fun `InboundEventQueueWorker decodes messages and queues the events to the dispatcher`() {
+        // setup
+        val decoderExecutor = Executors.newSingleThreadExecutor()
+        val worker = InboundEventQueueWorker(mockSerialWorkDispatcher, decoderExecutor)
+        `when`(mockSerialWorkDispatcher.getState()).thenReturn(SerialWorkDispatcher.State.ACTIVE)
+        val message = "{\"eventID\":\"id\",\"vendor\":\"vendor\",\"type\":\"control\"," +
+            "\"payload\":{\"type\":\"startEventForwarding\",\"detail\":{}}}"
+
+        // test
+        worker.offerMessage(message)
+        decoderExecutor.shutdown()
+        decoderExecutor.awaitTermination(5, TimeUnit.SECONDS)
+
+        // verify
+        val eventCaptor = ArgumentCaptor.forClass(AssuranceEvent::class.java)
+        verify(mockSerialWorkDispatcher).offer(eventCaptor.capture())
+        assertEquals("id", eventCaptor.value.eventID)
+        assertEquals(AssuranceConstants.ControlType.START_EVENT_FORWARDING, eventCaptor.value.controlType)
+    }
+
+    @Test
+    fun `InboundEventQueueWorker drops messages that cannot be decoded`() {
+        // setup
+        val decoderExecutor = Executors.newSingleThreadExecutor()
+        val worker = InboundEventQueueWorker(mockSerialWorkDispatcher, decoderExecutor)
+        `when`(mockSerialWorkDispatcher.getState()).thenReturn(SerialWorkDispatcher.State.ACTIVE)
+
+        // test
+        worker.offerMessage("{invalidJson}")
+        decoderExecutor.shutdown()
+        decoderExecutor.awaitTermination(5, TimeUnit.SECONDS)
+
+        // verify
+        verify(mockSerialWorkDispatcher, never()).offer(any())
+    }
+
     @Test
     fun `InboundEventQueueWorker stop() shuts down the dispatcher`() {
         // setup
@@ -125,6 +168,38 @@ class InboundEventQueueWorkerTest {
         verify(mockSerialWorkDispatcher).shutdown()
     }
 
+    @Test
+    fun `InboundEventQueueWorker stop() releases the memory held by incomplete chunked events`() {
+        // setup
+        val memoryGovernor = AssuranceMemoryGovernor()
+        val eventStitcher = EventStitcher(mutableMapOf(), {}, memoryGovernor)
+        val worker = InboundEventQueueWorker(
+            mockSerialWorkDispatcher,
+            Executors.newSingleThreadExecutor(),
+            eventStitcher
+        )
+        eventStitcher.onEvent(
+            AssuranceEvent(
+                AssuranceConstants.VENDOR_ASSURANCE_MOBILE,
+                AssuranceConstants.AssuranceEventType.CONTROL,
+                mapOf(
+                    AssuranceConstants.AssuranceEventKeys.CHUNK_ID to "chunkId",
+                    AssuranceConstants.AssuranceEventKeys.CHUNK_SEQUENCE_NUMBER to 0,
+                    AssuranceConstants.AssuranceEventKeys.CHUNK_TOTAL to 2
+                ),
+                mapOf(AssuranceConstants.AssuranceEventKeys.CHUNK_DATA to "{ \"key\":"),
+                System.currentTimeMillis()
+            )
+        )
+        assertTrue(memoryGovernor.getUsedBytes(AssuranceMemoryGovernor.Buffer.STITCHER) > 0)
+
+        // test
+        worker.stop()
+
+        // verify
+        assertEquals(0L, memoryGovernor.getUsedBytes(AssuranceMemoryGovernor.Buffer.STITCHER))
+    }
+
     @Test
     fun `InboundEventQueueWorker's WorkHandlerImpl does not process null control types`() {
         // setup
@@ -0,0 +1,311 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-memory {@link AssuranceTransport} standing in for the Assurance server. Outbound frames are
+ * recorded instead of being transmitted, and inbound messages are injected by the test. Connection
+ * events are reported to the handler on a background thread after a configurable latency, the way
+ * a network transport would report them.
+ *
+ * <p>Create sessions with {@link #factory()} to exercise the whole event pipeline without a
+ * WebView or a network, for instance to measure its throughput and latency.
+ */
+final class LoopbackTransport implements AssuranceTransport {
+
+    private final AssuranceWebViewSocketHandler handler;
+    private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+    private final List<byte[]> frames = new ArrayList<>();
+    private final List<Boolean> binaryFrames = new ArrayList<>();
+
+    private volatile long latencyMillis;
+    private volatile boolean supportsBinaryFrames;
+    private volatile SocketReadyState state = SocketReadyState.UNKNOWN;
+    private volatile String connectionURL;
+    private long sentBytes;
+
+    LoopbackTransport(final AssuranceWebViewSocketHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Returns a factory creating {@link LoopbackTransport}s, each one handed to {@code created}.
+     *
+     * @param created receives the transports created, may be null
+     * @return the factory
+     */
+    static AssuranceTransport.Factory factory(final List<LoopbackTransport> created) {
+        return new AssuranceTransport.Factory() {
+            @Override
+            public AssuranceTransport create(
+                    final AssuranceWebViewSocketHandler handler,
+                    final FrameBufferPool frameBufferPool) {
+                final LoopbackTransport transport = new LoopbackTransport(handler);
+
+                if (created != null) {
+                    synchronized (created) {
+                        created.add(transport);
+                    }
+                }
+
+                return transport;
+            }
+        };
+    }
+
+    /**
+     * Sets the one way latency applied to the connection events and the injected messages.
+     *
+     * @param latencyMillis the latency in milliseconds
+     */
+    void setLatencyMillis(final long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Sets whether {@link #sendBinaryData(byte[], int, int)} sends binary frames.
+     *
+     * @param supportsBinaryFrames true to support binary frames
+     */
+    void setSupportsBinaryFrames(final boolean supportsBinaryFrames) {
+        this.supportsBinaryFrames = supportsBinaryFrames;
+    }
+
+    @Override
+    public void connect(final String url) {
+        connectionURL = url;
+        setState(SocketReadyState.CONNECTING);
+        deliver(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        setState(SocketReadyState.OPEN);
+                        handler.onSocketConnected(LoopbackTransport.this);
+                    }
+                });
+    }
+
+    @Override
+    public void disconnect() {
+        close(AssuranceConstants.SocketCloseCode.NORMAL, "");
+    }
+
+    /**
+     * Closes the connection as the server or the network would, reporting {@code closeCode} to
+     * the handler.
+     *
+     * @param closeCode the close code reported
+     * @param reason the close reason reported
+     */
+    void close(final int closeCode, final String reason) {
+        setState(SocketReadyState.CLOSING);
+        deliver(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        setState(SocketReadyState.CLOSED);
+                        connectionURL = null;
+                        handler.onSocketDisconnected(
+                                LoopbackTransport.this,
+                                reason,
+                                closeCode,
+                                closeCode == AssuranceConstants.SocketCloseCode.NORMAL);
+                    }
+                });
+    }
+
+    /**
+     * Delivers {@code message} to the handler as if the server had sent it.
+     *
+     * @param message the inbound message, usually an {@link AssuranceEvent} JSON representation
+     */
+    void injectInbound(final String message) {
+        deliver(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        handler.onSocketDataReceived(LoopbackTransport.this, message);
+                    }
+                });
+    }
+
+    /**
+     * Delivers a control event to the handler as if the server had sent it.
+     *
+     * @param controlType the control type, such as {@link
+     *     AssuranceConstants.ControlType#START_EVENT_FORWARDING}
+     * @param detail the control detail, may be null
+     */
+    void injectControlEvent(final String controlType, final Map<String, Object> detail) {
+        final Map<String, Object> payload = new HashMap<>();
+        payload.put(AssuranceConstants.PayloadDataKeys.TYPE, controlType);
+        payload.put(
+                AssuranceConstants.PayloadDataKeys.DETAIL,
+                detail == null ? new HashMap<String, Object>() : detail);
+        injectInbound(
+                new AssuranceEvent(
+                                AssuranceConstants.VENDOR_ASSURANCE_MOBILE,
+                                AssuranceConstants.AssuranceEventType.CONTROL,
+                                null,
+                                payload,
+                                System.currentTimeMillis())
+                        .getJSONRepresentation());
+    }
+
+    @Override
+    public void sendData(final byte[] data) {
+        sendData(data, 0, data.length);
+    }
+
+    @Override
+    public void sendData(final byte[] data, final int offset, final int length) {
+        record(data, offset, length, false);
+    }
+
+    @Override
+    public boolean supportsBinaryFrames() {
+        return supportsBinaryFrames;
+    }
+
+    @Override
+    public void sendBinaryData(final byte[] data, final int offset, final int length) {
+        record(data, offset, length, supportsBinaryFrames);
+    }
+
+    @Override
+    public long getBufferedAmount() {
+        // Frames are recorded as they are sent.
+        return 0;
+    }
+
+    @Override
+    public int getBufferedFrameCount() {
+        return 0;
+    }
+
+    @Override
+    public long getBufferedAmountHighWaterMark() {
+        return 0;
+    }
+
+    @Override
+    public long getBufferedAmountLowWaterMark() {
+        return 0;
+    }
+
+    @Override
+    public long getRoundTripTimeMillis() {
+        return state == SocketReadyState.OPEN ? 2 * latencyMillis : -1;
+    }
+
+    @Override
+    public String getConnectionURL() {
+        return connectionURL;
+    }
+
+    @Override
+    public SocketReadyState getState() {
+        return state;
+    }
+
+    /**
+     * Returns copies of the frames sent so far, in the order they were sent.
+     *
+     * @return the frames sent
+     */
+    List<byte[]> getFrames() {
+        synchronized (frames) {
+            return new ArrayList<>(frames);
+        }
+    }
+
+    /**
+     * Returns whether the frame sent at {@code index} was sent as a binary frame.
+     *
+     * @param index the index of the frame in {@link #getFrames()}
+     * @return true if the frame is binary
+     */
+    boolean isBinaryFrame(final int index) {
+        synchronized (frames) {
+            return binaryFrames.get(index);
+        }
+    }
+
+    /**
+     * Returns the number of bytes sent so far.
+     *
+     * @return the number of bytes sent
+     */
+    long getSentBytes() {
+        synchronized (frames) {
+            return sentBytes;
+        }
+    }
+
+    /**
+     * Waits until at least {@code count} frames were sent.
+     *
+     * @param count the number of frames to wait for
+     * @param timeoutMillis how long to wait at most
+     * @return true if the frames were sent in time
+     */
+    boolean awaitFrames(final int count, final long timeoutMillis) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+
+        synchronized (frames) {
+            while (frames.size() < count) {
+                final long remaining = deadline - System.currentTimeMillis();
+
+                if (remaining <= 0) {
+                    return false;
+                }
+
+                frames.wait(remaining);
+            }
+        }
+
+        return true;
+    }
+
+    /** Releases the thread delivering the connection events. */
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void record(
+            final byte[] data, final int offset, final int length, final boolean binary) {
+        synchronized (frames) {
+            // The sender may reuse its buffer once this returns.
+            frames.add(Arrays.copyOfRange(data, offset, offset + length));
+            binaryFrames.add(binary);
+            sentBytes += length;
+            frames.notifyAll();
+        }
+    }
+
+    private void setState(final SocketReadyState newState) {
+        state = newState;
+        handler.onSocketStateChange(this, newState);
+    }
+
+    private void deliver(final Runnable event) {
+        executor.schedule(event, latencyMillis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LoopbackTransportTest {
+
+    private final RecordingHandler handler = new RecordingHandler();
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private LoopbackTransport transport;
+
+    @Before
+    public void setup() {
+        transport = new LoopbackTransport(handler);
+    }
+
+    @After
+    public void teardown() {
+        transport.shutdown();
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void test_connect_openedAfterLatency() throws InterruptedException {
+        transport.setLatencyMillis(50);
+        final long start = System.nanoTime();
+
+        transport.connect("wss://loopback/session");
+
+        assertEquals(AssuranceTransport.SocketReadyState.CONNECTING, transport.getState());
+        assertTrue(handler.connected.await(5, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50);
+        assertEquals(AssuranceTransport.SocketReadyState.OPEN, transport.getState());
+        assertEquals("wss://loopback/session", transport.getConnectionURL());
+        assertEquals(100, transport.getRoundTripTimeMillis());
+    }
+
+    @Test
+    public void test_close_reportsCloseCode() throws InterruptedException {
+        transport.connect("wss://loopback/session");
+        assertTrue(handler.connected.await(5, TimeUnit.SECONDS));
+
+        transport.close(AssuranceConstants.SocketCloseCode.ABNORMAL, "Connection lost");
+
+        assertTrue(handler.disconnected.await(5, TimeUnit.SECONDS));
+        assertEquals(AssuranceConstants.SocketCloseCode.ABNORMAL, handler.closeCode);
+        assertFalse(handler.wasClean);
+        assertEquals(AssuranceTransport.SocketReadyState.CLOSED, transport.getState());
+    }
+
+    @Test
+    public void test_injectControlEvent_deliveredAsInboundEvent()
+            throws InterruptedException, JSONException {
+        final HashMap<String, Object> detail = new HashMap<>();
+        detail.put("enable", true);
+
+        transport.injectControlEvent(
+                AssuranceConstants.ControlType.LOG_FORWARDING, new HashMap<String, Object>(detail));
+
+        assertTrue(handler.received.await(5, TimeUnit.SECONDS));
+        final AssuranceEvent event = new AssuranceEvent(handler.message);
+        assertEquals(AssuranceConstants.ControlType.LOG_FORWARDING, event.getControlType());
+        assertEquals(detail, event.getControlDetail());
+    }
+
+    @Test
+    public void test_outboundEvents_recordedInOrder() throws InterruptedException {
+        transport.connect("wss://loopback/session");
+        assertTrue(handler.connected.await(5, TimeUnit.SECONDS));
+
+        final AssuranceClientInfo clientInfo = mock(AssuranceClientInfo.class);
+        when(clientInfo.getData()).thenReturn(new HashMap<String, Object>());
+        final OutboundEventQueueWorker worker =
+                new OutboundEventQueueWorker(executorService, transport, clientInfo);
+        final List<AssuranceEvent> events = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            final AssuranceEvent event =
+                    new AssuranceEvent(
+                            AssuranceConstants.AssuranceEventType.GENERIC, Collections.EMPTY_MAP);
+            events.add(event);
+            worker.offer(event);
+        }
+
+        worker.start();
+        worker.unblock();
+
+        // The client info event goes first.
+        assertTrue(transport.awaitFrames(events.size() + 1, 5000));
+        final List<byte[]> frames = transport.getFrames();
+
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(
+                    events.get(i).getJSONRepresentation(),
+                    new String(frames.get(i + 1), StandardCharsets.UTF_8));
+        }
+
+        worker.stop();
+    }
+
+    private static final class RecordingHandler implements AssuranceWebViewSocketHandler {
+        final CountDownLatch connected = new CountDownLatch(1);
+        final CountDownLatch disconnected = new CountDownLatch(1);
+        final CountDownLatch received = new CountDownLatch(1);
+        volatile String message;
+        volatile int closeCode;
+        volatile boolean wasClean;
+
+        @Override
+        public void onSocketDataReceived(final AssuranceTransport socket, final String message) {
+            this.message = message;
+            received.countDown();
+        }
+
+        @Override
+        public void onSocketConnected(final AssuranceTransport socket) {
+            connected.countDown();
+        }
+
+        @Override
+        public void onSocketDisconnected(
+                final AssuranceTransport socket,
+                final String errorReason,
+                final int closeCode,
+                final boolean wasClean) {
+            this.closeCode = closeCode;
+            this.wasClean = wasClean;
+            disconnected.countDown();
+        }
+
+        @Override
+        public void onSocketError(final AssuranceTransport socket) {}
+
+        @Override
+        public void onSocketStateChange(
+                final AssuranceTransport socket,
+                final AssuranceTransport.SocketReadyState state) {}
+
+        @Override
+        public void onSocketBufferedAmountChanged(
+                final AssuranceTransport socket, final long bufferedAmount) {}
+    }
+}
@@ -0,0 +1,434 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import javax.net.SocketFactory;
+import javax.net.ssl.SSLSocketFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NativeWebSocketTest {
+
+    private ServerSocket serverSocket;
+    private Socket serverConnection;
+    private final RecordingListener listener = new RecordingListener();
+    private NativeWebSocket nativeWebSocket;
+
+    @Before
+    public void setup() throws IOException {
+        serverSocket = new ServerSocket(0);
+        nativeWebSocket = new NativeWebSocket(listener);
+    }
+
+    @After
+    public void teardown() throws IOException {
+        if (serverConnection != null) {
+            serverConnection.close();
+        }
+
+        serverSocket.close();
+    }
+
+    @Test
+    public void test_acceptKey() {
+        // Sample handshake from RFC 6455, section 1.3.
+        assertEquals(
+                "s3pPLMBiTxaQ9kYGzzhZRbK+xOo=",
+                NativeWebSocket.acceptKey("dGhlIHNhbXBsZSBub25jZQ=="));
+        assertEquals("Zm9vYg==", NativeWebSocket.base64("foob".getBytes(UTF_8)));
+    }
+
+    @Test
+    public void test_connect_exchangesTextFrames() throws Exception {
+        final DataInputStream input = connectAndAccept();
+
+        assertTrue(nativeWebSocket.isOpen());
+        assertTrue(nativeWebSocket.sendText("hello"));
+
+        // Client frames are masked text frames.
+        final Frame frame = readFrame(input);
+        assertEquals(0x1, frame.opcode);
+        assertTrue(frame.masked);
+        assertEquals("hello", new String(frame.payload, UTF_8));
+
+        writeFrame(0x81, "world".getBytes(UTF_8));
+        assertEquals("message:world", listener.next());
+    }
+
+    @Test
+    public void test_sendBinary_writesBinaryFrame() throws Exception {
+        final DataInputStream input = connectAndAccept();
+        final byte[] data = "[{\"eventID\":\"1\"}]".getBytes(UTF_8);
+
+        assertTrue(nativeWebSocket.sendBinary(data, 1, data.length - 2));
+
+        final Frame frame = readFrame(input);
+        assertEquals(0x2, frame.opcode);
+        assertTrue(frame.masked);
+        assertEquals("{\"eventID\":\"1\"}", new String(frame.payload, UTF_8));
+    }
+
+    @Test
+    public void test_reassemblesFragments_answersPings_reportsPongMessages() throws Exception {
+        final DataInputStream input = connectAndAccept();
+
+        writeFrame(0x01, "frag".getBytes(UTF_8));
+        // A control frame may be interleaved with the fragments of a message.
+        writeFrame(0x89, "ping".getBytes(UTF_8));
+        writeFrame(0x80, "mented".getBytes(UTF_8));
+        writeFrame(0x81, NativeWebSocket.PONG_MESSAGE.getBytes(UTF_8));
+        writeFrame(0x81, "next".getBytes(UTF_8));
+
+        final Frame pong = readFrame(input);
+        assertEquals(0xA, pong.opcode);
+        assertEquals("ping", new String(pong.payload, UTF_8));
+        assertEquals("message:fragmented", listener.next());
+        assertEquals("pong", listener.next());
+        assertEquals("message:next", listener.next());
+    }
+
+    @Test
+    public void test_connect_takesWarmConnection() throws Exception {
+        final ConnectionPrewarmer prewarmer = new ConnectionPrewarmer();
+        nativeWebSocket =
+                new NativeWebSocket(
+                        listener,
+                        new FrameBufferPool(),
+                        SocketFactory.getDefault(),
+                        (SSLSocketFactory) SSLSocketFactory.getDefault(),
+                        prewarmer);
+
+        prewarmer.prewarm("127.0.0.1", serverSocket.getLocalPort(), false);
+        serverConnection = serverSocket.accept();
+
+        for (int i = 0; i < 100 && !prewarmer.hasWarmConnection(); i++) {
+            Thread.sleep(10);
+        }
+
+        connect();
+
+        // The handshake is sent on the warm connection rather than on a new one.
+        answerHandshake();
+        assertTrue(nativeWebSocket.isOpen());
+        assertFalse(prewarmer.hasWarmConnection());
+        serverSocket.setSoTimeout(100);
+
+        try {
+            serverSocket.accept().close();
+            fail("A new connection was opened.");
+        } catch (final SocketTimeoutException expected) {
+            // No other connection.
+        }
+    }
+
+    @Test
+    public void test_sendBinary_blockedWrite_reachesHighWaterMarkAndReportsDrain()
+            throws Exception {
+        final DataInputStream input = connectAndAccept();
+
+        // Frames written right away are not reported.
+        assertTrue(nativeWebSocket.sendText("hello"));
+        readFrame(input);
+        assertEquals(0L, nativeWebSocket.getBufferedAmount());
+
+        // Larger than the socket buffers, so the write blocks until the server reads it.
+        final byte[] data = new byte[16 * 1024 * 1024];
+        final Thread sender =
+                new Thread(
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                nativeWebSocket.sendBinary(data, 0, data.length);
+                            }
+                        });
+        sender.start();
+
+        final long deadline = System.currentTimeMillis() + 5000;
+
+        while (nativeWebSocket.getBufferedAmount() < NativeWebSocket.HIGH_WATER_MARK
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(nativeWebSocket.getBufferedAmount() >= NativeWebSocket.HIGH_WATER_MARK);
+        assertEquals(1, nativeWebSocket.getBufferedFrameCount());
+
+        assertEquals(data.length, readFrame(input).payload.length);
+        sender.join(5000);
+
+        // The drain is reported once.
+        assertEquals(0L, (long) listener.bufferedAmounts.poll(5, TimeUnit.SECONDS));
+        assertTrue(listener.bufferedAmounts.isEmpty());
+        assertEquals(0L, nativeWebSocket.getBufferedAmount());
+        assertEquals(0, nativeWebSocket.getBufferedFrameCount());
+    }
+
+    @Test
+    public void test_sendPing_writesPingMessage() throws Exception {
+        final DataInputStream input = connectAndAccept();
+
+        assertTrue(nativeWebSocket.sendPing());
+
+        final Frame frame = readFrame(input);
+        assertEquals(0x1, frame.opcode);
+        assertEquals(NativeWebSocket.PING_MESSAGE, new String(frame.payload, UTF_8));
+    }
+
+    @Test
+    public void test_drop_reportsAbnormalClose() throws Exception {
+        connectAndAccept();
+
+        nativeWebSocket.drop();
+
+        assertEquals("error", listener.next());
+        assertEquals("close:1006::false", listener.next());
+        assertFalse(nativeWebSocket.isOpen());
+    }
+
+    @Test
+    public void test_serverClose_echoedAndReported() throws Exception {
+        final DataInputStream input = connectAndAccept();
+
+        writeFrame(0x88, closePayload(4900, "Org mismatch"));
+
+        final Frame echo = readFrame(input);
+        assertEquals(0x8, echo.opcode);
+        assertEquals(4900, ((echo.payload[0] & 0xFF) << 8) | (echo.payload[1] & 0xFF));
+        assertEquals("close:4900:Org mismatch:true", listener.next());
+        assertFalse(nativeWebSocket.isOpen());
+        assertFalse(nativeWebSocket.sendText("late"));
+    }
+
+    @Test
+    public void test_clientClose_completesClosingHandshake() throws Exception {
+        final DataInputStream input = connectAndAccept();
+
+        nativeWebSocket.close(NativeWebSocket.CLOSE_NORMAL, "bye");
+
+        final Frame close = readFrame(input);
+        assertEquals(0x8, close.opcode);
+        assertEquals("bye", new String(close.payload, 2, close.payload.length - 2, UTF_8));
+
+        writeFrame(0x88, closePayload(NativeWebSocket.CLOSE_NORMAL, ""));
+        assertEquals("close:1000::true", listener.next());
+    }
+
+    @Test
+    public void test_connectionDropped_reportsAbnormalClose() throws Exception {
+        connectAndAccept();
+
+        serverConnection.close();
+
+        assertEquals("close:1006::false", listener.next());
+    }
+
+    @Test
+    public void test_handshakeRejected_reportsErrorAndAbnormalClose() throws Exception {
+        nativeWebSocket.connect("ws://127.0.0.1:" + serverSocket.getLocalPort() + "/client/v1");
+        serverConnection = serverSocket.accept();
+        readRequest(serverConnection.getInputStream());
+        serverConnection
+                .getOutputStream()
+                .write("HTTP/1.1 403 Forbidden\r\n\r\n".getBytes(UTF_8));
+        serverConnection.getOutputStream().flush();
+
+        assertEquals("error", listener.next());
+        assertEquals("close:1006::false", listener.next());
+    }
+
+    @Test
+    public void test_handshakeUnanswered_timesOutAndReportsAbnormalClose() throws Exception {
+        nativeWebSocket.setHandshakeTimeoutMillis(200);
+        nativeWebSocket.connect("ws://127.0.0.1:" + serverSocket.getLocalPort() + "/client/v1");
+        serverConnection = serverSocket.accept();
+        readRequest(serverConnection.getInputStream());
+
+        // The server never answers the upgrade request.
+        assertEquals("error", listener.next());
+        assertEquals("close:1006::false", listener.next());
+    }
+
+    @Test
+    public void test_maskedServerFrame_failsConnection() throws Exception {
+        connectAndAccept();
+
+        // Servers must not mask their frames.
+        final OutputStream output = serverConnection.getOutputStream();
+        output.write(new byte[] {(byte) 0x81, (byte) 0x81, 1, 2, 3, 4, 'a'});
+        output.flush();
+
+        assertEquals("error", listener.next());
+        assertEquals("close:1006::false", listener.next());
+    }
+
+    /** Connects the client, completes the opening handshake and returns the server input. */
+    private DataInputStream connectAndAccept() throws Exception {
+        connect();
+        serverConnection = serverSocket.accept();
+        return answerHandshake();
+    }
+
+    private void connect() {
+        nativeWebSocket.connect(
+                "ws://127.0.0.1:"
+                        + serverSocket.getLocalPort()
+                        + "/client/v1?sessionId=id&token=1234");
+    }
+
+    private DataInputStream answerHandshake() throws Exception {
+        final InputStream input = serverConnection.getInputStream();
+        final String request = readRequest(input);
+        assertTrue(request.startsWith("GET /client/v1?sessionId=id&token=1234 HTTP/1.1\r\n"));
+
+        String key = null;
+
+        for (final String line : request.split("\r\n")) {
+            if (line.startsWith("Sec-WebSocket-Key: ")) {
+                key = line.substring("Sec-WebSocket-Key: ".length());
+            }
+        }
+
+        serverConnection
+                .getOutputStream()
+                .write(
+                        ("HTTP/1.1 101 Switching Protocols\r\n"
+                                        + "Upgrade: websocket\r\n"
+                                        + "Connection: Upgrade\r\n"
+                                        + "Sec-WebSocket-Accept: "
+                                        + NativeWebSocket.acceptKey(key)
+                                        + "\r\n\r\n")
+                                .getBytes(UTF_8));
+        serverConnection.getOutputStream().flush();
+
+        assertEquals("open", listener.next());
+        return new DataInputStream(input);
+    }
+
+    private static String readRequest(final InputStream input) throws IOException {
+        final StringBuilder request = new StringBuilder();
+
+        while (!request.toString().endsWith("\r\n\r\n")) {
+            request.append((char) input.read());
+        }
+
+        return request.toString();
+    }
+
+    /** Writes an unmasked frame with the given first header byte. */
+    private void writeFrame(final int firstByte, final byte[] payload) throws IOException {
+        final OutputStream output = serverConnection.getOutputStream();
+        output.write(firstByte);
+        output.write(payload.length);
+        output.write(payload);
+        output.flush();
+    }
+
+    private static byte[] closePayload(final int code, final String reason) {
+        final byte[] reasonBytes = reason.getBytes(UTF_8);
+        final byte[] payload = new byte[2 + reasonBytes.length];
+        payload[0] = (byte) (code >> 8);
+        payload[1] = (byte) code;
+        System.arraycopy(reasonBytes, 0, payload, 2, reasonBytes.length);
+        return payload;
+    }
+
+    private static Frame readFrame(final DataInputStream input) throws IOException {
+        final Frame frame = new Frame();
+        frame.opcode = input.readUnsignedByte() & 0x0F;
+        final int b1 = input.readUnsignedByte();
+        frame.masked = (b1 & 0x80) != 0;
+        int length = b1 & 0x7F;
+
+        if (length == 126) {
+            length = input.readUnsignedShort();
+        } else if (length == 127) {
+            length = (int) input.readLong();
+        }
+
+        final byte[] mask = new byte[4];
+
+        if (frame.masked) {
+            input.readFully(mask);
+        }
+
+        frame.payload = new byte[length];
+        input.readFully(frame.payload);
+
+        for (int i = 0; i < length; i++) {
+            frame.payload[i] ^= mask[i & 3];
+        }
+
+        return frame;
+    }
+
+    private static final class Frame {
+        int opcode;
+        boolean masked;
+        byte[] payload;
+    }
+
+    private static final class RecordingListener implements NativeWebSocket.Listener {
+        private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        private final BlockingQueue<Long> bufferedAmounts = new LinkedBlockingQueue<>();
+
+        String next() throws InterruptedException {
+            return events.poll(5, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void onOpen() {
+            events.add("open");
+        }
+
+        @Override
+        public void onMessage(final String message) {
+            events.add("message:" + message);
+        }
+
+        @Override
+        public void onPong() {
+            events.add("pong");
+        }
+
+        @Override
+        public void onClose(final int code, final String reason, final boolean wasClean) {
+            events.add("close:" + code + ":" + reason + ":" + wasClean);
+        }
+
+        @Override
+        public void onError(final Exception error) {
+            events.add("error");
+        }
+
+        @Override
+        public void onBufferedAmountChanged(final long bufferedAmount) {
+            bufferedAmounts.add(bufferedAmount);
+        }
+    }
+}
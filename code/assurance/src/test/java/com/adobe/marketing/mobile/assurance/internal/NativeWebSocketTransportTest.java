@@ -0,0 +1,77 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class NativeWebSocketTransportTest {
+
+    @Mock AssuranceWebViewSocketHandler mockAssuranceWebViewSocketHandler;
+
+    private NativeWebSocketTransport transport;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        transport =
+                new NativeWebSocketTransport(
+                        mockAssuranceWebViewSocketHandler, new FrameBufferPool());
+    }
+
+    @Test
+    public void test_new_reportsUnknownState() {
+        assertSame(AssuranceTransport.SocketReadyState.UNKNOWN, transport.getState());
+        verify(mockAssuranceWebViewSocketHandler)
+                .onSocketStateChange(transport, AssuranceTransport.SocketReadyState.UNKNOWN);
+        assertNull(transport.getConnectionURL());
+    }
+
+    @Test
+    public void test_capabilities() {
+        assertTrue(transport.supportsBinaryFrames());
+        assertEquals(NativeWebSocket.HIGH_WATER_MARK, transport.getBufferedAmountHighWaterMark());
+        assertEquals(NativeWebSocket.LOW_WATER_MARK, transport.getBufferedAmountLowWaterMark());
+        assertEquals(-1, transport.getRoundTripTimeMillis());
+    }
+
+    @Test
+    public void test_send_notConnected_nothingBuffered() {
+        transport.sendData(new byte[] {1, 2, 3});
+        transport.sendBinaryData(new byte[] {1, 2, 3}, 0, 3);
+        transport.sendBinaryData(
+                new byte[AssuranceTransport.MAX_DATA_LENGTH + 1],
+                0,
+                AssuranceTransport.MAX_DATA_LENGTH + 1);
+
+        assertEquals(0, transport.getBufferedAmount());
+        assertEquals(0, transport.getBufferedFrameCount());
+    }
+
+    @Test
+    public void test_disconnect_notConnected() {
+        transport.disconnect();
+
+        assertSame(AssuranceTransport.SocketReadyState.CLOSING, transport.getState());
+        verify(mockAssuranceWebViewSocketHandler)
+                .onSocketStateChange(transport, AssuranceTransport.SocketReadyState.CLOSING);
+        assertNull(transport.getConnectionURL());
+    }
+}
@@ -12,6 +12,7 @@
 package com.adobe.marketing.mobile.assurance.internal;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -20,7 +21,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import org.json.JSONException;
@@ -29,11 +32,17 @@ import org.junit.Test;
 
 public class OutboundEventChunkerTest {
 
+    /**
+     * Payload limit of the chunkers created with a fixed chunk size in these tests: 2KB of a 32KB
+     * frame are left for the chunk metadata, the remaining 30KB are halved for JSON escaping and
+     * reduced to 3/4 for Base64.
+     */
+    static final int MAX_PAYLOAD_CHUNK_SIZE = (int) Math.floor((15 * 1024 * 3) / 4.0);
+
     @Test
     public void test_chunk_nullEvent() {
         final OutboundEventQueueWorker.OutboundEventChunker outboundEventChunker =
-                new OutboundEventQueueWorker.OutboundEventChunker(
-                        OutboundEventQueueWorker.MAX_PAYLOAD_CHUNK_SIZE);
+                new OutboundEventQueueWorker.OutboundEventChunker(MAX_PAYLOAD_CHUNK_SIZE);
 
         // Test
         List<AssuranceEvent> chunkedEvents = outboundEventChunker.chunk(null);
@@ -45,8 +54,7 @@ public class OutboundEventChunkerTest {
     @Test
     public void test_chunk_nullPayload() {
         final OutboundEventQueueWorker.OutboundEventChunker outboundEventChunker =
-                new OutboundEventQueueWorker.OutboundEventChunker(
-                        OutboundEventQueueWorker.MAX_PAYLOAD_CHUNK_SIZE);
+                new OutboundEventQueueWorker.OutboundEventChunker(MAX_PAYLOAD_CHUNK_SIZE);
         final AssuranceEvent assuranceEvent =
                 new AssuranceEvent(AssuranceConstants.AssuranceEventType.GENERIC, null);
 
@@ -61,8 +69,7 @@ public class OutboundEventChunkerTest {
     @Test
     public void test_chunk_eventSizeWthinLimit() {
         final OutboundEventQueueWorker.OutboundEventChunker outboundEventChunker =
-                new OutboundEventQueueWorker.OutboundEventChunker(
-                        OutboundEventQueueWorker.MAX_PAYLOAD_CHUNK_SIZE);
+                new OutboundEventQueueWorker.OutboundEventChunker(MAX_PAYLOAD_CHUNK_SIZE);
         final HashMap<String, Object> payload = new HashMap<>();
         payload.put("Key1", "Value1");
         payload.put("Key2", "Value2");
@@ -93,8 +100,7 @@ public class OutboundEventChunkerTest {
                             AssuranceConstants.AssuranceEventType.GENERIC, expectedEventPayload);
 
             final OutboundEventQueueWorker.OutboundEventChunker outboundEventChunker =
-                    new OutboundEventQueueWorker.OutboundEventChunker(
-                            OutboundEventQueueWorker.MAX_PAYLOAD_CHUNK_SIZE);
+                    new OutboundEventQueueWorker.OutboundEventChunker(MAX_PAYLOAD_CHUNK_SIZE);
 
             final List<AssuranceEvent> chunkedEvents =
                     outboundEventChunker.chunk(largeAssuranceEvent);
@@ -123,8 +129,7 @@ public class OutboundEventChunkerTest {
                             AssuranceConstants.AssuranceEventType.GENERIC, expectedEventPayload);
 
             final OutboundEventQueueWorker.OutboundEventChunker outboundEventChunker =
-                    new OutboundEventQueueWorker.OutboundEventChunker(
-                            OutboundEventQueueWorker.MAX_PAYLOAD_CHUNK_SIZE);
+                    new OutboundEventQueueWorker.OutboundEventChunker(MAX_PAYLOAD_CHUNK_SIZE);
 
             final List<AssuranceEvent> chunkedEvents =
                     outboundEventChunker.chunk(largeAssuranceEvent);
@@ -187,8 +192,7 @@ public class OutboundEventChunkerTest {
                             AssuranceConstants.AssuranceEventType.GENERIC, expectedEventPayload);
 
             final OutboundEventQueueWorker.OutboundEventChunker outboundEventChunker =
-                    new OutboundEventQueueWorker.OutboundEventChunker(
-                            OutboundEventQueueWorker.MAX_PAYLOAD_CHUNK_SIZE);
+                    new OutboundEventQueueWorker.OutboundEventChunker(MAX_PAYLOAD_CHUNK_SIZE);
 
             final List<AssuranceEvent> chunkedEvents =
                     outboundEventChunker.chunk(largeAssuranceEvent);
@@ -251,8 +255,7 @@ public class OutboundEventChunkerTest {
                             AssuranceConstants.AssuranceEventType.GENERIC, expectedEventPayload);
 
             final OutboundEventQueueWorker.OutboundEventChunker outboundEventChunker =
-                    new OutboundEventQueueWorker.OutboundEventChunker(
-                            OutboundEventQueueWorker.MAX_PAYLOAD_CHUNK_SIZE);
+                    new OutboundEventQueueWorker.OutboundEventChunker(MAX_PAYLOAD_CHUNK_SIZE);
 
             final List<AssuranceEvent> chunkedEvents =
                     outboundEventChunker.chunk(largeAssuranceEvent);
@@ -316,8 +319,7 @@ public class OutboundEventChunkerTest {
                             AssuranceConstants.AssuranceEventType.GENERIC, expectedEventPayload);
 
             final OutboundEventQueueWorker.OutboundEventChunker outboundEventChunker =
-                    new OutboundEventQueueWorker.OutboundEventChunker(
-                            OutboundEventQueueWorker.MAX_PAYLOAD_CHUNK_SIZE);
+                    new OutboundEventQueueWorker.OutboundEventChunker(MAX_PAYLOAD_CHUNK_SIZE);
 
             final List<AssuranceEvent> chunkedEvents =
                     outboundEventChunker.chunk(largeAssuranceEvent);
@@ -365,6 +367,225 @@ public class OutboundEventChunkerTest {
         }
     }
 
+    @Test
+    public void test_chunk_multiBytePayload_doesNotSplitCharacters() throws JSONException {
+        // 11 byte pattern so that chunk boundaries drift across multi-byte sequences.
+        final StringBuilder value = new StringBuilder();
+
+        for (int i = 0; i < 3000; i++) {
+            value.append("é€😀ab");
+        }
+
+        final HashMap<String, Object> expectedEventPayload = new HashMap<>();
+        expectedEventPayload.put("largeKey", value.toString());
+        final AssuranceEvent largeAssuranceEvent =
+                new AssuranceEvent(
+                        AssuranceConstants.AssuranceEventType.GENERIC, expectedEventPayload);
+
+        final OutboundEventQueueWorker.OutboundEventChunker outboundEventChunker =
+                new OutboundEventQueueWorker.OutboundEventChunker(MAX_PAYLOAD_CHUNK_SIZE);
+
+        final List<AssuranceEvent> chunkedEvents = outboundEventChunker.chunk(largeAssuranceEvent);
+        assertEquals(3, chunkedEvents.size());
+
+        final StringBuilder actualPayloadValue = new StringBuilder();
+
+        for (final AssuranceEvent assuranceEvent : chunkedEvents) {
+            final String chunkData =
+                    (String)
+                            assuranceEvent
+                                    .getPayload()
+                                    .get(AssuranceConstants.AssuranceEventKeys.CHUNK_DATA);
+            // Verify that each chunk is valid UTF-8 on its own and within the chunk size.
+            assertTrue(chunkData.indexOf('\uFFFD') == -1);
+            assertTrue(
+                    chunkData.getBytes(StandardCharsets.UTF_8).length
+                            <= MAX_PAYLOAD_CHUNK_SIZE);
+            actualPayloadValue.append(chunkData);
+        }
+
+        final JSONObject actualPayloadJson = new JSONObject(actualPayloadValue.toString());
+        assertEquals(value.toString(), actualPayloadJson.getString("largeKey"));
+    }
+
+    @Test
+    public void test_slice_backsUpToCharacterBoundary() {
+        // "a€b€" : '€' is encoded as 3 bytes
+        final byte[] source = "a€b€".getBytes(StandardCharsets.UTF_8);
+        final OutboundEventQueueWorker.OutboundEventChunker outboundEventChunker =
+                new OutboundEventQueueWorker.OutboundEventChunker(3);
+
+        final List<OutboundEventQueueWorker.OutboundEventChunker.PayloadSlice> slices =
+                outboundEventChunker.slice(source, 0, source.length);
+
+        // "a" | "€" | "b" | "€"
+        assertEquals(4, slices.size());
+        assertEquals(0, slices.get(0).offset);
+        assertEquals(1, slices.get(0).length);
+        assertEquals(1, slices.get(1).offset);
+        assertEquals(3, slices.get(1).length);
+        assertEquals(4, slices.get(2).offset);
+        assertEquals(1, slices.get(2).length);
+        assertEquals(5, slices.get(3).offset);
+        assertEquals(3, slices.get(3).length);
+    }
+
+    @Test
+    public void test_slice_withinLimit_returnsSingleView() {
+        final byte[] source = "{\"key\":\"value\"}".getBytes(StandardCharsets.UTF_8);
+        final OutboundEventQueueWorker.OutboundEventChunker outboundEventChunker =
+                new OutboundEventQueueWorker.OutboundEventChunker(MAX_PAYLOAD_CHUNK_SIZE);
+
+        final List<OutboundEventQueueWorker.OutboundEventChunker.PayloadSlice> slices =
+                outboundEventChunker.slice(source, 2, 5);
+
+        assertEquals(1, slices.size());
+        assertEquals(2, slices.get(0).offset);
+        assertEquals(5, slices.get(0).length);
+    }
+
+    @Test
+    public void test_chunkIterator_createsChunksOnDemand() {
+        final StringBuilder value = new StringBuilder();
+
+        for (int i = 0; i < 3000; i++) {
+            value.append("0123456789");
+        }
+
+        final HashMap<String, Object> payload = new HashMap<>();
+        payload.put("largeKey", value.toString());
+        final AssuranceEvent largeAssuranceEvent =
+                new AssuranceEvent(AssuranceConstants.AssuranceEventType.GENERIC, payload);
+        final OutboundEventQueueWorker.OutboundEventChunker outboundEventChunker =
+                new OutboundEventQueueWorker.OutboundEventChunker(MAX_PAYLOAD_CHUNK_SIZE);
+
+        final Iterator<AssuranceEvent> chunks =
+                outboundEventChunker.chunkIterator(largeAssuranceEvent);
+        final StringBuilder actualPayloadValue = new StringBuilder();
+        int sequenceNumber = 0;
+
+        while (chunks.hasNext()) {
+            final AssuranceEvent chunk = chunks.next();
+            assertEquals(
+                    sequenceNumber++,
+                    chunk.getMetadata()
+                            .get(AssuranceConstants.AssuranceEventKeys.CHUNK_SEQUENCE_NUMBER));
+            assertEquals(
+                    3, chunk.getMetadata().get(AssuranceConstants.AssuranceEventKeys.CHUNK_TOTAL));
+            actualPayloadValue.append(
+                    (String)
+                            chunk.getPayload()
+                                    .get(AssuranceConstants.AssuranceEventKeys.CHUNK_DATA));
+        }
+
+        assertEquals(3, sequenceNumber);
+        assertEquals(new JSONObject(payload).toString(), actualPayloadValue.toString());
+    }
+
+    @Test
+    public void test_cursor_matchesSlicesAndRewinds() {
+        final byte[] source = "a€b€".getBytes(StandardCharsets.UTF_8);
+        final OutboundEventQueueWorker.OutboundEventChunker outboundEventChunker =
+                new OutboundEventQueueWorker.OutboundEventChunker(3);
+        final List<OutboundEventQueueWorker.OutboundEventChunker.PayloadSlice> slices =
+                outboundEventChunker.slice(source, 0, source.length);
+        final OutboundEventQueueWorker.OutboundEventChunker.ChunkCursor cursor =
+                outboundEventChunker.cursor(source, 0, source.length);
+
+        assertEquals(slices.size(), cursor.count());
+
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < slices.size(); i++) {
+                assertTrue(cursor.hasNext());
+                assertEquals(i, cursor.nextIndex());
+                assertEquals(slices.get(i).length, cursor.nextLength());
+                assertEquals(slices.get(i).offset, cursor.next());
+            }
+
+            assertFalse(cursor.hasNext());
+            cursor.reset();
+        }
+    }
+
+    @Test
+    public void test_chunk_fittingFrames_packsEscapedChunksBelowFrameLimit() throws JSONException {
+        // Quotes and slashes double in size once escaped in the chunk data.
+        final StringBuilder value = new StringBuilder();
+
+        for (int i = 0; i < 4000; i++) {
+            value.append("<a href=\"/path\">").append(i).append("</a>€");
+        }
+
+        final HashMap<String, Object> payload = new HashMap<>();
+        payload.put("largeKey", value.toString());
+        final AssuranceEvent largeAssuranceEvent =
+                new AssuranceEvent(AssuranceConstants.AssuranceEventType.GENERIC, payload);
+        final OutboundEventQueueWorker.OutboundEventChunker outboundEventChunker =
+                OutboundEventQueueWorker.OutboundEventChunker.fittingFrames(
+                        OutboundEventQueueWorker.MAX_EVENT_SIZE);
+
+        final List<AssuranceEvent> chunkedEvents = outboundEventChunker.chunk(largeAssuranceEvent);
+        final AssuranceEventEncoder encoder = new AssuranceEventEncoder();
+        final StringBuilder actualPayloadValue = new StringBuilder();
+
+        for (int i = 0; i < chunkedEvents.size(); i++) {
+            final AssuranceEvent chunk = chunkedEvents.get(i);
+            final int frameSize = encoder.encode(chunk);
+            assertTrue(frameSize < OutboundEventQueueWorker.MAX_EVENT_SIZE);
+
+            // Every frame but the last one is packed close to the limit.
+            if (i < chunkedEvents.size() - 1) {
+                assertTrue(frameSize > OutboundEventQueueWorker.MAX_EVENT_SIZE - 64);
+            }
+
+            actualPayloadValue.append(
+                    (String)
+                            chunk.getPayload()
+                                    .get(AssuranceConstants.AssuranceEventKeys.CHUNK_DATA));
+        }
+
+        assertEquals(
+                value.toString(),
+                new JSONObject(actualPayloadValue.toString()).getString("largeKey"));
+    }
+
+    @Test
+    public void test_cursor_fittingFrames_doesNotTakeEventNumbers() {
+        final byte[] payload = new byte[3 * OutboundEventQueueWorker.MAX_EVENT_SIZE];
+        Arrays.fill(payload, (byte) 'a');
+        final AssuranceEvent largeAssuranceEvent =
+                new AssuranceEvent(
+                        AssuranceConstants.AssuranceEventType.GENERIC,
+                        new HashMap<String, Object>());
+        final OutboundEventQueueWorker.OutboundEventChunker outboundEventChunker =
+                OutboundEventQueueWorker.OutboundEventChunker.fittingFrames(
+                        OutboundEventQueueWorker.MAX_EVENT_SIZE);
+
+        final int eventNumberBefore = AssuranceEvent.nextEventNumber();
+        final OutboundEventQueueWorker.OutboundEventChunker.ChunkCursor cursor =
+                outboundEventChunker.cursor(largeAssuranceEvent, payload, 0, payload.length);
+        outboundEventChunker.cursor(largeAssuranceEvent, payload, 0, payload.length);
+
+        assertEquals(4, cursor.count());
+        assertEquals(eventNumberBefore + 1, AssuranceEvent.nextEventNumber());
+    }
+
+    @Test
+    public void test_chunk_fittingFrames_eventWithinFrameLimit_notChunked() {
+        final HashMap<String, Object> payload = new HashMap<>();
+        payload.put("key", "value");
+        final AssuranceEvent assuranceEvent =
+                new AssuranceEvent(AssuranceConstants.AssuranceEventType.GENERIC, payload);
+        final OutboundEventQueueWorker.OutboundEventChunker outboundEventChunker =
+                OutboundEventQueueWorker.OutboundEventChunker.fittingFrames(
+                        OutboundEventQueueWorker.MAX_EVENT_SIZE);
+
+        final List<AssuranceEvent> chunkedEvents = outboundEventChunker.chunk(assuranceEvent);
+
+        assertEquals(1, chunkedEvents.size());
+        assertEquals(assuranceEvent, chunkedEvents.get(0));
+    }
+
     private String readPayloadFromResource(final String resourceName) throws IOException {
         final InputStream payloadValueStream =
                 this.getClass().getClassLoader().getResourceAsStream(resourceName);
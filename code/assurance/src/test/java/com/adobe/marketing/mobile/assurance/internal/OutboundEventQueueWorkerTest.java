@@ -13,6 +13,8 @@ package com.adobe.marketing.mobile.assurance.internal;
 
 import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -25,6 +27,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -32,7 +36,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.Before;
@@ -51,7 +57,8 @@ public class OutboundEventQueueWorkerTest {
     @Mock private AssuranceClientInfo mockAssuranceClientInfo;
 
     private OutboundEventQueueWorker outboundEventQueueWorker;
-    private LinkedBlockingQueue<AssuranceEvent> queue = new LinkedBlockingQueue<>();
+    private EventRingBuffer<AssuranceEvent> queue = new EventRingBuffer<>();
+    private AssuranceMemoryGovernor memoryGovernor = new AssuranceMemoryGovernor();
     private HashMap<String, Object> clientInfoData;
     private AssuranceEvent clientInfoEvent;
 
@@ -72,6 +79,25 @@ public class OutboundEventQueueWorkerTest {
                 .when(mockExecutorService)
                 .submit(any(Runnable.class));
 
+        // The worker sends frames straight from its reusable buffers. Forward a copy of each one
+        // to sendData(byte[]) so that the tests can capture the frames sent.
+        Mockito.doAnswer(
+                        new Answer<Void>() {
+                            @Override
+                            public Void answer(final InvocationOnMock invocation) {
+                                final int offset = invocation.getArgument(1);
+                                final int length = invocation.getArgument(2);
+                                mockAssuranceWebViewSocket.sendData(
+                                        Arrays.copyOfRange(
+                                                (byte[]) invocation.getArgument(0),
+                                                offset,
+                                                offset + length));
+                                return null;
+                            }
+                        })
+                .when(mockAssuranceWebViewSocket)
+                .sendData(any(byte[].class), anyInt(), anyInt());
+
         clientInfoEvent =
                 new AssuranceEvent(
                         AssuranceConstants.AssuranceEventType.CLIENT, Collections.EMPTY_MAP);
@@ -84,7 +110,9 @@ public class OutboundEventQueueWorkerTest {
                         mockAssuranceClientInfo,
                         queue,
                         new OutboundEventQueueWorker.OutboundEventChunker(
-                                OutboundEventQueueWorker.MAX_PAYLOAD_CHUNK_SIZE));
+                                OutboundEventChunkerTest.MAX_PAYLOAD_CHUNK_SIZE),
+                        0L,
+                        memoryGovernor);
     }
 
     @Test
@@ -240,6 +268,8 @@ public class OutboundEventQueueWorkerTest {
         assertNotEquals(
                 event3.getJSONRepresentation(),
                 new String(capturedEvent, Charset.forName("UTF-8")));
+        verify(mockAssuranceWebViewSocket, times(1))
+                .sendData(any(byte[].class), anyInt(), anyInt());
         verifyNoMoreInteractions(mockAssuranceWebViewSocket);
     }
 
@@ -276,6 +306,8 @@ public class OutboundEventQueueWorkerTest {
         assertNotEquals(
                 event3.getJSONRepresentation(),
                 new String(capturedEvent, Charset.forName("UTF-8")));
+        verify(mockAssuranceWebViewSocket, times(1))
+                .sendData(any(byte[].class), anyInt(), anyInt());
         verifyNoMoreInteractions(mockAssuranceWebViewSocket);
     }
 
@@ -412,6 +444,61 @@ public class OutboundEventQueueWorkerTest {
         }
     }
 
+    @Test
+    public void test_sendEvent_chunksFittedToFrames_40KB() throws IOException, JSONException {
+        when(mockAssuranceWebViewSocket.getState())
+                .thenReturn(AssuranceWebViewSocket.SocketReadyState.OPEN);
+        outboundEventQueueWorker =
+                new OutboundEventQueueWorker(
+                        mockExecutorService,
+                        mockAssuranceWebViewSocket,
+                        mockAssuranceClientInfo,
+                        queue,
+                        OutboundEventQueueWorker.OutboundEventChunker.fittingFrames(
+                                OutboundEventQueueWorker.MAX_EVENT_SIZE),
+                        0L,
+                        memoryGovernor);
+
+        final String expectedPayloadKeyValue =
+                readFromResource("assurance_large_event_payload_key_value_40KB.txt");
+        final HashMap<String, Object> expectedEventPayload = new HashMap<>();
+        expectedEventPayload.put("largeKey", expectedPayloadKeyValue);
+        final AssuranceEvent largeAssuranceEvent =
+                new AssuranceEvent(
+                        AssuranceConstants.AssuranceEventType.GENERIC, expectedEventPayload);
+
+        outboundEventQueueWorker.offer(largeAssuranceEvent);
+        outboundEventQueueWorker.start();
+        outboundEventQueueWorker.unblock();
+
+        // 1 client info event and 2 chunks, half as many as with the fixed chunk size.
+        ArgumentCaptor<byte[]> socketDataCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(mockAssuranceWebViewSocket, times(3)).sendData(socketDataCaptor.capture());
+        final List<byte[]> capturedEventData = socketDataCaptor.getAllValues();
+        final StringBuilder actualPayloadValue = new StringBuilder();
+
+        for (int i = 1; i < capturedEventData.size(); i++) {
+            assertTrue(capturedEventData.get(i).length < OutboundEventQueueWorker.MAX_EVENT_SIZE);
+
+            final AssuranceEvent actualEvent =
+                    new AssuranceEvent(
+                            new String(capturedEventData.get(i), Charset.forName("UTF-8")));
+            assertEquals(
+                    2,
+                    actualEvent
+                            .getMetadata()
+                            .get(AssuranceConstants.AssuranceEventKeys.CHUNK_TOTAL));
+            actualPayloadValue.append(
+                    (String)
+                            actualEvent
+                                    .getPayload()
+                                    .get(AssuranceConstants.AssuranceEventKeys.CHUNK_DATA));
+        }
+
+        final JSONObject actualPayloadJson = new JSONObject(actualPayloadValue.toString());
+        assertEquals(expectedPayloadKeyValue, actualPayloadJson.getString("largeKey"));
+    }
+
     @Test
     public void test_sendEvent_payloadOverMaxPayloadSize_HTML() {
         when(mockAssuranceWebViewSocket.getState())
@@ -487,6 +574,398 @@ public class OutboundEventQueueWorkerTest {
         }
     }
 
+    @Test
+    public void test_runnable_batchingAcknowledged_eventsSentInOneFrame() throws JSONException {
+        when(mockAssuranceWebViewSocket.getState())
+                .thenReturn(AssuranceWebViewSocket.SocketReadyState.OPEN);
+
+        final AssuranceEvent event1 = new AssuranceEvent("type", Collections.EMPTY_MAP);
+        final AssuranceEvent event2 = new AssuranceEvent("type", Collections.EMPTY_MAP);
+        final AssuranceEvent event3 = new AssuranceEvent("type", Collections.EMPTY_MAP);
+
+        outboundEventQueueWorker.offer(event1);
+        outboundEventQueueWorker.offer(event2);
+        outboundEventQueueWorker.offer(event3);
+        outboundEventQueueWorker.start();
+        outboundEventQueueWorker.setAcknowledgedCapabilities(
+                Collections.singleton(AssuranceConstants.TransportCapability.BATCH));
+        outboundEventQueueWorker.unblock();
+
+        // Verify that the queued events are sent as a single batch frame after the client info.
+        ArgumentCaptor<byte[]> eventByteCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(mockAssuranceWebViewSocket, times(2)).sendData(eventByteCaptor.capture());
+        final byte[] batchFrame = eventByteCaptor.getAllValues().get(1);
+        assertTrue(batchFrame.length < OutboundEventQueueWorker.MAX_EVENT_SIZE);
+
+        final JSONArray batch = new JSONArray(new String(batchFrame, Charset.forName("UTF-8")));
+        assertEquals(3, batch.length());
+        assertEquals(
+                event1.eventID,
+                batch.getJSONObject(0)
+                        .getString(AssuranceConstants.AssuranceEventKeys.EVENT_ID));
+        assertEquals(
+                event2.eventID,
+                batch.getJSONObject(1)
+                        .getString(AssuranceConstants.AssuranceEventKeys.EVENT_ID));
+        assertEquals(
+                event3.eventID,
+                batch.getJSONObject(2)
+                        .getString(AssuranceConstants.AssuranceEventKeys.EVENT_ID));
+    }
+
+    @Test
+    public void test_runnable_batchingAcknowledged_largeEventFlushesBatch() throws IOException {
+        when(mockAssuranceWebViewSocket.getState())
+                .thenReturn(AssuranceWebViewSocket.SocketReadyState.OPEN);
+
+        final HashMap<String, Object> largePayload = new HashMap<>();
+        largePayload.put(
+                "largeKey", readFromResource("assurance_large_event_payload_key_value_40KB.txt"));
+        final AssuranceEvent smallEvent1 = new AssuranceEvent("type", Collections.EMPTY_MAP);
+        final AssuranceEvent largeEvent =
+                new AssuranceEvent(AssuranceConstants.AssuranceEventType.GENERIC, largePayload);
+        final AssuranceEvent smallEvent2 = new AssuranceEvent("type", Collections.EMPTY_MAP);
+
+        outboundEventQueueWorker.offer(smallEvent1);
+        outboundEventQueueWorker.offer(largeEvent);
+        outboundEventQueueWorker.offer(smallEvent2);
+        outboundEventQueueWorker.start();
+        outboundEventQueueWorker.setAcknowledgedCapabilities(
+                Collections.singleton(AssuranceConstants.TransportCapability.BATCH));
+        outboundEventQueueWorker.unblock();
+
+        // 1 client info event, the first small event on its own, the second small event on its
+        // own and 4 chunks of the large event, which do not hold up the second small event.
+        ArgumentCaptor<byte[]> eventByteCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(mockAssuranceWebViewSocket, times(7)).sendData(eventByteCaptor.capture());
+        final List<byte[]> capturedEventData = eventByteCaptor.getAllValues();
+        assertEquals(
+                smallEvent1.getJSONRepresentation(),
+                new String(capturedEventData.get(1), Charset.forName("UTF-8")));
+        assertEquals(
+                smallEvent2.getJSONRepresentation(),
+                new String(capturedEventData.get(2), Charset.forName("UTF-8")));
+    }
+
+    @Test
+    public void test_runnable_chunksInterleavedWithQueuedEvents()
+            throws IOException, JSONException {
+        when(mockAssuranceWebViewSocket.getState())
+                .thenReturn(AssuranceWebViewSocket.SocketReadyState.OPEN);
+
+        final HashMap<String, Object> largePayload = new HashMap<>();
+        largePayload.put(
+                "largeKey", readFromResource("assurance_large_event_payload_key_value_40KB.txt"));
+        final AssuranceEvent largeEvent =
+                new AssuranceEvent(AssuranceConstants.AssuranceEventType.GENERIC, largePayload);
+        final AssuranceEvent smallEvent = new AssuranceEvent("type", Collections.EMPTY_MAP);
+
+        outboundEventQueueWorker.offer(largeEvent);
+        outboundEventQueueWorker.offer(smallEvent);
+        outboundEventQueueWorker.start();
+        outboundEventQueueWorker.unblock();
+
+        // 1 client info event, 4 chunks of the large event and the small event, which is sent
+        // after the first turn of the large event instead of after its last chunk.
+        ArgumentCaptor<byte[]> eventByteCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(mockAssuranceWebViewSocket, times(6)).sendData(eventByteCaptor.capture());
+        final List<byte[]> capturedEventData = eventByteCaptor.getAllValues();
+        int expectedSequenceNumber = 0;
+        int smallEventIndex = -1;
+
+        for (int i = 1; i < capturedEventData.size(); i++) {
+            final AssuranceEvent actualEvent =
+                    new AssuranceEvent(
+                            new String(capturedEventData.get(i), Charset.forName("UTF-8")));
+
+            if (smallEvent.eventID.equals(actualEvent.eventID)) {
+                smallEventIndex = i;
+                continue;
+            }
+
+            // Chunks are sent in order.
+            assertEquals(
+                    expectedSequenceNumber++,
+                    actualEvent
+                            .getMetadata()
+                            .get(AssuranceConstants.AssuranceEventKeys.CHUNK_SEQUENCE_NUMBER));
+        }
+
+        assertEquals(4, expectedSequenceNumber);
+        assertTrue(smallEventIndex > 1 && smallEventIndex < capturedEventData.size() - 1);
+        // The payload held by the chunk stream is returned to the budget once it is sent.
+        assertEquals(
+                0, memoryGovernor.getUsedBytes(AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE));
+    }
+
+    @Test
+    public void test_runnable_chunkStreamOverMemoryBudget_chunksSentAtOnce() {
+        when(mockAssuranceWebViewSocket.getState())
+                .thenReturn(AssuranceWebViewSocket.SocketReadyState.OPEN);
+
+        // Control characters take 6 bytes once encoded, so the payload copy of the chunk stream
+        // does not fit in the room left by the event in the budget.
+        final char[] controlCharacters = new char[20 * 1024];
+        Arrays.fill(controlCharacters, (char) 0x01);
+        final HashMap<String, Object> largePayload = new HashMap<>();
+        largePayload.put("largeKey", new String(controlCharacters));
+        final AssuranceEvent largeEvent =
+                new AssuranceEvent(AssuranceConstants.AssuranceEventType.GENERIC, largePayload);
+        final AssuranceEvent smallEvent = new AssuranceEvent("type", Collections.EMPTY_MAP);
+        memoryGovernor.configure(
+                2L * (largeEvent.getEstimatedSize() + smallEvent.getEstimatedSize()),
+                AssuranceMemoryGovernor.OverflowPolicy.DROP_OLDEST);
+
+        outboundEventQueueWorker.offer(largeEvent);
+        outboundEventQueueWorker.offer(smallEvent);
+        outboundEventQueueWorker.start();
+        outboundEventQueueWorker.unblock();
+
+        // The chunks are not interleaved: the small event goes out after the last one.
+        ArgumentCaptor<byte[]> eventByteCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(mockAssuranceWebViewSocket, atLeast(4)).sendData(eventByteCaptor.capture());
+        final List<byte[]> capturedEventData = eventByteCaptor.getAllValues();
+
+        for (int i = 1; i < capturedEventData.size() - 1; i++) {
+            assertNotNull(
+                    new AssuranceEvent(
+                                    new String(
+                                            capturedEventData.get(i), Charset.forName("UTF-8")))
+                            .getMetadata());
+        }
+
+        assertEquals(
+                smallEvent.getJSONRepresentation(),
+                new String(
+                        capturedEventData.get(capturedEventData.size() - 1),
+                        Charset.forName("UTF-8")));
+        assertEquals(
+                0, memoryGovernor.getUsedBytes(AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE));
+    }
+
+    @Test
+    public void test_sendEvent_deflateAcknowledged_largeEventSentAsSingleCompressedFrame()
+            throws DataFormatException {
+        when(mockAssuranceWebViewSocket.getState())
+                .thenReturn(AssuranceWebViewSocket.SocketReadyState.OPEN);
+
+        // Verbose and repetitive, much like XDM shared states.
+        final StringBuilder value = new StringBuilder();
+
+        for (int i = 0; i < 2000; i++) {
+            value.append("{\"ACPExtensionEventType\":\"com.adobe.eventType.hub\"}");
+        }
+
+        final HashMap<String, Object> payload = new HashMap<>();
+        payload.put("largeKey", value.toString());
+        final AssuranceEvent largeEvent =
+                new AssuranceEvent(AssuranceConstants.AssuranceEventType.GENERIC, payload);
+        final byte[] expectedEventBytes =
+                largeEvent.getJSONRepresentation().getBytes(Charset.forName("UTF-8"));
+        assertTrue(expectedEventBytes.length > OutboundEventQueueWorker.MAX_EVENT_SIZE);
+
+        outboundEventQueueWorker.offer(largeEvent);
+        outboundEventQueueWorker.start();
+        outboundEventQueueWorker.setAcknowledgedCapabilities(
+                Collections.singleton(AssuranceConstants.TransportCapability.DEFLATE));
+        outboundEventQueueWorker.unblock();
+
+        // Verify that the event is sent as a single compressed frame instead of being chunked.
+        ArgumentCaptor<byte[]> eventByteCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(mockAssuranceWebViewSocket, times(2)).sendData(eventByteCaptor.capture());
+        final byte[] compressedFrame = eventByteCaptor.getAllValues().get(1);
+        assertTrue(compressedFrame.length < OutboundEventQueueWorker.MAX_EVENT_SIZE);
+        assertEquals(0x78, compressedFrame[0]);
+
+        final Inflater inflater = new Inflater();
+        inflater.setInput(compressedFrame);
+        final byte[] inflated = new byte[expectedEventBytes.length];
+        assertEquals(expectedEventBytes.length, inflater.inflate(inflated));
+        assertTrue(inflater.finished());
+        inflater.end();
+        assertArrayEquals(expectedEventBytes, inflated);
+    }
+
+    @Test
+    public void test_sendEvent_deflateAcknowledged_eventFarOverLimitChunkedWithoutTrial() {
+        when(mockAssuranceWebViewSocket.getState())
+                .thenReturn(AssuranceWebViewSocket.SocketReadyState.OPEN);
+
+        // Would deflate to a single frame, but is too large to be worth compressing whole.
+        final int payloadSize =
+                OutboundEventQueueWorker.MAX_EVENT_SIZE
+                        * (OutboundEventQueueWorker.MAX_TRIAL_COMPRESSION_RATIO + 1);
+        final char[] repeated = new char[payloadSize];
+        Arrays.fill(repeated, 'a');
+        final HashMap<String, Object> payload = new HashMap<>();
+        payload.put("largeKey", new String(repeated));
+        final AssuranceEvent largeEvent =
+                new AssuranceEvent(AssuranceConstants.AssuranceEventType.GENERIC, payload);
+
+        outboundEventQueueWorker.offer(largeEvent);
+        outboundEventQueueWorker.start();
+        outboundEventQueueWorker.setAcknowledgedCapabilities(
+                Collections.singleton(AssuranceConstants.TransportCapability.DEFLATE));
+        outboundEventQueueWorker.unblock();
+
+        // Verify that the event is chunked rather than sent as one compressed frame.
+        verify(mockAssuranceWebViewSocket, atLeast(3)).sendData(any(byte[].class));
+    }
+
+    @Test
+    public void test_sendEvent_deflateAcknowledged_smallEventSentUncompressed() {
+        when(mockAssuranceWebViewSocket.getState())
+                .thenReturn(AssuranceWebViewSocket.SocketReadyState.OPEN);
+        final AssuranceEvent event = new AssuranceEvent("type", Collections.EMPTY_MAP);
+
+        outboundEventQueueWorker.offer(event);
+        outboundEventQueueWorker.start();
+        outboundEventQueueWorker.setAcknowledgedCapabilities(
+                Collections.singleton(AssuranceConstants.TransportCapability.DEFLATE));
+        outboundEventQueueWorker.unblock();
+
+        ArgumentCaptor<byte[]> eventByteCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(mockAssuranceWebViewSocket, times(2)).sendData(eventByteCaptor.capture());
+        assertEquals(
+                event.getJSONRepresentation(),
+                new String(eventByteCaptor.getAllValues().get(1), Charset.forName("UTF-8")));
+    }
+
+    @Test
+    public void test_sendEvent_binaryAcknowledged_chunksFittedToBinaryFrames()
+            throws IOException, JSONException {
+        when(mockAssuranceWebViewSocket.getState())
+                .thenReturn(AssuranceWebViewSocket.SocketReadyState.OPEN);
+        when(mockAssuranceWebViewSocket.supportsBinaryFrames()).thenReturn(true);
+        final List<byte[]> binaryFrames = new ArrayList<>();
+        Mockito.doAnswer(
+                        new Answer<Void>() {
+                            @Override
+                            public Void answer(final InvocationOnMock invocation) {
+                                // The worker reuses its buffers once the frame is sent.
+                                final int offset = invocation.getArgument(1);
+                                final int length = invocation.getArgument(2);
+                                binaryFrames.add(
+                                        Arrays.copyOfRange(
+                                                (byte[]) invocation.getArgument(0),
+                                                offset,
+                                                offset + length));
+                                return null;
+                            }
+                        })
+                .when(mockAssuranceWebViewSocket)
+                .sendBinaryData(any(byte[].class), anyInt(), anyInt());
+        outboundEventQueueWorker =
+                new OutboundEventQueueWorker(
+                        mockExecutorService,
+                        mockAssuranceWebViewSocket,
+                        mockAssuranceClientInfo,
+                        queue,
+                        OutboundEventQueueWorker.OutboundEventChunker.fittingFrames(
+                                OutboundEventQueueWorker.MAX_EVENT_SIZE),
+                        0L,
+                        memoryGovernor);
+
+        final String expectedPayloadKeyValue =
+                readFromResource("assurance_large_event_payload_key_value_40KB.txt");
+        final HashMap<String, Object> expectedEventPayload = new HashMap<>();
+        expectedEventPayload.put("largeKey", expectedPayloadKeyValue);
+        final AssuranceEvent largeAssuranceEvent =
+                new AssuranceEvent(
+                        AssuranceConstants.AssuranceEventType.GENERIC, expectedEventPayload);
+
+        outboundEventQueueWorker.offer(largeAssuranceEvent);
+        outboundEventQueueWorker.start();
+        outboundEventQueueWorker.setAcknowledgedCapabilities(
+                Collections.singleton(AssuranceConstants.TransportCapability.BINARY));
+        outboundEventQueueWorker.unblock();
+
+        // The client info event is sent before binary frames are acknowledged.
+        verify(mockAssuranceWebViewSocket, times(1)).sendData(any(byte[].class));
+
+        // The chunks use the room that Base64 encoding would have taken.
+        assertEquals(2, binaryFrames.size());
+        assertTrue(binaryFrames.get(0).length > OutboundEventQueueWorker.MAX_EVENT_SIZE);
+        final StringBuilder actualPayloadValue = new StringBuilder();
+
+        for (final byte[] frame : binaryFrames) {
+            assertTrue(frame.length < OutboundEventQueueWorker.MAX_BINARY_EVENT_SIZE);
+
+            final AssuranceEvent actualEvent =
+                    new AssuranceEvent(new String(frame, Charset.forName("UTF-8")));
+            actualPayloadValue.append(
+                    (String)
+                            actualEvent
+                                    .getPayload()
+                                    .get(AssuranceConstants.AssuranceEventKeys.CHUNK_DATA));
+        }
+
+        final JSONObject actualPayloadJson = new JSONObject(actualPayloadValue.toString());
+        assertEquals(expectedPayloadKeyValue, actualPayloadJson.getString("largeKey"));
+    }
+
+    @Test
+    public void test_sendEvent_binaryAcknowledged_unsupportedBySocket_sentAsText() {
+        when(mockAssuranceWebViewSocket.getState())
+                .thenReturn(AssuranceWebViewSocket.SocketReadyState.OPEN);
+        when(mockAssuranceWebViewSocket.supportsBinaryFrames()).thenReturn(false);
+        final AssuranceEvent event = new AssuranceEvent("type", Collections.EMPTY_MAP);
+
+        outboundEventQueueWorker.offer(event);
+        outboundEventQueueWorker.start();
+        outboundEventQueueWorker.setAcknowledgedCapabilities(
+                Collections.singleton(AssuranceConstants.TransportCapability.BINARY));
+        outboundEventQueueWorker.unblock();
+
+        ArgumentCaptor<byte[]> eventByteCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(mockAssuranceWebViewSocket, times(2)).sendData(eventByteCaptor.capture());
+        verify(mockAssuranceWebViewSocket, never())
+                .sendBinaryData(any(byte[].class), anyInt(), anyInt());
+        assertEquals(
+                event.getJSONRepresentation(),
+                new String(eventByteCaptor.getAllValues().get(1), Charset.forName("UTF-8")));
+    }
+
+    @Test
+    public void test_sendEvent_transportCongested_pausesUntilDrained() {
+        when(mockAssuranceWebViewSocket.getState())
+                .thenReturn(AssuranceWebViewSocket.SocketReadyState.OPEN);
+        when(mockAssuranceWebViewSocket.getBufferedAmountHighWaterMark())
+                .thenReturn(AssuranceWebViewSocket.WEBVIEW_HIGH_WATER_MARK);
+        when(mockAssuranceWebViewSocket.getBufferedAmountLowWaterMark())
+                .thenReturn(AssuranceWebViewSocket.WEBVIEW_LOW_WATER_MARK);
+        when(mockAssuranceWebViewSocket.getBufferedAmount())
+                .thenReturn(AssuranceWebViewSocket.WEBVIEW_HIGH_WATER_MARK);
+        final AssuranceEvent event = new AssuranceEvent("type", Collections.EMPTY_MAP);
+
+        outboundEventQueueWorker.offer(event);
+        outboundEventQueueWorker.start();
+        outboundEventQueueWorker.unblock();
+
+        // Only the client info event is sent while the transport is backed up.
+        assertFalse(outboundEventQueueWorker.canWork());
+        verify(mockAssuranceWebViewSocket, times(1)).sendData(any(byte[].class));
+
+        // Draining part of the way does not resume sending.
+        when(mockAssuranceWebViewSocket.getBufferedAmount())
+                .thenReturn(AssuranceWebViewSocket.WEBVIEW_LOW_WATER_MARK + 1);
+        outboundEventQueueWorker.onTransportBufferedAmountChanged(
+                AssuranceWebViewSocket.WEBVIEW_LOW_WATER_MARK + 1);
+        assertFalse(outboundEventQueueWorker.canWork());
+        verify(mockAssuranceWebViewSocket, times(1)).sendData(any(byte[].class));
+
+        when(mockAssuranceWebViewSocket.getBufferedAmount())
+                .thenReturn(AssuranceWebViewSocket.WEBVIEW_LOW_WATER_MARK);
+        outboundEventQueueWorker.onTransportBufferedAmountChanged(
+                AssuranceWebViewSocket.WEBVIEW_LOW_WATER_MARK);
+
+        ArgumentCaptor<byte[]> eventByteCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(mockAssuranceWebViewSocket, times(2)).sendData(eventByteCaptor.capture());
+        assertEquals(
+                event.getJSONRepresentation(),
+                new String(eventByteCaptor.getAllValues().get(1), Charset.forName("UTF-8")));
+    }
+
     @Test
     public void test_sendEvent_overflow_clientInfo() {
         when(mockAssuranceWebViewSocket.getState())
@@ -558,6 +1037,75 @@ public class OutboundEventQueueWorkerTest {
         }
     }
 
+    @Test
+    public void test_offer_overMemoryBudget_evictsOldestEvent() {
+        final AssuranceEvent first = createGenericEvent("first");
+        final AssuranceEvent second = createGenericEvent("secnd");
+        final AssuranceEvent third = createGenericEvent("third");
+        // Leave room in the outbound queue share of the budget for exactly two events.
+        memoryGovernor.configure(
+                2L * (first.getEstimatedSize() + second.getEstimatedSize()),
+                AssuranceMemoryGovernor.OverflowPolicy.DROP_OLDEST);
+
+        assertTrue(outboundEventQueueWorker.offer(first));
+        assertTrue(outboundEventQueueWorker.offer(second));
+        assertTrue(outboundEventQueueWorker.offer(third));
+
+        assertEquals(second, queue.poll());
+        assertEquals(third, queue.poll());
+        assertNull(queue.poll());
+        assertEquals(
+                1,
+                memoryGovernor.getDroppedEventCount(
+                        AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE));
+    }
+
+    @Test
+    public void test_offer_overMemoryBudget_dropLowPriority_dropsIncomingLowPriorityEvent() {
+        final HashMap<String, Object> sharedStatePayload = new HashMap<>();
+        sharedStatePayload.put(
+                AssuranceConstants.GenericEventPayloadKey.ACP_EXTENSION_EVENT_NAME,
+                AssuranceConstants.SDKEventName.SHARED_STATE_CHANGE);
+        final AssuranceEvent sharedState =
+                new AssuranceEvent(
+                        AssuranceConstants.AssuranceEventType.GENERIC, sharedStatePayload);
+        final AssuranceEvent lowPriority = createGenericEvent("low");
+        memoryGovernor.configure(
+                2L * sharedState.getEstimatedSize(),
+                AssuranceMemoryGovernor.OverflowPolicy.DROP_LOW_PRIORITY);
+
+        assertTrue(outboundEventQueueWorker.offer(sharedState));
+        assertFalse(outboundEventQueueWorker.offer(lowPriority));
+
+        assertEquals(sharedState, queue.poll());
+        assertNull(queue.poll());
+        assertEquals(
+                1,
+                memoryGovernor.getDroppedEventCount(
+                        AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE));
+    }
+
+    @Test
+    public void test_sendEvent_releasesMemoryBudget() {
+        when(mockAssuranceWebViewSocket.getState())
+                .thenReturn(AssuranceWebViewSocket.SocketReadyState.OPEN);
+        outboundEventQueueWorker.start();
+        outboundEventQueueWorker.offer(createGenericEvent("value"));
+        assertTrue(
+                memoryGovernor.getUsedBytes(AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE) > 0);
+
+        outboundEventQueueWorker.unblock();
+
+        assertEquals(
+                0, memoryGovernor.getUsedBytes(AssuranceMemoryGovernor.Buffer.OUTBOUND_QUEUE));
+    }
+
+    private AssuranceEvent createGenericEvent(final String value) {
+        final HashMap<String, Object> payload = new HashMap<>();
+        payload.put("key", value);
+        return new AssuranceEvent(AssuranceConstants.AssuranceEventType.GENERIC, payload);
+    }
+
     private String readFromResource(final String resourceName) throws IOException {
         final InputStream payloadValueStream =
                 this.getClass().getClassLoader().getResourceAsStream(resourceName);
@@ -0,0 +1,178 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import org.junit.Test;
+
+public class OutboundTrafficSchedulerTest {
+
+    @Test
+    public void test_classify() {
+        assertEquals(
+                OutboundTrafficScheduler.TrafficClass.CONTROL,
+                OutboundTrafficScheduler.TrafficClass.of(
+                        createEvent(AssuranceConstants.AssuranceEventType.CONTROL)));
+        assertEquals(
+                OutboundTrafficScheduler.TrafficClass.BLOB,
+                OutboundTrafficScheduler.TrafficClass.of(
+                        createEvent(AssuranceConstants.AssuranceEventType.BLOB)));
+        assertEquals(
+                OutboundTrafficScheduler.TrafficClass.LOG,
+                OutboundTrafficScheduler.TrafficClass.of(
+                        createEvent(AssuranceConstants.AssuranceEventType.LOG)));
+        assertEquals(
+                OutboundTrafficScheduler.TrafficClass.GENERIC,
+                OutboundTrafficScheduler.TrafficClass.of(createEvent("unknownType")));
+    }
+
+    @Test
+    public void test_poll_interactiveTrafficFirst() {
+        final OutboundTrafficScheduler scheduler = new OutboundTrafficScheduler();
+        final AssuranceEvent generic1 = createEvent(AssuranceConstants.AssuranceEventType.GENERIC);
+        final AssuranceEvent generic2 = createEvent(AssuranceConstants.AssuranceEventType.GENERIC);
+        final AssuranceEvent log = createEvent(AssuranceConstants.AssuranceEventType.LOG);
+        final AssuranceEvent blob = createEvent(AssuranceConstants.AssuranceEventType.BLOB);
+        final AssuranceEvent control = createEvent(AssuranceConstants.AssuranceEventType.CONTROL);
+
+        scheduler.offer(generic1);
+        scheduler.offer(log);
+        scheduler.offer(generic2);
+        scheduler.offer(blob);
+        scheduler.offer(control);
+        assertEquals(5, scheduler.size());
+
+        assertSame(control, scheduler.poll());
+        assertSame(blob, scheduler.poll());
+        assertSame(generic1, scheduler.poll());
+        assertSame(generic2, scheduler.poll());
+        assertSame(log, scheduler.poll());
+        assertNull(scheduler.poll());
+        assertNull(scheduler.peek());
+    }
+
+    @Test
+    public void test_poll_bulkClassesShareByWeight() {
+        final OutboundTrafficScheduler scheduler = new OutboundTrafficScheduler();
+        scheduler.configure(OutboundTrafficScheduler.TrafficClass.GENERIC, 2);
+        scheduler.configure(OutboundTrafficScheduler.TrafficClass.LOG, 1);
+        final List<AssuranceEvent> generic = new ArrayList<>();
+        final List<AssuranceEvent> log = new ArrayList<>();
+
+        // Each turn of weight 1 fits a single event, with little to spare for the next turn.
+        for (int i = 0; i < 8; i++) {
+            generic.add(createLargeEvent(AssuranceConstants.AssuranceEventType.GENERIC));
+            scheduler.offer(generic.get(i));
+        }
+
+        for (int i = 0; i < 2; i++) {
+            log.add(createLargeEvent(AssuranceConstants.AssuranceEventType.LOG));
+            scheduler.offer(log.get(i));
+        }
+
+        final long size = log.get(0).getEstimatedSize();
+        assertTrue(size > OutboundTrafficScheduler.BULK_QUANTUM_BYTES * 3 / 4);
+        assertTrue(size <= OutboundTrafficScheduler.BULK_QUANTUM_BYTES);
+
+        // Generic events are held back while logs get their share.
+        assertSame(generic.get(0), scheduler.poll());
+        assertSame(generic.get(1), scheduler.poll());
+        assertSame(log.get(0), scheduler.poll());
+        assertSame(generic.get(2), scheduler.poll());
+        assertSame(generic.get(3), scheduler.poll());
+        assertSame(log.get(1), scheduler.poll());
+
+        // Leftover bandwidth is used by the remaining class.
+        for (int i = 4; i < 8; i++) {
+            assertSame(generic.get(i), scheduler.poll());
+        }
+
+        assertNull(scheduler.poll());
+    }
+
+    @Test
+    public void test_configure_interactiveClassStaysAheadOfBulkClasses() {
+        final OutboundTrafficScheduler scheduler = new OutboundTrafficScheduler();
+        scheduler.configure(OutboundTrafficScheduler.TrafficClass.CONTROL, 1);
+        final AssuranceEvent generic = createEvent(AssuranceConstants.AssuranceEventType.GENERIC);
+        final AssuranceEvent control = createEvent(AssuranceConstants.AssuranceEventType.CONTROL);
+        scheduler.offer(generic);
+        scheduler.offer(control);
+
+        assertSame(control, scheduler.poll());
+        assertSame(generic, scheduler.poll());
+    }
+
+    @Test
+    public void test_evict_lowestPriorityOldestFirst() {
+        final OutboundTrafficScheduler scheduler = new OutboundTrafficScheduler();
+        final AssuranceEvent control = createEvent(AssuranceConstants.AssuranceEventType.CONTROL);
+        final AssuranceEvent generic = createEvent(AssuranceConstants.AssuranceEventType.GENERIC);
+        final AssuranceEvent log1 = createEvent(AssuranceConstants.AssuranceEventType.LOG);
+        final AssuranceEvent log2 = createEvent(AssuranceConstants.AssuranceEventType.LOG);
+        scheduler.offer(control);
+        scheduler.offer(log1);
+        scheduler.offer(generic);
+        scheduler.offer(log2);
+
+        assertSame(log1, scheduler.evict());
+        assertSame(log2, scheduler.evict());
+        assertSame(generic, scheduler.evict());
+        assertSame(control, scheduler.evict());
+        assertNull(scheduler.evict());
+    }
+
+    @Test
+    public void test_stats() throws InterruptedException {
+        final OutboundTrafficScheduler scheduler = new OutboundTrafficScheduler();
+        scheduler.offer(createEvent(AssuranceConstants.AssuranceEventType.LOG));
+        scheduler.offer(createEvent(AssuranceConstants.AssuranceEventType.LOG));
+        assertEquals(2, scheduler.getQueueDepth(OutboundTrafficScheduler.TrafficClass.LOG));
+        assertEquals(0, scheduler.getQueueDepth(OutboundTrafficScheduler.TrafficClass.GENERIC));
+
+        Thread.sleep(20);
+        scheduler.poll();
+
+        assertEquals(1, scheduler.getQueueDepth(OutboundTrafficScheduler.TrafficClass.LOG));
+        assertEquals(1, scheduler.getDequeuedCount(OutboundTrafficScheduler.TrafficClass.LOG));
+        assertTrue(scheduler.getMaxWaitMillis(OutboundTrafficScheduler.TrafficClass.LOG) >= 20);
+        assertEquals(
+                scheduler.getMaxWaitMillis(OutboundTrafficScheduler.TrafficClass.LOG),
+                scheduler.getAverageWaitMillis(OutboundTrafficScheduler.TrafficClass.LOG));
+
+        scheduler.clear();
+        assertEquals(0, scheduler.size());
+    }
+
+    private AssuranceEvent createLargeEvent(final String type) {
+        final char[] value =
+                new char[(int) (OutboundTrafficScheduler.BULK_QUANTUM_BYTES / 2) - 256];
+        Arrays.fill(value, 'a');
+        final HashMap<String, Object> payload = new HashMap<>();
+        payload.put("key", new String(value));
+        return new AssuranceEvent(type, payload);
+    }
+
+    private AssuranceEvent createEvent(final String type) {
+        final HashMap<String, Object> payload = new HashMap<>();
+        payload.put("key", "value");
+        return new AssuranceEvent(type, payload);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class PluginExecutionLaneTest {
+
+    @Test
+    public void test_deliver_dropsEventsBeyondQueueLimit() throws InterruptedException {
+        final BlockingPlugin plugin = new BlockingPlugin();
+        final PluginExecutionLane lane = new PluginExecutionLane("BlockingPlugin", 2);
+
+        // The first event is taken by the lane thread and blocks it.
+        assertTrue(lane.deliver(plugin, event()));
+        assertTrue(plugin.started.await(5, TimeUnit.SECONDS));
+        assertTrue(lane.deliver(plugin, event()));
+        assertTrue(lane.deliver(plugin, event()));
+        assertFalse(lane.deliver(plugin, event()));
+
+        final CountDownLatch terminated = new CountDownLatch(1);
+        lane.run(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        terminated.countDown();
+                    }
+                });
+
+        assertEquals(2, lane.getQueuedEventCount());
+        assertEquals(1, lane.getDroppedEventCount());
+
+        plugin.release.countDown();
+
+        assertTrue(terminated.await(5, TimeUnit.SECONDS));
+        assertEquals(3, plugin.received.size());
+        assertEquals(3, lane.getDeliveredEventCount());
+        assertEquals(0, lane.getQueuedEventCount());
+        assertTrue(lane.getMaxWaitTimeMillis() >= lane.getAverageRunTimeMillis());
+        assertTrue(lane.getMaxRunTimeMillis() >= lane.getAverageRunTimeMillis());
+    }
+
+    @Test
+    public void test_deliver_continuesAfterPluginThrows() throws InterruptedException {
+        final BlockingPlugin plugin = new BlockingPlugin();
+        plugin.release.countDown();
+        plugin.failing = true;
+        final PluginExecutionLane lane = new PluginExecutionLane("BlockingPlugin");
+
+        lane.deliver(plugin, event());
+        lane.deliver(plugin, event());
+        final CountDownLatch done = new CountDownLatch(1);
+        lane.run(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        done.countDown();
+                    }
+                });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, plugin.received.size());
+        assertEquals(2, lane.getDeliveredEventCount());
+    }
+
+    private static AssuranceEvent event() {
+        return new AssuranceEvent(
+                AssuranceConstants.AssuranceEventType.CONTROL,
+                Collections.<String, Object>singletonMap(
+                        AssuranceConstants.PayloadDataKeys.TYPE,
+                        AssuranceConstants.ControlType.CONFIG_UPDATE));
+    }
+
+    private static final class BlockingPlugin implements AssurancePlugin {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<AssuranceEvent> received = new CopyOnWriteArrayList<>();
+        volatile boolean failing;
+
+        @Override
+        public String getVendor() {
+            return AssuranceConstants.VENDOR_ASSURANCE_MOBILE;
+        }
+
+        @Override
+        public String getControlType() {
+            return AssuranceConstants.ControlType.CONFIG_UPDATE;
+        }
+
+        @Override
+        public ExecutionPolicy getExecutionPolicy() {
+            return ExecutionPolicy.SERIAL_LANE;
+        }
+
+        @Override
+        public void onEventReceived(final AssuranceEvent event) {
+            received.add(event);
+            started.countDown();
+
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (failing) {
+                throw new IllegalStateException("Plugin failure");
+            }
+        }
+
+        @Override
+        public void onRegistered(final AssuranceSession parentSession) {}
+
+        @Override
+        public void onSessionConnected() {}
+
+        @Override
+        public void onSessionDisconnected(final int code) {}
+
+        @Override
+        public void onSessionTerminated() {}
+    }
+}
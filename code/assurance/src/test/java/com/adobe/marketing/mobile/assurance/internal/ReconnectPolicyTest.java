@@ -0,0 +1,96 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import static com.adobe.marketing.mobile.assurance.internal.ReconnectPolicy.BASE_DELAY_MILLIS;
+import static com.adobe.marketing.mobile.assurance.internal.ReconnectPolicy.MAX_DELAY_MILLIS;
+import static com.adobe.marketing.mobile.assurance.internal.ReconnectPolicy.NO_MORE_ATTEMPTS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class ReconnectPolicyTest {
+
+    @Test
+    public void test_nextDelayMillis_capDoublesUpToMaxDelay() {
+        final ReconnectPolicy policy = new ReconnectPolicy(new FixedRandom(1.0), 20);
+        long cap = BASE_DELAY_MILLIS;
+
+        for (int attempt = 1; attempt <= 20; attempt++) {
+            assertEquals(Math.min(cap, MAX_DELAY_MILLIS), policy.nextDelayMillis(0) - 1);
+            assertEquals(attempt, policy.getAttempts());
+            cap *= 2;
+        }
+    }
+
+    @Test
+    public void test_nextDelayMillis_fullJitter() {
+        final Random random = new Random(42);
+        final ReconnectPolicy policy = new ReconnectPolicy(random, 1000);
+        long sum = 0;
+
+        for (int attempt = 0; attempt < 1000; attempt++) {
+            final long delay = policy.nextDelayMillis(0);
+            assertTrue(delay >= 0 && delay <= MAX_DELAY_MILLIS);
+            sum += delay;
+        }
+
+        // Delays are spread over the whole range rather than clustered at the cap.
+        final long mean = sum / 1000;
+        assertTrue(mean > MAX_DELAY_MILLIS / 3 && mean < MAX_DELAY_MILLIS * 2 / 3);
+    }
+
+    @Test
+    public void test_nextDelayMillis_budgetSpent() {
+        final ReconnectPolicy policy = new ReconnectPolicy(new FixedRandom(0.5), 2);
+
+        assertEquals(BASE_DELAY_MILLIS / 2, policy.nextDelayMillis(1000));
+        assertEquals(BASE_DELAY_MILLIS, policy.nextDelayMillis(2000));
+        assertEquals(NO_MORE_ATTEMPTS, policy.nextDelayMillis(3000));
+        assertEquals(2, policy.getAttempts());
+        assertEquals(BASE_DELAY_MILLIS * 3 / 2, policy.getTotalDelayMillis());
+        assertEquals(4000, policy.getDisconnectedMillis(5000));
+
+        // A new connection gets a fresh budget.
+        policy.reset();
+        assertEquals(0, policy.getDisconnectedMillis(5000));
+        assertEquals(BASE_DELAY_MILLIS / 2, policy.nextDelayMillis(6000));
+    }
+
+    @Test
+    public void test_onNetworkAvailable_restartsBackoffButKeepsBudget() {
+        final ReconnectPolicy policy = new ReconnectPolicy(new FixedRandom(0.5), 3);
+        policy.nextDelayMillis(0);
+        policy.nextDelayMillis(0);
+
+        policy.onNetworkAvailable();
+
+        assertEquals(BASE_DELAY_MILLIS / 2, policy.nextDelayMillis(0));
+        assertEquals(NO_MORE_ATTEMPTS, policy.nextDelayMillis(0));
+    }
+
+    /** Draws every delay at the same point of its range. */
+    private static final class FixedRandom extends Random {
+        private final double value;
+
+        FixedRandom(final double value) {
+            this.value = value;
+        }
+
+        @Override
+        public double nextDouble() {
+            return value;
+        }
+    }
+}
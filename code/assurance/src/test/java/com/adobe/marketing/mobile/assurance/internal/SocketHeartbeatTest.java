@@ -0,0 +1,143 @@
+/*
+  Copyright 2024 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.assurance.internal;
+
+import static com.adobe.marketing.mobile.assurance.internal.SocketHeartbeat.ACTIVE_PING_INTERVAL_MILLIS;
+import static com.adobe.marketing.mobile.assurance.internal.SocketHeartbeat.DEFAULT_PONG_TIMEOUT_MILLIS;
+import static com.adobe.marketing.mobile.assurance.internal.SocketHeartbeat.IDLE_PING_INTERVAL_MILLIS;
+import static com.adobe.marketing.mobile.assurance.internal.SocketHeartbeat.MAX_MISSED_PONGS;
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SocketHeartbeatTest {
+
+    // The heartbeat is ticked by the tests, its own ticks are scheduled seconds ahead.
+    private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+    private final RecordingTransport transport = new RecordingTransport();
+    private SocketHeartbeat heartbeat;
+
+    @Before
+    public void setup() {
+        heartbeat = new SocketHeartbeat(transport, executor);
+        heartbeat.start(0);
+    }
+
+    @After
+    public void teardown() {
+        heartbeat.stop();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void test_tick_idleConnection_pingedAfterIdleInterval() {
+        heartbeat.tick(IDLE_PING_INTERVAL_MILLIS - 1);
+        assertEquals(0, transport.pings);
+
+        heartbeat.tick(IDLE_PING_INTERVAL_MILLIS);
+        assertEquals(1, transport.pings);
+    }
+
+    @Test
+    public void test_tick_sendingData_pingsSuppressedUntilActiveInterval() {
+        heartbeat.onDataSent(IDLE_PING_INTERVAL_MILLIS - 1);
+        heartbeat.tick(IDLE_PING_INTERVAL_MILLIS);
+        assertEquals(0, transport.pings);
+
+        // Inbound data proves the connection alive while sending.
+        heartbeat.onDataReceived(IDLE_PING_INTERVAL_MILLIS);
+        heartbeat.onDataSent(ACTIVE_PING_INTERVAL_MILLIS - 1);
+        heartbeat.tick(ACTIVE_PING_INTERVAL_MILLIS);
+        assertEquals(0, transport.pings);
+
+        // Sending does not prove the connection alive, so it is pinged eventually.
+        heartbeat.onDataSent(IDLE_PING_INTERVAL_MILLIS + ACTIVE_PING_INTERVAL_MILLIS - 1);
+        heartbeat.tick(IDLE_PING_INTERVAL_MILLIS + ACTIVE_PING_INTERVAL_MILLIS);
+        assertEquals(1, transport.pings);
+    }
+
+    @Test
+    public void test_onPong_measuresSmoothedRoundTripTime() {
+        assertEquals(-1, heartbeat.getRoundTripTimeMillis());
+
+        long now = IDLE_PING_INTERVAL_MILLIS;
+        heartbeat.tick(now);
+        heartbeat.onPong(now + 100);
+        assertEquals(100, heartbeat.getRoundTripTimeMillis());
+
+        now += 100 + IDLE_PING_INTERVAL_MILLIS;
+        heartbeat.tick(now);
+        heartbeat.onPong(now + 180);
+        assertEquals(2, transport.pings);
+        assertEquals((7 * 100 + 180) / 8, heartbeat.getRoundTripTimeMillis());
+    }
+
+    @Test
+    public void test_tick_missedPongs_connectionDead() {
+        long now = IDLE_PING_INTERVAL_MILLIS;
+        heartbeat.tick(now);
+        heartbeat.tick(now + DEFAULT_PONG_TIMEOUT_MILLIS - 1);
+        assertEquals(1, transport.pings);
+
+        // Every missed pong is followed by another ping, until too many were missed.
+        for (int missed = 1; missed < MAX_MISSED_PONGS; missed++) {
+            now += DEFAULT_PONG_TIMEOUT_MILLIS;
+            heartbeat.tick(now);
+            assertEquals(missed + 1, transport.pings);
+            assertEquals(0, transport.deadCount);
+        }
+
+        heartbeat.tick(now + DEFAULT_PONG_TIMEOUT_MILLIS);
+        assertEquals(1, transport.deadCount);
+        assertEquals(MAX_MISSED_PONGS, transport.missedPongs);
+
+        // The heartbeat stops with the connection.
+        heartbeat.tick(now + IDLE_PING_INTERVAL_MILLIS * 10);
+        assertEquals(MAX_MISSED_PONGS, transport.pings);
+        assertEquals(1, transport.deadCount);
+    }
+
+    @Test
+    public void test_tick_dataReceivedInsteadOfPong_connectionAlive() {
+        final long now = IDLE_PING_INTERVAL_MILLIS;
+        heartbeat.tick(now);
+        heartbeat.onDataReceived(now + 1);
+
+        heartbeat.tick(now + DEFAULT_PONG_TIMEOUT_MILLIS);
+        assertEquals(1, transport.pings);
+
+        heartbeat.tick(now + 1 + IDLE_PING_INTERVAL_MILLIS);
+        assertEquals(2, transport.pings);
+        assertEquals(0, transport.deadCount);
+        assertEquals(-1, heartbeat.getRoundTripTimeMillis());
+    }
+
+    private static final class RecordingTransport implements SocketHeartbeat.Transport {
+        int pings;
+        int deadCount;
+        int missedPongs;
+
+        @Override
+        public void sendPing() {
+            pings++;
+        }
+
+        @Override
+        public void onConnectionDead(final int missedPongs) {
+            deadCount++;
+            this.missedPongs = missedPongs;
+        }
+    }
+}